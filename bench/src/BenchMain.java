@@ -0,0 +1,53 @@
+/**
+ * BenchMain.java
+ */
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * BenchMain runs the benchmark suite and writes the results as JSON, for comparison with a baseline run.
+ * Options are given in the form --name=value: --include=regex (default all), --warmup and --iterations
+ * (default 5 each), --time of an iteration in ms (default 1000), and --out (default bench-results.json).
+ */
+public class BenchMain {
+
+    /**
+     * Runs the benchmark suite.
+     * @param args Command line arguments.
+     * @throws Exception if a benchmark fails.
+     */
+    public static void main(String[] args) throws Exception {
+        String include = ".*";
+        int warmup = 5;
+        int iterations = 5;
+        long time = 1000;
+        String out = "bench-results.json";
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) continue;
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "include": include = value; break;
+                case "warmup": warmup = Integer.parseInt(value); break;
+                case "iterations": iterations = Integer.parseInt(value); break;
+                case "time": time = Long.parseLong(value); break;
+                case "out": out = value; break;
+            }
+        }
+        BenchRunner runner = new BenchRunner(warmup, iterations, time);
+        BoardModelBench.register(runner);
+        ControllerBench.register(runner);
+        GameMsgBench.register(runner);
+        LeaderboardBench.register(runner);
+        LogBench.register(runner);
+        LoopbackGameBench.register(runner);
+        MatchmakerBench.register(runner);
+        List<BenchRunner.Result> results = runner.run(Pattern.compile(include));
+        runner.printSummary(results);
+        runner.writeJson(results, Path.of(out));
+        System.out.println("Results written to " + out);
+        System.exit(0);
+    }
+}
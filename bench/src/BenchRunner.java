@@ -0,0 +1,212 @@
+/**
+ * BenchRunner.java
+ */
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * BenchRunner measures the average time per operation of a set of Benchmarks, the way JMH does in avgt mode,
+ * and writes the results in the JSON layout of JMH, so the usual JMH result viewers can compare two runs.
+ */
+public class BenchRunner {
+
+    private static final double[] T_999 = {636.62, 31.60, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78, 4.59};
+
+    private final Map<String, Supplier<Benchmark>> benchmarks = new LinkedHashMap<>();
+    private final PrintStream out = System.out;
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationMillis;
+    private volatile int sink;
+
+    /**
+     * Constructor for BenchRunner.
+     * @param warmupIterations The number of warmup iterations of each benchmark.
+     * @param measurementIterations The number of measured iterations of each benchmark.
+     * @param iterationMillis The duration of one iteration, in milliseconds.
+     */
+    public BenchRunner(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationMillis = iterationMillis;
+    }
+
+    /**
+     * Registers a benchmark. A fresh instance is created for each run.
+     * @param name The name of the benchmark, in the form Class.method.
+     * @param factory Creates the Benchmark.
+     */
+    public void add(String name, Supplier<Benchmark> factory) {
+        benchmarks.put(name, factory);
+    }
+
+    /**
+     * Runs every registered benchmark whose name matches the pattern, in registration order.
+     * @param include The pattern names are matched against.
+     * @return The Results of the benchmarks run.
+     * @throws Exception if a benchmark fails.
+     */
+    public List<Result> run(Pattern include) throws Exception {
+        List<Result> results = new ArrayList<>();
+        for (Map.Entry<String, Supplier<Benchmark>> entry : benchmarks.entrySet()) {
+            if (include.matcher(entry.getKey()).find()) {
+                results.add(run(entry.getKey(), entry.getValue().get()));
+            }
+        }
+        return results;
+    }
+
+    private Result run(String name, Benchmark benchmark) throws Exception {
+        out.println("# Benchmark: " + name);
+        benchmark.setUp();
+        try {
+            int batch = 1;
+            for (int i = 0; i < warmupIterations; i++) {
+                double score = iteration(benchmark, batch);
+                out.println(String.format(Locale.ROOT, "# Warmup Iteration %2d: %.3f ns/op", i + 1, score));
+                batch = (int) Math.max(1, Math.min(1 << 20, 100_000 / Math.max(1.0, score)));
+            }
+            double[] scores = new double[measurementIterations];
+            for (int i = 0; i < measurementIterations; i++) {
+                scores[i] = iteration(benchmark, batch);
+                out.println(String.format(Locale.ROOT, "Iteration %2d: %.3f ns/op", i + 1, scores[i]));
+            }
+            return new Result(name, scores);
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    private double iteration(Benchmark benchmark, int batch) throws Exception {
+        long ops = 0;
+        int acc = 0;
+        long start = System.nanoTime();
+        long end = start + iterationMillis * 1_000_000;
+        long now;
+        do {
+            for (int i = 0; i < batch; i++) {
+                acc ^= benchmark.run();
+            }
+            ops += batch;
+            now = System.nanoTime();
+        } while (now - end < 0);
+        sink ^= acc;
+        return (double) (now - start) / ops;
+    }
+
+    /**
+     * Prints a summary table of the results, one line per benchmark.
+     * @param results The Results to print.
+     */
+    public void printSummary(List<Result> results) {
+        out.println(String.format(Locale.ROOT, "%-45s %6s %5s %14s   %-10s %s",
+                "Benchmark", "Mode", "Cnt", "Score", "Error", "Units"));
+        for (Result r : results) {
+            out.println(String.format(Locale.ROOT, "%-45s %6s %5d %14.3f +- %10.3f %s",
+                    r.getName(), "avgt", r.scores.length, r.getScore(), r.getError(), "ns/op"));
+        }
+    }
+
+    /**
+     * Writes the results to a file, in the JSON layout of JMH.
+     * @param results The Results to write.
+     * @param path The file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeJson(List<Result> results, Path path) throws IOException {
+        try (Writer w = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            w.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                w.write("    {\n");
+                w.write("        \"benchmark\" : \"" + r.getName() + "\",\n");
+                w.write("        \"mode\" : \"avgt\",\n");
+                w.write("        \"threads\" : 1,\n");
+                w.write("        \"forks\" : 0,\n");
+                w.write("        \"jdkVersion\" : \"" + System.getProperty("java.version") + "\",\n");
+                w.write("        \"vmName\" : \"" + System.getProperty("java.vm.name") + "\",\n");
+                w.write("        \"warmupIterations\" : " + warmupIterations + ",\n");
+                w.write("        \"warmupTime\" : \"" + iterationMillis + " ms\",\n");
+                w.write("        \"measurementIterations\" : " + measurementIterations + ",\n");
+                w.write("        \"measurementTime\" : \"" + iterationMillis + " ms\",\n");
+                w.write("        \"primaryMetric\" : {\n");
+                w.write("            \"score\" : " + number(r.getScore()) + ",\n");
+                w.write("            \"scoreError\" : " + number(r.getError()) + ",\n");
+                w.write("            \"scoreConfidence\" : [ " + number(r.getScore() - r.getError()) + ", "
+                        + number(r.getScore() + r.getError()) + " ],\n");
+                w.write("            \"scoreUnit\" : \"ns/op\",\n");
+                StringBuilder raw = new StringBuilder();
+                for (int j = 0; j < r.scores.length; j++) {
+                    raw.append(j == 0 ? "" : ", ").append(number(r.scores[j]));
+                }
+                w.write("            \"rawData\" : [ [ " + raw + " ] ]\n");
+                w.write("        },\n");
+                w.write("        \"secondaryMetrics\" : {\n        }\n");
+                w.write(i + 1 < results.size() ? "    },\n" : "    }\n");
+            }
+            w.write("]\n");
+        }
+    }
+
+    private static String number(double d) {
+        return Double.isFinite(d) ? String.format(Locale.ROOT, "%.6f", d) : "\"NaN\"";
+    }
+
+    /**
+     * Result holds the measured iterations of one benchmark.
+     */
+    public static class Result {
+        private final String name;
+        private final double[] scores;
+
+        Result(String name, double[] scores) {
+            this.name = name;
+            this.scores = scores;
+        }
+
+        /**
+         * Getter for the name of the benchmark.
+         * @return The name in the form Class.method.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the mean time per operation over the measured iterations.
+         * @return The score in nanoseconds per operation.
+         */
+        public double getScore() {
+            double sum = 0;
+            for (double s : scores) sum += s;
+            return sum / scores.length;
+        }
+
+        /**
+         * Gets the half width of the 99.9% confidence interval of the score.
+         * @return The error in nanoseconds per operation, or NaN with a single iteration.
+         */
+        public double getError() {
+            int n = scores.length;
+            if (n < 2) return Double.NaN;
+            double mean = getScore();
+            double var = 0;
+            for (double s : scores) var += (s - mean) * (s - mean);
+            int df = n - 1;
+            double t = df <= T_999.length ? T_999[df - 1] : 3.291 + 13.0 / df;
+            return t * Math.sqrt(var / df) / Math.sqrt(n);
+        }
+    }
+}
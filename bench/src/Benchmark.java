@@ -0,0 +1,32 @@
+/**
+ * Benchmark.java
+ */
+
+/**
+ * Benchmark is one measured operation of the benchmark suite.
+ * BenchRunner calls setUp once, then run as many times as fits in each iteration, then tearDown.
+ */
+public interface Benchmark {
+
+    /**
+     * Prepares the state the operation runs on. Not measured.
+     * @throws Exception if the state cannot be prepared.
+     */
+    default void setUp() throws Exception {
+    }
+
+    /**
+     * Runs the measured operation once.
+     * The result is folded into a sink by the runner, so the JIT cannot drop the operation as dead code.
+     * @return Any value computed by the operation.
+     * @throws Exception if the operation fails.
+     */
+    int run() throws Exception;
+
+    /**
+     * Releases the state of the benchmark. Not measured.
+     * @throws Exception if the state cannot be released.
+     */
+    default void tearDown() throws Exception {
+    }
+}
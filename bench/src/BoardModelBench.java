@@ -0,0 +1,59 @@
+/**
+ * BoardModelBench.java
+ */
+
+/**
+ * BoardModelBench measures the winner and full-board checks of BoardModel and BitBoardModel,
+ * and a whole game of setCell calls, each followed by the checks the Controller makes after a move.
+ */
+public class BoardModelBench {
+
+    /**
+     * Moves of a game X wins on its last move, as {row, col} pairs, X first.
+     */
+    static final int[][] GAME = {{1, 1}, {0, 0}, {0, 2}, {2, 0}, {1, 0}, {1, 2}, {2, 1}, {0, 1}, {2, 2}};
+
+    private BoardModelBench() {
+    }
+
+    /**
+     * Registers the benchmarks of this class.
+     * @param runner The BenchRunner to register with.
+     */
+    public static void register(BenchRunner runner) {
+        runner.add("BoardModelBench.checkWinnerArray", () -> checkWinner(new BoardModel()));
+        runner.add("BoardModelBench.checkWinnerBitBoard", () -> checkWinner(new BitBoardModel()));
+        runner.add("BoardModelBench.isBoardFullArray", () -> isBoardFull(new BoardModel()));
+        runner.add("BoardModelBench.isBoardFullBitBoard", () -> isBoardFull(new BitBoardModel()));
+        runner.add("BoardModelBench.playGameArray", () -> playGame(new BoardModel()));
+        runner.add("BoardModelBench.playGameBitBoard", () -> playGame(new BitBoardModel()));
+    }
+
+    private static void midGame(BoardModel bm) {
+        for (int i = 0; i < 5; i++) {
+            bm.setCell(GAME[i][0], GAME[i][1], i % 2 == 0 ? Mark.X : Mark.O);
+        }
+    }
+
+    private static Benchmark checkWinner(BoardModel bm) {
+        midGame(bm);
+        return () -> bm.checkWinner().ordinal();
+    }
+
+    private static Benchmark isBoardFull(BoardModel bm) {
+        midGame(bm);
+        return () -> bm.isBoardFull() ? 1 : 0;
+    }
+
+    private static Benchmark playGame(BoardModel bm) {
+        return () -> {
+            int acc = 0;
+            for (int i = 0; i < GAME.length; i++) {
+                bm.setCell(GAME[i][0], GAME[i][1], i % 2 == 0 ? Mark.X : Mark.O);
+                acc += bm.checkWinner().ordinal() + (bm.isBoardFull() ? 1 : 0);
+            }
+            bm.resetModel();
+            return acc;
+        };
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * ControllerBench.java
+ */
+
+/**
+ * ControllerBench measures a whole game driven through the Controller, as the server runs it:
+ * onCellClick followed by checkWinner for every move, then both players asking to restart.
+ * The packed LockFreeController is compared with SynchronizedController, the monitor-based baseline,
+ * uncontended, which is the cost every game pays; ControllerStress checks them under contention.
+ */
+public class ControllerBench {
+
+    private ControllerBench() {
+    }
+
+    /**
+     * Registers the benchmarks of this class.
+     * @param runner The BenchRunner to register with.
+     */
+    public static void register(BenchRunner runner) {
+        runner.add("ControllerBench.fullGameArray", () -> fullGame(new BoardModel()));
+        runner.add("ControllerBench.fullGameBitBoard", () -> fullGame(new BitBoardModel()));
+        runner.add("ControllerBench.fullGameSynchronized", () -> fullGame(new SynchronizedController(new BitBoardModel())));
+        runner.add("ControllerBench.fullGameLockFree", () -> fullGame(new LockFreeController()));
+    }
+
+    private static Benchmark fullGame(BoardModel bm) {
+        return fullGame(new Controller(bm));
+    }
+
+    private static Benchmark fullGame(Controller controller) {
+        controller.inputName(Mark.X);
+        controller.inputName(Mark.O);
+        return () -> {
+            Mark winner = null;
+            for (int i = 0; i < BoardModelBench.GAME.length && winner == null; i++) {
+                int[] move = BoardModelBench.GAME[i];
+                controller.onCellClick(move[0], move[1], i % 2 == 0 ? Mark.X : Mark.O);
+                winner = controller.checkWinner();
+            }
+            controller.restartGame(Mark.X);
+            controller.restartGame(Mark.O);
+            return winner.ordinal();
+        };
+    }
+}
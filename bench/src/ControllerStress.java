@@ -0,0 +1,296 @@
+/**
+ * ControllerStress.java
+ */
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.Supplier;
+
+/**
+ * ControllerStress races two threads on one Controller, the way jcstress does, and fails if a round ends
+ * in a forbidden outcome, such as a move applied twice or lost. The plain and synchronized Controllers play on
+ * a board that yields between checking a move and applying it, so the clicks interleave even on one CPU.
+ * Options are given in the form --name=value: --controller=lockfree|synchronized|plain (default lockfree),
+ * the plain Controller being expected to fail, and --rounds per scenario (default 100000).
+ */
+public class ControllerStress {
+
+    private ControllerStress() {
+    }
+
+    /**
+     * Runs every scenario and prints the outcomes it saw.
+     * @param args Command line arguments.
+     * @throws Exception if an actor fails.
+     */
+    public static void main(String[] args) throws Exception {
+        String kind = "lockfree";
+        int rounds = 100_000;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) continue;
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "controller": kind = value; break;
+                case "rounds": rounds = Integer.parseInt(value); break;
+            }
+        }
+        Supplier<Controller> factory;
+        switch (kind) {
+            case "synchronized": factory = () -> new SynchronizedController(new YieldingBoard()); break;
+            case "plain": factory = () -> new Controller(new YieldingBoard()); break;
+            default: factory = LockFreeController::new; break;
+        }
+        System.out.println("Controller: " + kind + ", rounds: " + rounds);
+        Scenario[] scenarios = {new DuplicateClick(), new CrossClick(), new Restart(), new Game(), new Tally()};
+        int forbidden = 0;
+        for (Scenario scenario : scenarios) {
+            forbidden += run(scenario, factory, rounds);
+        }
+        if (kind.equals("plain")) {
+            System.out.println(forbidden > 0 ? "Caught " + forbidden + " forbidden outcome(s) of the plain Controller, as expected"
+                    : "FAILED: the plain Controller showed no forbidden outcome");
+            System.exit(forbidden > 0 ? 0 : 1);
+        }
+        System.out.println(forbidden == 0 ? "OK" : "FAILED: " + forbidden + " forbidden outcome(s)");
+        System.exit(forbidden == 0 ? 0 : 1);
+    }
+
+    private static int run(Scenario scenario, Supplier<Controller> factory, int rounds) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(3);
+        Controller[] game = new Controller[1];
+        int[] results = new int[2];
+        Thread[] actors = new Thread[2];
+        for (int a = 0; a < 2; a++) {
+            int idx = a;
+            actors[a] = new Thread(() -> {
+                Random random = new Random(idx);
+                try {
+                    for (int r = 0; r < rounds; r++) {
+                        barrier.await();
+                        results[idx] = scenario.actor(game[0], idx, random);
+                        barrier.await();
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, "Actor-" + a);
+            actors[a].start();
+        }
+        Map<String, Integer> outcomes = new TreeMap<>();
+        int forbidden = 0;
+        for (int r = 0; r < rounds; r++) {
+            game[0] = scenario.prepare(factory.get());
+            barrier.await();
+            barrier.await();
+            String outcome = scenario.judge(game[0], results[0], results[1]);
+            outcomes.merge(outcome, 1, Integer::sum);
+            if (outcome.startsWith("FORBIDDEN")) {
+                forbidden++;
+            }
+        }
+        for (Thread actor : actors) {
+            actor.join();
+        }
+        System.out.println(scenario.getClass().getSimpleName() + ":");
+        for (Map.Entry<String, Integer> e : outcomes.entrySet()) {
+            System.out.printf("  %10d  %s%n", e.getValue(), e.getKey());
+        }
+        return forbidden;
+    }
+
+    private static String cells(Controller c) {
+        StringBuilder sb = new StringBuilder(9);
+        for (Mark[] row : c.getBm().getBoard()) {
+            for (Mark m : row) {
+                sb.append(m == Mark.X ? 'X' : m == Mark.O ? 'O' : '.');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int count(String cells, char mark) {
+        int n = 0;
+        for (int i = 0; i < cells.length(); i++) {
+            if (cells.charAt(i) == mark) n++;
+        }
+        return n;
+    }
+
+    /**
+     * YieldingBoard gives up the CPU before every winner and full-board check, to widen the window between
+     * the checks of a Controller and what it does about them.
+     */
+    private static final class YieldingBoard extends BitBoardModel {
+
+        @Override
+        public Mark checkWinner() {
+            Thread.yield();
+            return super.checkWinner();
+        }
+
+        @Override
+        public boolean isBoardFull() {
+            Thread.yield();
+            return super.isBoardFull();
+        }
+    }
+
+    /**
+     * Scenario is one race: how the game is prepared, what each actor does, and which outcomes are allowed.
+     */
+    private abstract static class Scenario {
+
+        Controller prepare(Controller c) {
+            c.inputName(Mark.X);
+            c.inputName(Mark.O);
+            return c;
+        }
+
+        abstract int actor(Controller c, int idx, Random random);
+
+        abstract String judge(Controller c, int r0, int r1);
+    }
+
+    /**
+     * Both actors click the same cell for X: exactly one click is applied.
+     */
+    private static final class DuplicateClick extends Scenario {
+
+        @Override
+        int actor(Controller c, int idx, Random random) {
+            return c.onCellClick(1, 1, Mark.X) ? 1 : 0;
+        }
+
+        @Override
+        String judge(Controller c, int r0, int r1) {
+            String board = cells(c);
+            String outcome = r0 + "," + r1 + " " + board;
+            boolean ok = r0 + r1 == 1 && board.equals("....X....") && !c.onCellClick(2, 2, Mark.X);
+            return ok ? "one click applied " + outcome : "FORBIDDEN " + outcome;
+        }
+    }
+
+    /**
+     * Both actors click a different cell for X: exactly one turn is taken.
+     */
+    private static final class CrossClick extends Scenario {
+
+        @Override
+        int actor(Controller c, int idx, Random random) {
+            return c.onCellClick(idx * 2, idx * 2, Mark.X) ? 1 : 0;
+        }
+
+        @Override
+        String judge(Controller c, int r0, int r1) {
+            String board = cells(c);
+            String outcome = r0 + "," + r1 + " " + board;
+            boolean ok = r0 + r1 == 1 && count(board, 'X') == 1 && count(board, 'O') == 0
+                    && board.charAt(r0 == 1 ? 0 : 8) == 'X';
+            return ok ? "one turn taken " + outcome : "FORBIDDEN " + outcome;
+        }
+    }
+
+    /**
+     * Both players ask to restart at once: the game is restarted once.
+     */
+    private static final class Restart extends Scenario {
+
+        @Override
+        Controller prepare(Controller c) {
+            super.prepare(c);
+            c.onCellClick(0, 0, Mark.X);
+            return c;
+        }
+
+        @Override
+        int actor(Controller c, int idx, Random random) {
+            return c.restartGame(idx == 0 ? Mark.X : Mark.O) ? 1 : 0;
+        }
+
+        @Override
+        String judge(Controller c, int r0, int r1) {
+            String board = cells(c);
+            String outcome = r0 + "," + r1 + " " + board;
+            boolean ok = r0 + r1 == 1 && board.equals(".........") && c.onCellClick(0, 0, Mark.X);
+            return ok ? "restarted once " + outcome : "FORBIDDEN " + outcome;
+        }
+    }
+
+    /**
+     * X and O each click CLICKS random cells: every accepted move is on the board, in turn.
+     */
+    private static final class Game extends Scenario {
+
+        private static final int CLICKS = 64;
+
+        @Override
+        int actor(Controller c, int idx, Random random) {
+            Mark mark = idx == 0 ? Mark.X : Mark.O;
+            int accepted = 0;
+            for (int i = 0; i < CLICKS; i++) {
+                int cell = random.nextInt(9);
+                if (c.onCellClick(cell / 3, cell % 3, mark)) {
+                    accepted++;
+                }
+            }
+            return accepted;
+        }
+
+        @Override
+        String judge(Controller c, int r0, int r1) {
+            String board = cells(c);
+            int x = count(board, 'X');
+            int o = count(board, 'O');
+            if (x != r0 || o != r1 || x - o < 0 || x - o > 1) {
+                return "FORBIDDEN accepted " + r0 + "," + r1 + " on " + board;
+            }
+            return "consistent game";
+        }
+    }
+
+    /**
+     * O plays a move and X the winning move after it, each calling checkWinner after its own move,
+     * O only once X has moved: the win is counted once.
+     */
+    private static final class Tally extends Scenario {
+
+        @Override
+        Controller prepare(Controller c) {
+            super.prepare(c);
+            c.onCellClick(0, 0, Mark.X);
+            c.onCellClick(1, 1, Mark.O);
+            c.onCellClick(0, 1, Mark.X);
+            c.onCellClick(1, 2, Mark.O);
+            c.onCellClick(1, 0, Mark.X);
+            return c;
+        }
+
+        @Override
+        int actor(Controller c, int idx, Random random) {
+            if (idx == 0) {
+                c.onCellClick(2, 1, Mark.O);
+                // Checks late, once X has moved, as a thread preempted between its move and its check would.
+                while (c.getTurn() == Mark.X) {
+                    Thread.yield();
+                }
+            } else {
+                while (!c.onCellClick(0, 2, Mark.X)) {
+                    Thread.yield();
+                }
+            }
+            return c.checkWinner() == Mark.X ? 1 : 0;
+        }
+
+        @Override
+        String judge(Controller c, int r0, int r1) {
+            BoardModel bm = c.getBm();
+            String outcome = "seen by " + (r0 + r1) + ", counted " + bm.getPlayerWins(0) + "/" + bm.getPlayerWins(1)
+                    + "/" + bm.getDraws();
+            boolean ok = r0 == 1 && r1 == 1 && bm.getPlayerWins(0) == 1 && bm.getPlayerWins(1) == 0 && bm.getDraws() == 0;
+            return ok ? "win counted once, " + outcome : "FORBIDDEN " + outcome;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * GameMsgBench.java
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * GameMsgBench measures a GameMsg round trip, encoded into a frame and decoded back,
+ * with Java serialization (protocol version 1) and with BinaryCodec (protocol version 2).
+ */
+public class GameMsgBench {
+
+    private GameMsgBench() {
+    }
+
+    /**
+     * Registers the benchmarks of this class.
+     * @param runner The BenchRunner to register with.
+     */
+    public static void register(BenchRunner runner) {
+        GameMsg move = new GameMsg(GameMsg.MsgType.MOVE, 1, 2, Mark.O, "");
+        GameMsg setName = new GameMsg(GameMsg.MsgType.SETNAME, 0, 0, Mark.X, "Player One");
+        runner.add("GameMsgBench.roundTripSerialMove", () -> serial(move));
+        runner.add("GameMsgBench.roundTripBinaryMove", () -> binary(move));
+        runner.add("GameMsgBench.roundTripSerialSetName", () -> serial(setName));
+        runner.add("GameMsgBench.roundTripBinarySetName", () -> binary(setName));
+    }
+
+    private static Benchmark serial(GameMsg msg) {
+        return () -> MsgCodec.decode(MsgCodec.encode(msg)).getRow();
+    }
+
+    private static Benchmark binary(GameMsg msg) {
+        ByteBuffer buf = ByteBuffer.allocate(MsgCodec.MAX_FRAME_SIZE);
+        return () -> {
+            buf.clear();
+            BinaryCodec.encode(msg, buf);
+            buf.flip();
+            return BinaryCodec.decode(buf).getRow();
+        };
+    }
+}
@@ -0,0 +1,410 @@
+/**
+ * JournalReplay.java
+ */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * JournalReplay writes a MoveJournal the way the rooms of a server do, damages it the ways a crash can,
+ * and checks that it recovers the rooms that were in play when its last surviving record was written.
+ * Options are given in the form --name=value: --rooms (default 500), --ops between scenarios (default 100000),
+ * --segment-bytes (default 65536) and --seed (default 42).
+ */
+public class JournalReplay {
+
+    private static final int RECORD = 32;
+
+    private final Random random;
+    private final int maxRooms;
+    private final Map<Integer, Room> live = new LinkedHashMap<>();
+    private final List<Integer> ids = new ArrayList<>();
+    private final List<Rec> records = new ArrayList<>();
+    private int nextId = 1;
+    private MoveJournal journal;
+    private int rollAt = -1;
+    private int checkpointRecords = 0;
+
+    private JournalReplay(int maxRooms, long seed) {
+        this.maxRooms = maxRooms;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Runs every scenario on the same journal and prints whether the recovered rooms matched: reopen, closed cleanly
+     * and opened again; tornRecord, the last record damaged, then tornRecordOverwritten by the next append;
+     * checkpointOnly, every segment but the newest deleted; and tornCheckpoint, the newest checkpoint damaged
+     * as if the crash came while it was written, so the previous segment is replayed instead.
+     * @param args Command line arguments.
+     * @throws IOException if the journal cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        int rooms = 500;
+        int ops = 100_000;
+        long segmentBytes = 65536;
+        long seed = 42;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) continue;
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "rooms": rooms = Integer.parseInt(value); break;
+                case "ops": ops = Integer.parseInt(value); break;
+                case "segment-bytes": segmentBytes = Long.parseLong(value); break;
+                case "seed": seed = Long.parseLong(value); break;
+            }
+        }
+        Log.setLevel(Log.Level.WARN);
+        Path dir = Files.createTempDirectory("journal-replay");
+        JournalReplay sim = new JournalReplay(rooms, seed);
+        int failed = 0;
+        try {
+            sim.journal = MoveJournal.open(dir, segmentBytes, MoveJournal.SyncMode.ASYNC);
+            sim.play(ops);
+            failed += sim.check("reopen", dir, segmentBytes, sim.records.size());
+
+            sim.openRoom();
+            failed += sim.check("tornRecord", dir, segmentBytes, sim.tearLastRecord(dir));
+            sim.play(ops);
+            failed += sim.check("tornRecordOverwritten", dir, segmentBytes, sim.records.size());
+
+            List<Path> segments = segments(dir);
+            for (Path old : segments.subList(0, segments.size() - 1)) {
+                Files.delete(old);
+            }
+            failed += sim.check("checkpointOnly", dir, segmentBytes, sim.records.size());
+
+            sim.rollAt = -1;
+            for (int i = 0; i < 10 * ops && sim.rollAt < 0; i++) {
+                sim.step();
+            }
+            if (sim.rollAt < 0) {
+                System.out.println("tornCheckpoint: no segment rolled, increase --ops or --rooms");
+                failed++;
+            } else {
+                failed += sim.check("tornCheckpoint", dir, segmentBytes, sim.tearCheckpoint(dir));
+            }
+            sim.journal.close();
+            long largest = 0;
+            for (Path segment : segments(dir)) {
+                largest = Math.max(largest, Files.size(segment));
+            }
+            System.out.println(sim.records.size() + " records, largest segment " + largest + " bytes of "
+                    + segmentBytes + ", " + sim.live.size() + " rooms in play");
+        } finally {
+            for (Path segment : segments(dir)) {
+                Files.delete(segment);
+            }
+            Files.delete(dir);
+        }
+        System.out.println(failed == 0 ? "OK" : "FAILED: " + failed + " scenario(s)");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * Closes the journal, opens it again, and compares the recovered rooms with those of the first records.
+     * The records past the survivors are forgotten, as are the rooms they changed, so the games go on from
+     * what was recovered.
+     * @return 1 if the rooms differ, 0 otherwise.
+     */
+    private int check(String scenario, Path dir, long segmentBytes, int survivors) throws IOException {
+        journal.close();
+        journal = MoveJournal.open(dir, segmentBytes, MoveJournal.SyncMode.ASYNC);
+        records.subList(survivors, records.size()).clear();
+        Map<Integer, Expected> expected = expected();
+        List<MoveJournal.RecoveredRoom> recovered = journal.getRecovered();
+        String mismatch = null;
+        if (recovered.size() != expected.size()) {
+            mismatch = recovered.size() + " rooms recovered, " + expected.size() + " expected";
+        }
+        List<Integer> order = new ArrayList<>(expected.keySet());
+        for (int i = 0; mismatch == null && i < recovered.size(); i++) {
+            MoveJournal.RecoveredRoom room = recovered.get(i);
+            Expected e = expected.get(room.getId());
+            if (room.getId() != order.get(i) || !room.fits(e.rows, e.cols, e.winLength)) {
+                mismatch = "room " + room.getId() + " recovered in place of room " + order.get(i);
+                continue;
+            }
+            BoardModel bm = new BoardModel(e.rows, e.cols, e.winLength);
+            room.restore(bm);
+            if (!Arrays.deepEquals(bm.getBoard(), e.board) || bm.getPlayerWins(0) != e.xWins
+                    || bm.getPlayerWins(1) != e.oWins || bm.getDraws() != e.draws) {
+                mismatch = "room " + room.getId() + " recovered with another board or other scores";
+            }
+        }
+        System.out.println(scenario + ": " + (mismatch == null ? recovered.size() + " rooms recovered" : "FAILED, " + mismatch));
+        resync(expected);
+        return mismatch == null ? 0 : 1;
+    }
+
+    /**
+     * Rebuilds the rooms in play from the expected rooms after a crash lost some records.
+     */
+    private void resync(Map<Integer, Expected> expected) {
+        live.clear();
+        ids.clear();
+        for (Map.Entry<Integer, Expected> entry : expected.entrySet()) {
+            Expected e = entry.getValue();
+            Room room = new Room(new BoardModel(e.rows, e.cols, e.winLength));
+            room.bm.restoreScores(e.xWins, e.oWins, e.draws);
+            for (int r = 0; r < e.rows; r++) {
+                for (int c = 0; c < e.cols; c++) {
+                    if (e.board[r][c] != Mark.EMPTY) {
+                        room.bm.setCell(r, c, e.board[r][c]);
+                        room.moves++;
+                    }
+                }
+            }
+            room.over = room.bm.checkWinner() != Mark.EMPTY || room.bm.isBoardFull();
+            live.put(entry.getKey(), room);
+            ids.add(entry.getKey());
+        }
+    }
+
+    private Map<Integer, Expected> expected() {
+        Map<Integer, Expected> rooms = new LinkedHashMap<>();
+        for (Rec rec : records) {
+            Expected e;
+            switch (rec.type) {
+                case START:
+                    rooms.put(rec.room, new Expected(rec.rows, rec.cols, rec.winLength, rec.xWins, rec.oWins, rec.draws));
+                    break;
+                case MOVE:
+                    rooms.get(rec.room).board[rec.rows][rec.cols] = rec.mark;
+                    break;
+                case RESULT:
+                    e = rooms.get(rec.room);
+                    e.xWins = rec.xWins;
+                    e.oWins = rec.oWins;
+                    e.draws = rec.draws;
+                    break;
+                default:
+                    rooms.remove(rec.room);
+                    break;
+            }
+        }
+        return rooms;
+    }
+
+    private void play(int ops) {
+        for (int i = 0; i < ops; i++) {
+            step();
+        }
+    }
+
+    /**
+     * Opens a room, starts the next game of a room, closes a room, or plays a random move, as a server would.
+     */
+    private void step() {
+        if (ids.isEmpty() || ids.size() < maxRooms && random.nextInt(20) == 0) {
+            openRoom();
+            return;
+        }
+        int index = random.nextInt(ids.size());
+        int id = ids.get(index);
+        Room room = live.get(id);
+        if (room.over) {
+            if (random.nextInt(10) == 0) {
+                ids.set(index, ids.get(ids.size() - 1));
+                ids.remove(ids.size() - 1);
+                live.remove(id);
+                append(new Rec(Type.CLOSE, id, null, 0, 0, 0, null), () -> journal.roomClosed(id));
+            } else {
+                room.bm.resetModel();
+                room.moves = 0;
+                room.over = false;
+                append(Rec.start(id, room.bm), () -> journal.gameStarted(id, room.bm));
+            }
+            return;
+        }
+        BoardModel bm = room.bm;
+        int r;
+        int c;
+        do {
+            r = random.nextInt(bm.getRows());
+            c = random.nextInt(bm.getCols());
+        } while (!bm.isCellEmpty(r, c));
+        Mark mark = room.moves % 2 == 0 ? Mark.X : Mark.O;
+        bm.setCell(r, c, mark);
+        room.moves++;
+        int row = r;
+        int col = c;
+        append(new Rec(Type.MOVE, id, mark, row, col, 0, null), () -> journal.move(id, row, col, mark));
+        Mark winner = bm.checkWinner();
+        if (winner != Mark.EMPTY || bm.isBoardFull()) {
+            if (winner == Mark.X) bm.addPlayerWins(0);
+            else if (winner == Mark.O) bm.addPlayerWins(1);
+            else bm.addDraws();
+            room.over = true;
+            append(new Rec(Type.RESULT, id, winner, 0, 0, 0, bm), () -> journal.result(id, winner, bm));
+        }
+    }
+
+    private void openRoom() {
+        int id = nextId++;
+        BoardModel bm = random.nextInt(10) == 0 ? new BoardModel(15, 15, 5) : new BoardModel();
+        live.put(id, new Room(bm));
+        ids.add(id);
+        append(Rec.start(id, bm), () -> journal.gameStarted(id, bm));
+    }
+
+    /**
+     * Appends one record to the journal and keeps it, noting whether the append started a new segment.
+     */
+    private void append(Rec rec, Runnable write) {
+        long before = journal.getAppended();
+        write.run();
+        long written = journal.getAppended() - before;
+        if (written > 1) {
+            rollAt = records.size();
+            checkpointRecords = (int) written - 1;
+        }
+        records.add(rec);
+    }
+
+    /**
+     * Damages the last record of the newest segment.
+     * @return The number of records that survive.
+     */
+    private int tearLastRecord(Path dir) throws IOException {
+        journal.close();
+        List<Path> segments = segments(dir);
+        Path newest = segments.get(segments.size() - 1);
+        damage(newest, end(newest) - RECORD);
+        return records.size() - 1;
+    }
+
+    /**
+     * Damages the last record of the checkpoint of the newest segment, and whatever came after it.
+     * @return The number of records that survive: those written before the segment was started.
+     */
+    private int tearCheckpoint(Path dir) throws IOException {
+        journal.close();
+        List<Path> segments = segments(dir);
+        Path newest = segments.get(segments.size() - 1);
+        long checkpointEnd = (long) (checkpointRecords - 1) * RECORD;
+        for (long at = end(newest) - RECORD; at >= checkpointEnd; at -= RECORD) {
+            damage(newest, at);
+        }
+        return rollAt;
+    }
+
+    private static long end(Path segment) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(segment.toFile(), "r")) {
+            long at = 0;
+            while (at + RECORD <= raf.length()) {
+                raf.seek(at);
+                if (raf.read() == 0) {
+                    break;
+                }
+                at += RECORD;
+            }
+            return at;
+        }
+    }
+
+    private static void damage(Path segment, long at) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(segment.toFile(), "rw")) {
+            raf.seek(at + 12);
+            int b = raf.read();
+            raf.seek(at + 12);
+            raf.write(b ^ 0xFF);
+        }
+    }
+
+    private static List<Path> segments(Path dir) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "journal-*.seg")) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private enum Type {
+        START, MOVE, RESULT, CLOSE
+    }
+
+    /**
+     * Rec is one record appended to the journal, kept to rebuild the rooms it should recover.
+     * A MOVE keeps its cell in rows and cols.
+     */
+    private static final class Rec {
+        final Type type;
+        final int room;
+        final Mark mark;
+        final int rows;
+        final int cols;
+        final int winLength;
+        final int xWins;
+        final int oWins;
+        final int draws;
+
+        Rec(Type type, int room, Mark mark, int rows, int cols, int winLength, BoardModel scores) {
+            this.type = type;
+            this.room = room;
+            this.mark = mark;
+            this.rows = rows;
+            this.cols = cols;
+            this.winLength = winLength;
+            this.xWins = scores == null ? 0 : scores.getPlayerWins(0);
+            this.oWins = scores == null ? 0 : scores.getPlayerWins(1);
+            this.draws = scores == null ? 0 : scores.getDraws();
+        }
+
+        static Rec start(int room, BoardModel bm) {
+            return new Rec(Type.START, room, null, bm.getRows(), bm.getCols(), bm.getWinLength(), bm);
+        }
+    }
+
+    /**
+     * Room is a room in play: its board, the moves of its game, and whether the game is over.
+     */
+    private static final class Room {
+        final BoardModel bm;
+        int moves = 0;
+        boolean over = false;
+
+        Room(BoardModel bm) {
+            this.bm = bm;
+        }
+    }
+
+    /**
+     * Expected is a room as the journal should recover it.
+     */
+    private static final class Expected {
+        final int rows;
+        final int cols;
+        final int winLength;
+        final Mark[][] board;
+        int xWins;
+        int oWins;
+        int draws;
+
+        Expected(int rows, int cols, int winLength, int xWins, int oWins, int draws) {
+            this.rows = rows;
+            this.cols = cols;
+            this.winLength = winLength;
+            this.board = new Mark[rows][cols];
+            for (Mark[] row : board) {
+                Arrays.fill(row, Mark.EMPTY);
+            }
+            this.xWins = xWins;
+            this.oWins = oWins;
+            this.draws = draws;
+        }
+    }
+}
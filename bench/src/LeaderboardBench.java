@@ -0,0 +1,84 @@
+/**
+ * LeaderboardBench.java
+ */
+
+import java.util.Random;
+
+/**
+ * LeaderboardBench measures the queries of the Leaderboard and the batches its results are applied in,
+ * over PLAYERS players whose ratings were spread by random games beforehand: the rank of a random player,
+ * the top 10, the 5 players on either side of a random player, and the result of one game applied in a batch of BATCH.
+ */
+public class LeaderboardBench {
+
+    private static final int PLAYERS = 200_000;
+    private static final int BATCH = 256;
+
+    private LeaderboardBench() {
+    }
+
+    /**
+     * Registers the benchmarks of this class.
+     * @param runner The BenchRunner to register with.
+     */
+    public static void register(BenchRunner runner) {
+        runner.add("LeaderboardBench.rank", () -> {
+            Board board = new Board();
+            return () -> board.leaderboard.rank(board.randomName());
+        });
+        runner.add("LeaderboardBench.top10", () -> {
+            Board board = new Board();
+            return () -> board.leaderboard.top(10).size();
+        });
+        runner.add("LeaderboardBench.around5", () -> {
+            Board board = new Board();
+            return () -> board.leaderboard.around(board.randomName(), 5).size();
+        });
+        runner.add("LeaderboardBench.applyResult", () -> {
+            Board board = new Board();
+            int[] queued = {0};
+            return () -> {
+                board.play();
+                if (++queued[0] == BATCH) {
+                    queued[0] = 0;
+                    board.leaderboard.flush();
+                }
+                return queued[0];
+            };
+        });
+    }
+
+    /**
+     * Board is a Leaderboard filled with PLAYERS players of unequal strength.
+     */
+    private static final class Board {
+        private final PlayerRatings ratings = new PlayerRatings();
+        private final Leaderboard leaderboard = new Leaderboard(ratings);
+        private final Random random = new Random(42);
+        private final String[] names = new String[PLAYERS];
+        private final double[] skill = new double[PLAYERS];
+
+        private Board() {
+            for (int i = 0; i < PLAYERS; i++) {
+                names[i] = "player" + i;
+                skill[i] = random.nextGaussian();
+            }
+            for (int game = 0; game < PLAYERS * 4; game++) {
+                play();
+            }
+            leaderboard.flush();
+        }
+
+        private void play() {
+            int x = random.nextInt(PLAYERS);
+            int o = random.nextInt(PLAYERS);
+            Mark winner = random.nextDouble() < 1 / (1 + Math.exp(skill[o] - skill[x])) ? Mark.X : Mark.O;
+            ratings.record(names[x], names[o], winner);
+            leaderboard.offer(names[x], names[o], winner);
+        }
+
+        private String randomName() {
+            return names[random.nextInt(PLAYERS)];
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ * LoadGenerator.java
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LoadGenerator puts load on a running GameServer with headless bots, and reports move round trip and connection
+ * setup latencies, corrected for coordinated omission, and games and moves per second.
+ * Options are given in the form --name=value: --host (default localhost), --port (default 8888), --bots (default 100),
+ * --rate in bots per second (default 50), --duration in seconds (default 30), --think in ms (default 10),
+ * --mode=random|scripted (default random), --version of the protocol (default 2), --threads=platform|virtual
+ * (default virtual), and --spectators of the oldest game (default 0) reading a frame every --spectator-lag ms (default 0).
+ */
+public class LoadGenerator {
+
+    private static final int RETRY_MILLIS = 250;
+    private static final int SETUP_MILLIS = 30_000;
+
+    private String host = "localhost";
+    private int port = 8888;
+    private int bots = 100;
+    private double rate = 50;
+    private long durationMillis = 30_000;
+    private long thinkMillis = 10;
+    private boolean scripted = false;
+    private int version = Handshake.BINARY_VERSION;
+    private boolean virtual = true;
+    private int spectators = 0;
+    private long spectatorLagMillis = 0;
+
+    private final LatencyHistogram moveLatency = new LatencyHistogram();
+    private final LatencyHistogram moveLatencyRaw = new LatencyHistogram();
+    private final LatencyHistogram setupLatency = new LatencyHistogram();
+    private final LatencyHistogram setupLatencyRaw = new LatencyHistogram();
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong spectatorFrames = new AtomicLong();
+    private final AtomicLong spectatorSnapshots = new AtomicLong();
+    private final AtomicLong spectatorErrors = new AtomicLong();
+    private long deadline;
+
+    /**
+     * Runs the load test and prints the report.
+     * @param args Command line arguments.
+     * @throws InterruptedException if interrupted while waiting for the bots.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        LoadGenerator generator = new LoadGenerator();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) continue;
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "host": generator.host = value; break;
+                case "port": generator.port = Integer.parseInt(value); break;
+                case "bots": generator.bots = Integer.parseInt(value); break;
+                case "rate": generator.rate = Double.parseDouble(value); break;
+                case "duration": generator.durationMillis = Long.parseLong(value) * 1000; break;
+                case "think": generator.thinkMillis = Long.parseLong(value); break;
+                case "mode": generator.scripted = value.equalsIgnoreCase("scripted"); break;
+                case "version": generator.version = Integer.parseInt(value); break;
+                case "threads": generator.virtual = value.equalsIgnoreCase("virtual"); break;
+                case "spectators": generator.spectators = Integer.parseInt(value); break;
+                case "spectator-lag": generator.spectatorLagMillis = Long.parseLong(value); break;
+            }
+        }
+        generator.run();
+        System.exit(0);
+    }
+
+    /**
+     * Starts the bots at the configured arrival rate, waits for the run to end, and prints the report.
+     * @throws InterruptedException if interrupted while waiting for the bots.
+     */
+    public void run() throws InterruptedException {
+        long start = System.nanoTime();
+        deadline = start + durationMillis * 1_000_000;
+        CountDownLatch done = new CountDownLatch(bots + spectators);
+        long interval = (long) (1e9 / rate);
+        for (int i = 0; i < bots; i++) {
+            long intendedStart = start + i * interval;
+            Bot bot = new Bot(i, intendedStart, done);
+            Threads.start("Bot-" + i, bot, virtual);
+        }
+        for (int i = 0; i < spectators; i++) {
+            Threads.start("Watcher-" + i, new Watcher(start + (bots + i) * interval, done), virtual);
+        }
+        done.await(durationMillis + 30_000, TimeUnit.MILLISECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println("Bots: " + bots + ", arrival rate " + rate + "/s, protocol v" + version
+                + ", " + (scripted ? "scripted" : "random") + " games, think " + thinkMillis + " ms");
+        System.out.println(String.format(java.util.Locale.ROOT, "Games: %d (%.1f/s), moves: %d (%.1f/s), retries: %d, errors: %d",
+                games.get(), games.get() / seconds, moves.get(), moves.get() / seconds, retries.get(), errors.get()));
+        if (spectators > 0) {
+            System.out.println("Spectators: " + spectators + ", lag " + spectatorLagMillis + " ms, frames: " + spectatorFrames.get()
+                    + ", snapshots: " + spectatorSnapshots.get() + ", errors: " + spectatorErrors.get());
+        }
+        System.out.println("Move round trip (corrected):   " + moveLatency.summary(1000, "us"));
+        System.out.println("Move round trip (uncorrected): " + moveLatencyRaw.summary(1000, "us"));
+        System.out.println("Connection setup (intended):   " + setupLatency.summary(1000, "us"));
+        System.out.println("Connection setup (actual):     " + setupLatencyRaw.summary(1000, "us"));
+    }
+
+    /**
+     * Watcher is one headless spectator of the oldest game in play. It counts the frames it reads,
+     * and the SNAPSHOTs it was sent instead of the moves it was too slow to take, until the run is over
+     * or a player leaves the game it watches.
+     */
+    private class Watcher implements Runnable {
+        private final long intendedStart;
+        private final CountDownLatch done;
+
+        Watcher(long intendedStart, CountDownLatch done) {
+            this.intendedStart = intendedStart;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            Socket socket = new Socket();
+            try {
+                LockSupport.parkNanos(intendedStart - System.nanoTime());
+                if (spectatorLagMillis > 0) socket.setReceiveBufferSize(1024);
+                socket.connect(new InetSocketAddress(host, port), SETUP_MILLIS);
+                socket.setSoTimeout(SETUP_MILLIS);
+                MsgStream stream = Handshake.watch(socket, 0);
+                socket.setSoTimeout(RETRY_MILLIS);
+                while (System.nanoTime() - deadline < 0) {
+                    GameMsg msg;
+                    try {
+                        msg = stream.read();
+                    } catch (SocketTimeoutException e) {
+                        continue;
+                    }
+                    spectatorFrames.incrementAndGet();
+                    if (msg.getType() == GameMsg.MsgType.SNAPSHOT) spectatorSnapshots.incrementAndGet();
+                    if (msg.getType() == GameMsg.MsgType.EXIT) break;
+                    if (spectatorLagMillis > 0) LockSupport.parkNanos(spectatorLagMillis * 1_000_000);
+                }
+            } catch (IOException e) {
+                spectatorErrors.incrementAndGet();
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+                done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Bot is one headless player. It connects at its intended start time, then reacts to the messages
+     * of the server, following the game on its own BoardModel: it moves when it is its turn, waits for its own MOVE to come back to time the
+     * round trip, and asks for a new game after every GAME_OVER until the run is over.
+     * Until the first move goes through, a move the server ignored because the opponent has not registered
+     * its name yet is sent again.
+     * A bot left without an opponent leaves once the run is over.
+     * The handshake and PLAYER_ASSIGNED are waited for up to SETUP_MILLIS, so a slow setup shows in its latency
+     * rather than as an error; reads only time out every RETRY_MILLIS once the bot is seated.
+     */
+    private class Bot implements Runnable {
+        private final int id;
+        private final long intendedStart;
+        private final CountDownLatch done;
+        private final Random random;
+        private MsgStream stream;
+        private Mark mark;
+        private BoardModel board;
+        private boolean opponentNamed = false;
+
+        Bot(int id, long intendedStart, CountDownLatch done) {
+            this.id = id;
+            this.intendedStart = intendedStart;
+            this.done = done;
+            this.random = new Random(id);
+        }
+
+        @Override
+        public void run() {
+            Socket socket = null;
+            try {
+                LockSupport.parkNanos(intendedStart - System.nanoTime());
+                long connectStart = System.nanoTime();
+                socket = new Socket();
+                socket.connect(new InetSocketAddress(host, port), SETUP_MILLIS);
+                socket.setSoTimeout(SETUP_MILLIS);
+                stream = Handshake.connect(socket, version);
+                GameMsg assigned = until(GameMsg.MsgType.PLAYER_ASSIGNED);
+                socket.setSoTimeout(RETRY_MILLIS);
+                long now = System.nanoTime();
+                setupLatency.record(now - intendedStart);
+                setupLatencyRaw.record(now - connectStart);
+                mark = assigned.getMark();
+                board = new BoardModel(assigned.getRow(), assigned.getCol(), Integer.parseInt(assigned.getMessage().split(" ")[0]));
+                stream.write(new GameMsg(GameMsg.MsgType.SETNAME, 0, 0, mark, "bot" + id));
+                play();
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            } finally {
+                try {
+                    if (socket != null) socket.close();
+                } catch (IOException ignored) {
+                }
+                done.countDown();
+            }
+        }
+
+        private void play() throws IOException {
+            boolean myTurn = false;
+            boolean inGame = false;
+            while (true) {
+                if (myTurn) {
+                    move();
+                    myTurn = false;
+                    continue;
+                }
+                GameMsg msg = read();
+                if (msg == null) {
+                    if (!inGame && System.nanoTime() - deadline >= 0) {
+                        stream.write(new GameMsg(GameMsg.MsgType.EXIT, 0, 0, mark, ""));
+                        return;
+                    }
+                    continue;
+                }
+                switch (msg.getType()) {
+                    case PLAYER_ASSIGNED:
+                        // Moved to the room of its opponent by the matchmaker of the server.
+                        mark = msg.getMark();
+                        break;
+                    case GAME_START:
+                        inGame = true;
+                        board.resetModel();
+                        myTurn = mark == Mark.X;
+                        break;
+                    case MOVE:
+                        opponentNamed = true;
+                        board.setCell(msg.getCol(), msg.getRow(), msg.getMark());
+                        myTurn = msg.getMark() != mark && board.checkWinner() == Mark.EMPTY && !board.isBoardFull();
+                        break;
+                    case GAME_OVER:
+                        myTurn = false;
+                        inGame = false;
+                        if (mark == Mark.X) games.incrementAndGet();
+                        if (System.nanoTime() - deadline >= 0) {
+                            stream.write(new GameMsg(GameMsg.MsgType.EXIT, 0, 0, mark, ""));
+                            return;
+                        }
+                        stream.write(new GameMsg(GameMsg.MsgType.GAME_START, 0, 0, mark, ""));
+                        break;
+                    case EXIT:
+                        return;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        private void move() throws IOException {
+            long intended = System.nanoTime() + thinkMillis * 1_000_000;
+            LockSupport.parkNanos(intended - System.nanoTime());
+            long sent = System.nanoTime();
+            int cell = pick();
+            GameMsg move = new GameMsg(GameMsg.MsgType.MOVE, cell / board.getCols(), cell % board.getCols(), mark, "");
+            stream.write(move);
+            while (true) {
+                GameMsg msg = read();
+                if (msg == null) {
+                    if (!opponentNamed) {
+                        retries.incrementAndGet();
+                        stream.write(move);
+                    }
+                    continue;
+                }
+                if (msg.getType() == GameMsg.MsgType.MOVE && msg.getMark() == mark) {
+                    long now = System.nanoTime();
+                    moveLatency.recordWithExpectedInterval(now - intended, thinkMillis * 1_000_000);
+                    moveLatencyRaw.record(now - sent);
+                    moves.incrementAndGet();
+                    opponentNamed = true;
+                    board.setCell(msg.getCol(), msg.getRow(), mark);
+                    return;
+                }
+                if (msg.getType() == GameMsg.MsgType.EXIT) {
+                    throw new IOException("Opponent left");
+                }
+            }
+        }
+
+        private int pick() {
+            int cols = board.getCols();
+            int size = board.getRows() * cols;
+            if (scripted) {
+                for (int i = 0; i < size; i++) {
+                    if (board.isCellEmpty(i / cols, i % cols)) return i;
+                }
+            }
+            int cell;
+            do {
+                cell = random.nextInt(size);
+            } while (!board.isCellEmpty(cell / cols, cell % cols));
+            return cell;
+        }
+
+        private GameMsg read() throws IOException {
+            try {
+                return stream.read();
+            } catch (SocketTimeoutException e) {
+                return null;
+            }
+        }
+
+        private GameMsg until(GameMsg.MsgType type) throws IOException {
+            GameMsg msg;
+            do {
+                msg = stream.read();
+            } while (msg.getType() != type);
+            return msg;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * LogBench.java
+ */
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * LogBench measures what logging costs the calling thread: a DEBUG call while DEBUG is off,
+ * and an INFO call that is published to the ring buffer, drained to a temporary file in the background.
+ */
+public class LogBench {
+
+    private LogBench() {
+    }
+
+    /**
+     * Registers the benchmarks of this class.
+     * @param runner The BenchRunner to register with.
+     */
+    public static void register(BenchRunner runner) {
+        runner.add("LogBench.debugDisabled", LogBench::debugDisabled);
+        runner.add("LogBench.infoPublished", LogBench::infoPublished);
+    }
+
+    private static Benchmark debugDisabled() {
+        return new Benchmark() {
+            @Override
+            public void setUp() {
+                Log.setLevel(Log.Level.INFO);
+            }
+
+            @Override
+            public int run() {
+                Log.debug("Server sent: {} to {}", GameMsg.MsgType.MOVE, Mark.X);
+                return 1;
+            }
+        };
+    }
+
+    private static Benchmark infoPublished() {
+        return new Benchmark() {
+            private Path file;
+
+            @Override
+            public void setUp() throws Exception {
+                file = Files.createTempFile("logbench", ".log");
+                Log.setLevel(Log.Level.INFO);
+                Log.toFile(file);
+            }
+
+            @Override
+            public int run() {
+                Log.info("Server sent: {} to {}", GameMsg.MsgType.MOVE, Mark.X);
+                return 1;
+            }
+
+            @Override
+            public void tearDown() throws Exception {
+                Log.flush();
+                Log.toStdout();
+                Files.deleteIfExists(file);
+            }
+        };
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * LoopbackGameBench.java
+ */
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * LoopbackGameBench measures a complete scripted game against a real GameServer over loopback:
+ * two clients connect and are paired by the ClientHandlers, register their names,
+ * play five moves to a win for X, and leave. One operation is one whole game.
+ * The server only logs warnings, so the score does not depend on the console.
+ */
+public class LoopbackGameBench {
+
+    private static final int[][] MOVES = {{0, 0}, {1, 0}, {0, 1}, {1, 1}, {0, 2}};
+
+    private static int port = -1;
+
+    private LoopbackGameBench() {
+    }
+
+    /**
+     * Registers the benchmarks of this class.
+     * @param runner The BenchRunner to register with.
+     */
+    public static void register(BenchRunner runner) {
+        runner.add("LoopbackGameBench.scriptedGameSerial", () -> game(Handshake.SERIAL_VERSION));
+        runner.add("LoopbackGameBench.scriptedGameBinary", () -> game(Handshake.BINARY_VERSION));
+    }
+
+    private static Benchmark game(int version) {
+        return new Benchmark() {
+            @Override
+            public void setUp() throws Exception {
+                startServer();
+            }
+
+            @Override
+            public int run() throws Exception {
+                return play(version);
+            }
+        };
+    }
+
+    private static void startServer() throws Exception {
+        if (port > 0) return;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        ServerConfig config = new ServerConfig();
+        config.setPort(port);
+        config.setLogLevel(Log.Level.WARN);
+        Thread server = new Thread(() -> new GameServer(config).start(), "GameServer");
+        server.setDaemon(true);
+        server.start();
+        Thread.sleep(500);
+    }
+
+    private static int play(int version) throws IOException {
+        try (Socket sx = new Socket("localhost", port); Socket so = new Socket("localhost", port)) {
+            MsgStream x = Handshake.connect(sx, version);
+            until(x, GameMsg.MsgType.WAIT);
+            MsgStream o = Handshake.connect(so, version);
+            until(x, GameMsg.MsgType.GAME_START);
+            until(o, GameMsg.MsgType.GAME_START);
+            x.write(new GameMsg(GameMsg.MsgType.SETNAME, 0, 0, Mark.X, "x"));
+            until(x, GameMsg.MsgType.SETNAME);
+            o.write(new GameMsg(GameMsg.MsgType.SETNAME, 0, 0, Mark.O, "o"));
+            until(o, GameMsg.MsgType.SETNAME);
+            for (int i = 0; i < MOVES.length; i++) {
+                Mark mark = i % 2 == 0 ? Mark.X : Mark.O;
+                (mark == Mark.X ? x : o).write(new GameMsg(GameMsg.MsgType.MOVE, MOVES[i][0], MOVES[i][1], mark, ""));
+                until(x, GameMsg.MsgType.MOVE);
+                until(o, GameMsg.MsgType.MOVE);
+            }
+            GameMsg over = until(x, GameMsg.MsgType.GAME_OVER);
+            until(o, GameMsg.MsgType.GAME_OVER);
+            x.write(new GameMsg(GameMsg.MsgType.EXIT, 0, 0, Mark.X, ""));
+            until(o, GameMsg.MsgType.EXIT);
+            o.write(new GameMsg(GameMsg.MsgType.EXIT, 0, 0, Mark.O, ""));
+            return over.getMark().ordinal();
+        }
+    }
+
+    private static GameMsg until(MsgStream stream, GameMsg.MsgType type) throws IOException {
+        GameMsg msg;
+        do {
+            msg = stream.read();
+        } while (msg.getType() != type);
+        return msg;
+    }
+}
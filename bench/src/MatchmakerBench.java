@@ -0,0 +1,68 @@
+/**
+ * MatchmakerBench.java
+ */
+
+import java.util.Random;
+
+/**
+ * MatchmakerBench measures one arrival in the Matchmaker: a ticket is given, queued under the rating of its player
+ * and matched if it can be, with the clock advancing by ARRIVAL_NANOS per arrival and the queue swept every SWEEP_MILLIS.
+ */
+public class MatchmakerBench {
+
+    /**
+     * The time between two arrivals, in nanoseconds of the simulated clock.
+     */
+    public static final long ARRIVAL_NANOS = 20_000;
+
+    private static final int PLAYERS = 10_000;
+    private static final int ROOMS = 1 << 14;
+
+    private MatchmakerBench() {
+    }
+
+    /**
+     * Registers the benchmarks of this class.
+     * @param runner The BenchRunner to register with.
+     */
+    public static void register(BenchRunner runner) {
+        runner.add("MatchmakerBench.arrival", MatchmakerBench::arrival);
+    }
+
+    private static Benchmark arrival() {
+        RoomRegistry registry = new RoomRegistry(new ServerConfig());
+        PlayerRatings ratings = new PlayerRatings();
+        Matchmaker matchmaker = new Matchmaker(ratings, registry.getMetrics(), 100);
+        GameRoom[] rooms = new GameRoom[ROOMS];
+        String[] names = new String[PLAYERS];
+        Random random = new Random(42);
+        for (int i = 0; i < ROOMS; i++) {
+            rooms[i] = new GameRoom(i + 1, registry, new Controller(new BoardModel()), 0);
+        }
+        double[] skill = new double[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            names[i] = "player" + i;
+            skill[i] = random.nextGaussian();
+        }
+        for (int game = 0; game < PLAYERS * 20; game++) {
+            int x = random.nextInt(PLAYERS);
+            int o = random.nextInt(PLAYERS);
+            double pX = 1 / (1 + Math.exp(skill[o] - skill[x]));
+            ratings.record(names[x], names[o], random.nextDouble() < pX ? Mark.X : Mark.O);
+        }
+        long sweepEvery = Matchmaker.SWEEP_MILLIS * 1_000_000 / ARRIVAL_NANOS;
+        long[] arrivals = {0};
+        return () -> {
+            long n = arrivals[0]++;
+            long now = n * ARRIVAL_NANOS;
+            GameRoom room = rooms[(int) (n & (ROOMS - 1))];
+            matchmaker.cancel(room);
+            matchmaker.arrive(room, now);
+            Matchmaker.Match match = matchmaker.enter(room, names[random.nextInt(PLAYERS)], now);
+            if (n % sweepEvery == 0) {
+                return matchmaker.sweep(now).size();
+            }
+            return match == null ? 0 : 1;
+        };
+    }
+}
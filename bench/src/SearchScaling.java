@@ -0,0 +1,63 @@
+/**
+ * SearchScaling.java
+ */
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * SearchScaling reports the nodes per second and the scaling efficiency of the ParallelSearch from 1 to N threads,
+ * by searching the same opening position to a fixed depth with a fresh table on each pool size.
+ * Options are given in the form --name=value: --rows, --cols, --win for the board (default 7,7,4),
+ * --depth for the search depth (default 6), and --max-threads (default the number of cores).
+ */
+public class SearchScaling {
+
+    private SearchScaling() {
+    }
+
+    /**
+     * Runs the search on every pool size and prints the table.
+     * @param args Command line arguments.
+     */
+    public static void main(String[] args) {
+        int rows = 7;
+        int cols = 7;
+        int winLength = 4;
+        int depth = 6;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) continue;
+            int value = Integer.parseInt(arg.substring(eq + 1));
+            switch (arg.substring(2, eq)) {
+                case "rows": rows = value; break;
+                case "cols": cols = value; break;
+                case "win": winLength = value; break;
+                case "depth": depth = value; break;
+                case "max-threads": maxThreads = value; break;
+            }
+        }
+        BoardModel bm = new BoardModel(rows, cols, winLength);
+        bm.setCell(rows / 2, cols / 2, Mark.X);
+        bm.setCell(rows / 2, cols / 2 + 1, Mark.O);
+        System.out.println("Board " + rows + "," + cols + "," + winLength + ", depth " + depth);
+        System.out.println("threads\tnodes\tms\tknodes/s\tspeedup\tefficiency\tmove");
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelSearch engine = new ParallelSearch(pool, 20);
+            engine.searchDepth(bm, Mark.X, Math.min(depth, 3));
+            engine = new ParallelSearch(pool, 20);
+            ParallelSearch.Result result = engine.searchDepth(bm, Mark.X, depth);
+            pool.shutdown();
+            double ms = result.getElapsedNanos() / 1e6;
+            if (threads == 1) baseline = ms;
+            double speedup = baseline / ms;
+            System.out.println(threads + "\t" + result.getNodes() + "\t" + String.format("%.1f", ms)
+                    + "\t" + String.format("%.0f", result.getNodesPerSecond() / 1000)
+                    + "\t" + String.format("%.2f", speedup) + "\t" + String.format("%.2f", speedup / threads)
+                    + "\t" + result.getRow() + "," + result.getCol());
+        }
+    }
+
+}
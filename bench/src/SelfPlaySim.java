@@ -0,0 +1,66 @@
+/**
+ * SelfPlaySim.java
+ */
+
+import java.util.Locale;
+
+/**
+ * SelfPlaySim plays a run of AI-versus-AI games on a SelfPlayFarm, reports the results and the games per second,
+ * and exits with status 1 if playing them again on one thread gives other results.
+ * Options are given in the form --name=value: --games (default 1000000), --parallelism (default the available processors),
+ * --seed (default 42), --skill-x and --skill-o (default 0.8), and --rows, --cols, --win and --board as for the server.
+ */
+public class SelfPlaySim {
+
+    private SelfPlaySim() {
+    }
+
+    /**
+     * Runs the farm and prints the report.
+     * @param args Command line arguments.
+     */
+    public static void main(String[] args) {
+        ServerConfig config = ServerConfig.parse(args);
+        config.setLogLevel(Log.Level.WARN);
+        config.applyLogging();
+        long games = 1_000_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 42;
+        double skillX = 0.8;
+        double skillO = 0.8;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) continue;
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "games": games = Long.parseLong(value); break;
+                case "parallelism": threads = Integer.parseInt(value); break;
+                case "seed": seed = Long.parseLong(value); break;
+                case "skill-x": skillX = Double.parseDouble(value); break;
+                case "skill-o": skillO = Double.parseDouble(value); break;
+            }
+        }
+        SelfPlayFarm farm = new SelfPlayFarm(config, skillX, skillO);
+        farm.play(Math.min(games, 20 * SelfPlayFarm.CHUNK), seed + 1, threads);
+        SelfPlayFarm.Stats run = farm.play(games, seed, threads);
+        System.out.println(String.format(Locale.ROOT, "%dx%d board, win length %d, %s, skills X %.2f O %.2f",
+                config.getRows(), config.getCols(), config.getWinLength(), config.getBoardKind(), skillX, skillO));
+        System.out.println(run);
+        System.out.println("moves games share");
+        long[] lengths = run.getLengths();
+        for (int i = 0; i < lengths.length; i++) {
+            if (lengths[i] > 0) {
+                System.out.println(String.format(Locale.ROOT, "%5d %d %.2f%%", i, lengths[i], 100.0 * lengths[i] / run.getGames()));
+            }
+        }
+        SelfPlayFarm.Stats single = farm.verify(run);
+        System.out.println(single);
+        System.out.println(String.format(Locale.ROOT, "Speedup over one thread: %.2fx", (double) single.getNanos() / run.getNanos()));
+        if (!run.sameResults(single)) {
+            System.out.println(String.format(Locale.ROOT, "MISMATCH: checksum %016x on %d threads, %016x on one",
+                    run.getChecksum(), run.getThreads(), single.getChecksum()));
+            System.exit(1);
+        }
+        System.out.println(String.format(Locale.ROOT, "Same results on one thread, checksum %016x", run.getChecksum()));
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * SynchronizedController.java
+ */
+
+/**
+ * SynchronizedController is the baseline LockFreeController is measured against:
+ * a Controller whose every method holds its monitor, the simplest way to share a game between threads.
+ */
+public class SynchronizedController extends Controller {
+
+    /**
+     * Constructor for SynchronizedController.
+     * @param bm The BoardModel instance to be controlled.
+     */
+    public SynchronizedController(BoardModel bm) {
+        super(bm);
+    }
+
+    /**
+     * Decreases the count of players left in the game by one.
+     */
+    @Override
+    public synchronized void dePlayerLeft() {
+        super.dePlayerLeft();
+    }
+
+    /**
+     * Gets the number of players left in the game.
+     * @return The number of players left.
+     */
+    @Override
+    public synchronized int getPlayerLeft() {
+        return super.getPlayerLeft();
+    }
+
+    /**
+     * Handles user input for player name.
+     * @param m The Mark of the player (X or O).
+     */
+    @Override
+    public synchronized void inputName(Mark m) {
+        super.inputName(m);
+    }
+
+    /**
+     * Checks if both players have registered their names.
+     * @return true if both players have a name, false otherwise.
+     */
+    @Override
+    public synchronized boolean hasNames() {
+        return super.hasNames();
+    }
+
+    /**
+     * Handles user input for cell click under the monitor.
+     * @param i the row index of the cell clicked.
+     * @param j the column index of the cell clicked.
+     * @param m the Mark of the player making the move.
+     * @return true if the move is valid and the BoardModel is updated, false otherwise.
+     */
+    @Override
+    public synchronized boolean onCellClick(int i, int j, Mark m) {
+        return super.onCellClick(i, j, m);
+    }
+
+    /**
+     * Handles user input for restarting the game under the monitor.
+     * @param m The Mark of the player requesting to restart (X or O).
+     * @return true if the game can be restarted, false otherwise.
+     */
+    @Override
+    public synchronized boolean restartGame(Mark m) {
+        return super.restartGame(m);
+    }
+
+    /**
+     * Checks for a winner in the game under the monitor.
+     * @return the Mark of the winner (X or O), Mark.EMPTY for a draw, or null if the game is still ongoing.
+     */
+    @Override
+    public synchronized Mark checkWinner() {
+        return super.checkWinner();
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * TournamentSim.java
+ */
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * TournamentSim runs a simulated Tournament of AiPlayers end to end on an in-process RoomRegistry, and reports
+ * how long it took, the games per second, the time spent ranking and pairing, and the top of the final standings.
+ * Options are given in the form --name=value: --format=swiss|round_robin (default swiss), --entrants (default 1000),
+ * --rounds of a Swiss tournament (default 0, for log2 of the entrants), --seed (default 42),
+ * --scheduler and --game-workers as for the server, and --top, the standings printed (default 10).
+ */
+public class TournamentSim {
+
+    private TournamentSim() {
+    }
+
+    /**
+     * Runs the tournament and prints the report.
+     * @param args Command line arguments.
+     * @throws InterruptedException if interrupted while waiting for the tournament.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        ServerConfig config = ServerConfig.parse(args);
+        config.setLogLevel(Log.Level.WARN);
+        config.applyLogging();
+        Tournament.Format format = Tournament.Format.SWISS;
+        int entrants = 1000;
+        int rounds = 0;
+        long seed = 42;
+        int top = 10;
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) continue;
+            String value = arg.substring(eq + 1);
+            switch (arg.substring(2, eq)) {
+                case "format": format = Tournament.Format.valueOf(value.toUpperCase().replace('-', '_')); break;
+                case "entrants": entrants = Integer.parseInt(value); break;
+                case "rounds": rounds = Integer.parseInt(value); break;
+                case "seed": seed = Long.parseLong(value); break;
+                case "top": top = Integer.parseInt(value); break;
+            }
+        }
+        PerfectPlayTable.get();
+        RoomRegistry registry = new RoomRegistry(config);
+        Tournament tournament = Tournament.simulated(registry, format, entrants, rounds, seed);
+        long start = System.nanoTime();
+        tournament.start();
+        if (!tournament.await(600_000)) {
+            System.out.println("Timed out after " + tournament.getCompletedRounds() + " rounds");
+            System.exit(1);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        ServerMetrics metrics = registry.getMetrics();
+        long games = tournament.getGamesPlayed();
+        System.out.println(String.format(Locale.ROOT, "%s, %d entrants, %d rounds, %s scheduler, %d game workers",
+                format, entrants, tournament.getRounds(), config.getScheduler(), config.getGameWorkers()));
+        System.out.println(String.format(Locale.ROOT, "Games: %d in %.2f s (%.0f/s), %.1f ms per round",
+                games, seconds, games / seconds, seconds * 1000 / tournament.getRounds()));
+        System.out.println("Ranking and pairing a round: " + metrics.getTournamentPairing().summary(1000, "us"));
+        System.out.println("rank name score buchholz sonneborn-berger games");
+        List<Tournament.Standing> standings = tournament.getStandings();
+        for (int i = 0; i < Math.min(top, standings.size()); i++) {
+            System.out.println(standings.get(i));
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * AiPlayer.java
+ */
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AiPlayer is a computer opponent seated in a GameRoom like any other PlayerConnection.
+ * It mirrors the game from the messages the room sends it, and answers on a shared worker pool: from the
+ * PerfectPlayTable on the classic 3x3 board, and with a ParallelSearch within a time budget on other boards.
+ */
+public class AiPlayer implements PlayerConnection {
+
+    /**
+     * The name the AiPlayer registers with.
+     */
+    public static final String NAME = "Computer";
+
+    private static final AtomicInteger threadIds = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), task -> {
+                Thread t = new Thread(task, "AiPlayer-" + threadIds.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final GameRoom room;
+    private final PerfectPlayTable table;
+    private final ParallelSearch search;
+    private final long budgetMillis;
+    private final double skill;
+    private final SplittableRandom random;
+    private Mark mark;
+    private BoardModel mirror;
+    private int position = 0;
+
+    /**
+     * Constructor for AiPlayer.
+     * @param room The GameRoom the AiPlayer is seated in.
+     * @param table The solved PerfectPlayTable used on 3x3 boards.
+     * @param search The ParallelSearch used on other boards.
+     * @param budgetMillis The time budget of a search, in milliseconds.
+     */
+    public AiPlayer(GameRoom room, PerfectPlayTable table, ParallelSearch search, long budgetMillis) {
+        this(room, table, search, budgetMillis, 1, 0);
+    }
+
+    /**
+     * Constructor for AiPlayer of a given skill.
+     * @param room The GameRoom the AiPlayer is seated in.
+     * @param table The solved PerfectPlayTable used on 3x3 boards.
+     * @param search The ParallelSearch used on other boards.
+     * @param budgetMillis The time budget of a search, in milliseconds.
+     * @param skill The probability of playing the best move rather than a random free cell, from 0 to 1.
+     * @param seed The seed of the random moves.
+     */
+    public AiPlayer(GameRoom room, PerfectPlayTable table, ParallelSearch search, long budgetMillis,
+                    double skill, long seed) {
+        this.room = room;
+        this.table = table;
+        this.search = search;
+        this.budgetMillis = budgetMillis;
+        this.skill = skill;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Records the player symbol assigned to the AiPlayer.
+     * @param symbol The player symbol (Mark.X or Mark.O).
+     */
+    @Override
+    public void setMark(Mark symbol) {
+        this.mark = symbol;
+    }
+
+    /**
+     * Gets the player symbol assigned to the AiPlayer.
+     * @return The Mark of the AiPlayer.
+     */
+    @Override
+    public Mark getMark() {
+        return mark;
+    }
+
+    /**
+     * Does nothing: the AiPlayer is seated in a room of its own opponent and never goes through the Matchmaker.
+     * @param room The GameRoom the AiPlayer would be moved to.
+     */
+    @Override
+    public void setRoom(GameRoom room) {
+    }
+
+    /**
+     * Receives a GameMsg from the room, updates the mirrored board,
+     * and schedules the answer of the AiPlayer if one is due.
+     * Plays when its opponent has moved, or when a SNAPSHOT of a recovered game shows it is its turn,
+     * asks for a new game once a game is over, and leaves once its opponent has left.
+     * @param msg The GameMsg sent by the room.
+     */
+    @Override
+    public void sendMsg(GameMsg msg) {
+        lock.lock();
+        try {
+            switch (msg.getType()) {
+                case PLAYER_ASSIGNED:
+                    // The win length comes first, then the resume token, which an in-process player never needs.
+                    mirror = new BoardModel(msg.getRow(), msg.getCol(), Integer.parseInt(msg.getMessage().split(" ")[0]));
+                    position = 0;
+                    break;
+                case GAME_START:
+                    mirror.resetModel();
+                    position = 0;
+                    if (mark == Mark.X) {
+                        executor.execute(this::play);
+                    }
+                    break;
+                case MOVE:
+                    // The room broadcasts MOVE with row and col swapped.
+                    int r = msg.getCol();
+                    int c = msg.getRow();
+                    mirror.setCell(r, c, msg.getMark());
+                    if (isClassicBoard()) {
+                        position += PerfectPlayTable.code(msg.getMark()) * PerfectPlayTable.POW3[r * 3 + c];
+                    }
+                    if (msg.getMark() != mark && mirror.checkWinner() == Mark.EMPTY && !mirror.isBoardFull()) {
+                        executor.execute(this::play);
+                    }
+                    break;
+                case SNAPSHOT:
+                    mirrorSnapshot(msg);
+                    break;
+                case GAME_OVER:
+                    executor.execute(() -> room.handle(this, new GameMsg(GameMsg.MsgType.GAME_START, 0, 0, mark, "")));
+                    break;
+                case EXIT:
+                    executor.execute(() -> room.playerLeft(this));
+                    break;
+                default:
+                    break;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void mirrorSnapshot(GameMsg msg) {
+        mirror.resetModel();
+        position = 0;
+        String cells = msg.getMessage();
+        int x = 0;
+        int o = 0;
+        for (int r = 0; r < mirror.getRows(); r++) {
+            for (int c = 0; c < mirror.getCols(); c++) {
+                char ch = cells.charAt(r * mirror.getCols() + c);
+                if (ch == '.') continue;
+                Mark m = ch == 'X' ? Mark.X : Mark.O;
+                mirror.setCell(r, c, m);
+                if (m == Mark.X) x++;
+                else o++;
+                if (isClassicBoard()) {
+                    position += PerfectPlayTable.code(m) * PerfectPlayTable.POW3[r * 3 + c];
+                }
+            }
+        }
+        Mark turn = x == o ? Mark.X : Mark.O;
+        if (msg.getMark() == null && turn == mark) {
+            executor.execute(this::play);
+        } else if (msg.getMark() != null) {
+            executor.execute(() -> room.handle(this, new GameMsg(GameMsg.MsgType.GAME_START, 0, 0, mark, "")));
+        }
+    }
+
+    private void play() {
+        int r;
+        int c;
+        BoardModel board;
+        Mark me;
+        lock.lock();
+        try {
+            if (skill < 1 && random.nextDouble() >= skill) {
+                int cell = randomFreeCell();
+                if (cell < 0) return;
+                r = cell / mirror.getCols();
+                c = cell % mirror.getCols();
+                board = null;
+            } else if (isClassicBoard()) {
+                int cell = table.bestMove(position);
+                if (cell < 0) return;
+                r = cell / 3;
+                c = cell % 3;
+                board = null;
+            } else {
+                r = -1;
+                c = -1;
+                board = copyOfMirror();
+            }
+            me = mark;
+        } finally {
+            lock.unlock();
+        }
+        if (board != null) {
+            // Searched on a copy, outside the lock, so the room is never held up in sendMsg while the AiPlayer thinks.
+            ParallelSearch.Result result = search.search(board, me, budgetMillis);
+            if (result == null) return;
+            r = result.getRow();
+            c = result.getCol();
+        }
+        room.handle(this, new GameMsg(GameMsg.MsgType.MOVE, r, c, me, ""));
+    }
+
+    private BoardModel copyOfMirror() {
+        BoardModel copy = new BoardModel(mirror.getRows(), mirror.getCols(), mirror.getWinLength());
+        Mark[][] cells = mirror.getBoard();
+        for (int i = 0; i < mirror.getRows(); i++) {
+            for (int j = 0; j < mirror.getCols(); j++) {
+                if (cells[i][j] != Mark.EMPTY) {
+                    copy.setCell(i, j, cells[i][j]);
+                }
+            }
+        }
+        return copy;
+    }
+
+    private int randomFreeCell() {
+        Mark[][] board = mirror.getBoard();
+        int free = 0;
+        for (Mark[] row : board) {
+            for (Mark m : row) {
+                if (m == Mark.EMPTY) free++;
+            }
+        }
+        if (free == 0) return -1;
+        int pick = random.nextInt(free);
+        for (int i = 0; i < mirror.getRows() * mirror.getCols(); i++) {
+            if (board[i / mirror.getCols()][i % mirror.getCols()] == Mark.EMPTY && pick-- == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isClassicBoard() {
+        return mirror.getRows() == 3 && mirror.getCols() == 3 && mirror.getWinLength() == 3;
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * BinaryCodec.java
+ */
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * BinaryCodec is the compact wire format of GameMsg (protocol version 2): a varint length, a header byte
+ * holding the type, the mark and which fields follow, then row and col as varints and the message as
+ * length-prefixed UTF-8, each only if present. A MOVE is at most 4 bytes on the wire.
+ */
+public class BinaryCodec {
+
+    private static final GameMsg.MsgType[] TYPES = GameMsg.MsgType.values();
+    private static final Mark[] MARKS = {null, Mark.EMPTY, Mark.X, Mark.O};
+    private static final int HAS_COORDS = 0x40;
+    private static final int HAS_MESSAGE = 0x80;
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * Computes the size of the frame encoding the given message, including the length prefix.
+     * @param msg The GameMsg to be encoded.
+     * @return The size of the frame in bytes.
+     */
+    public static int frameSize(GameMsg msg) {
+        int body = bodySize(msg);
+        return varintSize(body) + body;
+    }
+
+    /**
+     * Encodes a GameMsg as one frame into the buffer. The header byte holds the type in bits 0-3, the mark in bits 4-5,
+     * and whether row and col, and the message, follow in bits 6 and 7. An empty message is left out.
+     * @param msg The GameMsg to encode.
+     * @param dst The buffer to write to, with at least frameSize(msg) bytes remaining.
+     */
+    public static void encode(GameMsg msg, ByteBuffer dst) {
+        putVarint(dst, bodySize(msg));
+        int header = msg.getType().ordinal() | (markCode(msg.getMark()) << 4);
+        boolean coords = msg.getRow() != 0 || msg.getCol() != 0;
+        boolean message = hasMessage(msg);
+        if (coords) header |= HAS_COORDS;
+        if (message) header |= HAS_MESSAGE;
+        dst.put((byte) header);
+        if (coords) {
+            putVarint(dst, msg.getRow());
+            putVarint(dst, msg.getCol());
+        }
+        if (message) {
+            putVarint(dst, utf8Length(msg.getMessage()));
+            putUtf8(dst, msg.getMessage());
+        }
+    }
+
+    /**
+     * Decodes the next complete frame from the buffer.
+     * If the buffer does not hold a complete frame yet, nothing is consumed. A frame without a message decodes
+     * with an empty one.
+     * @param src The buffer to read from, in read mode.
+     * @return The decoded GameMsg, or null if the frame is not complete yet.
+     * @throws IOException if the frame is malformed.
+     */
+    public static GameMsg decode(ByteBuffer src) throws IOException {
+        int start = src.position();
+        int length = getVarint(src);
+        if (length < 0) {
+            src.position(start);
+            return null;
+        }
+        if (length < 1 || length > MsgCodec.MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        if (src.remaining() < length) {
+            src.position(start);
+            return null;
+        }
+        int end = src.position() + length;
+        int header = src.get() & 0xFF;
+        int type = header & 0x0F;
+        if (type >= TYPES.length) {
+            throw new IOException("Unknown message type: " + type);
+        }
+        GameMsg msg = new GameMsg(TYPES[type]);
+        msg.setMark(MARKS[(header >> 4) & 0x03]);
+        if ((header & HAS_COORDS) != 0) {
+            msg.setRow(getVarint(src));
+            msg.setCol(getVarint(src));
+        }
+        if ((header & HAS_MESSAGE) != 0) {
+            int n = getVarint(src);
+            if (n < 0 || src.position() + n > end) {
+                throw new IOException("Invalid message length: " + n);
+            }
+            byte[] bytes = new byte[n];
+            src.get(bytes);
+            msg.setMessage(new String(bytes, StandardCharsets.UTF_8));
+        } else {
+            msg.setMessage("");
+        }
+        if (src.position() != end) {
+            throw new IOException("Malformed frame");
+        }
+        return msg;
+    }
+
+    /**
+     * Reads the length prefix of a frame from a blocking stream, then the rest of the frame.
+     * @param in The stream to read from.
+     * @param buf A reusable heap buffer of at least MsgCodec.MAX_FRAME_SIZE bytes, used to hold the frame.
+     * @return The decoded GameMsg.
+     * @throws IOException if the stream ends or the frame is malformed.
+     */
+    public static GameMsg read(DataInputStream in, ByteBuffer buf) throws IOException {
+        buf.clear();
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            buf.put((byte) b);
+            if (buf.position() > 5) throw new IOException("Invalid frame length");
+        } while ((b & 0x80) != 0);
+        buf.flip();
+        int length = getVarint(buf);
+        if (length < 1 || length > MsgCodec.MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        buf.clear();
+        putVarint(buf, length);
+        in.readFully(buf.array(), buf.arrayOffset() + buf.position(), length);
+        buf.position(buf.position() + length);
+        buf.flip();
+        return decode(buf);
+    }
+
+    private static int bodySize(GameMsg msg) {
+        int size = 1;
+        if (msg.getRow() != 0 || msg.getCol() != 0) {
+            size += varintSize(msg.getRow()) + varintSize(msg.getCol());
+        }
+        if (hasMessage(msg)) {
+            int n = utf8Length(msg.getMessage());
+            size += varintSize(n) + n;
+        }
+        return size;
+    }
+
+    private static boolean hasMessage(GameMsg msg) {
+        return msg.getMessage() != null && !msg.getMessage().isEmpty();
+    }
+
+    private static int markCode(Mark m) {
+        return m == null ? 0 : m.ordinal() + 1;
+    }
+
+    private static int varintSize(int v) {
+        int size = 1;
+        while ((v & ~0x7F) != 0) {
+            v >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarint(ByteBuffer dst, int v) {
+        while ((v & ~0x7F) != 0) {
+            dst.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        dst.put((byte) v);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     * @return The value, or -1 if the buffer ends before the varint does.
+     */
+    private static int getVarint(ByteBuffer src) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!src.hasRemaining()) return -1;
+            int b = src.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Varint too long");
+    }
+
+    private static int utf8Length(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) n += 1;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                n += 4;
+                i++;
+            } else n += 3;
+        }
+        return n;
+    }
+
+    private static void putUtf8(ByteBuffer dst, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                dst.put((byte) c);
+            } else if (c < 0x800) {
+                dst.put((byte) (0xC0 | (c >> 6)));
+                dst.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                dst.put((byte) (0xF0 | (cp >> 18)));
+                dst.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                dst.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                dst.put((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                dst.put((byte) (0xE0 | (c >> 12)));
+                dst.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                dst.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+}
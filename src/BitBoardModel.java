@@ -0,0 +1,136 @@
+/**
+ * BitBoardModel.java
+ */
+
+/**
+ * BitBoardModel is a BoardModel that keeps the 3x3 board as two 9-bit masks, one per player,
+ * with cell (r, c) stored at bit r*3+c, and finds the winner with a lookup in a table of the 512 possible masks.
+ * The public API is the same, so Controller works with either implementation.
+ */
+public class BitBoardModel extends BoardModel {
+
+    private static final int[] LINES = {
+            0b000000111, 0b000111000, 0b111000000,
+            0b001001001, 0b010010010, 0b100100100,
+            0b100010001, 0b001010100
+    };
+    private static final boolean[] WINNING = new boolean[1 << 9];
+
+    static {
+        for (int mask = 0; mask < WINNING.length; mask++) {
+            for (int line : LINES) {
+                if ((mask & line) == line) {
+                    WINNING[mask] = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    private int xMask = 0;
+    private int oMask = 0;
+
+    /**
+     * Constructor for the BitBoardModel class. Initializes an empty board and win/draw counters.
+     */
+    public BitBoardModel() {
+        super();
+    }
+
+    /**
+     * Resets the game board to its initial state, clearing all cells,
+     * but do not reset win/draw counters.
+     */
+    @Override
+    public void resetModel() {
+        xMask = 0;
+        oMask = 0;
+    }
+
+    /**
+     * Sets the specified cell on the board to the given mark (X, O, or EMPTY).
+     * @param r the row index of the cell
+     * @param c the column index of the cell
+     * @param t the mark to set (X, O, or EMPTY)
+     */
+    @Override
+    public void setCell(int r, int c, Mark t) {
+        int bit = 1 << (r * 3 + c);
+        xMask &= ~bit;
+        oMask &= ~bit;
+        if (t == Mark.X) {
+            xMask |= bit;
+        } else if (t == Mark.O) {
+            oMask |= bit;
+        }
+    }
+
+    /**
+     * Checks if the specified cell on the board is empty, i.e., not occupied by X or O.
+     * @param r the row index of the cell
+     * @param c the column index of the cell
+     * @return true if the cell is empty, false otherwise
+     */
+    @Override
+    public boolean isCellEmpty(int r, int c) {
+        return ((xMask | oMask) & (1 << (r * 3 + c))) == 0;
+    }
+
+    /**
+     * Checks if the game board is full by counting the occupied cells.
+     * @return true if the board is full, false otherwise
+     */
+    @Override
+    public boolean isBoardFull() {
+        return Integer.bitCount(xMask | oMask) == 9;
+    }
+
+    /**
+     * Checks for a winner on the game board by looking both masks up in the table of winning masks.
+     * @return the mark of the winner (X or O) if there is a winner, or EMPTY if there is no winner (draw or ongoing game).
+     */
+    @Override
+    public Mark checkWinner() {
+        if (WINNING[xMask]) {
+            return Mark.X;
+        }
+        if (WINNING[oMask]) {
+            return Mark.O;
+        }
+        return Mark.EMPTY;
+    }
+
+    /**
+     * Getter for the game board. Builds a new 2D array from the masks, so changing it does not change the model.
+     * @return a snapshot of the current state of the game board (2D array of Marks)
+     */
+    @Override
+    public Mark[][] getBoard() {
+        Mark[][] board = new Mark[3][3];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                int bit = 1 << (i * 3 + j);
+                board[i][j] = (xMask & bit) != 0 ? Mark.X : (oMask & bit) != 0 ? Mark.O : Mark.EMPTY;
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Checks whether a mask of cells contains one of the 8 winning lines.
+     * @param mask the 9-bit mask of a player's cells
+     * @return true if the mask wins, false otherwise
+     */
+    static boolean isWinning(int mask) {
+        return WINNING[mask];
+    }
+
+    /**
+     * Getter for the mask of the cells occupied by the given player.
+     * @param m the mark of the player (X or O)
+     * @return the 9-bit mask of the player's cells
+     */
+    public int getMask(Mark m) {
+        return m == Mark.X ? xMask : m == Mark.O ? oMask : ~(xMask | oMask) & 0x1FF;
+    }
+}
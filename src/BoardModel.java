@@ -2,87 +2,94 @@
  * BoardModel.java.
  */
 
-import java.util.ArrayList;
-
 /**
- *  The BoardModel class represents the state and logic of a Tic-Tac-Toe game board.
- *  It keeps track of the board's cells, available moves, and the number of wins for
- *  players, as well as draws. It provides methods to check for a winner
- *  and to reset the board.
+ *  The BoardModel class represents the state and logic of an m,n,k game board: rows x cols cells,
+ *  won by the first player to get winLength marks in a row. It keeps track of the board's cells, the number
+ *  of wins for players, as well as draws. It provides methods to check for a winner and to reset the board.
  *  Model is stored at server side
  */
 public class BoardModel {
 
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private final int rows;
+    private final int cols;
+    private final int winLength;
     private Mark[][] board;
+    private int filled = 0;
+    private Mark winner = Mark.EMPTY;
     private int[] playerWins = {0,0};
     private int draws = 0;
 
-    private Mark checkRow() {
-        for (int i = 0; i<3; i++) {
-            if (board[i][0] == Mark.O && board[i][1] == Mark.O && board[i][2] == Mark.O)
-                return Mark.O;
-            if (board[i][0] == Mark.X && board[i][1] == Mark.X && board[i][2] == Mark.X)
-                return Mark.X;
-        }
-        return Mark.EMPTY;
-    }
-
-    private Mark checkCol() {
-        for (int i = 0; i<3; i++) {
-            if (board[0][i] == Mark.O && board[1][i] == Mark.O && board[2][i] == Mark.O)
-                return Mark.O;
-            if (board[0][i] == Mark.X && board[1][i] == Mark.X && board[2][i] == Mark.X)
-                return Mark.X;
-        }
-        return Mark.EMPTY;
-    }
-
-    private Mark checkDia() {
-        if (board[0][0] == Mark.O && board[1][1] == Mark.O && board[2][2] == Mark.O)
-            return Mark.O;
-        if (board[2][0] == Mark.O && board[1][1] == Mark.O && board[0][2] == Mark.O)
-            return Mark.O;
-        if (board[0][0] == Mark.X && board[1][1] == Mark.X && board[2][2] == Mark.X)
-            return Mark.X;
-        if (board[2][0] == Mark.X && board[1][1] == Mark.X && board[0][2] == Mark.X)
-            return Mark.X;
-        return Mark.EMPTY;
+    /**
+     * Constructor for the BoardModel class. Initializes a classic 3x3 game board
+     * with three in a row to win, and win/draw counters.
+     */
+    public BoardModel() {
+        this(3, 3, 3);
     }
 
     /**
-     * Constructor for the BoardModel class. Initializes the game board, available moves,
-     * and win/draw counters.
+     * Constructor for the BoardModel class. Initializes an m,n,k game board and win/draw counters.
+     * @param rows the number of rows of the board
+     * @param cols the number of columns of the board
+     * @param winLength the number of marks in a row needed to win
      */
-    public BoardModel() {
-        board = new Mark[3][3];
-        for (int i = 0; i<3;i++) {
-            for (int j = 0; j<3;j++) {
-                board[i][j] = Mark.EMPTY;
-            }
+    public BoardModel(int rows, int cols, int winLength) {
+        if (rows < 1 || cols < 1 || winLength < 1 || winLength > Math.max(rows, cols)) {
+            throw new IllegalArgumentException("Invalid board " + rows + "," + cols + "," + winLength);
         }
+        this.rows = rows;
+        this.cols = cols;
+        this.winLength = winLength;
+        clearBoard();
     }
 
     /**
-     * Resets the game board to its initial state, clearing all cells and
-     * repopulating the list of available moves, but do not reset win/draw counters.
+     * Resets the game board to its initial state, clearing all cells in place,
+     * but do not reset win/draw counters.
      */
     public void resetModel() {
-        board = new Mark[3][3];
-        for (int i = 0; i<3;i++) {
-            for (int j = 0; j<3;j++) {
+        clearBoard();
+    }
+
+    private void clearBoard() {
+        if (board == null) {
+            board = new Mark[rows][cols];
+        }
+        for (int i = 0; i<rows;i++) {
+            for (int j = 0; j<cols;j++) {
                 board[i][j] = Mark.EMPTY;
             }
         }
+        filled = 0;
+        winner = Mark.EMPTY;
     }
 
     /**
      * Sets the specified cell on the board to the given mark (X, O, or EMPTY).
+     * Placing a mark on an empty cell only checks the lines through that cell for a winner;
+     * overwriting or clearing a cell rescans the whole board.
      * @param r the row index of the cell
      * @param c the column index of the cell
      * @param t the mark to set (X, O, or EMPTY)
      */
     public void setCell(int r, int c, Mark t) {
+        Mark previous = board[r][c];
         board[r][c] = t;
+        if (previous == Mark.EMPTY && t != Mark.EMPTY) {
+            filled++;
+            if (winner == Mark.EMPTY && isWinningMove(r, c, t)) {
+                winner = t;
+            }
+            return;
+        }
+        if (previous != Mark.EMPTY && t == Mark.EMPTY) {
+            filled--;
+        }
+        if (previous != t) {
+            winner = scanWinner();
+        }
     }
 
     /**
@@ -99,6 +106,18 @@ public class BoardModel {
         playerWins[idx]++;
     }
 
+    /**
+     * Sets the win/draw counters, for a board restored from the MoveJournal.
+     * @param xWins the number of wins of X
+     * @param oWins the number of wins of O
+     * @param draws the number of draws
+     */
+    public void restoreScores(int xWins, int oWins, int draws) {
+        playerWins[0] = xWins;
+        playerWins[1] = oWins;
+        this.draws = draws;
+    }
+
     /**
      * Checks if the specified cell on the board is empty, i.e., not occupied by X or O.
      * @param r the row index of the cell
@@ -109,34 +128,30 @@ public class BoardModel {
         return (board[r][c] == Mark.EMPTY);
     }
 
+    /**
+     * Checks if the specified cell lies on the board.
+     * @param r the row index of the cell
+     * @param c the column index of the cell
+     * @return true if the cell is on the board, false otherwise
+     */
+    public boolean isOnBoard(int r, int c) {
+        return r >= 0 && r < rows && c >= 0 && c < cols;
+    }
+
     /**
      * Checks if the game board is full, i.e., there are no available moves left.
      * @return true if the board is full, false otherwise
      */
     public boolean isBoardFull() {
-        for (int i = 0; i<3;i++) {
-            for (int j = 0; j<3;j++) {
-                if(board[i][j] == Mark.EMPTY)
-                    return false;
-            }
-        }
-        return true;
+        return filled == rows * cols;
     }
 
     /**
-     * Checks for a winner on the game board by examining rows, columns, and diagonals.
+     * Gets the winner of the game, as detected when the marks were placed.
      * @return the mark of the winner (X or O) if there is a winner, or EMPTY if there is no winner (draw or ongoing game).
      */
     public Mark checkWinner() {
-        Mark rowRes = checkRow();
-        if (rowRes != Mark.EMPTY) {
-            return rowRes;
-        }
-        Mark colRes = checkCol();
-        if (colRes != Mark.EMPTY) {
-            return colRes;
-        }
-        return checkDia();
+        return winner;
     }
 
     /**
@@ -147,6 +162,29 @@ public class BoardModel {
         return board;
     }
 
+    /**
+     * Getter for the number of rows of the board.
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Getter for the number of columns of the board.
+     * @return the number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Getter for the number of marks in a row needed to win.
+     * @return the win length
+     */
+    public int getWinLength() {
+        return winLength;
+    }
 
     /**
      * Getter for the number of draws.
@@ -164,4 +202,36 @@ public class BoardModel {
         return playerWins[idx];
     }
 
+    private boolean isWinningMove(int r, int c, Mark t) {
+        for (int[] d : DIRECTIONS) {
+            int count = 1 + countFrom(r, c, d[0], d[1], t) + countFrom(r, c, -d[0], -d[1], t);
+            if (count >= winLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int countFrom(int r, int c, int dr, int dc, Mark t) {
+        int count = 0;
+        int i = r + dr;
+        int j = c + dc;
+        while (count < winLength && isOnBoard(i, j) && board[i][j] == t) {
+            count++;
+            i += dr;
+            j += dc;
+        }
+        return count;
+    }
+
+    private Mark scanWinner() {
+        for (int i = 0; i<rows;i++) {
+            for (int j = 0; j<cols;j++) {
+                if (board[i][j] != Mark.EMPTY && isWinningMove(i, j, board[i][j])) {
+                    return board[i][j];
+                }
+            }
+        }
+        return Mark.EMPTY;
+    }
 }
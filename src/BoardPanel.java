@@ -6,13 +6,15 @@ import javax.swing.*;
 import java.awt.*;
 
 /**
- * This class represents the board panel GUI in a Tic-Tac-Toe game. It contains a 3x3 grid of CellPanel objects.
+ * This class represents the board panel GUI in a Tic-Tac-Toe game. It contains a grid of CellPanel objects,
+ * 3x3 by default, or the size of the board the server plays on.
  * Each CellPanel corresponds to a cell on the Tic-Tac-Toe board.
  * The BoardPanel may interact with a Client instance to handle game logic.
  */
 public class BoardPanel extends JPanel {
     private CellPanel[][] board;
     private Client c;
+    private int rows, cols;
 
     /**
      * Constructor for BoardPanel.
@@ -20,11 +22,24 @@ public class BoardPanel extends JPanel {
      * @param c The controller for handling game logic. Assigned to CellPanels.
      */
     public BoardPanel(Client c) {
-        board = new CellPanel[3][3];
+        this(c, 3, 3);
+    }
+
+    /**
+     * Constructor for BoardPanel.
+     * Set the layout to a rows x cols grid and initialize each CellPanel.
+     * @param c The controller for handling game logic. Assigned to CellPanels.
+     * @param rows The number of rows of the board.
+     * @param cols The number of columns of the board.
+     */
+    public BoardPanel(Client c, int rows, int cols) {
+        board = new CellPanel[rows][cols];
         this.c = c;
-        setLayout(new GridLayout(3,3));
-        for (int i = 0; i<3 ; i++) {
-            for (int j = 0; j<3 ; j++) {
+        this.rows = rows;
+        this.cols = cols;
+        setLayout(new GridLayout(rows,cols));
+        for (int i = 0; i<rows ; i++) {
+            for (int j = 0; j<cols ; j++) {
                 board[i][j] = new CellPanel(c,i,j);
                 this.add(board[i][j]);
             }
@@ -37,8 +52,8 @@ public class BoardPanel extends JPanel {
      */
     public void setClient(Client c) {
         this.c = c;
-        for (int i = 0; i<3 ; i++) {
-            for (int j = 0; j<3 ; j++) {
+        for (int i = 0; i<rows ; i++) {
+            for (int j = 0; j<cols ; j++) {
                 board[i][j].setClient(c);
             }
         }
@@ -53,4 +68,20 @@ public class BoardPanel extends JPanel {
     public CellPanel getCellPanel(int i, int j) {
         return board[i][j];
     }
+
+    /**
+     * Get the number of rows of the board.
+     * @return The number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of columns of the board.
+     * @return The number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
 }
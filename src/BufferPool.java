@@ -0,0 +1,64 @@
+/**
+ * BufferPool.java
+ */
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BufferPool recycles fixed-size direct ByteBuffers, so encoding an outgoing frame does not
+ * allocate a new buffer every time. Requests larger than the pooled size get a one-off heap buffer,
+ * which is simply dropped on release.
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * Constructor for BufferPool.
+     * @param bufferSize The capacity of every pooled buffer.
+     * @param maxPooled The largest number of free buffers kept for reuse.
+     */
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Takes a cleared buffer of at least the given capacity.
+     * @param size The number of bytes needed.
+     * @return A cleared buffer, ready to be written to.
+     */
+    public ByteBuffer acquire(int size) {
+        if (size > bufferSize) {
+            return ByteBuffer.allocate(size);
+        }
+        ByteBuffer buf = free.poll();
+        if (buf == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        buf.clear();
+        return buf;
+    }
+
+    /**
+     * Gives a buffer back to the pool once its content has been consumed.
+     * @param buf The buffer taken from acquire.
+     */
+    public void release(ByteBuffer buf) {
+        if (!buf.isDirect() || buf.capacity() != bufferSize) {
+            return;
+        }
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        free.offer(buf);
+    }
+}
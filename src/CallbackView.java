@@ -0,0 +1,216 @@
+/**
+ * CallbackView.java
+ */
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * CallbackView is a GameView that hands every game event to a callback, for headless bots and tests.
+ * Callbacks are set with the on... methods, which return the view so they can be chained;
+ * events without a callback are ignored. Callbacks run on the listener thread of the Client.
+ */
+public class CallbackView implements GameView {
+
+    /**
+     * CellCallback receives the marks placed on the board.
+     */
+    public interface CellCallback {
+
+        /**
+         * Called when a mark is placed on the board.
+         * @param row The row of the cell.
+         * @param col The column of the cell.
+         * @param m The mark placed (X or O).
+         */
+        void onCell(int row, int col, Mark m);
+    }
+
+    private Client client;
+    private Consumer<Mark> markCallback;
+    private BiConsumer<Integer, Integer> boardSizeCallback;
+    private Consumer<String> nameCallback;
+    private Runnable resetCallback;
+    private BiConsumer<Mark, Integer> scoreCallback;
+    private CellCallback cellCallback;
+    private Consumer<Mark> winnerCallback;
+    private Runnable exitCallback;
+
+    /**
+     * Sets the callback receiving the mark of the player.
+     * @param callback The callback.
+     * @return This view.
+     */
+    public CallbackView onMark(Consumer<Mark> callback) {
+        this.markCallback = callback;
+        return this;
+    }
+
+    /**
+     * Sets the callback receiving the size of the board, as rows then columns.
+     * @param callback The callback.
+     * @return This view.
+     */
+    public CallbackView onBoardSize(BiConsumer<Integer, Integer> callback) {
+        this.boardSizeCallback = callback;
+        return this;
+    }
+
+    /**
+     * Sets the callback receiving the name the server accepted for the player.
+     * @param callback The callback.
+     * @return This view.
+     */
+    public CallbackView onName(Consumer<String> callback) {
+        this.nameCallback = callback;
+        return this;
+    }
+
+    /**
+     * Sets the callback called when a new game starts.
+     * @param callback The callback.
+     * @return This view.
+     */
+    public CallbackView onReset(Runnable callback) {
+        this.resetCallback = callback;
+        return this;
+    }
+
+    /**
+     * Sets the callback receiving the scores, with EMPTY for the number of draws.
+     * @param callback The callback.
+     * @return This view.
+     */
+    public CallbackView onScore(BiConsumer<Mark, Integer> callback) {
+        this.scoreCallback = callback;
+        return this;
+    }
+
+    /**
+     * Sets the callback receiving the marks placed on the board.
+     * @param callback The callback.
+     * @return This view.
+     */
+    public CallbackView onCell(CellCallback callback) {
+        this.cellCallback = callback;
+        return this;
+    }
+
+    /**
+     * Sets the callback receiving the winner of each game, EMPTY for a draw.
+     * @param callback The callback.
+     * @return This view.
+     */
+    public CallbackView onWinner(Consumer<Mark> callback) {
+        this.winnerCallback = callback;
+        return this;
+    }
+
+    /**
+     * Sets the callback called when the opponent leaves.
+     * @param callback The callback.
+     * @return This view.
+     */
+    public CallbackView onExit(Runnable callback) {
+        this.exitCallback = callback;
+        return this;
+    }
+
+    /**
+     * Getter for the Client of this view, so callbacks can answer the server.
+     * @return The Client, or null if not linked yet.
+     */
+    public Client getClient() {
+        return client;
+    }
+
+    /**
+     * Links the view to its Client.
+     * @param c The Client of the view.
+     */
+    @Override
+    public void setClient(Client c) {
+        this.client = c;
+    }
+
+    /**
+     * Hands the mark of the player to its callback.
+     * @param mark The mark of the player.
+     */
+    @Override
+    public void setMark(Mark mark) {
+        if (markCallback != null) markCallback.accept(mark);
+    }
+
+    /**
+     * Hands the size of the board to its callback.
+     * @param rows The number of rows of the board.
+     * @param cols The number of columns of the board.
+     */
+    @Override
+    public void setBoardSize(int rows, int cols) {
+        if (boardSizeCallback != null) boardSizeCallback.accept(rows, cols);
+    }
+
+    /**
+     * Hands the name of the player to its callback.
+     * @param name The name of the player.
+     */
+    @Override
+    public void parseName(String name) {
+        if (nameCallback != null) nameCallback.accept(name);
+    }
+
+    /**
+     * Calls the new game callback.
+     */
+    @Override
+    public void resetFrame() {
+        if (resetCallback != null) resetCallback.run();
+    }
+
+    /**
+     * Hands a score to its callback.
+     * @param winner The mark of the player (X or O), or EMPTY for draws.
+     * @param score The number of wins or draws.
+     */
+    @Override
+    public void drawScore(Mark winner, int score) {
+        if (scoreCallback != null) scoreCallback.accept(winner, score);
+    }
+
+    /**
+     * Hands a placed mark to its callback.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param m The mark placed (X or O).
+     */
+    @Override
+    public void drawCell(int row, int col, Mark m) {
+        if (cellCallback != null) cellCallback.onCell(row, col, m);
+    }
+
+    /**
+     * Hands the winner of a game to its callback.
+     * @param winner The mark of the winner (X or O), or EMPTY for a draw.
+     */
+    @Override
+    public void drawWinner(Mark winner) {
+        if (winnerCallback != null) winnerCallback.accept(winner);
+    }
+
+    /**
+     * Calls the opponent left callback.
+     */
+    @Override
+    public void drawExit() {
+        if (exitCallback != null) exitCallback.run();
+    }
+
+    /**
+     * Does nothing, there is nothing to hide.
+     */
+    @Override
+    public void invisible() {
+    }
+}
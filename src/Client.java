@@ -3,102 +3,187 @@
  */
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class represents the client-side logic for a Tic-Tac-Toe game.
  * It handles communication with the server, sending and receiving game messages,
- * and updating the game state in the GUI.
+ * and updating the game state on its GameView. When the connection is lost during a game,
+ * it reconnects with the resume token of its seat.
  */
 public class Client {
-    private static final String HOST = "localhost";
-    private static final int PORT = 8888;
+    private static final int RESUME_ATTEMPTS = 8;
+    private static final long RESUME_BACKOFF_MILLIS = 250;
+    private static final long RESUME_MAX_BACKOFF_MILLIS = 4000;
 
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final int port;
     private Socket socket;
-    private ObjectInputStream in;
-    private ObjectOutputStream out;
+    private MsgStream stream;
     private Mark mark;
-    private TicTacToeFrame frame;
+    private GameView view;
+    private volatile String token;
+    private volatile boolean exiting = false;
 
     /**
-     * Constructor for Client.
+     * Constructor for Client using the default ServerConfig.
      * Sets up the connection to the server and starts a listener thread listening for messages.
-     * @param frame The TicTacToeFrame GUI instance
+     * @param view The GameView showing the game
      * @throws IOException if an I/O error occurs when creating the socket or streams
      */
-    public Client(TicTacToeFrame frame) throws IOException {
-        this.frame = frame;
-        frame.setClient(this);
-        socket = new Socket(HOST,PORT);
-        out = new ObjectOutputStream(socket.getOutputStream());
-        in = new ObjectInputStream(socket.getInputStream());
+    public Client(GameView view) throws IOException {
+        this(view, new ServerConfig());
+    }
 
-        new Thread(this::listenForMessages).start();
+    /**
+     * Constructor for Client.
+     * Sets up the connection to the server, negotiates the protocol version through the Handshake,
+     * and starts a listener thread (platform or virtual, as configured) listening for messages.
+     * @param view The GameView showing the game
+     * @param config The ServerConfig the server is running with, giving the port of the server on localhost
+     * @throws IOException if an I/O error occurs when creating the socket or streams
+     */
+    public Client(GameView view, ServerConfig config) throws IOException {
+        this.view = view;
+        view.setClient(this);
+        port = config.getPort();
+        socket = new Socket("localhost", port);
+        stream = Handshake.connect(socket);
+
+        Threads.start("Client-Listener", this::listenForMessages, config.isVirtualThreads());
 
     }
 
     /**
-     * Set the TicTacToeFrame for this client.
-     * @param frame The TicTacToeFrame GUI instance
+     * Set the GameView for this client.
+     * @param view The GameView showing the game
      */
-    public void setFrame(TicTacToeFrame frame) {
-        this.frame = frame;
+    public void setView(GameView view) {
+        this.view = view;
     }
 
     private void listenForMessages() {
-        try{
-            while(true) {
-                GameMsg msg = (GameMsg) in.readObject();
-                handleMsg(msg);
+        while (true) {
+            try{
+                while(true) {
+                    GameMsg msg = stream.read();
+                    handleMsg(msg);
+                }
+            } catch(Exception e) {
+                if (exiting || token == null || !resume()) {
+                    Log.error("{}: Msg Error!", mark, e);
+                    return;
+                }
             }
-        } catch(Exception e) {
-            System.out.println(mark+": Msg Error!");
-            e.printStackTrace();
         }
     }
 
+    /**
+     * Reconnects to the server with the resume token of this client's seat, backing off between attempts.
+     * @return true if a new connection resumed the seat, false if every attempt failed.
+     */
+    private boolean resume() {
+        long backoff = RESUME_BACKOFF_MILLIS;
+        for (int attempt = 1; attempt <= RESUME_ATTEMPTS; attempt++) {
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            try {
+                Socket resumed = new Socket("localhost", port);
+                MsgStream resumedStream = Handshake.resume(resumed, token);
+                writeLock.lock();
+                try {
+                    socket.close();
+                    socket = resumed;
+                    stream = resumedStream;
+                } finally {
+                    writeLock.unlock();
+                }
+                Log.info("{}: Connection lost, resumed on attempt {}", mark, attempt);
+                return true;
+            } catch (IOException e) {
+                Log.warn("{}: Resume attempt {} failed", mark, attempt);
+            }
+            backoff = Math.min(backoff * 2, RESUME_MAX_BACKOFF_MILLIS);
+        }
+        return false;
+    }
+
     private void handleMsg(GameMsg msg) {
-        System.out.println(mark+": Received "+msg.getType()+" from Server");
+        Log.debug("{}: Received {} from Server", mark, msg.getType());
         switch(msg.getType()){
             case PLAYER_ASSIGNED:
                 mark = msg.getMark();
-                frame.setMark(mark);
-                System.out.println("You are player: "+msg.getMark());
+                String[] assigned = msg.getMessage().split(" ");
+                token = assigned.length > 1 ? assigned[1] : null;
+                view.setMark(mark);
+                if (msg.getRow() > 0 && msg.getCol() > 0)
+                    view.setBoardSize(msg.getRow(), msg.getCol());
+                Log.info("You are player: {}", msg.getMark());
                 break;
             case GAME_START:
                 int Xwin = msg.getCol();
                 int Owin = msg.getRow();
                 int draw = Integer.parseInt(msg.getMessage());
-                frame.resetFrame();
-                frame.drawScore(Mark.X,Xwin);
-                frame.drawScore(Mark.O,Owin);
-                frame.drawScore(Mark.EMPTY,draw);
+                view.resetFrame();
+                view.drawScore(Mark.X,Xwin);
+                view.drawScore(Mark.O,Owin);
+                view.drawScore(Mark.EMPTY,draw);
                 break;
             case WAIT:
-                System.out.println(msg.getMessage());
+                Log.info(msg.getMessage());
                 break;
             case MOVE:
                 int col = msg.getCol();
                 int row = msg.getRow();
                 Mark movable = msg.getMark();
-                frame.drawCell(col,row,movable);
+                view.drawCell(col,row,movable);
                 break;
             case SETNAME:
                 String name = msg.getMessage();
-                frame.parseName(name);
+                view.parseName(name);
                 break;
             case GAME_OVER:
                 Mark winner = msg.getMark();
-                frame.drawWinner(winner);
+                view.drawWinner(winner);
                 break;
             case EXIT:
                 Mark exitable = msg.getMark();
                 if (exitable != mark)
-                    frame.drawExit();
+                    view.drawExit();
                 break;
+            case SNAPSHOT:
+                drawSnapshot(msg);
+                break;
+        }
+    }
+
+    /**
+     * Redraws the whole game from a SNAPSHOT, sent by the server instead of the messages this client was too slow to take.
+     * @param msg The SNAPSHOT message.
+     */
+    private void drawSnapshot(GameMsg msg) {
+        int rows = msg.getRow();
+        int cols = msg.getCol();
+        String[] parts = msg.getMessage().split(" ");
+        view.setBoardSize(rows, cols);
+        view.resetFrame();
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                char c = parts[0].charAt(i * cols + j);
+                if (c != '.')
+                    view.drawCell(i, j, c == 'X' ? Mark.X : Mark.O);
+            }
         }
+        view.drawScore(Mark.X, Integer.parseInt(parts[1]));
+        view.drawScore(Mark.O, Integer.parseInt(parts[2]));
+        view.drawScore(Mark.EMPTY, Integer.parseInt(parts[3]));
+        if (msg.getMark() != null)
+            view.drawWinner(msg.getMark());
     }
 
     /**
@@ -141,7 +226,8 @@ public class Client {
      * Send an exit message to the server when player wants to exit the game.
      */
     public void sendExit() {
-        this.frame.invisible();
+        exiting = true;
+        this.view.invisible();
         GameMsg exitMsg = new GameMsg(GameMsg.MsgType.EXIT);
         exitMsg.setMark(mark);
         sendMsg(exitMsg);
@@ -152,11 +238,13 @@ public class Client {
      * @param msg The GameMsg to be sent
      */
     public void sendMsg(GameMsg msg) {
+        writeLock.lock();
         try {
-            out.writeObject(msg);
-            out.flush();
+            stream.write(msg);
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.error("{}: Failed to send {}", mark, msg.getType(), e);
+        } finally {
+            writeLock.unlock();
         }
     }
 }
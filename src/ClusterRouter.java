@@ -0,0 +1,199 @@
+/**
+ * ClusterRouter.java
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ClusterRouter is the front end of a cluster of GameServer nodes. Clients connect to it as to a single server,
+ * and it relays every connection to one node picked on the HashRing: new players in pairs, so both are seated
+ * in the same room, and spectators and resuming players to the node owning their game.
+ */
+public class ClusterRouter {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+
+    private final ServerConfig config;
+    private final HashRing ring;
+    private final AtomicLong arrivals = new AtomicLong();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * Constructor for ClusterRouter.
+     * @param config The ServerConfig holding the port of the router and the nodes of the cluster.
+     */
+    public ClusterRouter(ServerConfig config) {
+        this.config = config;
+        this.ring = config.getCluster();
+        if (ring == null) {
+            throw new IllegalArgumentException("The router needs the nodes of the cluster (--cluster=host:port,...)");
+        }
+    }
+
+    /**
+     * Runs the accept loop of the router on the calling thread, for as long as the router runs.
+     */
+    public void start() {
+        config.applyLogging();
+        try (ServerSocket server = new ServerSocket(config.getPort(), 1024)) {
+            Log.info("Router started at {} for {} nodes", config.getPort(), ring.size());
+            while (true) {
+                Socket client = server.accept();
+                int id = connections.incrementAndGet();
+                Threads.start("Route-" + id, () -> route(client, id), config.isVirtualThreads());
+            }
+        } catch (IOException e) {
+            Log.error("Router stopped", e);
+        }
+    }
+
+    /**
+     * Reads the start of a connection until its node is known, connects to the node, replays what was read,
+     * and relays the connection both ways until both sides have closed it, so what the node still sends after
+     * the client has shut down its output reaches the client.
+     * @param client The socket of the client.
+     * @param id The id of the connection, used for logging.
+     */
+    private void route(Socket client, int id) {
+        try (client) {
+            client.setTcpNoDelay(true);
+            InputStream in = client.getInputStream();
+            ByteBuffer prelude = ByteBuffer.allocate(MsgCodec.MAX_FRAME_SIZE + Handshake.HELLO_SIZE);
+            long gameId = readGameId(in, client.getOutputStream(), prelude);
+            try (Socket node = connect(Math.max(gameId, 0), gameId < 0)) {
+                if (node == null) {
+                    return;
+                }
+                OutputStream out = node.getOutputStream();
+                out.write(prelude.array(), 0, prelude.position());
+                out.flush();
+                if (gameId >= 0 && node.getInputStream().readNBytes(Handshake.HELLO_SIZE).length < Handshake.HELLO_SIZE) {
+                    return;
+                }
+                Thread back = Threads.start("Route-" + id + "-back", () -> relay(node, client), config.isVirtualThreads());
+                relay(client, node);
+                back.join();
+            }
+        } catch (IOException e) {
+            Log.debug("Connection {} not routed", id, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads the hello of the client, and the WATCH of a spectator or the RESUME of a player resuming its seat,
+     * into the prelude. Either is only sent once the hello is answered, so the router answers it with the version
+     * the node will pick, and route swallows the answer of the node.
+     * @param in The input stream of the client.
+     * @param out The output stream of the client.
+     * @param prelude The buffer the bytes read are kept in, to be replayed to the node.
+     * @return The id of the game a spectator watches or a player resumes, 0 for a spectator of any game,
+     * or -1 for a new player.
+     * @throws IOException if the client closes the connection or does not speak the protocol.
+     */
+    private long readGameId(InputStream in, OutputStream out, ByteBuffer prelude) throws IOException {
+        fill(in, prelude, 2);
+        if (Handshake.isLegacy(prelude.get(0), prelude.get(1))) {
+            return -1;
+        }
+        fill(in, prelude, Handshake.HELLO_SIZE);
+        int offered = Handshake.parseHello(ByteBuffer.wrap(prelude.array(), 0, Handshake.HELLO_SIZE));
+        int flags = Handshake.flags(offered);
+        if (flags == 0) {
+            return -1;
+        }
+        int version = Handshake.negotiate(offered & ~Handshake.FLAGS);
+        out.write(Handshake.hello(version | flags).array());
+        out.flush();
+        while (true) {
+            ByteBuffer frames = ByteBuffer.wrap(prelude.array(), Handshake.HELLO_SIZE, prelude.position() - Handshake.HELLO_SIZE);
+            GameMsg msg = MsgCodec.decode(frames, version);
+            if (msg != null && msg.getType() == GameMsg.MsgType.RESUME) {
+                return Math.max(GameRoom.roomOf(msg.getMessage()), 0);
+            }
+            if (msg != null) {
+                return msg.getType() == GameMsg.MsgType.WATCH ? Math.max(msg.getRow(), 0) : 0;
+            }
+            fill(in, prelude, prelude.position() + 1);
+        }
+    }
+
+    private static void fill(InputStream in, ByteBuffer prelude, int size) throws IOException {
+        while (prelude.position() < size) {
+            if (!prelude.hasRemaining()) {
+                throw new IOException("Prelude too large");
+            }
+            int n = in.read(prelude.array(), prelude.position(), prelude.remaining());
+            if (n < 0) {
+                throw new IOException("Connection closed before it could be routed");
+            }
+            prelude.position(prelude.position() + n);
+        }
+    }
+
+    /**
+     * Connects to the node owning a game, or for a new player to the node of its pairing slot,
+     * failing over along the ring when that node is down. A spectator of any game goes to the node
+     * of the latest pair, without taking a slot. A player takes its slot before anything else, in one atomic step,
+     * so players arriving at the same moment never share a slot, and keeps it while failing over.
+     * @param gameId The id of the game, or 0 for none.
+     * @param player true for a player, false for a spectator.
+     * @return The socket of the node, or null if no node could be reached.
+     */
+    private Socket connect(long gameId, boolean player) {
+        long key;
+        if (gameId != 0) {
+            key = gameId;
+        } else if (player) {
+            key = ~(arrivals.getAndIncrement() / 2);
+        } else {
+            key = ~(Math.max(arrivals.get() - 1, 0) / 2);
+        }
+        int attempts = gameId != 0 ? 1 : ring.size();
+        for (int skip = 0; skip < attempts; skip++) {
+            int node = ring.successor(key, skip);
+            InetSocketAddress unresolved = ring.address(node);
+            Socket socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(unresolved.getHostString(), unresolved.getPort()), CONNECT_TIMEOUT_MILLIS);
+                Log.debug("Routed to node {} ({})", node, unresolved);
+                return socket;
+            } catch (IOException e) {
+                Log.warn("Node {} ({}) is unreachable", node, unresolved);
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies the bytes of one socket to the other until the first one is closed,
+     * then closes the writing side of the other.
+     * @param from The socket to read from.
+     * @param to The socket to write to.
+     */
+    private static void relay(Socket from, Socket to) {
+        try {
+            from.getInputStream().transferTo(to.getOutputStream());
+        } catch (IOException ignored) {
+        } finally {
+            try {
+                to.shutdownOutput();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
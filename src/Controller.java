@@ -10,11 +10,12 @@
  */
 public class Controller {
 
-    private BoardModel bm;
+    private final BoardModel bm;
     private int playerLeft = 2;
     private boolean[] hasName = {false,false};
     private boolean[] isPlayerMove = {true,false};
     private boolean[] wantToRestart = {false,false};
+    private boolean tallied = false;
 
     /**
      * Constructor for Controller class.
@@ -31,14 +32,6 @@ public class Controller {
         this.playerLeft--;
     }
 
-    /**
-     * Sets the BoardModel instance.
-     * @param bm The BoardModel instance to be set.
-     */
-    public void setBm(BoardModel bm) {
-        this.bm = bm;
-    }
-
     /**
      * Sets whether it's the player's move.
      * @param idx Index of the player (0 for X, 1 for O).
@@ -48,6 +41,14 @@ public class Controller {
         isPlayerMove[idx] = val;
     }
 
+    /**
+     * Gets whose turn it is.
+     * @return The Mark of the player to move (X or O), or null if neither may move.
+     */
+    public Mark getTurn() {
+        return isPlayerMove[0] ? Mark.X : isPlayerMove[1] ? Mark.O : null;
+    }
+
     /**
      * Gets the number of players left in the game.
      * @return The number of players left.
@@ -74,7 +75,16 @@ public class Controller {
     }
 
     /**
-     * Handles user input for cell click. Updates the BoardModel if the move is valid.
+     * Checks if both players have registered their names, so moves are accepted.
+     * @return true if both players have a name, false otherwise.
+     */
+    public boolean hasNames() {
+        return hasName[0] && hasName[1];
+    }
+
+    /**
+     * Handles user input for cell click. Updates the BoardModel if the move is valid:
+     * the cell is on the board and empty, it is the player's turn, and the game is not won yet.
      * @param i the row index of the cell clicked.
      * @param j the column index of the cell clicked.
      * @param m the Mark of the player making the move.
@@ -88,7 +98,10 @@ public class Controller {
         if (!isPlayerMove[idx]) {
             return false;
         }
-        if (!bm.isCellEmpty(i, j)) {
+        if (!bm.isOnBoard(i, j) || !bm.isCellEmpty(i, j)) {
+            return false;
+        }
+        if (bm.checkWinner() != Mark.EMPTY) {
             return false;
         }
         bm.setCell(i, j, m);
@@ -106,8 +119,11 @@ public class Controller {
         int idx = (m == Mark.X) ? 0 : 1;
         wantToRestart[idx] = true;
         if (wantToRestart[0] && wantToRestart[1]){
-            wantToRestart = new boolean[] {false,false};
-            isPlayerMove = new boolean[] {true,false};
+            wantToRestart[0] = false;
+            wantToRestart[1] = false;
+            isPlayerMove[0] = true;
+            isPlayerMove[1] = false;
+            tallied = false;
             bm.resetModel();
             return true;
         }
@@ -115,7 +131,24 @@ public class Controller {
     }
 
     /**
-     * Checks for a winner in the game. Updates the BoardModel statistics if there is a winner or a draw.
+     * Sets whose turn it is from the marks on the board, for a game restored from the MoveJournal:
+     * X moves when both players have placed as many marks, O otherwise.
+     */
+    public void resumeTurn() {
+        int x = 0;
+        int o = 0;
+        for (Mark[] row : bm.getBoard()) {
+            for (Mark m : row) {
+                if (m == Mark.X) x++;
+                else if (m == Mark.O) o++;
+            }
+        }
+        isPlayerMove = new boolean[] {x == o, x != o};
+    }
+
+    /**
+     * Checks for a winner in the game. Updates the BoardModel statistics if there is a winner or a draw,
+     * the first time the game is seen over.
      * @return the Mark of the winner (X or O), Mark.EMPTY for a draw, or null if the game is still ongoing.
      */
     public Mark checkWinner() {
@@ -124,6 +157,10 @@ public class Controller {
         if (winner == Mark.EMPTY && (!isFull)) {
             return null;
         }
+        if (tallied) {
+            return winner;
+        }
+        tallied = true;
         if (winner == Mark.X) {
             bm.addPlayerWins(0);
         } else if(winner == Mark.O) {
@@ -0,0 +1,168 @@
+/**
+ * FramedMsgStream.java
+ */
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * FramedMsgStream exchanges GameMsg objects as frames of the version negotiated by the Handshake:
+ * Java serialized payloads for version 1 (see MsgCodec), compact binary frames for version 2 (see BinaryCodec).
+ * Binary frames are encoded into and decoded from one reusable buffer per direction.
+ */
+public class FramedMsgStream implements MsgStream {
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final int version;
+    private final boolean spectator;
+    private final boolean resuming;
+    private final ByteBuffer readBuf = ByteBuffer.allocate(MsgCodec.MAX_FRAME_SIZE + 8);
+    private final ByteBuffer writeBuf = ByteBuffer.allocate(MsgCodec.MAX_FRAME_SIZE + 8);
+
+    /**
+     * Constructor for FramedMsgStream, once the handshake is done.
+     * @param input The (buffered) input stream of the socket.
+     * @param output The (buffered) output stream of the socket.
+     * @param version The negotiated protocol version.
+     */
+    public FramedMsgStream(InputStream input, OutputStream output, int version) {
+        this(input, output, version, false);
+    }
+
+    /**
+     * Constructor for FramedMsgStream, once the handshake is done.
+     * @param input The (buffered) input stream of the socket.
+     * @param output The (buffered) output stream of the socket.
+     * @param version The negotiated protocol version.
+     * @param spectator true if the peer is a spectator, false if it is a player.
+     */
+    public FramedMsgStream(InputStream input, OutputStream output, int version, boolean spectator) {
+        this(input, output, version, spectator, false);
+    }
+
+    /**
+     * Constructor for FramedMsgStream, once the handshake is done.
+     * @param input The (buffered) input stream of the socket.
+     * @param output The (buffered) output stream of the socket.
+     * @param version The negotiated protocol version.
+     * @param spectator true if the peer is a spectator, false if it is a player.
+     * @param resuming true if the peer is a player resuming its seat.
+     */
+    public FramedMsgStream(InputStream input, OutputStream output, int version, boolean spectator, boolean resuming) {
+        this.in = new DataInputStream(input);
+        this.out = output;
+        this.version = version;
+        this.spectator = spectator;
+        this.resuming = resuming;
+    }
+
+    /**
+     * Reads the next frame from the socket and decodes it.
+     * @return The GameMsg received.
+     * @throws IOException if the connection is lost or the message is malformed.
+     */
+    @Override
+    public GameMsg read() throws IOException {
+        if (version == Handshake.BINARY_VERSION) {
+            return BinaryCodec.read(in, readBuf);
+        }
+        int length = in.readInt();
+        if (length < 0 || length + MsgCodec.HEADER_SIZE > MsgCodec.MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return MsgCodec.deserialize(payload);
+    }
+
+    /**
+     * Encodes a GameMsg into a frame, writes it and flushes it.
+     * @param msg The GameMsg to send.
+     * @throws IOException if the connection is lost.
+     */
+    @Override
+    public void write(GameMsg msg) throws IOException {
+        writeBuffered(msg);
+        out.flush();
+    }
+
+    /**
+     * Encodes a GameMsg into a frame and writes it, without flushing it.
+     * @param msg The GameMsg to send.
+     * @throws IOException if the connection is lost.
+     */
+    @Override
+    public void writeBuffered(GameMsg msg) throws IOException {
+        ByteBuffer frame;
+        if (version == Handshake.BINARY_VERSION) {
+            if (BinaryCodec.frameSize(msg) > writeBuf.capacity()) {
+                throw new IOException("Frame too large");
+            }
+            frame = writeBuf;
+            frame.clear();
+            BinaryCodec.encode(msg, frame);
+            frame.flip();
+        } else {
+            frame = MsgCodec.encode(msg);
+        }
+        out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+    }
+
+    /**
+     * Writes a frame already encoded for the version of this stream, without flushing it.
+     * A frame without an accessible array, such as a read-only shared frame, is copied through the write buffer.
+     * @param frame The frame, ready to be read from. Its position is left unchanged.
+     * @throws IOException if the connection is lost.
+     */
+    @Override
+    public void writeFrame(ByteBuffer frame) throws IOException {
+        if (frame.hasArray()) {
+            out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            return;
+        }
+        ByteBuffer src = frame.duplicate();
+        while (src.hasRemaining()) {
+            int n = Math.min(src.remaining(), writeBuf.capacity());
+            src.get(writeBuf.array(), 0, n);
+            out.write(writeBuf.array(), 0, n);
+        }
+    }
+
+    /**
+     * Flushes the frames written so far to the socket.
+     * @throws IOException if the connection is lost.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Checks if the peer asked to watch a game rather than to play, in the handshake.
+     * @return true for a spectator, false for a player.
+     */
+    @Override
+    public boolean isSpectator() {
+        return spectator;
+    }
+
+    /**
+     * Checks if the peer asked to resume its seat in a game rather than to join a new one, in the handshake.
+     * @return true for a player sending RESUME next, false otherwise.
+     */
+    @Override
+    public boolean isResuming() {
+        return resuming;
+    }
+
+    /**
+     * Gets the protocol version spoken by this stream.
+     * @return The negotiated protocol version.
+     */
+    public int getVersion() {
+        return version;
+    }
+}
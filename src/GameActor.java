@@ -0,0 +1,94 @@
+/**
+ * GameActor.java
+ */
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * GameActor runs the commands of one game one at a time, in the order they were told, on the Executor
+ * of its shard (see GameShards), so the state of the game is only ever touched by one thread at a time
+ * and needs no lock. Telling never blocks, whatever the actor is doing.
+ */
+public class GameActor implements Runnable {
+
+    /**
+     * The number of commands an actor runs before giving its worker back to the pool.
+     */
+    public static final int BATCH = 64;
+
+    private static final AtomicInteger workerIds = new AtomicInteger();
+
+    private final String name;
+    private final Executor workers;
+    private final ConcurrentLinkedQueue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Constructor for GameActor.
+     * @param name The name of the actor, used for logging.
+     * @param workers The Executor the actor runs on, shared with other actors.
+     */
+    public GameActor(String name, Executor workers) {
+        this.name = name;
+        this.workers = workers;
+    }
+
+    /**
+     * Creates a worker pool for GameActors: a ForkJoinPool in FIFO mode with the given number of daemon threads.
+     * A command that blocks through ForkJoinPool.managedBlock, as the MoveJournal does, gets a spare thread
+     * for as long as it blocks, so the other actors keep running.
+     * @param threads The number of workers.
+     * @return The worker pool.
+     */
+    public static ForkJoinPool newWorkerPool(int threads) {
+        return new ForkJoinPool(Math.max(1, threads), pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("GameWorker-" + workerIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, null, true);
+    }
+
+    /**
+     * Queues a command, and schedules the actor if it is not scheduled yet. Never blocks.
+     * Commands told from one thread run in the order they were told.
+     * @param command The command to run on the actor.
+     */
+    public void tell(Runnable command) {
+        mailbox.offer(command);
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            workers.execute(this);
+        }
+    }
+
+    /**
+     * Runs up to BATCH commands of the mailbox, then schedules the actor again if there are more.
+     * A command that throws is logged and does not stop the actor.
+     */
+    @Override
+    public void run() {
+        try {
+            for (int i = 0; i < BATCH; i++) {
+                Runnable command = mailbox.poll();
+                if (command == null) {
+                    break;
+                }
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    Log.error("{}: command failed", name, e);
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) {
+                workers.execute(this);
+            }
+        }
+    }
+}
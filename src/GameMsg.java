@@ -18,12 +18,21 @@ public class GameMsg implements Serializable {
      * GAME_OVER: Notification that the game has ended.
      * WAIT: Notification to wait for the other player's move.
      * SETNAME: Message to set or update player's name.
-     * PLAYER_ASSIGNED: Notification of player assignment (X or O).
+     * PLAYER_ASSIGNED: Notification of player assignment (X or O). Row and col hold the size of the board,
+     * and the message holds the win length, then the resume token of the seat, separated by a space.
      * EXIT: Notification that a player is exiting the game.
+     * SNAPSHOT: The whole state of the game, sent to a client that could not keep up, instead of the messages it missed.
+     * Row and col hold the size of the board, mark holds the result if the game is over (null while it is played),
+     * and the message holds the cells row by row ('X', 'O' or '.'), then the wins of X, the wins of O, the draws
+     * and the side to move ('X', 'O', or '-' once the game is over), separated by spaces.
+     * WATCH: Sent by a spectator right after the handshake; row holds the id of the room to watch, or 0 for
+     * any game in play. The server answers with a SNAPSHOT, or with EXIT if there is no such game.
+     * RESUME: Sent by a player reconnecting to its seat right after the handshake; the message holds the resume token
+     * it was given in PLAYER_ASSIGNED. The server answers with a SNAPSHOT, or with EXIT if the seat is gone.
      *
      */
     public enum MsgType {
-        MOVE, GAME_START, GAME_OVER, WAIT, SETNAME, PLAYER_ASSIGNED, EXIT
+        MOVE, GAME_START, GAME_OVER, WAIT, SETNAME, PLAYER_ASSIGNED, EXIT, SNAPSHOT, WATCH, RESUME
     }
     private MsgType type;
     private int row;
@@ -0,0 +1,625 @@
+/**
+ * GameRoom.java
+ */
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * GameRoom represents one independent game session hosted by the GameServer.
+ * Each room owns its own Controller and BoardModel, holds the two PlayerConnections seated in it and its spectators,
+ * and broadcasts only to them, so many rooms can run side by side. Everything that reads or changes the game runs
+ * in order on the GameActor of the room, so the game is only ever touched by one thread at a time, without a lock.
+ */
+public class GameRoom {
+
+    private final int id;
+    private final RoomRegistry registry;
+    // Guards the seats; not a monitor, so virtual threads are never pinned while seating.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final GameActor actor;
+    private final int shard;
+    private final Controller controller;
+    private final ServerMetrics metrics;
+    private final MoveJournal journal;
+    private final SpectatorGroup spectators;
+    private final PlayerConnection[] players = new PlayerConnection[2];
+    private final boolean[] hasLeft = {false,false};
+    private final String[] tokens = new String[2];
+    private final boolean[] parked = {false,false};
+    private final int[] parkings = {0,0};
+    private final String[] names = new String[2];
+    private GameRoom movedTo;
+    private Tournament.Game game;
+    private int seated = 0;
+    private boolean resumed = false;
+    private long journaled = 0;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Constructor for GameRoom.
+     * @param id The id of the room, unique within the registry.
+     * @param registry The RoomRegistry that owns this room.
+     * @param controller The fresh Controller of this room, with its BoardModel.
+     * @param shard The index of the shard of the GameShards of the registry the room runs on.
+     */
+    public GameRoom(int id, RoomRegistry registry, Controller controller, int shard) {
+        this.id = id;
+        this.registry = registry;
+        this.controller = controller;
+        this.metrics = registry.getMetrics();
+        this.journal = registry.getJournal();
+        this.spectators = new SpectatorGroup(metrics);
+        this.shard = shard;
+        this.actor = new GameActor("Room " + id, registry.getShards().executor(shard));
+    }
+
+    /**
+     * Marks the room as recovered from the MoveJournal, with its BoardModel already restored,
+     * and sets whose turn it is from the board. The game resumes once both seats are taken.
+     * Called before the room is shared, so not on the actor.
+     */
+    void resume() {
+        resumed = true;
+        controller.resumeTurn();
+    }
+
+    /**
+     * Makes the room host one game of a Tournament. The room reports the result to the tournament, or a win
+     * of the other player when one leaves before the end, ignores requests for a new game, and closes once it is over.
+     * Called before the room is shared, so not on the actor.
+     * @param game The Tournament.Game the room plays.
+     */
+    void playFor(Tournament.Game game) {
+        this.game = game;
+    }
+
+    /**
+     * Seats a client in the next free seat of the room and assigns its player symbol.
+     * The first player gets Mark.X and is told to wait, the second player gets Mark.O.
+     * PLAYER_ASSIGNED also carries the size of the board in row and col, and the win length and the resume token
+     * of the seat in the message.
+     * @param player The PlayerConnection to be seated.
+     * @return The index of the seat (0 or 1).
+     */
+    public int seat(PlayerConnection player) {
+        lock.lock();
+        try {
+            int idx = seated++;
+            players[idx] = player;
+            Mark mark = idx == 0 ? Mark.X : Mark.O;
+            player.setMark(mark);
+            tokens[idx] = id + "-" + idx + "-" + Long.toHexString(RANDOM.nextLong());
+            BoardModel bm = controller.getBm();
+            player.sendMsg(new GameMsg(GameMsg.MsgType.PLAYER_ASSIGNED, bm.getRows(), bm.getCols(), mark,
+                    bm.getWinLength() + " " + tokens[idx]));
+            if (idx == 0) {
+                GameMsg waitMsg = new GameMsg(GameMsg.MsgType.WAIT);
+                waitMsg.setMessage("Waiting for second player...");
+                player.sendMsg(waitMsg);
+            }
+            return idx;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if both seats of the room are taken.
+     * @return true if two players are seated, false otherwise.
+     */
+    public boolean isFull() {
+        lock.lock();
+        try {
+            return seated == 2;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handles a message received from one of the players of this room, decoded just now.
+     * @param from The PlayerConnection the message was received from.
+     * @param msg The GameMsg received.
+     */
+    public void handle(PlayerConnection from, GameMsg msg) {
+        handle(from, msg, System.nanoTime());
+    }
+
+    /**
+     * Handles a message received from one of the players of this room, on the actor of the room. Never blocks.
+     * Handles MOVE, SETNAME, GAME_START, and EXIT message types.
+     * Broadcasts relevant messages to the players of the room,
+     * or sends direct responses to the sender as needed.
+     * The time from the decoding of the message to the end of its broadcast, waiting in the mailbox included,
+     * is recorded in the ServerMetrics.
+     * Moves, results and restarts are broadcast only once the MoveJournal has committed them.
+     * @param from The PlayerConnection the message was received from.
+     * @param msg The GameMsg received.
+     * @param decodedAt The System.nanoTime at which the transport decoded the message.
+     */
+    public void handle(PlayerConnection from, GameMsg msg, long decodedAt) {
+        if (Log.isDebugEnabled())
+            Log.debug("Room {} received: {} From player {}", id, msg.getType(), msg.getMark());
+        actor.tell(() -> dispatch(from, msg, decodedAt));
+    }
+
+    /**
+     * Sends a message to every player seated in this room, and fans it out to the spectators of the room.
+     * Players are expected to queue what they are sent rather than write it, so one slow client never holds up the room.
+     * Called on the actor of the room.
+     * @param msg The GameMsg to broadcast.
+     */
+    public void broadcast(GameMsg msg) {
+        if (Log.isDebugEnabled())
+            Log.debug("Room {} broadcast: {}", id, msg.getType());
+        PlayerConnection[] members;
+        lock.lock();
+        try {
+            members = players.clone();
+        } finally {
+            lock.unlock();
+        }
+        for (PlayerConnection member: members) {
+            if (member != null)
+                member.sendMsg(msg);
+        }
+        spectators.publish(msg);
+    }
+
+    /**
+     * Starts the game by broadcasting GAME_START with the current scores to both players, on the actor of the room.
+     * A room recovered from the MoveJournal broadcasts a SNAPSHOT of the game it resumes instead,
+     * and again once both players have registered their names, when the game can go on.
+     */
+    public void startGame() {
+        actor.tell(() -> {
+            if (resumed) {
+                broadcast(snapshotMsg());
+                return;
+            }
+            journal.commit(journal.gameStarted(id, controller.getBm()));
+            broadcast(scoreMsg());
+        });
+    }
+
+    /**
+     * Handles a player leaving the room, either by an EXIT message or a lost connection, on the actor of the room.
+     * The remaining player is notified with an EXIT message,
+     * and the room is removed from the registry once nobody is left. Spectators are sent the EXIT either way.
+     * Leaving more than once has no further effect.
+     * @param player The PlayerConnection leaving the room.
+     */
+    public void playerLeft(PlayerConnection player) {
+        actor.tell(() -> leave(player));
+    }
+
+    /**
+     * Handles the connection of a player being lost, on the actor of the room. While the game has both players,
+     * the seat is parked for the resume grace period of the ServerConfig and the opponent is told to wait;
+     * otherwise, or without a grace period, the player leaves as with playerLeft.
+     * @param player The PlayerConnection that was lost.
+     */
+    public void playerLost(PlayerConnection player) {
+        actor.tell(() -> lose(player));
+    }
+
+    /**
+     * Gives a parked seat back to its player on a new connection, on the actor of the room, and sends the player
+     * a SNAPSHOT of the game. A seat that is not parked yet, because the old connection is not known to be lost,
+     * is taken over all the same, and the old connection is ignored from then on.
+     * A player whose token matches no seat still in the game is sent EXIT.
+     * @param player The new PlayerConnection of the player.
+     * @param token The resume token of the seat.
+     */
+    public void resume(PlayerConnection player, String token) {
+        actor.tell(() -> {
+            int idx;
+            PlayerConnection other;
+            lock.lock();
+            try {
+                idx = token.equals(tokens[0]) ? 0 : token.equals(tokens[1]) ? 1 : -1;
+                if (idx < 0 || hasLeft[idx]) {
+                    idx = -1;
+                } else {
+                    players[idx] = player;
+                    parked[idx] = false;
+                    parkings[idx]++;
+                }
+                other = idx < 0 ? null : players[1 - idx];
+            } finally {
+                lock.unlock();
+            }
+            if (idx < 0) {
+                player.sendMsg(new GameMsg(GameMsg.MsgType.EXIT, 0, 0, null, "No such seat"));
+                return;
+            }
+            Mark mark = idx == 0 ? Mark.X : Mark.O;
+            player.setMark(mark);
+            metrics.seatResumed();
+            Log.info("Room {}: {} resumed its seat", id, mark);
+            player.sendMsg(snapshotMsg());
+            if (other != null) {
+                GameMsg waitMsg = new GameMsg(GameMsg.MsgType.WAIT);
+                waitMsg.setMessage("Opponent is back.");
+                other.sendMsg(waitMsg);
+            }
+        });
+    }
+
+    /**
+     * Gives up the seat of the player waiting alone in the room, for the Matchmaker to move it to the room
+     * of its opponent. Whatever the room is handed for the player from now on is forwarded to that room.
+     * Called under the lock of the registry.
+     * @param host The GameRoom the player is moved to.
+     * @return The PlayerConnection of the player, or null if it has left already.
+     */
+    PlayerConnection vacate(GameRoom host) {
+        lock.lock();
+        try {
+            PlayerConnection player = players[0];
+            if (seated != 1 || hasLeft[0]) {
+                return null;
+            }
+            players[0] = null;
+            movedTo = host;
+            return player;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void lose(PlayerConnection player) {
+        long grace = registry.getConfig().getResumeGraceMillis();
+        int idx;
+        int parking = -1;
+        PlayerConnection other = null;
+        GameRoom forward;
+        lock.lock();
+        try {
+            idx = seatOf(player);
+            forward = movedTo;
+            if (idx < 0 && forward != null) {
+                forward.playerLost(player);
+                return;
+            }
+            if (idx < 0 || hasLeft[idx]) return;
+            if (grace > 0 && seated == 2 && !hasLeft[1 - idx]) {
+                players[idx] = null;
+                parked[idx] = true;
+                parking = ++parkings[idx];
+                other = players[1 - idx];
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (parking < 0) {
+            leaveSeat(idx);
+            return;
+        }
+        metrics.seatParked();
+        Log.info("Room {}: {} lost connection, seat kept for {} ms", id, idx == 0 ? Mark.X : Mark.O, grace);
+        if (other != null) {
+            GameMsg waitMsg = new GameMsg(GameMsg.MsgType.WAIT);
+            waitMsg.setMessage("Opponent disconnected, waiting for them to come back...");
+            other.sendMsg(waitMsg);
+        }
+        int seat = idx;
+        int expected = parking;
+        registry.schedule(() -> actor.tell(() -> expire(seat, expected)), grace);
+    }
+
+    private void expire(int idx, int parking) {
+        lock.lock();
+        try {
+            if (!parked[idx] || parkings[idx] != parking) return;
+        } finally {
+            lock.unlock();
+        }
+        metrics.seatExpired();
+        Log.info("Room {}: {} did not come back", id, idx == 0 ? Mark.X : Mark.O);
+        leaveSeat(idx);
+    }
+
+    private void leave(PlayerConnection player) {
+        int idx;
+        GameRoom forward;
+        lock.lock();
+        try {
+            idx = seatOf(player);
+            forward = movedTo;
+        } finally {
+            lock.unlock();
+        }
+        if (idx >= 0) {
+            leaveSeat(idx);
+        } else if (forward != null) {
+            forward.playerLeft(player);
+        }
+    }
+
+    /**
+     * Gives a seat up for good. A parked seat whose opponent leaves is given up along with it,
+     * as there is no game left to resume.
+     */
+    private void leaveSeat(int idx) {
+        boolean otherParked;
+        lock.lock();
+        try {
+            if (hasLeft[idx]) return;
+            hasLeft[idx] = true;
+            parked[idx] = false;
+            otherParked = parked[1 - idx];
+        } finally {
+            lock.unlock();
+        }
+        if (game != null) {
+            // Once over, the game has reported already; until then, leaving forfeits it.
+            game.over(idx == 0 ? Mark.O : Mark.X);
+        }
+        GameMsg exitMsg = new GameMsg(GameMsg.MsgType.EXIT);
+        exitMsg.setMark(idx == 0 ? Mark.X : Mark.O);
+        if (registry.leave(this)) {
+            Log.info("Room {} has no player! Closed.", id);
+            spectators.publish(exitMsg);
+            return;
+        }
+        broadcast(exitMsg);
+        if (otherParked) {
+            leaveSeat(1 - idx);
+        }
+    }
+
+    /**
+     * Gets the id of the room a resume token was issued by.
+     * @param token The resume token.
+     * @return The id of the room, or -1 if the token is malformed.
+     */
+    public static int roomOf(String token) {
+        int dash = token == null ? -1 : token.indexOf('-');
+        if (dash <= 0) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(token.substring(0, dash));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Builds a SNAPSHOT of the game on the actor of the room, and hands it to the given action there.
+     * Used to collapse the outbound queue of a client that could not keep up: the client drops what it has queued,
+     * then asks for the SNAPSHOT. Whatever is broadcast in between is queued before the SNAPSHOT, which includes it,
+     * and whatever is broadcast after is queued after it.
+     * @param send The action queueing the SNAPSHOT for the client.
+     */
+    public void snapshot(Consumer<GameMsg> send) {
+        actor.tell(() -> send.accept(snapshotMsg()));
+    }
+
+    /**
+     * Adds a spectator to the room, and queues the SNAPSHOT frame of the current game for it, on the actor of the room.
+     * @param spectator The Spectator starting to watch.
+     */
+    public void watch(Spectator spectator) {
+        actor.tell(() -> {
+            spectators.add(spectator);
+            ByteBuffer frame = spectators.snapshotFrame(spectator.getVersion(), this::snapshotMsg);
+            if (frame != null)
+                spectator.offerFrame(frame);
+        });
+    }
+
+    /**
+     * Removes a spectator from the room, on the actor of the room. Removing it more than once has no further effect.
+     * @param spectator The Spectator leaving.
+     */
+    public void unwatch(Spectator spectator) {
+        actor.tell(() -> spectators.remove(spectator));
+    }
+
+    /**
+     * Hands the SNAPSHOT frame of the current game, for the given protocol version, to the given action on the actor of the room.
+     * Used by a spectator that fell behind to skip what it missed, the same way as snapshot; the frame is shared
+     * by every spectator asking for it until the next change.
+     * @param version The protocol version of the spectator.
+     * @param send The action queueing the frame for the spectator.
+     */
+    public void snapshotFrame(int version, Consumer<ByteBuffer> send) {
+        actor.tell(() -> {
+            ByteBuffer frame = spectators.snapshotFrame(version, this::snapshotMsg);
+            if (frame != null)
+                send.accept(frame);
+        });
+    }
+
+    /**
+     * Gets the number of spectators watching the room.
+     * @return The number of spectators.
+     */
+    public int getSpectatorCount() {
+        return spectators.size();
+    }
+
+    /**
+     * Releases one seat of the room. Called on the actor of the room.
+     * @return true if the room is now empty or can no longer be completed, false otherwise.
+     */
+    boolean release() {
+        lock.lock();
+        try {
+            controller.dePlayerLeft();
+            return controller.getPlayerLeft() <= 0 || seated < 2;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the room id.
+     * @return The id of the room.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Getter for the shard the room runs on.
+     * @return The index of the shard in the GameShards of the registry.
+     */
+    public int getShard() {
+        return shard;
+    }
+
+    /**
+     * Getter for the Controller of this room. The Controller is only to be used on the actor of the room.
+     * @return The Controller managing this room's game.
+     */
+    public Controller getController() {
+        return controller;
+    }
+
+    private void dispatch(PlayerConnection from, GameMsg msg, long decodedAt) {
+        GameRoom forward = null;
+        lock.lock();
+        try {
+            if (seatOf(from) < 0) {
+                // Not seated here, replaced by a connection that resumed the seat, or moved by the Matchmaker.
+                forward = movedTo;
+                if (forward == null) {
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (forward != null) {
+            // Sent before the player learnt its new seat, so marked with the seat it had here.
+            msg.setMark(from.getMark());
+            forward.handle(from, msg, decodedAt);
+            return;
+        }
+        // A player only ever acts for its own seat, whatever mark the client put in the message.
+        msg.setMark(from.getMark());
+        GameMsg reply = null;
+        switch(msg.getType()) {
+            case MOVE:
+                reply = parseMove(msg);
+                if (reply == null)
+                    break;
+                GameMsg winnerMsg = parseWinner();
+                journal.commit(journaled);
+                broadcast(reply);
+                if (winnerMsg != null)
+                    broadcast(winnerMsg);
+                metrics.broadcastDone(decodedAt);
+                if (winnerMsg != null && game != null) {
+                    leaveSeat(0);
+                    leaveSeat(1);
+                }
+                break;
+            case SETNAME:
+                reply = parseSetName(msg);
+                if(reply != null) {
+                    from.sendMsg(reply);
+                    if (!isFull())
+                        registry.named(this, reply.getMessage());
+                }
+                if (resumed && controller.hasNames()) {
+                    resumed = false;
+                    broadcast(snapshotMsg());
+                }
+                break;
+            case GAME_START:
+                if (game == null && controller.restartGame(msg.getMark())) {
+                    journal.commit(journal.gameStarted(id, controller.getBm()));
+                    broadcast(scoreMsg());
+                    metrics.broadcastDone(decodedAt);
+                }
+                break;
+            case EXIT:
+                leave(from);
+                break;
+        }
+    }
+
+    private int seatOf(PlayerConnection player) {
+        for (int i = 0; i < seated; i++) {
+            if (players[i] == player)
+                return i;
+        }
+        return -1;
+    }
+
+    private GameMsg snapshotMsg() {
+        BoardModel bm = controller.getBm();
+        Mark[][] board = bm.getBoard();
+        StringBuilder sb = new StringBuilder(bm.getRows() * bm.getCols() + 16);
+        for (int i = 0; i < bm.getRows(); i++) {
+            for (int j = 0; j < bm.getCols(); j++) {
+                Mark m = board[i][j];
+                sb.append(m == Mark.X ? 'X' : m == Mark.O ? 'O' : '.');
+            }
+        }
+        sb.append(' ').append(bm.getPlayerWins(0)).append(' ').append(bm.getPlayerWins(1)).append(' ').append(bm.getDraws());
+        Mark winner = bm.checkWinner();
+        Mark result = winner != Mark.EMPTY ? winner : bm.isBoardFull() ? Mark.EMPTY : null;
+        Mark turn = result == null ? controller.getTurn() : null;
+        sb.append(' ').append(turn == Mark.X ? 'X' : turn == Mark.O ? 'O' : '-');
+        return new GameMsg(GameMsg.MsgType.SNAPSHOT, bm.getRows(), bm.getCols(), result, sb.toString());
+    }
+
+    private GameMsg scoreMsg() {
+        GameMsg startMsg = new GameMsg(GameMsg.MsgType.GAME_START);
+        startMsg.setCol(controller.getBm().getPlayerWins(0));
+        startMsg.setRow(controller.getBm().getPlayerWins(1));
+        startMsg.setMessage(Integer.toString(controller.getBm().getDraws()));
+        return startMsg;
+    }
+
+    private GameMsg parseMove(GameMsg msg) {
+        int col = msg.getCol();
+        int row = msg.getRow();
+        Mark mark = msg.getMark();
+        if (controller.onCellClick(row,col,mark)) {
+            journaled = journal.move(id, row, col, mark);
+            // Clients have always read the broadcast MOVE with row and col swapped, keep it that way.
+            GameMsg reply = new GameMsg(GameMsg.MsgType.MOVE, col, row, mark, "");
+            return reply;
+        }
+        metrics.moveRejected();
+        if (Log.isDebugEnabled())
+            Log.debug("Room {}: Invalid move! Reject operation.", id);
+        return null;
+    }
+
+    private GameMsg parseSetName(GameMsg msg) {
+        String name = msg.getMessage();
+        Mark mark = msg.getMark();
+        if (name == null || name.isEmpty()){
+            if (Log.isDebugEnabled())
+                Log.debug("Room {}: Empty name input on {}", id, mark);
+            return null;
+        }
+        controller.inputName(mark);
+        names[mark == Mark.O ? 1 : 0] = name;
+        return new GameMsg(msg.getType(),0,0, mark,name);
+    }
+
+    private GameMsg parseWinner() {
+        GameMsg msg = new GameMsg(GameMsg.MsgType.GAME_OVER);
+        Mark winner = controller.checkWinner();
+        if (winner == null) return null;
+        journaled = journal.result(id, winner, controller.getBm());
+        registry.gameOver(names[0], names[1], winner);
+        if (game != null) {
+            game.over(winner);
+        }
+        msg.setMark(winner);
+        return msg;
+    }
+}
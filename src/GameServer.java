@@ -1,219 +1,398 @@
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.net.*;
 
 /**
  * GameServer class to handle multiple client connections and game state
- * for a two-player game.
- * The server listens for incoming connections, assigns player symbols,
- * and manages game state through a Controller instance.
+ * for many concurrent two-player games.
+ * The server listens for incoming connections over the Transport of its ServerConfig, pairs them into GameRooms
+ * through a RoomRegistry, and each room manages its own game state through its own Controller instance.
  */
 public class GameServer {
 
-    private static final int PORT = 8888;
-    private ArrayList<ClientHandler> clientHandlers = new ArrayList<>();
-    private Controller controller;
+    private final ServerConfig config;
+    private final RoomRegistry registry;
+    private final AtomicInteger connections = new AtomicInteger();
 
     /**
-     * Constructor to initialize the GameServer with a Controller instance.
-     * @param c The Controller instance to manage game logic.
+     * Constructor to initialize the GameServer with the default ServerConfig.
      */
-    public GameServer(Controller c) {
-        controller = c;
+    public GameServer() {
+        this(new ServerConfig());
+    }
+
+    /**
+     * Constructor to initialize the GameServer with the given ServerConfig.
+     * @param config The ServerConfig holding the server options.
+     */
+    public GameServer(ServerConfig config) {
+        this.config = config;
+        this.registry = new RoomRegistry(config);
     }
 
     /**
      * Starts the server to listen for incoming client connections.
-     * Accepts up to two clients and assigns them player symbols.
-     * When accepted, it creates a ClientHandler thread for each client to handle communication.
-     * Then starts the game when both players are connected.
+     * Keeps accepting clients for as long as the server runs.
+     * With the blocking transport, it runs a ClientHandler on a new platform or virtual thread
+     * for each accepted client to handle communication.
+     * With the NIO transport, connections are handed over to the NioServer event loops.
+     * Every connection joins a GameRoom, and the game of a room starts when both players are connected.
+     * Before the first client is accepted, the ServerMetrics are registered with JMX and served over HTTP when a
+     * metrics port is set, the rooms of the MoveJournal are recovered, the PerfectPlayTable is solved when the AI
+     * plays, and the Tournament of the ServerConfig, if any, is started.
      */
     public void start() {
+        config.applyLogging();
+        ServerMetrics metrics = registry.getMetrics();
+        metrics.registerMBean();
+        if (config.getMetricsPort() > 0) {
+            try {
+                metrics.startHttp(config.getMetricsPort());
+                metrics.serve("/leaderboard", new LeaderboardHandler(registry.getLeaderboard()));
+            } catch (IOException e) {
+                Log.error("Failed to serve metrics on port {}", config.getMetricsPort(), e);
+            }
+        }
+        NioServer nio = config.getTransport() == ServerConfig.Transport.NIO ? new NioServer(config, registry) : null;
+        if (config.getJournalDir() != null) {
+            try {
+                registry.recover(MoveJournal.open(Paths.get(config.getJournalDir()), config.getJournalSync()));
+            } catch (IOException e) {
+                Log.error("Failed to open the journal in {}, games are not recorded", config.getJournalDir(), e);
+            }
+        }
+        if (config.isAiOpponent() || config.getTournament() != null) {
+            PerfectPlayTable.get();
+        }
+        if (config.getTournament() != null) {
+            Tournament.simulated(registry, config.getTournament(), config.getEntrants(), config.getRounds(),
+                    System.nanoTime()).start();
+        }
+        if (config.isPinningReport()) {
+            new PinningMonitor().start(Duration.ofSeconds(30));
+        }
         try {
-            ServerSocket serverSocket = new ServerSocket(PORT);
-            System.out.println("Server started at "+PORT);
-            while (clientHandlers.size() < 2) {
-
+            if (nio != null) {
+                nio.start();
+                return;
+            }
+            ServerSocket serverSocket = new ServerSocket(config.getPort());
+            Log.info("Server started at {}", config.getPort());
+            while (true) {
                 Socket socket = serverSocket.accept();
-                ClientHandler handler = new ClientHandler(socket, clientHandlers.size());
-                clientHandlers.add(handler);
-                handler.start();
-
-                System.out.println("Player"+(clientHandlers.size())+" connected!");
-
-                if (clientHandlers.size() == 1) {
-                    clientHandlers.get(0).assignPlayer(Mark.X);
-                    GameMsg waitMsg = new GameMsg(GameMsg.MsgType.WAIT);
-                    waitMsg.setMessage("Waiting for second player...");
-                    handler.sendMsg(waitMsg);
-                }
-
-                else if (clientHandlers.size() == 2) {
-                    clientHandlers.get(1).assignPlayer(Mark.O);
-                    startGame();
-                };
+                int id = connections.incrementAndGet();
+                Threads.start("ClientHandler-" + id, new ClientHandler(socket, id), config.isVirtualThreads());
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.error("Server stopped", e);
         }
     }
 
-    private void broadcast(GameMsg msg) {
-        System.out.println("Server broadcast: "+msg.getType());
-        for (ClientHandler clientHandler: clientHandlers) {
-            clientHandler.sendMsg(msg);
-        }
+    /**
+     * Getter for the RoomRegistry of this server.
+     * @return The RoomRegistry holding all rooms.
+     */
+    public RoomRegistry getRegistry() {
+        return registry;
     }
 
     /**
      * Inner class to handle communication with a connected client.
-     * Each ClientHandler runs in its own thread.
+     * Each ClientHandler reads on its own platform or virtual thread, and records its traffic in the ServerMetrics.
+     * Messages sent to the client are only queued in a bounded OutboundQueue; a second thread, the writer,
+     * drains the queue and flushes everything it found at once, so the thread of the other player
+     * never blocks on this client's socket. When the queue is full, the OverflowPolicy of the ServerConfig
+     * either drops the connection or replaces the queued messages by a SNAPSHOT of the game.
+     * A spectator is not seated: it sends WATCH, and is then sent the frames its room shares with all its spectators,
+     * through a second queue. A spectator that falls behind skips to a SNAPSHOT frame, whatever the OverflowPolicy.
+     * A player resuming its seat sends RESUME instead of being seated, and takes the seat its token names back.
+     * A lost player connection parks its seat rather than leaving the game (see GameRoom.playerLost).
      */
-    class ClientHandler extends Thread {
+    class ClientHandler implements Runnable, PlayerConnection, Spectator {
+        private final ServerMetrics metrics = registry.getMetrics();
+        private final OutboundQueue<GameMsg> outbound = new OutboundQueue<>(config.getOutboundCapacity());
+        private final AtomicBoolean snapshotPending = new AtomicBoolean();
         private Socket socket;
-        private ObjectOutputStream out;
-        private ObjectInputStream in;
+        private MsgStream stream;
+        private OutboundQueue<ByteBuffer> frames;
+        private int version;
         private Mark playerSimbol;
-        private int playerIndex;
+        private int connectionId;
+        private volatile GameRoom room;
+        private volatile Thread writer;
+        private volatile boolean closed = false;
 
         /**
-         * Constructor to initialize the ClientHandler with a socket and player index.
+         * Constructor to initialize the ClientHandler with a socket and connection id.
+         * The streams are opened on the handler's own thread, so a slow client cannot block the accept loop.
          * @param socket The socket connected to the client.
-         * @param playerIndex The index of the player (0 or 1).
+         * @param connectionId The id of the connection, used for logging.
          */
-        public ClientHandler(Socket socket, int playerIndex) {
+        public ClientHandler(Socket socket, int connectionId) {
             this.socket = socket;
-            this.playerIndex = playerIndex;
-            try {
-                out = new ObjectOutputStream(socket.getOutputStream());
-                out.flush();
-                in = new ObjectInputStream(socket.getInputStream());
-            } catch (IOException e) {
-                System.out.println("Failed to initialize streams for player " + (playerIndex + 1));
-                e.printStackTrace();
-            }
+            this.connectionId = connectionId;
         }
 
         /**
-         * Assigns a player symbol to this client and notifies the client.
+         * Records the player symbol assigned to this client.
          * @param symbol The player symbol (Mark.X or Mark.O).
          */
-        public void assignPlayer(Mark symbol) {
+        @Override
+        public void setMark(Mark symbol) {
             this.playerSimbol = symbol;
-            GameMsg msg = new GameMsg(GameMsg.MsgType.PLAYER_ASSIGNED);
-            msg.setMark(symbol);
-            sendMsg(msg);
         }
 
         /**
-         * The main run method for the ClientHandler thread.
-         * Listens for incoming messages from the client and processes them accordingly.
-         * Handles MOVE, SETNAME, GAME_START, and EXIT message types.
-         * Broadcasts relevant messages to all connected clients.
-         * Or sends direct responses to the client as needed.
+         * Gets the player symbol assigned to this client.
+         * @return The Mark of the player.
+         */
+        @Override
+        public Mark getMark() {
+            return playerSimbol;
+        }
+
+        /**
+         * Records the room this client has been moved to by the Matchmaker.
+         * @param room The GameRoom the client is now seated in.
+         */
+        @Override
+        public void setRoom(GameRoom room) {
+            this.room = room;
+        }
+
+        /**
+         * The main run method of the ClientHandler.
+         * Performs the protocol handshake, starts the writer, joins a GameRoom, then listens for incoming messages
+         * from the client and hands them over to the room for processing.
          * Catches exceptions to handle client disconnections.
          */
         @Override
         public void run() {
-            try{
-                while (true) {
-                    GameMsg msg = (GameMsg) in.readObject();
-                    System.out.println("Server Received: " + msg.getType() + " From player "+msg.getMark());
-                    GameMsg reply = null;
-                    switch(msg.getType()) {
-                        case MOVE:
-                            reply = parseMove(msg);
-                            if(reply != null)
-                                broadcast(reply);
-                            GameMsg winnerMsg = parseWinner();
-                            if (winnerMsg != null)
-                                broadcast(winnerMsg);
-                            break;
-                        case SETNAME:
-                            reply = parseSetName(msg);
-                            if(reply != null)
-                                sendMsg(reply);
-                            break;
-                        case GAME_START:
-                            GameMsg startMsg = new GameMsg(GameMsg.MsgType.GAME_START);
-                            if (controller.restartGame(msg.getMark())) {
-                                startMsg.setCol(controller.getBm().getPlayerWins(0));
-                                startMsg.setRow(controller.getBm().getPlayerWins(1));
-                                startMsg.setMessage(Integer.toString(controller.getBm().getDraws()));
-                                broadcast(startMsg);
-                            }
-                            break;
-                        case EXIT:
-                            controller.dePlayerLeft();
-                            if (controller.getPlayerLeft() == 0){
-                                System.out.println("No player! EXIT.");
-                                System.exit(0);
-                            }
-                            GameMsg exitMsg = new GameMsg(GameMsg.MsgType.EXIT);
-                            Mark m = msg.getMark();
-                            exitMsg.setMark(m);
-                            broadcast(exitMsg);
-                            break;
+            metrics.connectionOpened();
+            try {
+                try {
+                    stream = Handshake.accept(socket, metrics.countBytesIn(socket.getInputStream()),
+                            metrics.countBytesOut(socket.getOutputStream()));
+                } catch (IOException e) {
+                    Log.warn("Failed to initialize streams for connection {}", connectionId, e);
+                    return;
+                }
+                if (stream.isSpectator()) {
+                    frames = new OutboundQueue<>(config.getOutboundCapacity());
+                    version = ((FramedMsgStream) stream).getVersion();
+                }
+                writer = Threads.start("ClientWriter-" + connectionId, this::writeLoop, config.isVirtualThreads());
+                if (frames != null) {
+                    watch();
+                    return;
+                }
+                if (stream.isResuming()) {
+                    if (!resume()) {
+                        return;
+                    }
+                } else {
+                    room = registry.join(this);
+                    Log.info("Connection{} joined room {} as {}", connectionId, room.getId(), playerSimbol);
+                }
+                try{
+                    while (true) {
+                        GameMsg msg = stream.read();
+                        long decodedAt = System.nanoTime();
+                        metrics.messageReceived(msg.getType());
+                        room.handle(this, msg, decodedAt);
                     }
+                } catch (Exception e) {
+                    Log.info("Connection{} lost connection!", connectionId);
+                    room.playerLost(this);
+                }
+            } finally {
+                closed = true;
+                LockSupport.unpark(writer);
+                metrics.connectionClosed();
+            }
+        }
+
+        /**
+         * Serves a player resuming its seat: waits for RESUME, and hands the token over to the registry.
+         * A player asking for a room that does not exist is sent EXIT, and is then ignored until it leaves.
+         * @return true if the player is back in its room, false if the connection is done.
+         */
+        private boolean resume() {
+            try {
+                GameMsg msg;
+                do {
+                    msg = stream.read();
+                    metrics.messageReceived(msg.getType());
+                } while (msg.getType() != GameMsg.MsgType.RESUME);
+                room = registry.resume(this, msg.getMessage());
+                if (room != null) {
+                    Log.info("Connection{} resumes its seat in room {}", connectionId, room.getId());
+                    return true;
+                }
+                sendMsg(new GameMsg(GameMsg.MsgType.EXIT, 0, 0, null, "No such game"));
+                while (true) {
+                    metrics.messageReceived(stream.read().getType());
+                }
+            } catch (Exception e) {
+                Log.info("Connection{} lost connection!", connectionId);
+                return false;
+            }
+        }
+
+        /**
+         * Serves a spectator: waits for WATCH, starts watching the room it names, then ignores what the client sends
+         * until it leaves. A spectator asking for a room that does not exist is sent EXIT.
+         */
+        private void watch() {
+            try {
+                GameMsg msg;
+                do {
+                    msg = stream.read();
+                    metrics.messageReceived(msg.getType());
+                } while (msg.getType() != GameMsg.MsgType.WATCH);
+                room = registry.watch(this, msg.getRow());
+                if (room == null) {
+                    sendMsg(new GameMsg(GameMsg.MsgType.EXIT, 0, 0, null, "No such game"));
+                } else {
+                    Log.info("Connection{} watches room {} (protocol v{})", connectionId, room.getId(), version);
+                }
+                while (true) {
+                    metrics.messageReceived(stream.read().getType());
                 }
             } catch (Exception e) {
-                System.out.println("Player"+(playerIndex+1)+"lost connection!");
+                Log.info("Connection{} lost connection!", connectionId);
+                if (room != null) {
+                    room.unwatch(this);
+                }
             }
         }
 
         /**
-         * Sends a GameMsg to the connected client.
+         * Gets the protocol version negotiated with the client.
+         * @return The protocol version.
+         */
+        @Override
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * Queues a frame shared with the other spectators of the room and wakes the writer up. Never blocks.
+         * When the queue is full the frame is skipped, and the writer replaces what is queued by a SNAPSHOT frame.
+         * @param frame The read-only frame to send.
+         * @return true if queued, false if skipped.
+         */
+        @Override
+        public boolean offerFrame(ByteBuffer frame) {
+            if (closed) return true;
+            boolean queued = frames.offer(frame);
+            if (queued) {
+                metrics.queued(frames.size());
+            } else {
+                snapshotPending.set(true);
+            }
+            LockSupport.unpark(writer);
+            return queued;
+        }
+
+        /**
+         * Queues a GameMsg for the client and wakes the writer up. Never blocks.
+         * Messages sent once the connection is closed are dropped.
          * @param msg The GameMsg to send.
          */
+        @Override
         public void sendMsg(GameMsg msg) {
-            try {
-                out.writeObject(msg);
-                out.flush();
-                System.out.println("Server sent: "+msg.getType()+" to "+playerSimbol);
-            } catch (IOException e) {
-                e.printStackTrace();
+            if (closed) return;
+            if (outbound.offer(msg)) {
+                metrics.queued(outbound.size());
+                metrics.messageSent(msg.getType());
+                Log.debug("Server sent: {} to {}", msg.getType(), playerSimbol);
+            } else {
+                overflow();
             }
+            LockSupport.unpark(writer);
         }
 
-        private GameMsg parseMove(GameMsg msg) {
-            int col = msg.getCol();
-            int row = msg.getRow();
-            Mark mark = msg.getMark();
-            if (controller.onCellClick(col,row,mark)) {
-                GameMsg reply = new GameMsg(GameMsg.MsgType.MOVE, col, row, mark, "");
-                return reply;
+        private void overflow() {
+            ServerConfig.OverflowPolicy policy = config.getOverflowPolicy();
+            metrics.overflow(policy);
+            if (policy == ServerConfig.OverflowPolicy.SNAPSHOT && room != null) {
+                snapshotPending.set(true);
+                return;
             }
-            System.out.println("Invalid move! Reject operation.");
-            return null;
+            Log.warn("Connection{} cannot keep up, dropped!", connectionId);
+            closeSocket();
         }
 
-        private GameMsg parseSetName(GameMsg msg) {
-            String name = msg.getMessage();
-            Mark mark = msg.getMark();
-            if (name.isEmpty()){
-                System.out.println("Empty name input on "+mark);
-                return null;
+        /**
+         * Drains the outbound queue until the connection is closed: writes every queued message,
+         * flushes them at once, and parks when there is nothing left to write.
+         * A pending SNAPSHOT first replaces whatever is queued: the queue is dropped, and the room is asked
+         * to queue the SNAPSHOT from its actor.
+         */
+        private void writeLoop() {
+            try {
+                while (!closed) {
+                    if (snapshotPending.getAndSet(false)) {
+                        metrics.dequeued(discard());
+                        if (frames != null) {
+                            metrics.spectatorResync();
+                            room.snapshotFrame(version, this::offerFrame);
+                        } else {
+                            room.snapshot(this::sendMsg);
+                        }
+                    }
+                    int n = 0;
+                    GameMsg msg;
+                    while ((msg = outbound.poll()) != null) {
+                        stream.writeBuffered(msg);
+                        n++;
+                    }
+                    ByteBuffer frame;
+                    while (frames != null && (frame = frames.poll()) != null) {
+                        stream.writeFrame(frame);
+                        n++;
+                    }
+                    if (n == 0) {
+                        LockSupport.park(this);
+                        continue;
+                    }
+                    metrics.dequeued(n);
+                    long start = System.nanoTime();
+                    stream.flush();
+                    long elapsed = System.nanoTime() - start;
+                    if (elapsed >= ServerMetrics.WRITE_STALL_NANOS) {
+                        metrics.writeStall(elapsed);
+                    }
+                }
+            } catch (IOException e) {
+                closeSocket();
+            } finally {
+                metrics.dequeued(discard());
             }
-            controller.inputName(mark);
-            return new GameMsg(msg.getType(),0,0, mark,name);
         }
 
-        private GameMsg parseWinner() {
-            GameMsg msg = new GameMsg(GameMsg.MsgType.GAME_OVER);
-            Mark winner = controller.checkWinner();
-            if (winner == null) return null;
-            msg.setMark(winner);
-            return msg;
+        private int discard() {
+            int n = 0;
+            while (outbound.poll() != null) {
+                n++;
+            }
+            while (frames != null && frames.poll() != null) {
+                n++;
+            }
+            return n;
         }
-    }
 
-    private void startGame() {
-        GameMsg startMsg = new GameMsg(GameMsg.MsgType.GAME_START);
-        startMsg.setCol(controller.getBm().getPlayerWins(0));
-        startMsg.setRow(controller.getBm().getPlayerWins(1));
-        startMsg.setMessage(Integer.toString(controller.getBm().getDraws()));
-        broadcast(startMsg);
+        private void closeSocket() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,164 @@
+/**
+ * GameShards.java
+ */
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GameShards partitions the games of the server over a fixed set of shards, each an Executor the GameActors
+ * of its games run on. A new game goes to the shard its id hashes to, or to the least loaded shard when that one
+ * is noticeably busier, and never moves. A single shard backed by a worker pool is the POOL scheduler.
+ */
+public class GameShards {
+
+    /**
+     * How many more games than the least loaded shard, as a fraction of its games, a shard may host
+     * before new games that hash to it are placed elsewhere.
+     */
+    public static final double IMBALANCE = 0.25;
+
+    /**
+     * How many games a shard may host above the imbalance before new games are placed elsewhere,
+     * so a handful of games is never spread out for nothing.
+     */
+    public static final int SLACK = 2;
+
+    private final Executor[] shards;
+    private final Executor[] counted;
+    private final AtomicIntegerArray games;
+    private final LongAdder[] tasks;
+    private final LongAdder rebalanced = new LongAdder();
+
+    /**
+     * Constructor for GameShards.
+     * @param shards The Executors of the shards, at least one.
+     */
+    public GameShards(Executor[] shards) {
+        this.shards = shards.clone();
+        this.counted = new Executor[shards.length];
+        this.games = new AtomicIntegerArray(shards.length);
+        this.tasks = new LongAdder[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            LongAdder count = tasks[i] = new LongAdder();
+            Executor shard = shards[i];
+            counted[i] = task -> {
+                count.increment();
+                shard.execute(task);
+            };
+        }
+    }
+
+    /**
+     * Creates one shard backed by a pool of game workers shared by every game (see GameActor.newWorkerPool).
+     * @param workers The number of game workers.
+     * @return The GameShards.
+     */
+    public static GameShards pool(int workers) {
+        return new GameShards(new Executor[] {GameActor.newWorkerPool(workers)});
+    }
+
+    /**
+     * Creates the given number of shards, each a single daemon thread named GameShard-n.
+     * @param n The number of shards.
+     * @return The GameShards.
+     */
+    public static GameShards threads(int n) {
+        Executor[] shards = new Executor[Math.max(1, n)];
+        for (int i = 0; i < shards.length; i++) {
+            String name = "GameShard-" + i;
+            shards[i] = Executors.newSingleThreadExecutor(task -> {
+                Thread t = new Thread(task, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return new GameShards(shards);
+    }
+
+    /**
+     * Picks the shard of a new game, and counts the game on it until it is released: the shard the id hashes to,
+     * unless it already has noticeably more games than the least loaded one, which then takes the game instead.
+     * @param gameId The id of the game.
+     * @return The index of the shard.
+     */
+    public int place(int gameId) {
+        int home = Math.floorMod(gameId * 0x9E3779B9, shards.length);
+        int least = home;
+        for (int i = 0; i < shards.length; i++) {
+            if (games.get(i) < games.get(least)) {
+                least = i;
+            }
+        }
+        int shard = home;
+        if (games.get(home) > games.get(least) * (1 + IMBALANCE) + SLACK) {
+            shard = least;
+            rebalanced.increment();
+        }
+        games.incrementAndGet(shard);
+        return shard;
+    }
+
+    /**
+     * Releases a game placed on a shard, once it is over.
+     * @param shard The index of the shard.
+     */
+    public void release(int shard) {
+        games.decrementAndGet(shard);
+    }
+
+    /**
+     * Gets the Executor the GameActors of a shard run on, counting every run.
+     * @param shard The index of the shard.
+     * @return The Executor of the shard.
+     */
+    public Executor executor(int shard) {
+        return counted[shard];
+    }
+
+    /**
+     * Gets the Executor backing a shard, as given to the constructor, so a transport can tell
+     * whether it is one of its own event loops.
+     * @param shard The index of the shard.
+     * @return The Executor backing the shard.
+     */
+    public Executor get(int shard) {
+        return shards[shard];
+    }
+
+    /**
+     * Gets the number of shards.
+     * @return The number of shards.
+     */
+    public int size() {
+        return shards.length;
+    }
+
+    /**
+     * Gets the number of games a shard hosts.
+     * @param shard The index of the shard.
+     * @return The number of games.
+     */
+    public int getGames(int shard) {
+        return games.get(shard);
+    }
+
+    /**
+     * Gets the number of actor runs a shard has executed.
+     * @param shard The index of the shard.
+     * @return The number of runs.
+     */
+    public long getTasks(int shard) {
+        return tasks[shard].sum();
+    }
+
+    /**
+     * Gets the number of new games placed away from the shard they hash to.
+     * @return The number of rebalanced games.
+     */
+    public long getRebalanced() {
+        return rebalanced.sum();
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * GameView.java
+ */
+
+/**
+ * GameView is what a Client shows the game on. Client only talks to its view through this interface,
+ * so the Swing TicTacToeFrame, a HeadlessView or a CallbackView can be plugged in,
+ * and clients without a window never load any AWT or Swing class.
+ * The view is called on the listener thread of the Client.
+ */
+public interface GameView {
+
+    /**
+     * Links the view to the Client it shows the game of, so the view can send the player's input.
+     * @param c The Client of the view.
+     */
+    void setClient(Client c);
+
+    /**
+     * Shows the mark (X or O) assigned to the player.
+     * @param mark The mark of the player.
+     */
+    void setMark(Mark mark);
+
+    /**
+     * Shows a board of the given size.
+     * @param rows The number of rows of the board.
+     * @param cols The number of columns of the board.
+     */
+    void setBoardSize(int rows, int cols);
+
+    /**
+     * Shows the name the server accepted for the player.
+     * @param name The name of the player.
+     */
+    void parseName(String name);
+
+    /**
+     * Shows a new game: clears the board.
+     */
+    void resetFrame();
+
+    /**
+     * Shows the score of a player, or the number of draws.
+     * @param winner The mark of the player (X or O), or EMPTY for draws.
+     * @param score The number of wins or draws.
+     */
+    void drawScore(Mark winner, int score);
+
+    /**
+     * Shows a mark placed on the board.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param m The mark placed (X or O).
+     */
+    void drawCell(int row, int col, Mark m);
+
+    /**
+     * Shows the end of a game. The view decides whether the player restarts or exits, through its Client.
+     * @param winner The mark of the winner (X or O), or EMPTY for a draw.
+     */
+    void drawWinner(Mark winner);
+
+    /**
+     * Shows that the opponent has left the game.
+     */
+    void drawExit();
+
+    /**
+     * Hides the view. (Used when exiting the game.)
+     */
+    void invisible();
+}
@@ -0,0 +1,227 @@
+/**
+ * Handshake.java
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Handshake negotiates the wire protocol version when a client connects: the client opens with a 4-byte hello,
+ * the magic "TTT" and the highest version it speaks, and the server answers with the version both sides will use.
+ * Clients from before the handshake open with the Java serialization stream magic instead, and are served as before.
+ */
+public class Handshake {
+
+    /**
+     * Size of a hello, in bytes.
+     */
+    public static final int HELLO_SIZE = 4;
+
+    /**
+     * Protocol version exchanging Java serialized GameMsg payloads in length-prefixed frames (see MsgCodec).
+     */
+    public static final int SERIAL_VERSION = 1;
+
+    /**
+     * Protocol version exchanging compact binary frames (see BinaryCodec).
+     */
+    public static final int BINARY_VERSION = 2;
+
+    /**
+     * Highest protocol version spoken by this build.
+     */
+    public static final int MAX_VERSION = BINARY_VERSION;
+
+    /**
+     * Bit set in the version byte of the hellos of a spectator.
+     */
+    public static final int SPECTATOR_FLAG = 0x80;
+
+    /**
+     * Bit set in the version byte of the hellos of a player resuming its seat.
+     */
+    public static final int RESUME_FLAG = 0x40;
+
+    /**
+     * Every flag bit of the version byte.
+     */
+    public static final int FLAGS = SPECTATOR_FLAG | RESUME_FLAG;
+
+    private static final byte[] MAGIC = {'T', 'T', 'T'};
+
+    private Handshake() {
+    }
+
+    /**
+     * Checks if the first two bytes of a connection are the Java serialization stream magic.
+     * @param b0 The first byte.
+     * @param b1 The second byte.
+     * @return true if the peer is a legacy client speaking Java serialization, false otherwise.
+     */
+    public static boolean isLegacy(int b0, int b1) {
+        return (b0 & 0xFF) == 0xAC && (b1 & 0xFF) == 0xED;
+    }
+
+    /**
+     * Gets the flags of a hello the server echoes: SPECTATOR_FLAG, or else RESUME_FLAG, as a spectator has no seat to resume.
+     * @param offered The version byte of the hello of the client.
+     * @return The flags of the client.
+     */
+    public static int flags(int offered) {
+        return (offered & SPECTATOR_FLAG) != 0 ? SPECTATOR_FLAG : offered & RESUME_FLAG;
+    }
+
+    /**
+     * Picks the version to use for a client offering the given version.
+     * @param offered The highest version the client speaks.
+     * @return The version both sides will use.
+     * @throws IOException if the client does not speak any supported version.
+     */
+    public static int negotiate(int offered) throws IOException {
+        if (offered < SERIAL_VERSION) {
+            throw new IOException("Unsupported protocol version: " + offered);
+        }
+        return Math.min(offered, MAX_VERSION);
+    }
+
+    /**
+     * Builds a hello for the given version.
+     * @param version The protocol version.
+     * @return A buffer holding the hello, ready to be read from.
+     */
+    public static ByteBuffer hello(int version) {
+        ByteBuffer buf = ByteBuffer.allocate(HELLO_SIZE);
+        buf.put(MAGIC).put((byte) version).flip();
+        return buf;
+    }
+
+    /**
+     * Parses a hello from the buffer.
+     * @param buf The buffer to read from, holding at least HELLO_SIZE bytes.
+     * @return The version carried by the hello.
+     * @throws IOException if the bytes are not a hello.
+     */
+    public static int parseHello(ByteBuffer buf) throws IOException {
+        for (byte b : MAGIC) {
+            if (buf.get() != b) {
+                throw new IOException("Invalid handshake");
+            }
+        }
+        return buf.get() & 0xFF;
+    }
+
+    /**
+     * Performs the client side of the handshake on a blocking socket.
+     * @param socket The socket connected to the server.
+     * @return A MsgStream speaking the negotiated version.
+     * @throws IOException if the handshake fails.
+     */
+    public static MsgStream connect(Socket socket) throws IOException {
+        return connect(socket, MAX_VERSION);
+    }
+
+    /**
+     * Performs the client side of the handshake on a blocking socket, offering the given version.
+     * @param socket The socket connected to the server.
+     * @param offered The highest version the client offers.
+     * @return A MsgStream speaking the negotiated version.
+     * @throws IOException if the handshake fails.
+     */
+    public static MsgStream connect(Socket socket, int offered) throws IOException {
+        return open(socket, offered);
+    }
+
+    /**
+     * Performs the client side of the handshake on a blocking socket as a spectator, and asks to watch a room.
+     * @param socket The socket connected to the server.
+     * @param roomId The id of the room to watch, or 0 for any game in play.
+     * @return A MsgStream speaking the negotiated version, on which the SNAPSHOT of the game comes first.
+     * @throws IOException if the handshake fails.
+     */
+    public static MsgStream watch(Socket socket, int roomId) throws IOException {
+        MsgStream stream = open(socket, MAX_VERSION | SPECTATOR_FLAG);
+        stream.write(new GameMsg(GameMsg.MsgType.WATCH, roomId, 0, null, ""));
+        return stream;
+    }
+
+    /**
+     * Performs the client side of the handshake on a blocking socket as a player resuming its seat, and sends its token.
+     * @param socket The socket connected to the server.
+     * @param token The resume token the player was given in PLAYER_ASSIGNED.
+     * @return A MsgStream speaking the negotiated version, on which the SNAPSHOT of the game comes first.
+     * @throws IOException if the handshake fails.
+     */
+    public static MsgStream resume(Socket socket, String token) throws IOException {
+        MsgStream stream = open(socket, MAX_VERSION | RESUME_FLAG);
+        stream.write(new GameMsg(GameMsg.MsgType.RESUME, 0, 0, null, token));
+        return stream;
+    }
+
+    private static MsgStream open(Socket socket, int offered) throws IOException {
+        socket.setTcpNoDelay(true);
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+        out.write(hello(offered).array());
+        out.flush();
+        byte[] reply = in.readNBytes(HELLO_SIZE);
+        if (reply.length < HELLO_SIZE) {
+            throw new IOException("Connection closed during handshake");
+        }
+        int version = parseHello(ByteBuffer.wrap(reply));
+        int flags = version & FLAGS;
+        version &= ~FLAGS;
+        if (version < SERIAL_VERSION || version > (offered & ~FLAGS) || flags != (offered & FLAGS)) {
+            throw new IOException("Server chose unsupported version: " + version);
+        }
+        return new FramedMsgStream(in, out, version, (flags & SPECTATOR_FLAG) != 0, (flags & RESUME_FLAG) != 0);
+    }
+
+    /**
+     * Performs the server side of the handshake on a blocking socket.
+     * Legacy clients are detected by their first two bytes and get an ObjectMsgStream.
+     * The stream of a spectator, or of a player resuming its seat, is marked as such.
+     * @param socket The socket connected to the client.
+     * @return A MsgStream speaking the protocol of the client.
+     * @throws IOException if the handshake fails.
+     */
+    public static MsgStream accept(Socket socket) throws IOException {
+        return accept(socket, socket.getInputStream(), socket.getOutputStream());
+    }
+
+    /**
+     * Performs the server side of the handshake on a blocking socket, over the given raw streams of the socket,
+     * for example streams counting the bytes that go through them.
+     * @param socket The socket connected to the client.
+     * @param rawIn The unbuffered input stream to read from.
+     * @param rawOut The unbuffered output stream to write to.
+     * @return A MsgStream speaking the protocol of the client.
+     * @throws IOException if the handshake fails.
+     */
+    public static MsgStream accept(Socket socket, InputStream rawIn, OutputStream rawOut) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(rawIn);
+        OutputStream out = new BufferedOutputStream(rawOut);
+        in.mark(HELLO_SIZE);
+        int b0 = in.read();
+        int b1 = in.read();
+        in.reset();
+        if (isLegacy(b0, b1)) {
+            return new ObjectMsgStream(in, out);
+        }
+        socket.setTcpNoDelay(true);
+        byte[] hello = in.readNBytes(HELLO_SIZE);
+        if (hello.length < HELLO_SIZE) {
+            throw new IOException("Connection closed during handshake");
+        }
+        int offered = parseHello(ByteBuffer.wrap(hello));
+        int flags = flags(offered);
+        int version = negotiate(offered & ~FLAGS);
+        out.write(hello(version | flags).array());
+        out.flush();
+        return new FramedMsgStream(in, out, version, (flags & SPECTATOR_FLAG) != 0, (flags & RESUME_FLAG) != 0);
+    }
+}
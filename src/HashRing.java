@@ -0,0 +1,129 @@
+/**
+ * HashRing.java
+ */
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * HashRing maps keys, such as the ids of the games, onto the nodes of a cluster by consistent hashing.
+ * It is the same in every process given the same list of nodes, so the router and the nodes agree
+ * on who owns a game without talking to each other.
+ */
+public class HashRing {
+
+    /**
+     * Number of positions of every node on the ring.
+     */
+    public static final int POINTS = 128;
+
+    private final List<InetSocketAddress> nodes;
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+
+    /**
+     * Constructor for HashRing.
+     * @param nodes The addresses of the nodes, at least one, in the same order in every process of the cluster.
+     */
+    public HashRing(List<InetSocketAddress> nodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A cluster needs at least one node");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int point = 0; point < POINTS; point++) {
+                ring.put(mix(mix(node + 1) + point), node);
+            }
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of nodes in the form host:port, for example localhost:9001,localhost:9002.
+     * @param spec The list of nodes.
+     * @return The HashRing of these nodes.
+     */
+    public static HashRing parse(String spec) {
+        List<InetSocketAddress> nodes = new ArrayList<>();
+        for (String node : spec.split(",")) {
+            node = node.trim();
+            if (node.isEmpty()) continue;
+            int colon = node.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Node is not host:port: " + node);
+            }
+            nodes.add(InetSocketAddress.createUnresolved(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1))));
+        }
+        return new HashRing(nodes);
+    }
+
+    /**
+     * Gets the node owning a key.
+     * @param key The key, such as the id of a game.
+     * @return The index of the node.
+     */
+    public int owner(long key) {
+        return next(mix(key));
+    }
+
+    /**
+     * Gets the node after the given one on the ring, clockwise from the key, to fail over to when a node is down.
+     * @param key The key.
+     * @param skip The number of distinct nodes to skip, 0 for the owner itself.
+     * @return The index of the node, wrapping around once every node has been skipped.
+     */
+    public int successor(long key, int skip) {
+        skip %= nodes.size();
+        long hash = mix(key);
+        int node = next(hash);
+        boolean[] seen = new boolean[nodes.size()];
+        seen[node] = true;
+        while (skip > 0) {
+            Map.Entry<Long, Integer> entry = ring.higherEntry(hash);
+            if (entry == null) {
+                entry = ring.firstEntry();
+            }
+            hash = entry.getKey();
+            node = entry.getValue();
+            if (!seen[node]) {
+                seen[node] = true;
+                skip--;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Gets the address of a node.
+     * @param node The index of the node.
+     * @return The address of the node, unresolved.
+     */
+    public InetSocketAddress address(int node) {
+        return nodes.get(node);
+    }
+
+    /**
+     * Gets the number of nodes.
+     * @return The number of nodes.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    private int next(long hash) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash);
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    /**
+     * Scrambles a key into a position on the ring (the finalizer of SplitMix64),
+     * so consecutive game ids land far apart.
+     */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+}
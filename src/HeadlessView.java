@@ -0,0 +1,92 @@
+/**
+ * HeadlessView.java
+ */
+
+/**
+ * HeadlessView is a GameView that shows nothing. It lets a Client run without any window,
+ * for bots and tests that drive the Client themselves.
+ * A game that ends on a HeadlessView waits until the owner of the Client sends a restart or an exit.
+ */
+public class HeadlessView implements GameView {
+
+    /**
+     * Ignores the Client of the view.
+     * @param c The Client of the view.
+     */
+    @Override
+    public void setClient(Client c) {
+    }
+
+    /**
+     * Ignores the mark of the player.
+     * @param mark The mark of the player.
+     */
+    @Override
+    public void setMark(Mark mark) {
+    }
+
+    /**
+     * Ignores the size of the board.
+     * @param rows The number of rows of the board.
+     * @param cols The number of columns of the board.
+     */
+    @Override
+    public void setBoardSize(int rows, int cols) {
+    }
+
+    /**
+     * Ignores the name of the player.
+     * @param name The name of the player.
+     */
+    @Override
+    public void parseName(String name) {
+    }
+
+    /**
+     * Ignores a new game.
+     */
+    @Override
+    public void resetFrame() {
+    }
+
+    /**
+     * Ignores a score.
+     * @param winner The mark of the player (X or O), or EMPTY for draws.
+     * @param score The number of wins or draws.
+     */
+    @Override
+    public void drawScore(Mark winner, int score) {
+    }
+
+    /**
+     * Ignores a placed mark.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param m The mark placed (X or O).
+     */
+    @Override
+    public void drawCell(int row, int col, Mark m) {
+    }
+
+    /**
+     * Ignores the end of a game.
+     * @param winner The mark of the winner (X or O), or EMPTY for a draw.
+     */
+    @Override
+    public void drawWinner(Mark winner) {
+    }
+
+    /**
+     * Ignores the opponent leaving.
+     */
+    @Override
+    public void drawExit() {
+    }
+
+    /**
+     * Does nothing, there is nothing to hide.
+     */
+    @Override
+    public void invisible() {
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * LatencyHistogram.java
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram records latencies from many threads at once without locking, in the manner of HdrHistogram.
+ * Its log-linear buckets report any value within 1% of its true value, from nanoseconds up to hours.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int SIZE = (64 - SUB_BITS) * SUB_COUNT + SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SIZE);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalValue = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Records one value.
+     * @param value The value, usually a latency in nanoseconds. Negative values are recorded as 0.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(value);
+        maxValue.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Records one value, and corrects for coordinated omission: if the value is larger than the interval
+     * at which values are expected, the values the missing samples would have had are recorded as well,
+     * value - interval, value - 2 * interval, and so on down to the interval.
+     * @param value The value, usually a latency in nanoseconds.
+     * @param expectedInterval The expected interval between two samples, in the same unit. 0 disables the correction.
+     */
+    public void recordWithExpectedInterval(long value, long expectedInterval) {
+        record(value);
+        if (expectedInterval <= 0) return;
+        for (long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval) {
+            record(missing);
+        }
+    }
+
+    /**
+     * Adds every value recorded by another histogram to this one.
+     * @param other The LatencyHistogram to add.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < SIZE; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) counts.addAndGet(i, c);
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        totalValue.addAndGet(other.totalValue.get());
+        maxValue.accumulateAndGet(other.maxValue.get(), Math::max);
+    }
+
+    /**
+     * Clears every recorded value.
+     */
+    public void reset() {
+        for (int i = 0; i < SIZE; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+    }
+
+    /**
+     * Gets the number of recorded values.
+     * @return The number of values.
+     */
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Gets the largest recorded value.
+     * @return The largest value, or 0 if nothing was recorded.
+     */
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * Gets the mean of the recorded values.
+     * @return The mean, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long n = totalCount.get();
+        return n == 0 ? 0 : (double) totalValue.get() / n;
+    }
+
+    /**
+     * Gets the value below which the given percentage of the recorded values fall.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The value at the percentile, or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long n = 0;
+        long[] snapshot = new long[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < SIZE; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalent(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Formats the usual percentiles of the histogram on one line.
+     * @param unit The divisor turning recorded values into the unit shown, e.g. 1000 for microseconds.
+     * @param unitName The name of the unit shown.
+     * @return The summary line.
+     */
+    public String summary(double unit, String unitName) {
+        return String.format(java.util.Locale.ROOT,
+                "count=%d mean=%.1f p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f %s",
+                getTotalCount(), getMean() / unit, getValueAtPercentile(50) / unit, getValueAtPercentile(90) / unit,
+                getValueAtPercentile(99) / unit, getValueAtPercentile(99.9) / unit, getMax() / unit, unitName);
+    }
+
+    private static int indexOf(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BITS);
+        return shift * SUB_COUNT + (int) (value >>> shift);
+    }
+
+    private static long highestEquivalent(int index) {
+        if (index < 2 * SUB_COUNT) return index;
+        int shift = (index >> SUB_BITS) - 1;
+        long low = (long) (index - shift * SUB_COUNT) << shift;
+        return low + (1L << shift) - 1;
+    }
+}
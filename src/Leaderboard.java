@@ -0,0 +1,437 @@
+/**
+ * Leaderboard.java
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Leaderboard ranks every named player of the server by its PlayerRatings rating, and counts its wins, losses and draws.
+ * Players of equal score share a rank. Results are queued without a lock and applied in batches by a daemon thread,
+ * and queries take a read lock. Only games between two different named players are ranked.
+ */
+public class Leaderboard {
+
+    /**
+     * The highest score; ratings above it are ranked as MAX_SCORE, and ratings below 0 as 0.
+     */
+    public static final int MAX_SCORE = 4095;
+
+    /**
+     * How long the applying thread waits for more results once the queue is empty.
+     */
+    public static final long APPLY_MILLIS = 100;
+
+    private final PlayerRatings ratings;
+    private final ConcurrentLinkedQueue<Result> pending = new ConcurrentLinkedQueue<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> players = new HashMap<>();
+    // The players of every score someone has, each knowing its slot, so a player changes score in O(1).
+    private final TreeMap<Integer, ArrayList<Entry>> byScore = new TreeMap<>();
+    // A Fenwick tree of the number of players of every score, so the rank of a score takes O(log MAX_SCORE).
+    private final int[] counts = new int[MAX_SCORE + 2];
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * Constructor for Leaderboard.
+     * @param ratings The PlayerRatings the players are ranked by.
+     */
+    public Leaderboard(PlayerRatings ratings) {
+        this.ratings = ratings;
+    }
+
+    /**
+     * Queues the result of a game, once the ratings of its players have been updated. Never blocks.
+     * Starts the applying thread on first use.
+     * @param x The name of the player of X, or null if it has none.
+     * @param o The name of the player of O, or null if it has none.
+     * @param winner The Mark of the winner, or Mark.EMPTY for a draw.
+     */
+    public void offer(String x, String o, Mark winner) {
+        if (x == null || o == null || x.equals(o)) {
+            return;
+        }
+        pending.offer(new Result(x, o, winner));
+        queued.increment();
+        if (!started.get() && started.compareAndSet(false, true)) {
+            Thread applier = new Thread(this::applyLoop, "Leaderboard");
+            applier.setDaemon(true);
+            applier.start();
+        }
+    }
+
+    /**
+     * Applies every result queued so far on the calling thread, for the queries that follow to see them.
+     */
+    public void flush() {
+        applyPending();
+    }
+
+    private void applyLoop() {
+        while (true) {
+            if (!applyPending()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(APPLY_MILLIS));
+            }
+        }
+    }
+
+    /**
+     * Applies the results queued so far as one batch.
+     * @return true if there was anything to apply, false otherwise.
+     */
+    private boolean applyPending() {
+        if (pending.isEmpty()) {
+            return false;
+        }
+        Set<String> touched = new HashSet<>();
+        int n = 0;
+        lock.writeLock().lock();
+        try {
+            Result result;
+            while ((result = pending.poll()) != null) {
+                entry(result.x, touched).count(result.winner == Mark.X ? 1 : result.winner == Mark.O ? -1 : 0);
+                entry(result.o, touched).count(result.winner == Mark.O ? 1 : result.winner == Mark.X ? -1 : 0);
+                n++;
+            }
+            for (String name : touched) {
+                move(players.get(name), scoreOf(ratings.get(name)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        queued.add(-n);
+        applied.add(n);
+        batches.increment();
+        return true;
+    }
+
+    private Entry entry(String name, Set<String> touched) {
+        touched.add(name);
+        return players.computeIfAbsent(name, Entry::new);
+    }
+
+    private void move(Entry entry, int score) {
+        if (entry.ranked && entry.score == score) {
+            return;
+        }
+        if (entry.ranked) {
+            ArrayList<Entry> bucket = byScore.get(entry.score);
+            Entry last = bucket.remove(bucket.size() - 1);
+            if (last != entry) {
+                bucket.set(entry.slot, last);
+                last.slot = entry.slot;
+            }
+            if (bucket.isEmpty()) {
+                byScore.remove(entry.score);
+            }
+            add(entry.score, -1);
+        }
+        ArrayList<Entry> bucket = byScore.computeIfAbsent(score, s -> new ArrayList<>());
+        entry.score = score;
+        entry.ranked = true;
+        entry.slot = bucket.size();
+        bucket.add(entry);
+        add(score, 1);
+    }
+
+    /**
+     * Gets the standing of one player.
+     * @param name The name of the player.
+     * @return The Standing, or null if the player has not finished a ranked game yet.
+     */
+    public Standing get(String name) {
+        lock.readLock().lock();
+        try {
+            Entry entry = players.get(name);
+            return entry == null || !entry.ranked ? null : standing(entry, rankOf(entry.score));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the rank of one player: one plus the number of players scoring higher.
+     * @param name The name of the player.
+     * @return The rank, from 1, or 0 if the player has not finished a ranked game yet.
+     */
+    public int rank(String name) {
+        lock.readLock().lock();
+        try {
+            Entry entry = players.get(name);
+            return entry == null || !entry.ranked ? 0 : rankOf(entry.score);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the best players, highest score first.
+     * @param k The number of players to return.
+     * @return Up to k Standings.
+     */
+    public List<Standing> top(int k) {
+        List<Standing> top = new ArrayList<>(Math.max(0, Math.min(k, 1024)));
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Integer, ArrayList<Entry>> bucket : byScore.descendingMap().entrySet()) {
+                int rank = rankOf(bucket.getKey());
+                for (Entry entry : bucket.getValue()) {
+                    if (top.size() >= k) {
+                        return top;
+                    }
+                    top.add(standing(entry, rank));
+                }
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a player with the players ranked just above and just below it, in the order of top.
+     * @param name The name of the player.
+     * @param k The number of players to return on either side.
+     * @return Up to 2k+1 Standings, the player among them, or an empty list if the player is not ranked.
+     */
+    public List<Standing> around(String name, int k) {
+        lock.readLock().lock();
+        try {
+            Entry entry = players.get(name);
+            if (entry == null || !entry.ranked) {
+                return Collections.emptyList();
+            }
+            List<Standing> above = new ArrayList<>();
+            int rank = rankOf(entry.score);
+            ArrayList<Entry> own = byScore.get(entry.score);
+            collect(own, entry.slot - 1, -1, rank, k, above);
+            for (Map.Entry<Integer, ArrayList<Entry>> bucket = byScore.higherEntry(entry.score);
+                 bucket != null && above.size() < k; bucket = byScore.higherEntry(bucket.getKey())) {
+                collect(bucket.getValue(), bucket.getValue().size() - 1, -1, rankOf(bucket.getKey()), k, above);
+            }
+            Collections.reverse(above);
+            List<Standing> around = new ArrayList<>(above);
+            around.add(standing(entry, rank));
+            List<Standing> below = new ArrayList<>();
+            collect(own, entry.slot + 1, 1, rank, k, below);
+            for (Map.Entry<Integer, ArrayList<Entry>> bucket = byScore.lowerEntry(entry.score);
+                 bucket != null && below.size() < k; bucket = byScore.lowerEntry(bucket.getKey())) {
+                collect(bucket.getValue(), 0, 1, rankOf(bucket.getKey()), k, below);
+            }
+            around.addAll(below);
+            return around;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void collect(ArrayList<Entry> bucket, int from, int step, int rank, int k, List<Standing> into) {
+        for (int i = from; into.size() < k && i >= 0 && i < bucket.size(); i += step) {
+            into.add(standing(bucket.get(i), rank));
+        }
+    }
+
+    /**
+     * Gets the number of ranked players.
+     * @return The number of players.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return prefix(MAX_SCORE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of game results queued and not applied yet.
+     * @return The number of pending results.
+     */
+    public long getPending() {
+        return queued.sum();
+    }
+
+    /**
+     * Gets the number of game results applied.
+     * @return The number of results.
+     */
+    public long getApplied() {
+        return applied.sum();
+    }
+
+    /**
+     * Gets the number of batches the results were applied in.
+     * @return The number of batches.
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    private Standing standing(Entry entry, int rank) {
+        return new Standing(entry.name, rank, entry.score, entry.wins, entry.losses, entry.draws);
+    }
+
+    private int rankOf(int score) {
+        return 1 + prefix(MAX_SCORE) - prefix(score);
+    }
+
+    /**
+     * Adds to the number of players of a score, in the Fenwick tree.
+     */
+    private void add(int score, int delta) {
+        for (int i = score + 1; i < counts.length; i += i & -i) {
+            counts[i] += delta;
+        }
+    }
+
+    /**
+     * Counts the players scoring no more than the given score, in the Fenwick tree.
+     */
+    private int prefix(int score) {
+        int sum = 0;
+        for (int i = score + 1; i > 0; i -= i & -i) {
+            sum += counts[i];
+        }
+        return sum;
+    }
+
+    private static int scoreOf(double rating) {
+        return (int) Math.max(0, Math.min(MAX_SCORE, Math.round(rating)));
+    }
+
+    /**
+     * Entry is the record of one player, only touched under the write lock.
+     */
+    private static final class Entry {
+        private final String name;
+        private int score;
+        private int slot;
+        private boolean ranked = false;
+        private int wins;
+        private int losses;
+        private int draws;
+
+        private Entry(String name) {
+            this.name = name;
+        }
+
+        private void count(int outcome) {
+            if (outcome > 0) {
+                wins++;
+            } else if (outcome < 0) {
+                losses++;
+            } else {
+                draws++;
+            }
+        }
+    }
+
+    /**
+     * Result is the result of one game, queued until the next batch.
+     */
+    private static final class Result {
+        private final String x;
+        private final String o;
+        private final Mark winner;
+
+        private Result(String x, String o, Mark winner) {
+            this.x = x;
+            this.o = o;
+            this.winner = winner;
+        }
+    }
+
+    /**
+     * Standing is the place of one player on the Leaderboard when it was queried.
+     */
+    public static final class Standing {
+        private final String name;
+        private final int rank;
+        private final int score;
+        private final int wins;
+        private final int losses;
+        private final int draws;
+
+        private Standing(String name, int rank, int score, int wins, int losses, int draws) {
+            this.name = name;
+            this.rank = rank;
+            this.score = score;
+            this.wins = wins;
+            this.losses = losses;
+            this.draws = draws;
+        }
+
+        /**
+         * Getter for the name of the player.
+         * @return The name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Getter for the rank of the player.
+         * @return The rank, from 1; players of equal score share it.
+         */
+        public int getRank() {
+            return rank;
+        }
+
+        /**
+         * Getter for the score of the player.
+         * @return The rating of the player, rounded.
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * Getter for the number of ranked games the player won.
+         * @return The number of wins.
+         */
+        public int getWins() {
+            return wins;
+        }
+
+        /**
+         * Getter for the number of ranked games the player lost.
+         * @return The number of losses.
+         */
+        public int getLosses() {
+            return losses;
+        }
+
+        /**
+         * Getter for the number of ranked games the player drew.
+         * @return The number of draws.
+         */
+        public int getDraws() {
+            return draws;
+        }
+
+        /**
+         * Formats the standing on one line: rank, name, score, wins, losses and draws.
+         * @return The formatted standing.
+         */
+        @Override
+        public String toString() {
+            return rank + " " + name + " " + score + " " + wins + " " + losses + " " + draws;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * LeaderboardHandler.java
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LeaderboardHandler answers the queries of a Leaderboard over HTTP, served next to /metrics at /leaderboard:
+ * the best players with ?top=k, or a player and its neighbours with ?player=name&around=k, one standing per line.
+ * A query that cannot be parsed is answered with 400 Bad Request.
+ */
+public class LeaderboardHandler implements HttpHandler {
+
+    private final Leaderboard leaderboard;
+
+    /**
+     * Constructor for LeaderboardHandler.
+     * @param leaderboard The Leaderboard to query.
+     */
+    public LeaderboardHandler(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+     * Answers one request with the standings it asks for.
+     * @param exchange The HttpExchange of the request.
+     * @throws IOException if the response cannot be written.
+     */
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        String text;
+        try {
+            text = standings(exchange.getRequestURI().getRawQuery());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            text = "Bad query: " + e.getMessage() + "\n";
+        }
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Answers a query of the Leaderboard: ?top=k for the k best players (10 by default),
+     * or ?player=name&around=k for a player and the k players on either side of it (5 by default).
+     * @param query The raw query string of the request, or null.
+     * @return The standings, one per line as rank, name, score, wins, losses and draws.
+     * @throws IllegalArgumentException if a parameter is badly escaped or a count is not a number.
+     */
+    public String standings(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int eq = param.indexOf('=');
+                if (eq > 0) {
+                    params.put(param.substring(0, eq), URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        List<Leaderboard.Standing> standings = params.containsKey("player")
+                ? leaderboard.around(params.get("player"), Integer.parseInt(params.getOrDefault("around", "5")))
+                : leaderboard.top(Integer.parseInt(params.getOrDefault("top", "10")));
+        StringBuilder sb = new StringBuilder(standings.size() * 32);
+        for (Leaderboard.Standing standing : standings) {
+            sb.append(standing).append('\n');
+        }
+        return sb.toString();
+    }
+}
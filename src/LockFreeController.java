@@ -0,0 +1,325 @@
+/**
+ * LockFreeController.java
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * LockFreeController is a Controller for the classic 3,3,3 board that packs the whole state of the game into one long,
+ * laid out by the bit constants of the class, and publishes every change with one compareAndSet.
+ * A move is therefore validated and committed as one atomic step, and nobody blocks.
+ * The BoardModel of the controller is a view of the same word.
+ */
+public class LockFreeController extends Controller {
+
+    private static final int O_SHIFT = 9;
+    private static final long CELLS = 0x1FFL;
+    private static final long BOARD = CELLS | CELLS << O_SHIFT;
+    private static final long X_TO_MOVE = 1L << 18;
+    private static final long O_TO_MOVE = 1L << 19;
+    private static final long X_RESTART = 1L << 20;
+    private static final long O_RESTART = 1L << 21;
+    private static final long X_NAMED = 1L << 22;
+    private static final long O_NAMED = 1L << 23;
+    private static final int LEFT_SHIFT = 24;
+    private static final long LEFT = 3L << LEFT_SHIFT;
+    private static final long TALLIED = 1L << 26;
+    private static final long INITIAL = X_TO_MOVE | 2L << LEFT_SHIFT;
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(LockFreeController.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile long state = INITIAL;
+
+    /**
+     * Constructor for LockFreeController. Starts with an empty board, X to move, and both players in the game.
+     */
+    public LockFreeController() {
+        this(new PackedBoard());
+    }
+
+    private LockFreeController(PackedBoard board) {
+        super(board);
+        board.owner = this;
+    }
+
+    /**
+     * Getter for the packed state word, as laid out by the bit constants of the class.
+     * @return The current state of the game.
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Decreases the count of players left in the game by one, down to zero.
+     */
+    @Override
+    public void dePlayerLeft() {
+        long s;
+        long left;
+        do {
+            s = state;
+            left = (s & LEFT) >>> LEFT_SHIFT;
+            if (left == 0) return;
+        } while (!STATE.compareAndSet(this, s, s & ~LEFT | (left - 1) << LEFT_SHIFT));
+    }
+
+    /**
+     * Sets whether it's the player's move.
+     * @param idx Index of the player (0 for X, 1 for O).
+     * @param val Boolean value indicating if it's the player's move.
+     */
+    @Override
+    public void setIsPlayerMove(int idx, boolean val) {
+        long bit = idx == 0 ? X_TO_MOVE : O_TO_MOVE;
+        if (val) {
+            STATE.getAndBitwiseOr(this, bit);
+        } else {
+            STATE.getAndBitwiseAnd(this, ~bit);
+        }
+    }
+
+    /**
+     * Gets whose turn it is, in one read of the state word.
+     * @return The Mark of the player to move (X or O), or null if neither may move.
+     */
+    @Override
+    public Mark getTurn() {
+        long s = state;
+        return (s & X_TO_MOVE) != 0 ? Mark.X : (s & O_TO_MOVE) != 0 ? Mark.O : null;
+    }
+
+    /**
+     * Gets the number of players left in the game.
+     * @return The number of players left.
+     */
+    @Override
+    public int getPlayerLeft() {
+        return (int) ((state & LEFT) >>> LEFT_SHIFT);
+    }
+
+    /**
+     * Registers the name of a player.
+     * @param m The Mark of the player (X or O).
+     */
+    @Override
+    public void inputName(Mark m) {
+        STATE.getAndBitwiseOr(this, m == Mark.X ? X_NAMED : O_NAMED);
+    }
+
+    /**
+     * Checks if both players have registered their names, so moves are accepted.
+     * @return true if both players have a name, false otherwise.
+     */
+    @Override
+    public boolean hasNames() {
+        return (state & (X_NAMED | O_NAMED)) == (X_NAMED | O_NAMED);
+    }
+
+    /**
+     * Validates and commits a move with one compareAndSet: the cell is on the board and empty, it is the player's turn,
+     * both players have a name, and the game is not won yet. Of two clicks racing for the same state, one wins and
+     * the other is checked again against the new state.
+     * @param i the row index of the cell clicked.
+     * @param j the column index of the cell clicked.
+     * @param m the Mark of the player making the move.
+     * @return true if the move is committed, false otherwise.
+     */
+    @Override
+    public boolean onCellClick(int i, int j, Mark m) {
+        if (i < 0 || i >= 3 || j < 0 || j >= 3) {
+            return false;
+        }
+        long cell = 1L << (i * 3 + j);
+        long mark = m == Mark.X ? cell : cell << O_SHIFT;
+        long turn = m == Mark.X ? X_TO_MOVE : O_TO_MOVE;
+        long next = m == Mark.X ? O_TO_MOVE : X_TO_MOVE;
+        while (true) {
+            long s = state;
+            if ((s & (X_NAMED | O_NAMED)) != (X_NAMED | O_NAMED) || (s & turn) == 0
+                    || ((s | s >>> O_SHIFT) & cell) != 0 || winner(s) != Mark.EMPTY) {
+                return false;
+            }
+            if (STATE.compareAndSet(this, s, (s | mark) & ~turn | next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Registers that a player wants to restart. The request that completes the pair resets the board,
+     * with X to move, in the same compareAndSet.
+     * @param m The Mark of the player requesting to restart (X or O).
+     * @return true if this request restarted the game, false otherwise.
+     */
+    @Override
+    public boolean restartGame(Mark m) {
+        long mine = m == Mark.X ? X_RESTART : O_RESTART;
+        while (true) {
+            long s = state;
+            long n = s | mine;
+            boolean both = (n & (X_RESTART | O_RESTART)) == (X_RESTART | O_RESTART);
+            if (both) {
+                n = n & ~(BOARD | X_RESTART | O_RESTART | O_TO_MOVE | TALLIED) | X_TO_MOVE;
+            }
+            if (STATE.compareAndSet(this, s, n)) {
+                return both;
+            }
+        }
+    }
+
+    /**
+     * Sets whose turn it is from the marks on the board, for a game restored from the MoveJournal:
+     * X moves when both players have placed as many marks, O otherwise.
+     */
+    @Override
+    public void resumeTurn() {
+        long s;
+        long turn;
+        do {
+            s = state;
+            turn = Long.bitCount(s & CELLS) == Long.bitCount(s >>> O_SHIFT & CELLS) ? X_TO_MOVE : O_TO_MOVE;
+        } while (!STATE.compareAndSet(this, s, s & ~(X_TO_MOVE | O_TO_MOVE) | turn));
+    }
+
+    /**
+     * Checks for a winner in one read of the state word. Updates the BoardModel statistics if there is a winner or a draw
+     * and the result has not been tallied yet, setting the tallied bit in the same compareAndSet.
+     * @return the Mark of the winner (X or O), Mark.EMPTY for a draw, or null if the game is still ongoing.
+     */
+    @Override
+    public Mark checkWinner() {
+        long s;
+        Mark winner;
+        do {
+            s = state;
+            winner = winner(s);
+            if (winner == Mark.EMPTY && Long.bitCount(s & BOARD) < 9) {
+                return null;
+            }
+            if ((s & TALLIED) != 0) {
+                return winner;
+            }
+        } while (!STATE.compareAndSet(this, s, s | TALLIED));
+        BoardModel bm = getBm();
+        if (winner == Mark.X) {
+            bm.addPlayerWins(0);
+        } else if (winner == Mark.O) {
+            bm.addPlayerWins(1);
+        } else {
+            bm.addDraws();
+        }
+        return winner;
+    }
+
+    private static Mark winner(long s) {
+        if (BitBoardModel.isWinning((int) (s & CELLS))) {
+            return Mark.X;
+        }
+        if (BitBoardModel.isWinning((int) (s >>> O_SHIFT & CELLS))) {
+            return Mark.O;
+        }
+        return Mark.EMPTY;
+    }
+
+    /**
+     * PackedBoard is the BoardModel view of the state word of its LockFreeController.
+     */
+    private static final class PackedBoard extends BitBoardModel {
+
+        private LockFreeController owner;
+
+        /**
+         * Clears the cells of the board and the tallied bit, but not the win/draw counters nor the turn.
+         */
+        @Override
+        public void resetModel() {
+            STATE.getAndBitwiseAnd(owner, ~(BOARD | TALLIED));
+        }
+
+        /**
+         * Sets the specified cell on the board to the given mark (X, O, or EMPTY), leaving the turn as it is.
+         * @param r the row index of the cell
+         * @param c the column index of the cell
+         * @param t the mark to set (X, O, or EMPTY)
+         */
+        @Override
+        public void setCell(int r, int c, Mark t) {
+            long cell = 1L << (r * 3 + c);
+            long mark = t == Mark.X ? cell : t == Mark.O ? cell << O_SHIFT : 0;
+            long s;
+            do {
+                s = owner.state;
+            } while (!STATE.compareAndSet(owner, s, s & ~(cell | cell << O_SHIFT) | mark));
+        }
+
+        /**
+         * Checks if the specified cell on the board is empty, i.e., not occupied by X or O.
+         * @param r the row index of the cell
+         * @param c the column index of the cell
+         * @return true if the cell is empty, false otherwise
+         */
+        @Override
+        public boolean isCellEmpty(int r, int c) {
+            long s = owner.state;
+            return ((s | s >>> O_SHIFT) & 1L << (r * 3 + c)) == 0;
+        }
+
+        /**
+         * Checks if the game board is full by counting the occupied cells.
+         * @return true if the board is full, false otherwise
+         */
+        @Override
+        public boolean isBoardFull() {
+            return Long.bitCount(owner.state & BOARD) == 9;
+        }
+
+        /**
+         * Checks for a winner on the game board.
+         * @return the mark of the winner (X or O) if there is a winner, or EMPTY if there is no winner (draw or ongoing game).
+         */
+        @Override
+        public Mark checkWinner() {
+            return winner(owner.state);
+        }
+
+        /**
+         * Getter for the game board. Builds a new 2D array from one read of the state word.
+         * @return a snapshot of the current state of the game board (2D array of Marks)
+         */
+        @Override
+        public Mark[][] getBoard() {
+            long s = owner.state;
+            Mark[][] board = new Mark[3][3];
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    long cell = 1L << (i * 3 + j);
+                    board[i][j] = (s & cell) != 0 ? Mark.X : (s & cell << O_SHIFT) != 0 ? Mark.O : Mark.EMPTY;
+                }
+            }
+            return board;
+        }
+
+        /**
+         * Getter for the mask of the cells occupied by the given player.
+         * @param m the mark of the player (X or O)
+         * @return the 9-bit mask of the player's cells
+         */
+        @Override
+        public int getMask(Mark m) {
+            long s = owner.state;
+            int x = (int) (s & CELLS);
+            int o = (int) (s >>> O_SHIFT & CELLS);
+            return m == Mark.X ? x : m == Mark.O ? o : ~(x | o) & 0x1FF;
+        }
+    }
+}
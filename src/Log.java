@@ -0,0 +1,536 @@
+/**
+ * Log.java
+ */
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log is the logging layer of the game, built to stay off the hot path: a call below the current Level costs
+ * one volatile read, and any other call only copies its format, with {} placeholders, and its arguments into a ring
+ * buffer for one background thread to write. Arguments are formatted later, so they should not be changed after the call.
+ */
+public final class Log {
+
+    /**
+     * Enumeration of the levels of log events, from the most to the least verbose.
+     * OFF is only used as a threshold, to turn logging off.
+     */
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    private static final int CAPACITY = 8192;
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_PARK_NANOS = 5_000_000;
+    private static final long DEFAULT_MAX_BYTES = 10L * 1024 * 1024;
+    private static final int DEFAULT_MAX_FILES = 5;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final Level[] LEVELS = Level.values();
+
+    private static final Event[] ring = new Event[CAPACITY];
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong tail = new AtomicLong();
+    private static final LongAdder dropped = new LongAdder();
+    private static final Object sinkLock = new Object();
+    private static volatile int threshold = Level.INFO.ordinal();
+    private static long head = 0;
+    private static Sink sink = new StdoutSink();
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            ring[i] = new Event();
+            sequences.set(i, i);
+        }
+        Thread drainer = new Thread(Log::drainLoop, "Log-Writer");
+        drainer.setDaemon(true);
+        drainer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "Log-Flush"));
+    }
+
+    private Log() {
+    }
+
+    /**
+     * Sets the least severe Level that is logged.
+     * @param level The threshold, or Level.OFF to log nothing.
+     */
+    public static void setLevel(Level level) {
+        threshold = level.ordinal();
+    }
+
+    /**
+     * Gets the least severe Level that is logged.
+     * @return The threshold.
+     */
+    public static Level getLevel() {
+        return LEVELS[threshold];
+    }
+
+    /**
+     * Checks if events of the given Level are logged.
+     * @param level The Level to check.
+     * @return true if logged, false otherwise.
+     */
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    /**
+     * Checks if DEBUG events are logged.
+     * @return true if logged, false otherwise.
+     */
+    public static boolean isDebugEnabled() {
+        return threshold == 0;
+    }
+
+    /**
+     * Writes the log to a file rotated at 10 MB, keeping the last 5 rotated files next to it.
+     * @param file The path of the log file.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static void toFile(Path file) throws IOException {
+        toFile(file, DEFAULT_MAX_BYTES, DEFAULT_MAX_FILES);
+    }
+
+    /**
+     * Writes the log to a rotating file. Once the file grows past maxBytes, it is renamed to file.1,
+     * file.1 to file.2 and so on up to maxFiles, and a new file is started.
+     * @param file The path of the log file.
+     * @param maxBytes The size past which the file is rotated.
+     * @param maxFiles The number of rotated files kept.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static void toFile(Path file, long maxBytes, int maxFiles) throws IOException {
+        Sink next = new RotatingFileSink(file, maxBytes, maxFiles);
+        synchronized (sinkLock) {
+            sink.close();
+            sink = next;
+        }
+    }
+
+    /**
+     * Writes the log to the standard output, as by default.
+     */
+    public static void toStdout() {
+        synchronized (sinkLock) {
+            sink.close();
+            sink = new StdoutSink();
+        }
+    }
+
+    /**
+     * Gets the number of events dropped because the ring buffer was full.
+     * @return The number of dropped events.
+     */
+    public static long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Writes every event logged so far and flushes the output. Called on exit.
+     */
+    public static void flush() {
+        synchronized (sinkLock) {
+            while (drainOne()) {
+                // keep draining
+            }
+            sink.flush();
+        }
+    }
+
+    /**
+     * Logs a DEBUG event.
+     * @param format The message.
+     */
+    public static void debug(String format) {
+        if (threshold <= 0) publish(Level.DEBUG, format, 0, null, null, null);
+    }
+
+    /**
+     * Logs a DEBUG event.
+     * @param format The message, with one {} placeholder.
+     * @param a The argument.
+     */
+    public static void debug(String format, Object a) {
+        if (threshold <= 0) publish(Level.DEBUG, format, 1, a, null, null);
+    }
+
+    /**
+     * Logs a DEBUG event.
+     * @param format The message, with two {} placeholders.
+     * @param a The first argument.
+     * @param b The second argument.
+     */
+    public static void debug(String format, Object a, Object b) {
+        if (threshold <= 0) publish(Level.DEBUG, format, 2, a, b, null);
+    }
+
+    /**
+     * Logs a DEBUG event.
+     * @param format The message, with three {} placeholders.
+     * @param a The first argument.
+     * @param b The second argument.
+     * @param c The third argument.
+     */
+    public static void debug(String format, Object a, Object b, Object c) {
+        if (threshold <= 0) publish(Level.DEBUG, format, 3, a, b, c);
+    }
+
+    /**
+     * Logs an INFO event.
+     * @param format The message.
+     */
+    public static void info(String format) {
+        if (threshold <= 1) publish(Level.INFO, format, 0, null, null, null);
+    }
+
+    /**
+     * Logs an INFO event.
+     * @param format The message, with one {} placeholder.
+     * @param a The argument.
+     */
+    public static void info(String format, Object a) {
+        if (threshold <= 1) publish(Level.INFO, format, 1, a, null, null);
+    }
+
+    /**
+     * Logs an INFO event.
+     * @param format The message, with two {} placeholders.
+     * @param a The first argument.
+     * @param b The second argument.
+     */
+    public static void info(String format, Object a, Object b) {
+        if (threshold <= 1) publish(Level.INFO, format, 2, a, b, null);
+    }
+
+    /**
+     * Logs an INFO event.
+     * @param format The message, with three {} placeholders.
+     * @param a The first argument.
+     * @param b The second argument.
+     * @param c The third argument.
+     */
+    public static void info(String format, Object a, Object b, Object c) {
+        if (threshold <= 1) publish(Level.INFO, format, 3, a, b, c);
+    }
+
+    /**
+     * Logs a WARN event.
+     * @param format The message.
+     */
+    public static void warn(String format) {
+        if (threshold <= 2) publish(Level.WARN, format, 0, null, null, null);
+    }
+
+    /**
+     * Logs a WARN event.
+     * @param format The message, with one {} placeholder, or none if the argument is a Throwable.
+     * @param a The argument.
+     */
+    public static void warn(String format, Object a) {
+        if (threshold <= 2) publish(Level.WARN, format, 1, a, null, null);
+    }
+
+    /**
+     * Logs a WARN event.
+     * @param format The message, with two {} placeholders, or one if the last argument is a Throwable.
+     * @param a The first argument.
+     * @param b The second argument.
+     */
+    public static void warn(String format, Object a, Object b) {
+        if (threshold <= 2) publish(Level.WARN, format, 2, a, b, null);
+    }
+
+    /**
+     * Logs a WARN event.
+     * @param format The message, with three {} placeholders, or two if the last argument is a Throwable.
+     * @param a The first argument.
+     * @param b The second argument.
+     * @param c The third argument.
+     */
+    public static void warn(String format, Object a, Object b, Object c) {
+        if (threshold <= 2) publish(Level.WARN, format, 3, a, b, c);
+    }
+
+    /**
+     * Logs an ERROR event.
+     * @param format The message.
+     */
+    public static void error(String format) {
+        if (threshold <= 3) publish(Level.ERROR, format, 0, null, null, null);
+    }
+
+    /**
+     * Logs an ERROR event.
+     * @param format The message, with one {} placeholder, or none if the argument is a Throwable.
+     * @param a The argument.
+     */
+    public static void error(String format, Object a) {
+        if (threshold <= 3) publish(Level.ERROR, format, 1, a, null, null);
+    }
+
+    /**
+     * Logs an ERROR event.
+     * @param format The message, with two {} placeholders, or one if the last argument is a Throwable.
+     * @param a The first argument.
+     * @param b The second argument.
+     */
+    public static void error(String format, Object a, Object b) {
+        if (threshold <= 3) publish(Level.ERROR, format, 2, a, b, null);
+    }
+
+    /**
+     * Logs an ERROR event.
+     * @param format The message, with three {} placeholders, or two if the last argument is a Throwable.
+     * @param a The first argument.
+     * @param b The second argument.
+     * @param c The third argument.
+     */
+    public static void error(String format, Object a, Object b, Object c) {
+        if (threshold <= 3) publish(Level.ERROR, format, 3, a, b, c);
+    }
+
+    private static void publish(Level level, String format, int argc, Object a, Object b, Object c) {
+        while (true) {
+            long t = tail.get();
+            int i = (int) t & MASK;
+            long diff = sequences.get(i) - t;
+            if (diff == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    Event e = ring[i];
+                    e.level = level;
+                    e.millis = System.currentTimeMillis();
+                    e.thread = Thread.currentThread().getName();
+                    e.format = format;
+                    e.argc = argc;
+                    e.a = a;
+                    e.b = b;
+                    e.c = c;
+                    sequences.set(i, t + 1);
+                    return;
+                }
+            } else if (diff < 0) {
+                dropped.increment();
+                return;
+            }
+        }
+    }
+
+    private static void drainLoop() {
+        long reportedDrops = 0;
+        while (true) {
+            boolean wrote = false;
+            synchronized (sinkLock) {
+                while (drainOne()) {
+                    wrote = true;
+                }
+                long drops = dropped.sum();
+                if (drops != reportedDrops) {
+                    sink.write(line(Level.WARN, System.currentTimeMillis(), "Log-Writer",
+                            (drops - reportedDrops) + " log events dropped, the ring buffer was full"));
+                    reportedDrops = drops;
+                    wrote = true;
+                }
+                if (wrote) {
+                    sink.flush();
+                }
+            }
+            if (!wrote) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Formats and writes the oldest event of the ring buffer. Called with sinkLock held.
+     * @return true if an event was written, false if the ring buffer is empty.
+     */
+    private static boolean drainOne() {
+        int i = (int) head & MASK;
+        if (sequences.get(i) != head + 1) {
+            return false;
+        }
+        Event e = ring[i];
+        Throwable thrown = null;
+        StringBuilder sb = new StringBuilder(e.format.length() + 32);
+        int used = format(sb, e.format, e.argc, e.a, e.b, e.c);
+        if (used < e.argc) {
+            Object last = e.argc == 1 ? e.a : e.argc == 2 ? e.b : e.c;
+            if (last instanceof Throwable) {
+                thrown = (Throwable) last;
+            }
+        }
+        String text = line(e.level, e.millis, e.thread, sb.toString());
+        if (thrown != null) {
+            StringWriter trace = new StringWriter();
+            thrown.printStackTrace(new PrintWriter(trace));
+            text = text + trace.toString().stripTrailing() + System.lineSeparator();
+        }
+        e.thread = null;
+        e.format = null;
+        e.a = null;
+        e.b = null;
+        e.c = null;
+        sequences.set(i, head + CAPACITY);
+        head++;
+        sink.write(text);
+        return true;
+    }
+
+    private static int format(StringBuilder sb, String format, int argc, Object a, Object b, Object c) {
+        int used = 0;
+        int from = 0;
+        int at;
+        while (used < argc && (at = format.indexOf("{}", from)) >= 0) {
+            sb.append(format, from, at);
+            sb.append(used == 0 ? a : used == 1 ? b : c);
+            used++;
+            from = at + 2;
+        }
+        sb.append(format, from, format.length());
+        return used;
+    }
+
+    private static String line(Level level, long millis, String thread, String message) {
+        String time = TIME.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()));
+        return time + " " + String.format("%-5s", level) + " [" + thread + "] " + message + System.lineSeparator();
+    }
+
+    /**
+     * Event is one slot of the ring buffer, reused for every event that goes through it.
+     */
+    private static final class Event {
+        Level level;
+        long millis;
+        String thread;
+        String format;
+        int argc;
+        Object a;
+        Object b;
+        Object c;
+    }
+
+    /**
+     * Sink is where the background thread writes formatted events to.
+     */
+    private interface Sink {
+        void write(String text);
+
+        void flush();
+
+        void close();
+    }
+
+    /**
+     * StdoutSink writes to whatever System.out currently is.
+     */
+    private static final class StdoutSink implements Sink {
+        @Override
+        public void write(String text) {
+            System.out.print(text);
+        }
+
+        @Override
+        public void flush() {
+            System.out.flush();
+        }
+
+        @Override
+        public void close() {
+            System.out.flush();
+        }
+    }
+
+    /**
+     * RotatingFileSink writes to a file, and rotates it once it grows past its size limit.
+     */
+    private static final class RotatingFileSink implements Sink {
+        private final Path file;
+        private final long maxBytes;
+        private final int maxFiles;
+        private Writer out;
+        private long size;
+
+        RotatingFileSink(Path file, long maxBytes, int maxFiles) throws IOException {
+            this.file = file;
+            this.maxBytes = maxBytes;
+            this.maxFiles = maxFiles;
+            open();
+        }
+
+        private void open() throws IOException {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            size = Files.exists(file) ? Files.size(file) : 0;
+            out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        @Override
+        public void write(String text) {
+            try {
+                if (size >= maxBytes) {
+                    rotate();
+                }
+                out.write(text);
+                size += text.length();
+            } catch (IOException e) {
+                System.err.print(text);
+            }
+        }
+
+        private void rotate() throws IOException {
+            out.close();
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path from = sibling(i);
+                if (Files.exists(from)) {
+                    Files.move(from, sibling(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            if (maxFiles > 0) {
+                Files.move(file, sibling(1), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.delete(file);
+            }
+            open();
+        }
+
+        private Path sibling(int n) {
+            return file.resolveSibling(file.getFileName() + "." + n);
+        }
+
+        @Override
+        public void flush() {
+            try {
+                out.flush();
+            } catch (IOException ignored) {
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -6,18 +6,26 @@ import java.io.IOException;
 
 /**
  * The Main class serves as the entry point for the Tic Tac Toe application.
- * It initializes the game server, controller, board model, and two clients with their respective GUIs.
+ * It initializes the game server and two clients with their respective GUIs, or with --role=node only the
+ * game server, as one node of a cluster, and with --role=router the ClusterRouter in front of the nodes.
  */
 public class Main {
 /**
  * The main method to launch the application.
  * @param args
- *  Command line arguments (not used).
+ *  Command line arguments, parsed into a ServerConfig (for example --transport=nio).
  */
     public static void main(String[] args) {
-        BoardModel boardModel = new BoardModel();
-        Controller controller = new Controller(boardModel);
-        GameServer server = new GameServer(controller);
+        ServerConfig config = ServerConfig.parse(args);
+        if (config.getRole() == ServerConfig.Role.ROUTER) {
+            new ClusterRouter(config).start();
+            return;
+        }
+        if (config.getRole() == ServerConfig.Role.NODE) {
+            new GameServer(config).start();
+            return;
+        }
+        GameServer server = new GameServer(config);
 
         Thread serverThread = new Thread(server::start, "GameServer-Thread");
         serverThread.start();
@@ -32,10 +40,10 @@ public class Main {
         try{
             TicTacToeFrame gui1 = new TicTacToeFrame(null);
             TicTacToeFrame gui2 = new TicTacToeFrame(null);
-            Client client1 = new Client(gui1);
-            Client client2 = new Client(gui2);
+            Client client1 = new Client(gui1, config);
+            Client client2 = new Client(gui2, config);
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.error("Failed to start the clients", e);
         }
     }
 }
\ No newline at end of file
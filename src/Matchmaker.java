@@ -0,0 +1,303 @@
+/**
+ * Matchmaker.java
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Matchmaker pairs the players waiting for an opponent by rating, for the RATED Matchmaking of the ServerConfig.
+ * Every waiting player holds a ticket on its room, and is matched with a queued player whose rating is within
+ * the window of either, which widens the longer they wait. The player who waited longest keeps its room.
+ * The Matchmaker is not thread-safe: it is only used under the lock of its RoomRegistry.
+ */
+public class Matchmaker {
+
+    /**
+     * Width of a bucket of the queue, in rating points.
+     */
+    public static final int BUCKET_WIDTH = 25;
+
+    /**
+     * How much the window of a player widens for every second it waits, in rating points.
+     */
+    public static final double WIDEN_PER_SECOND = 100;
+
+    /**
+     * How long a player is given to register its name before it is queued without one.
+     */
+    public static final long NAME_WAIT_MILLIS = 2000;
+
+    /**
+     * How often the sweep runs while players are queued.
+     */
+    public static final long SWEEP_MILLIS = 250;
+
+    // Queued tickets by BUCKET_WIDTH of rating, oldest first, holding only the buckets that are not empty.
+    private final TreeMap<Integer, LinkedHashSet<Ticket>> buckets = new TreeMap<>();
+    private final Map<GameRoom, Ticket> tickets = new HashMap<>();
+    private final PlayerRatings ratings;
+    private final ServerMetrics metrics;
+    private final int window;
+    private int queued = 0;
+
+    /**
+     * Constructor for Matchmaker.
+     * @param ratings The PlayerRatings the players are matched by.
+     * @param metrics The ServerMetrics the matches are recorded into.
+     * @param window The largest rating difference accepted between two players who have not waited yet.
+     */
+    public Matchmaker(PlayerRatings ratings, ServerMetrics metrics, int window) {
+        this.ratings = ratings;
+        this.metrics = metrics;
+        this.window = window;
+    }
+
+    /**
+     * Gives a ticket to a player that has just been seated alone in a room. The ticket is not queued yet.
+     * @param room The GameRoom the player waits in.
+     * @param now The System.nanoTime of the arrival.
+     */
+    public void arrive(GameRoom room, long now) {
+        tickets.put(room, new Ticket(room, now));
+        metrics.matchWaiting(1);
+    }
+
+    /**
+     * Queues the ticket of a room, or queues it again under a new name, and matches it with the closest queued
+     * ticket if one is close enough. Queuing a ticket that is already queued, without a new name, has no effect,
+     * and neither has queuing the ticket of a room that has been matched or left.
+     * Only the oldest ticket of the bucket of the rating and of the nearest buckets below and above are looked at,
+     * so an arrival costs O(log n) whatever the number of waiting players.
+     * @param room The GameRoom the player waits in.
+     * @param name The name the player registered, or null if it has none.
+     * @param now The current System.nanoTime.
+     * @return The Match found, or null if the ticket waits in the queue.
+     */
+    public Match enter(GameRoom room, String name, long now) {
+        Ticket ticket = tickets.get(room);
+        if (ticket == null || ticket.queued && (name == null || name.equals(ticket.name))) {
+            return null;
+        }
+        if (ticket.queued) {
+            dequeue(ticket);
+        }
+        if (name != null) {
+            ticket.name = name;
+        }
+        ticket.rating = ratings.get(ticket.name);
+        int bucket = bucketOf(ticket.rating);
+        Ticket best = closer(ticket, null, buckets.get(bucket), now);
+        best = closer(ticket, best, buckets.lowerEntry(bucket), now);
+        best = closer(ticket, best, buckets.higherEntry(bucket), now);
+        if (best == null) {
+            enqueue(ticket);
+            return null;
+        }
+        dequeue(best);
+        return match(best, ticket, now);
+    }
+
+    /**
+     * Takes the ticket of a room out, whether queued or not, once its player has left.
+     * @param room The GameRoom the player was waiting in.
+     */
+    public void cancel(GameRoom room) {
+        Ticket ticket = tickets.remove(room);
+        if (ticket == null) {
+            return;
+        }
+        if (ticket.queued) {
+            dequeue(ticket);
+        }
+        metrics.matchWaiting(-1);
+    }
+
+    /**
+     * Walks the queue in rating order and matches every two neighbours whose windows have grown to meet.
+     * @param now The current System.nanoTime.
+     * @return The Matches found, possibly none.
+     */
+    public List<Match> sweep(long now) {
+        List<Ticket> order = new ArrayList<>(queued);
+        for (LinkedHashSet<Ticket> bucket : buckets.values()) {
+            order.addAll(bucket);
+        }
+        List<Match> matches = new ArrayList<>();
+        for (int i = 0; i + 1 < order.size(); i++) {
+            Ticket a = order.get(i);
+            Ticket b = order.get(i + 1);
+            if (accepts(a, b, now)) {
+                dequeue(a);
+                dequeue(b);
+                matches.add(match(a, b, now));
+                i++;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Queues the ticket of the host of a match again, as it was, when its guest turned out to have left.
+     * @param match The Match that could not be carried out.
+     */
+    public void putBack(Match match) {
+        Ticket host = match.hostTicket;
+        tickets.put(host.room, host);
+        metrics.matchWaiting(1);
+        enqueue(host);
+    }
+
+    /**
+     * Records a match whose guest has been moved into the room of its host in the ServerMetrics:
+     * how long both players waited, and how far apart their ratings were.
+     * @param match The Match carried out.
+     */
+    public void moved(Match match) {
+        metrics.matched(match.hostWait, match.guestWait, match.gap);
+    }
+
+    /**
+     * Gets the number of tickets in the queue, not counting those still waiting for a name.
+     * @return The number of queued tickets.
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    private Ticket closer(Ticket ticket, Ticket best, Map.Entry<Integer, LinkedHashSet<Ticket>> entry, long now) {
+        return entry == null ? best : closer(ticket, best, entry.getValue(), now);
+    }
+
+    private Ticket closer(Ticket ticket, Ticket best, LinkedHashSet<Ticket> bucket, long now) {
+        Ticket candidate = bucket == null ? null : bucket.iterator().next();
+        if (candidate == null || !accepts(ticket, candidate, now)) {
+            return best;
+        }
+        if (best == null || Math.abs(candidate.rating - ticket.rating) < Math.abs(best.rating - ticket.rating)) {
+            return candidate;
+        }
+        return best;
+    }
+
+    private boolean accepts(Ticket a, Ticket b, long now) {
+        return Math.abs(a.rating - b.rating) <= Math.max(reach(a, now), reach(b, now));
+    }
+
+    private double reach(Ticket ticket, long now) {
+        return window + WIDEN_PER_SECOND * (now - ticket.since) / 1e9;
+    }
+
+    private Match match(Ticket a, Ticket b, long now) {
+        Ticket host = a.since <= b.since ? a : b;
+        Ticket guest = host == a ? b : a;
+        tickets.remove(host.room);
+        tickets.remove(guest.room);
+        metrics.matchWaiting(-2);
+        return new Match(host, guest.room, guest.name, now - host.since, now - guest.since,
+                Math.round(Math.abs(host.rating - guest.rating)));
+    }
+
+    private void enqueue(Ticket ticket) {
+        buckets.computeIfAbsent(bucketOf(ticket.rating), b -> new LinkedHashSet<>()).add(ticket);
+        ticket.queued = true;
+        queued++;
+    }
+
+    private void dequeue(Ticket ticket) {
+        int bucket = bucketOf(ticket.rating);
+        LinkedHashSet<Ticket> queue = buckets.get(bucket);
+        queue.remove(ticket);
+        if (queue.isEmpty()) {
+            buckets.remove(bucket);
+        }
+        ticket.queued = false;
+        queued--;
+    }
+
+    private static int bucketOf(double rating) {
+        return (int) Math.floor(rating / BUCKET_WIDTH);
+    }
+
+    /**
+     * Ticket is one player waiting alone in its room for the Matchmaker to find it an opponent.
+     */
+    private static final class Ticket {
+        private final GameRoom room;
+        private final long since;
+        private String name;
+        private double rating;
+        private boolean queued = false;
+
+        private Ticket(GameRoom room, long since) {
+            this.room = room;
+            this.since = since;
+        }
+    }
+
+    /**
+     * Match is two waiting players the Matchmaker has paired: the guest is to be moved into the room of the host.
+     */
+    public static final class Match {
+        private final Ticket hostTicket;
+        private final GameRoom guest;
+        private final String guestName;
+        private final long hostWait;
+        private final long guestWait;
+        private final long gap;
+        private PlayerConnection player;
+
+        private Match(Ticket hostTicket, GameRoom guest, String guestName, long hostWait, long guestWait, long gap) {
+            this.hostTicket = hostTicket;
+            this.guest = guest;
+            this.guestName = guestName;
+            this.hostWait = hostWait;
+            this.guestWait = guestWait;
+            this.gap = gap;
+        }
+
+        /**
+         * Getter for the room of the player who waited longest, which the game is played in.
+         * @return The GameRoom of the host.
+         */
+        public GameRoom getHost() {
+            return hostTicket.room;
+        }
+
+        /**
+         * Getter for the room of the other player, which it leaves for the room of the host.
+         * @return The GameRoom of the guest.
+         */
+        public GameRoom getGuest() {
+            return guest;
+        }
+
+        /**
+         * Getter for the name the guest registered while waiting, to be registered again in the room of the host.
+         * @return The name of the guest, or null if it has none.
+         */
+        public String getGuestName() {
+            return guestName;
+        }
+
+        /**
+         * Getter for the guest once it has been moved into the room of the host.
+         * @return The PlayerConnection of the guest, or null if it has not been moved.
+         */
+        public PlayerConnection getPlayer() {
+            return player;
+        }
+
+        /**
+         * Setter for the guest once it has been moved into the room of the host.
+         * @param player The PlayerConnection of the guest.
+         */
+        public void setPlayer(PlayerConnection player) {
+            this.player = player;
+        }
+    }
+}
@@ -71,7 +71,7 @@ public class MenuBar extends JMenuBar {
                     Criteria for a valid move:
                     - The move is not occupied by any mark.
                     - The move is made in the player's turn.
-                    - The move is made within the 3 x 3 board.
+                    - The move is made within the board (3 x 3 by default).
                     The game would continue and switch among the opposite player until it reaches either one of the following conditions:
                     - Player 1 wins.
                     - Player 2 wins.
@@ -137,7 +137,7 @@ public class MenuBar extends JMenuBar {
                 SwingUtilities.invokeAndWait(task);
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.error("Failed to show the dialog {}", title, e);
             return JOptionPane.CLOSED_OPTION;
         }
         return result[0];
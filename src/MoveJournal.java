@@ -0,0 +1,655 @@
+/**
+ * MoveJournal.java
+ */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * MoveJournal is the append-only history of every game played on the server, used to bring the rooms back after a crash.
+ * Game starts, moves, results and closed rooms are appended as CRC-checked 32-byte records to memory-mapped segments,
+ * each starting with a checkpoint of the games in play, and made durable by group commit on a background thread.
+ * A disabled MoveJournal records nothing, so rooms need not check whether journaling is on.
+ */
+public class MoveJournal {
+
+    /**
+     * Enumeration of how long a room waits on the journal before broadcasting.
+     * COMMIT: Until its records have been forced to disk.
+     * ASYNC: Not at all; the records are forced in the background.
+     */
+    public enum SyncMode {
+        COMMIT, ASYNC
+    }
+
+    /**
+     * The size of a segment file, 16 MB, or half a million records.
+     */
+    public static final long DEFAULT_SEGMENT_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * The smallest size of a segment file, 64 records.
+     */
+    public static final long MIN_SEGMENT_BYTES = 64 * 32;
+
+    private static final int RECORD = 32;
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final int CRC_OFFSET = 28;
+    private static final byte END = 0;
+    private static final byte CHECKPOINT = 1;
+    private static final byte CHECKPOINT_END = 2;
+    private static final byte START = 3;
+    private static final byte MOVE = 4;
+    private static final byte RESULT = 5;
+    private static final byte CLOSE = 6;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".seg";
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final SyncMode mode;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private final Map<Integer, RoomState> rooms = new LinkedHashMap<>();
+    private final List<RecoveredRoom> recovered = new ArrayList<>();
+    private final byte[] scratch = new byte[RECORD];
+    private final CRC32 crc = new CRC32();
+    private MappedByteBuffer segment;
+    private long segmentIndex;
+    private int position;
+    private long appended = 0;
+    private volatile long synced = 0;
+    private long syncs = 0;
+    private volatile boolean closed = false;
+    private Thread syncer;
+
+    private MoveJournal() {
+        this.dir = null;
+        this.segmentBytes = 0;
+        this.mode = SyncMode.ASYNC;
+    }
+
+    private MoveJournal(Path dir, long segmentBytes, SyncMode mode) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.mode = mode;
+    }
+
+    /**
+     * Creates a MoveJournal that records nothing.
+     * @return The disabled MoveJournal.
+     */
+    public static MoveJournal disabled() {
+        return new MoveJournal();
+    }
+
+    /**
+     * Opens the journal in the given directory with 16 MB segments, replays it, and starts the sync thread.
+     * @param dir The directory of the segment files, created if needed.
+     * @param mode The SyncMode of the rooms.
+     * @return The open MoveJournal.
+     * @throws IOException if the journal cannot be read or written.
+     */
+    public static MoveJournal open(Path dir, SyncMode mode) throws IOException {
+        return open(dir, DEFAULT_SEGMENT_BYTES, mode);
+    }
+
+    /**
+     * Opens the journal in the given directory, replays it, and starts the sync thread.
+     * The rooms that were in play when the journal was last written are then available from getRecovered.
+     * @param dir The directory of the segment files, created if needed.
+     * @param segmentBytes The usual size of a segment file, from MIN_SEGMENT_BYTES to 1 GB. A segment starting with
+     * a checkpoint is made twice the size of the checkpoint if that is larger.
+     * @param mode The SyncMode of the rooms.
+     * @return The open MoveJournal.
+     * @throws IOException if the journal cannot be read or written.
+     */
+    public static MoveJournal open(Path dir, long segmentBytes, SyncMode mode) throws IOException {
+        if (segmentBytes < MIN_SEGMENT_BYTES || segmentBytes > MAX_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Invalid journal segment size " + segmentBytes);
+        }
+        MoveJournal journal = new MoveJournal(dir, segmentBytes - segmentBytes % RECORD, mode);
+        Files.createDirectories(dir);
+        journal.recover();
+        journal.syncer = new Thread(journal::syncLoop, "MoveJournal-Sync");
+        journal.syncer.setDaemon(true);
+        journal.syncer.start();
+        return journal;
+    }
+
+    /**
+     * Checks if the journal records anything.
+     * @return true if open, false if disabled.
+     */
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Gets the rooms that were in play when the journal was last written, in the order they were opened.
+     * @return The recovered rooms, empty if none or if the journal is disabled.
+     */
+    public List<RecoveredRoom> getRecovered() {
+        return Collections.unmodifiableList(recovered);
+    }
+
+    /**
+     * Records the start of a game with an empty board, with the size of the board and the scores so far.
+     * @param room The id of the room.
+     * @param bm The BoardModel of the room, just reset.
+     * @return The sequence number of the record, to pass to commit.
+     */
+    public long gameStarted(int room, BoardModel bm) {
+        return append(START, null, bm.getRows(), bm.getCols(), room,
+                bm.getPlayerWins(0), bm.getPlayerWins(1), bm.getDraws(), bm.getWinLength());
+    }
+
+    /**
+     * Records an accepted move.
+     * @param room The id of the room.
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @param mark The Mark placed.
+     * @return The sequence number of the record, to pass to commit.
+     */
+    public long move(int room, int row, int col, Mark mark) {
+        return append(MOVE, mark, row, col, room, 0, 0, 0, 0);
+    }
+
+    /**
+     * Records the end of a game, with the scores counting it.
+     * @param room The id of the room.
+     * @param winner The Mark of the winner, or Mark.EMPTY for a draw.
+     * @param bm The BoardModel of the room.
+     * @return The sequence number of the record, to pass to commit.
+     */
+    public long result(int room, Mark winner, BoardModel bm) {
+        return append(RESULT, winner, 0, 0, room, bm.getPlayerWins(0), bm.getPlayerWins(1), bm.getDraws(), 0);
+    }
+
+    /**
+     * Records that a room has been closed, so it is not recovered.
+     * @param room The id of the room.
+     * @return The sequence number of the record.
+     */
+    public long roomClosed(int room) {
+        return append(CLOSE, null, 0, 0, room, 0, 0, 0, 0);
+    }
+
+    /**
+     * Waits, in COMMIT mode, until the record with the given sequence number and every record before it are on disk.
+     * Returns at once in ASYNC mode, or if the journal is disabled.
+     * The wait goes through ForkJoinPool.managedBlock, so a GameActor worker of the POOL Scheduler waiting here is
+     * covered by a spare worker and the other rooms keep running. A single-threaded shard has no spare, which is why
+     * ServerConfig never gives a COMMIT journal to the SHARDED Scheduler.
+     * @param seq The sequence number returned by the append.
+     */
+    public void commit(long seq) {
+        if (mode != SyncMode.COMMIT || isDurable(seq)) {
+            return;
+        }
+        Commit commit = new Commit(seq);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                ForkJoinPool.managedBlock(commit);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isDurable(long seq) {
+        return synced >= seq || closed;
+    }
+
+    /**
+     * Forces what is left to disk and stops the sync thread. Further records are ignored.
+     */
+    public void close() {
+        if (!isEnabled()) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            segment.force();
+            synced = appended;
+            pending.signalAll();
+            durable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of records appended since the journal was opened, checkpoints included.
+     * @return The number of records.
+     */
+    public long getAppended() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of times the sync thread forced the journal to disk.
+     * Compared with getAppended, it tells how many records one group commit covers.
+     * @return The number of forces.
+     */
+    public long getSyncs() {
+        lock.lock();
+        try {
+            return syncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long append(byte type, Mark mark, int row, int col, int room, int a, int b, int c, int extra) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                return appended;
+            }
+            if (position + RECORD > segment.limit()) {
+                try {
+                    roll();
+                } catch (IOException e) {
+                    Log.error("Journal segment {} cannot be created, journaling stopped", segmentIndex + 1, e);
+                    closed = true;
+                    durable.signalAll();
+                    return appended;
+                }
+            }
+            write(type, mark, row, col, room, a, b, c, extra);
+            apply(rooms, type, mark, row, col, room, a, b, c, extra);
+            pending.signal();
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes one record at the current position. Called with the lock held.
+     */
+    private void write(byte type, Mark mark, int row, int col, int room, int a, int b, int c, int extra) {
+        byte[] r = scratch;
+        r[0] = type;
+        r[1] = markCode(mark);
+        putShort(r, 2, row);
+        putShort(r, 4, col);
+        putShort(r, 6, 0);
+        putInt(r, 8, room);
+        putInt(r, 12, a);
+        putInt(r, 16, b);
+        putInt(r, 20, c);
+        putInt(r, 24, extra);
+        crc.reset();
+        crc.update(r, 0, CRC_OFFSET);
+        putInt(r, CRC_OFFSET, (int) crc.getValue());
+        segment.put(position, r);
+        position += RECORD;
+        appended++;
+    }
+
+    /**
+     * Forces the full segment and starts the next one with a checkpoint of the rooms in play. Called with the lock held.
+     * The next segment is twice the size of the checkpoint if that is larger than segmentBytes, so the checkpoint
+     * always fits and is followed by at least as many records before the next roll.
+     */
+    private void roll() throws IOException {
+        long bytes = Math.max(segmentBytes, 2 * checkpointBytes());
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Checkpoint of " + rooms.size() + " rooms does not fit in a segment");
+        }
+        segment.force();
+        synced = appended;
+        durable.signalAll();
+        MappedByteBuffer next = map(segmentIndex + 1, bytes);
+        segment = next;
+        segmentIndex++;
+        position = 0;
+        writeCheckpoint();
+    }
+
+    private long checkpointBytes() {
+        long records = 2;
+        for (RoomState s : rooms.values()) {
+            records += 1 + s.moveCount;
+        }
+        return records * RECORD;
+    }
+
+    private void writeCheckpoint() {
+        write(CHECKPOINT, null, 0, 0, 0, rooms.size(), 0, 0, 0);
+        for (Map.Entry<Integer, RoomState> e : rooms.entrySet()) {
+            RoomState s = e.getValue();
+            write(START, null, s.rows, s.cols, e.getKey(), s.xWins, s.oWins, s.draws, s.winLength);
+            for (int i = 0; i < s.moveCount; i++) {
+                int m = s.moves[i];
+                write(MOVE, decodeMark(m & 3), (m >>> 2) / s.cols, (m >>> 2) % s.cols, e.getKey(), 0, 0, 0, 0);
+            }
+        }
+        write(CHECKPOINT_END, null, 0, 0, 0, rooms.size(), 0, 0, 0);
+    }
+
+    private void syncLoop() {
+        while (true) {
+            MappedByteBuffer target;
+            long upTo;
+            lock.lock();
+            try {
+                while (synced >= appended && !closed) {
+                    pending.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+                target = segment;
+                upTo = appended;
+            } finally {
+                lock.unlock();
+            }
+            target.force();
+            lock.lock();
+            try {
+                if (upTo > synced) {
+                    synced = upTo;
+                }
+                syncs++;
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Replays the segments from the newest complete checkpoint on, and positions the journal at the end of the last one.
+     */
+    private void recover() throws IOException {
+        List<Long> indexes = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                indexes.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(indexes);
+        if (indexes.isEmpty()) {
+            segmentIndex = 1;
+            segment = map(segmentIndex);
+            writeCheckpoint();
+            return;
+        }
+        int from = indexes.size() - 1;
+        while (from > 0 && !hasCheckpoint(map(indexes.get(from)))) {
+            from--;
+        }
+        long records = 0;
+        for (int i = from; i < indexes.size(); i++) {
+            MappedByteBuffer buf = map(indexes.get(i));
+            int end = replay(buf);
+            records += end / RECORD;
+            if (i == indexes.size() - 1) {
+                segmentIndex = indexes.get(i);
+                segment = buf;
+                position = end;
+            }
+        }
+        for (Map.Entry<Integer, RoomState> e : rooms.entrySet()) {
+            recovered.add(new RecoveredRoom(e.getKey(), e.getValue()));
+        }
+        Log.info("Journal replayed {} records from segment {}, {} rooms in play",
+                records, indexes.get(from), recovered.size());
+    }
+
+    private boolean hasCheckpoint(MappedByteBuffer buf) {
+        if (!isValid(buf, 0) || buf.get(0) != CHECKPOINT) {
+            return false;
+        }
+        for (int pos = RECORD; pos + RECORD <= buf.limit() && isValid(buf, pos); pos += RECORD) {
+            if (buf.get(pos) == CHECKPOINT_END) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies every valid record of a segment to the room states.
+     * @return The position of the first invalid or empty record.
+     */
+    private int replay(MappedByteBuffer buf) {
+        int pos = 0;
+        while (pos + RECORD <= buf.limit() && isValid(buf, pos)) {
+            apply(rooms, buf.get(pos), decodeMark(buf.get(pos + 1)), buf.getShort(pos + 2), buf.getShort(pos + 4),
+                    buf.getInt(pos + 8), buf.getInt(pos + 12), buf.getInt(pos + 16), buf.getInt(pos + 20),
+                    buf.getInt(pos + 24));
+            pos += RECORD;
+        }
+        return pos;
+    }
+
+    private boolean isValid(MappedByteBuffer buf, int pos) {
+        byte type = buf.get(pos);
+        if (type <= END || type > CLOSE) {
+            return false;
+        }
+        buf.get(pos, scratch, 0, RECORD);
+        crc.reset();
+        crc.update(scratch, 0, CRC_OFFSET);
+        return buf.getInt(pos + CRC_OFFSET) == (int) crc.getValue();
+    }
+
+    private static void apply(Map<Integer, RoomState> rooms, byte type, Mark mark, int row, int col, int room,
+                              int a, int b, int c, int extra) {
+        RoomState s;
+        switch (type) {
+            case START:
+                rooms.put(room, new RoomState(row, col, extra, a, b, c));
+                break;
+            case MOVE:
+                s = rooms.get(room);
+                if (s != null && s.moveCount < s.moves.length) {
+                    s.moves[s.moveCount++] = (row * s.cols + col) << 2 | markCode(mark);
+                }
+                break;
+            case RESULT:
+                s = rooms.get(room);
+                if (s != null) {
+                    s.xWins = a;
+                    s.oWins = b;
+                    s.draws = c;
+                }
+                break;
+            case CLOSE:
+                rooms.remove(room);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private MappedByteBuffer map(long index) throws IOException {
+        return map(index, segmentBytes);
+    }
+
+    /**
+     * Maps a segment file, created with the given size if it does not exist, or with its own size otherwise.
+     */
+    private MappedByteBuffer map(long index, long bytes) throws IOException {
+        Path file = dir.resolve(String.format("%s%012d%s", PREFIX, index, SUFFIX));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long length = raf.length();
+            if (length == 0) {
+                length = bytes;
+                raf.setLength(length);
+            }
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length - length % RECORD);
+        }
+    }
+
+    private static byte markCode(Mark mark) {
+        return mark == null ? 0 : mark == Mark.EMPTY ? (byte) 1 : mark == Mark.X ? (byte) 2 : (byte) 3;
+    }
+
+    private static Mark decodeMark(int code) {
+        switch (code) {
+            case 1: return Mark.EMPTY;
+            case 2: return Mark.X;
+            case 3: return Mark.O;
+            default: return null;
+        }
+    }
+
+    private static void putShort(byte[] r, int at, int v) {
+        r[at] = (byte) (v >>> 8);
+        r[at + 1] = (byte) v;
+    }
+
+    private static void putInt(byte[] r, int at, int v) {
+        r[at] = (byte) (v >>> 24);
+        r[at + 1] = (byte) (v >>> 16);
+        r[at + 2] = (byte) (v >>> 8);
+        r[at + 3] = (byte) v;
+    }
+
+    /**
+     * RoomState is what the journal knows of a room in play: the board size, the scores, and the moves of the current game.
+     */
+    private static final class RoomState {
+        final int rows;
+        final int cols;
+        final int winLength;
+        final int[] moves;
+        int moveCount = 0;
+        int xWins;
+        int oWins;
+        int draws;
+
+        RoomState(int rows, int cols, int winLength, int xWins, int oWins, int draws) {
+            this.rows = rows;
+            this.cols = cols;
+            this.winLength = winLength;
+            this.moves = new int[Math.max(0, rows * cols)];
+            this.xWins = xWins;
+            this.oWins = oWins;
+            this.draws = draws;
+        }
+    }
+
+    /**
+     * Commit is the wait of one commit for its record to be durable, as a ForkJoinPool.ManagedBlocker.
+     */
+    private class Commit implements ForkJoinPool.ManagedBlocker {
+
+        private final long seq;
+
+        Commit(long seq) {
+            this.seq = seq;
+        }
+
+        /**
+         * Waits until the record is durable or the journal is closed.
+         * @return true, no further waiting is needed.
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        @Override
+        public boolean block() throws InterruptedException {
+            lock.lock();
+            try {
+                while (!isDurable(seq)) {
+                    durable.await();
+                }
+            } finally {
+                lock.unlock();
+            }
+            return true;
+        }
+
+        /**
+         * Checks whether the record is durable or the journal is closed.
+         * @return true if there is no need to wait.
+         */
+        @Override
+        public boolean isReleasable() {
+            return isDurable(seq);
+        }
+    }
+
+    /**
+     * RecoveredRoom is a room that was in play when the journal was last written, as rebuilt by the replay.
+     */
+    public static final class RecoveredRoom {
+        private final int id;
+        private final RoomState state;
+
+        private RecoveredRoom(int id, RoomState state) {
+            this.id = id;
+            this.state = state;
+        }
+
+        /**
+         * Getter for the id of the room.
+         * @return The id the room had.
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Checks if the room was played on a board of the given size.
+         * @param rows The number of rows.
+         * @param cols The number of columns.
+         * @param winLength The number of marks in a row needed to win.
+         * @return true if the board matches, false otherwise.
+         */
+        public boolean fits(int rows, int cols, int winLength) {
+            return state.rows == rows && state.cols == cols && state.winLength == winLength;
+        }
+
+        /**
+         * Restores the scores and the moves of the current game onto an empty BoardModel of the same size.
+         * @param bm The BoardModel to restore.
+         */
+        public void restore(BoardModel bm) {
+            bm.restoreScores(state.xWins, state.oWins, state.draws);
+            for (int i = 0; i < state.moveCount; i++) {
+                int m = state.moves[i];
+                int cell = m >>> 2;
+                bm.setCell(cell / state.cols, cell % state.cols, decodeMark(m & 3));
+            }
+        }
+    }
+}
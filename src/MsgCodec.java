@@ -0,0 +1,140 @@
+/**
+ * MsgCodec.java
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * MsgCodec turns GameMsg objects into frames and back, for the protocol version negotiated by the Handshake.
+ * Version 1 frames are a 4-byte big-endian length followed by a Java serialized GameMsg;
+ * version 2 frames are delegated to BinaryCodec.
+ * Either way a receiver can tell where one message ends without blocking on a stream.
+ */
+public class MsgCodec {
+
+    /**
+     * Size of the length prefix of every frame, in bytes.
+     */
+    public static final int HEADER_SIZE = 4;
+
+    /**
+     * Largest frame accepted, including the length prefix.
+     */
+    public static final int MAX_FRAME_SIZE = 8192;
+
+    private MsgCodec() {
+    }
+
+    /**
+     * Encodes a GameMsg into a complete frame of the given protocol version.
+     * Binary frames are written into a buffer taken from the pool.
+     * @param msg The GameMsg to encode.
+     * @param version The negotiated protocol version.
+     * @param pool The BufferPool to take the buffer from.
+     * @return A buffer holding the frame, ready to be read from.
+     * @throws IOException if the message cannot be encoded or is larger than MAX_FRAME_SIZE.
+     */
+    public static ByteBuffer encode(GameMsg msg, int version, BufferPool pool) throws IOException {
+        if (version != Handshake.BINARY_VERSION) {
+            return encode(msg);
+        }
+        int size = BinaryCodec.frameSize(msg);
+        if (size > MAX_FRAME_SIZE) {
+            throw new IOException("Frame too large: " + size);
+        }
+        ByteBuffer frame = pool.acquire(size);
+        BinaryCodec.encode(msg, frame);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Decodes the next complete frame of the given protocol version from the buffer.
+     * If the buffer does not hold a complete frame yet, nothing is consumed.
+     * @param in The buffer to read from, in read mode.
+     * @param version The negotiated protocol version.
+     * @return The decoded GameMsg, or null if the frame is not complete yet.
+     * @throws IOException if the frame is malformed.
+     */
+    public static GameMsg decode(ByteBuffer in, int version) throws IOException {
+        if (version == Handshake.BINARY_VERSION) {
+            return BinaryCodec.decode(in);
+        }
+        return decode(in);
+    }
+
+    /**
+     * Encodes a GameMsg into a complete version 1 frame.
+     * @param msg The GameMsg to encode.
+     * @return A buffer holding the frame, ready to be read from.
+     * @throws IOException if the message cannot be encoded or is larger than MAX_FRAME_SIZE.
+     */
+    public static ByteBuffer encode(GameMsg msg) throws IOException {
+        byte[] payload = serialize(msg);
+        if (payload.length + HEADER_SIZE > MAX_FRAME_SIZE) {
+            throw new IOException("Frame too large: " + payload.length);
+        }
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        frame.putInt(payload.length);
+        frame.put(payload);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Decodes the next complete version 1 frame from the buffer.
+     * If the buffer does not hold a complete frame yet, nothing is consumed.
+     * @param in The buffer to read from, in read mode.
+     * @return The decoded GameMsg, or null if the frame is not complete yet.
+     * @throws IOException if the frame is malformed.
+     */
+    public static GameMsg decode(ByteBuffer in) throws IOException {
+        if (in.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int length = in.getInt(in.position());
+        if (length < 0 || length + HEADER_SIZE > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        if (in.remaining() < HEADER_SIZE + length) {
+            return null;
+        }
+        in.position(in.position() + HEADER_SIZE);
+        byte[] payload = new byte[length];
+        in.get(payload);
+        return deserialize(payload);
+    }
+
+    /**
+     * Serializes a GameMsg into a self-contained payload.
+     * @param msg The GameMsg to serialize.
+     * @return The payload bytes.
+     * @throws IOException if serialization fails.
+     */
+    static byte[] serialize(GameMsg msg) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeUnshared(msg);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a payload produced by serialize.
+     * @param payload The payload bytes.
+     * @return The GameMsg.
+     * @throws IOException if the payload is not a GameMsg.
+     */
+    static GameMsg deserialize(byte[] payload) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return (GameMsg) in.readUnshared();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Invalid payload", e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * MsgStream.java
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * MsgStream is a blocking, bidirectional stream of GameMsg objects over a socket.
+ * It hides the wire format, so Client and the blocking ClientHandler can talk to either transport.
+ */
+public interface MsgStream {
+
+    /**
+     * Reads the next GameMsg, blocking until one arrives.
+     * @return The GameMsg received.
+     * @throws IOException if the connection is lost or the message is malformed.
+     */
+    GameMsg read() throws IOException;
+
+    /**
+     * Writes a GameMsg and flushes it to the peer.
+     * @param msg The GameMsg to send.
+     * @throws IOException if the connection is lost.
+     */
+    void write(GameMsg msg) throws IOException;
+
+    /**
+     * Writes a GameMsg without flushing it, so several messages can leave in one flush.
+     * @param msg The GameMsg to send.
+     * @throws IOException if the connection is lost.
+     */
+    void writeBuffered(GameMsg msg) throws IOException;
+
+    /**
+     * Writes a frame already encoded for the protocol of the stream, without flushing it.
+     * The frame is only read, so it can be shared with other streams.
+     * @param frame The frame, ready to be read from.
+     * @throws IOException if the connection is lost, or the stream does not speak in frames.
+     */
+    void writeFrame(ByteBuffer frame) throws IOException;
+
+    /**
+     * Flushes the messages written so far to the peer.
+     * @throws IOException if the connection is lost.
+     */
+    void flush() throws IOException;
+
+    /**
+     * Checks if the peer asked to watch a game rather than to play, in the handshake.
+     * @return true for a spectator, false for a player.
+     */
+    boolean isSpectator();
+
+    /**
+     * Checks if the peer asked to resume its seat in a game rather than to join a new one, in the handshake.
+     * @return true for a player sending RESUME next, false otherwise.
+     */
+    boolean isResuming();
+}
@@ -0,0 +1,406 @@
+/**
+ * NioConnection.java
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * NioConnection is one client connected through the NIO transport, owned by a single NioEventLoop:
+ * reads, decoding and writes all happen on the loop thread, while sendMsg may be called from any thread
+ * and only queues the encoded frame in a bounded OutboundQueue, subject to the OverflowPolicy of the ServerConfig.
+ */
+public class NioConnection implements PlayerConnection, Spectator {
+
+    private final SocketChannel channel;
+    private volatile NioEventLoop loop;
+    private final int connectionId;
+    private final ByteBuffer readBuf = ByteBuffer.allocateDirect(MsgCodec.MAX_FRAME_SIZE + 8);
+    private final ByteBuffer writeBuf = ByteBuffer.allocateDirect(MsgCodec.MAX_FRAME_SIZE * 2);
+    private final AtomicBoolean snapshotPending = new AtomicBoolean();
+    private final BufferPool pool;
+    private SelectionKey key;
+    private NioEventLoop home;
+    private RoomRegistry registry;
+    private ServerMetrics metrics;
+    private OutboundQueue<ByteBuffer> writeQueue;
+    private ServerConfig.OverflowPolicy overflowPolicy;
+    private long stallStart = 0;
+    private GameRoom room;
+    private int version = 0;
+    private boolean spectating = false;
+    private boolean resuming = false;
+    private volatile Mark playerSimbol;
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor for NioConnection.
+     * @param channel The non-blocking SocketChannel of the client.
+     * @param loop The NioEventLoop owning this connection, until it moves to the loop of its room.
+     * @param connectionId The id of the connection, used for logging.
+     */
+    public NioConnection(SocketChannel channel, NioEventLoop loop, int connectionId) {
+        this.channel = channel;
+        this.loop = loop;
+        this.connectionId = connectionId;
+        this.pool = loop.getBufferPool();
+    }
+
+    /**
+     * Completes the registration of the connection. Called on the loop thread.
+     * @param key The SelectionKey of the channel.
+     * @param registry The RoomRegistry to join a room through once the handshake is done.
+     */
+    void open(SelectionKey key, RoomRegistry registry) {
+        this.key = key;
+        this.registry = registry;
+        this.metrics = registry.getMetrics();
+        this.writeQueue = new OutboundQueue<>(registry.getConfig().getOutboundCapacity());
+        this.overflowPolicy = registry.getConfig().getOverflowPolicy();
+        metrics.connectionOpened();
+    }
+
+    /**
+     * Records the player symbol assigned to this client.
+     * @param symbol The player symbol (Mark.X or Mark.O).
+     */
+    @Override
+    public void setMark(Mark symbol) {
+        this.playerSimbol = symbol;
+    }
+
+    /**
+     * Gets the player symbol assigned to this client.
+     * @return The Mark of the player.
+     */
+    @Override
+    public Mark getMark() {
+        return playerSimbol;
+    }
+
+    /**
+     * Records the room this client has been moved to by the Matchmaker, on the loop thread,
+     * and moves the connection to the loop of that room if it runs on another one.
+     * @param room The GameRoom the client is now seated in.
+     */
+    @Override
+    public void setRoom(GameRoom room) {
+        runOnLoop(() -> {
+            this.room = room;
+            follow(room);
+            if (home != null && key != null && !closed) {
+                moveTo(home);
+                home = null;
+            }
+        });
+    }
+
+    /**
+     * Queues a GameMsg for the client. The frame is written by the loop thread.
+     * Messages sent once the connection is closed are dropped.
+     * @param msg The GameMsg to send.
+     */
+    @Override
+    public void sendMsg(GameMsg msg) {
+        if (closed) return;
+        try {
+            ByteBuffer frame = MsgCodec.encode(msg, version, pool);
+            if (writeQueue.offer(frame)) {
+                metrics.queued(writeQueue.size());
+                metrics.messageSent(msg.getType());
+                Log.debug("Server sent: {} to {}", msg.getType(), playerSimbol);
+            } else {
+                pool.release(frame);
+                overflow();
+            }
+        } catch (IOException e) {
+            Log.error("Connection{} cannot encode {}", connectionId, msg.getType(), e);
+            return;
+        }
+        runOnLoop(this::flush);
+    }
+
+    /**
+     * Gets the protocol version negotiated with the client.
+     * @return The protocol version, or 0 before the handshake.
+     */
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Queues a frame shared with the other spectators of the room. The frame is written by the loop thread.
+     * When the queue is full the frame is skipped, and the next flush replaces what is queued by a SNAPSHOT frame.
+     * @param frame The read-only frame to send.
+     * @return true if queued, false if skipped.
+     */
+    @Override
+    public boolean offerFrame(ByteBuffer frame) {
+        if (closed) return true;
+        boolean queued = writeQueue.offer(frame);
+        if (queued) {
+            metrics.queued(writeQueue.size());
+        } else {
+            snapshotPending.set(true);
+        }
+        runOnLoop(this::flush);
+        return queued;
+    }
+
+    /**
+     * Reads what is available from the channel, completes the handshake if needed,
+     * and hands every complete frame to the GameRoom.
+     */
+    void onReadable() {
+        try {
+            int n = channel.read(readBuf);
+            if (n < 0) {
+                close();
+                return;
+            }
+            metrics.bytesIn(n);
+            readBuf.flip();
+            if (version == 0 && !handshake()) {
+                readBuf.compact();
+                return;
+            }
+            GameMsg msg;
+            while (!closed && (msg = MsgCodec.decode(readBuf, version)) != null) {
+                long decodedAt = System.nanoTime();
+                metrics.messageReceived(msg.getType());
+                if (spectating) {
+                    watch(msg);
+                } else if (resuming) {
+                    resume(msg);
+                } else {
+                    room.handle(this, msg, decodedAt);
+                }
+            }
+            readBuf.compact();
+            if (home != null && !closed) {
+                moveTo(home);
+                home = null;
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * Moves the connection to another loop: its key here is cancelled, and the other loop registers the channel
+     * with its own selector. Until then the connection has no key, and flushes wait for the new loop.
+     * Called on the loop thread, between reads.
+     * @param target The NioEventLoop taking the connection over.
+     */
+    private void moveTo(NioEventLoop target) {
+        key.cancel();
+        key = null;
+        loop = target;
+        target.adopt(channel, this);
+    }
+
+    /**
+     * Completes the move of the connection to its new loop, and writes whatever was queued meanwhile.
+     * Called on the new loop thread.
+     * @param key The SelectionKey of the channel on the new loop.
+     */
+    void adopted(SelectionKey key) {
+        this.key = key;
+        Log.debug("Connection{} moved to the loop of room {}", connectionId, room.getId());
+        flush();
+    }
+
+    /**
+     * Answers the client's hello and joins a GameRoom, unless the client is a spectator.
+     * @return true if the handshake is done, false if the hello is not complete yet.
+     * @throws IOException if the client does not open with a valid hello.
+     */
+    private boolean handshake() throws IOException {
+        if (readBuf.remaining() >= 2 && Handshake.isLegacy(readBuf.get(0), readBuf.get(1))) {
+            throw new IOException("Legacy serialization clients need the blocking transport");
+        }
+        if (readBuf.remaining() < Handshake.HELLO_SIZE) {
+            return false;
+        }
+        int offered = Handshake.parseHello(readBuf);
+        int flags = Handshake.flags(offered);
+        spectating = (flags & Handshake.SPECTATOR_FLAG) != 0;
+        resuming = (flags & Handshake.RESUME_FLAG) != 0;
+        version = Handshake.negotiate(offered & ~Handshake.FLAGS);
+        writeQueue.offer(Handshake.hello(version | flags));
+        metrics.queued(writeQueue.size());
+        flush();
+        if (spectating || resuming) {
+            return true;
+        }
+        room = registry.join(this);
+        follow(room);
+        if (Log.isEnabled(Log.Level.INFO)) {
+            Log.info("Connection{} joined room {} as {}", connectionId, room.getId(), playerSimbol + " (protocol v" + version + ")");
+        }
+        return true;
+    }
+
+    /**
+     * Handles a message of a player resuming its seat: a RESUME hands its token over to the registry,
+     * anything before is ignored. A player asking for a room that does not exist is sent EXIT.
+     * @param msg The GameMsg received.
+     */
+    private void resume(GameMsg msg) {
+        if (msg.getType() != GameMsg.MsgType.RESUME) {
+            return;
+        }
+        room = registry.resume(this, msg.getMessage());
+        if (room == null) {
+            sendMsg(new GameMsg(GameMsg.MsgType.EXIT, 0, 0, null, "No such game"));
+            return;
+        }
+        resuming = false;
+        follow(room);
+        Log.info("Connection{} resumes its seat in room {} (protocol v{})", connectionId, room.getId(), version);
+    }
+
+    /**
+     * Moves the connection to the loop of its room once the current read is done,
+     * if the room runs on another event loop.
+     * @param room The GameRoom the player is seated in.
+     */
+    private void follow(GameRoom room) {
+        Executor shard = registry.getShards().get(room.getShard());
+        if (shard instanceof NioEventLoop && shard != loop) {
+            home = (NioEventLoop) shard;
+        }
+    }
+
+    /**
+     * Handles a message of a spectator: the first WATCH picks the room it watches, anything else is ignored.
+     * A spectator asking for a room that does not exist is sent EXIT.
+     * @param msg The GameMsg received.
+     */
+    private void watch(GameMsg msg) {
+        if (room != null || msg.getType() != GameMsg.MsgType.WATCH) {
+            return;
+        }
+        room = registry.watch(this, msg.getRow());
+        if (room == null) {
+            sendMsg(new GameMsg(GameMsg.MsgType.EXIT, 0, 0, null, "No such game"));
+            return;
+        }
+        Log.info("Connection{} watches room {} (protocol v{})", connectionId, room.getId(), version);
+    }
+
+    /**
+     * Continues writing pending frames once the channel is writable again.
+     */
+    void onWritable() {
+        flush();
+    }
+
+    private void overflow() {
+        metrics.overflow(overflowPolicy);
+        if (overflowPolicy == ServerConfig.OverflowPolicy.SNAPSHOT && room != null) {
+            snapshotPending.set(true);
+            return;
+        }
+        Log.warn("Connection{} cannot keep up, dropped!", connectionId);
+        runOnLoop(this::close);
+    }
+
+    private void runOnLoop(Runnable task) {
+        NioEventLoop owner = loop;
+        if (owner.inEventLoop()) {
+            task.run();
+        } else {
+            owner.execute(() -> runOnLoop(task));
+        }
+    }
+
+    /**
+     * Moves as many queued frames as fit into the write buffer and writes it, until the queue is empty
+     * or the socket does not take more. A pending SNAPSHOT first replaces whatever is queued: the queue is dropped,
+     * and the room is asked to queue the SNAPSHOT from its actor.
+     * Frames shared with other spectators are read-only heap buffers, which the BufferPool does not take back.
+     * The time from a partial write to the write buffer being drained is recorded as a write stall.
+     */
+    private void flush() {
+        if (closed || key == null) return;
+        try {
+            if (snapshotPending.getAndSet(false)) {
+                metrics.dequeued(discard());
+                if (spectating) {
+                    metrics.spectatorResync();
+                    room.snapshotFrame(version, this::offerFrame);
+                } else {
+                    room.snapshot(this::sendMsg);
+                }
+            }
+            while (true) {
+                int n = 0;
+                ByteBuffer frame;
+                while ((frame = writeQueue.peek()) != null && frame.remaining() <= writeBuf.remaining()) {
+                    writeBuf.put(frame);
+                    writeQueue.poll();
+                    pool.release(frame);
+                    n++;
+                }
+                metrics.dequeued(n);
+                writeBuf.flip();
+                metrics.bytesOut(channel.write(writeBuf));
+                boolean drained = !writeBuf.hasRemaining();
+                writeBuf.compact();
+                if (!drained) {
+                    if (stallStart == 0) {
+                        stallStart = System.nanoTime();
+                    }
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (stallStart != 0) {
+                    metrics.writeStall(System.nanoTime() - stallStart);
+                    stallStart = 0;
+                }
+                if (writeQueue.peek() == null) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private int discard() {
+        int n = 0;
+        ByteBuffer frame;
+        while ((frame = writeQueue.poll()) != null) {
+            pool.release(frame);
+            n++;
+        }
+        return n;
+    }
+
+    private void close() {
+        if (closed) return;
+        closed = true;
+        metrics.connectionClosed();
+        metrics.dequeued(discard());
+        Log.info("Connection{} lost connection!", connectionId);
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        if (room != null && spectating) {
+            room.unwatch(this);
+        } else if (room != null) {
+            room.playerLost(this);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * NioEventLoop.java
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * NioEventLoop is a single thread multiplexing many NioConnections over one Selector.
+ * Other threads hand work over to the loop through execute, which wakes the selector up.
+ */
+public class NioEventLoop implements Runnable, Executor {
+
+    private final Selector selector;
+    private final RoomRegistry registry;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final BufferPool bufferPool = new BufferPool(256, 4096);
+    private volatile Thread thread;
+
+    /**
+     * Constructor for NioEventLoop.
+     * @param registry The RoomRegistry connections of this loop are paired through.
+     */
+    public NioEventLoop(RoomRegistry registry) {
+        this.registry = registry;
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Registers a newly accepted channel with this loop. Registration happens on the loop thread.
+     * @param channel The non-blocking SocketChannel of the client.
+     * @param connectionId The id of the connection, used for logging.
+     */
+    public void register(SocketChannel channel, int connectionId) {
+        execute(() -> {
+            try {
+                NioConnection connection = new NioConnection(channel, this, connectionId);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ, connection);
+                connection.open(key, registry);
+            } catch (IOException e) {
+                Log.warn("Failed to register connection {}", connectionId, e);
+            }
+        });
+    }
+
+    /**
+     * Takes over a connection registered with another loop, whose key there is already cancelled.
+     * Registration happens on the loop thread; a connection closed in the meantime is left alone.
+     * A connection coming back to this loop before its old key here was deregistered, which only the next selection
+     * does, selects now so it can register again.
+     * @param channel The non-blocking SocketChannel of the connection.
+     * @param connection The NioConnection moving to this loop.
+     */
+    void adopt(SocketChannel channel, NioConnection connection) {
+        execute(() -> {
+            if (!channel.isOpen()) {
+                return;
+            }
+            try {
+                SelectionKey key;
+                try {
+                    key = channel.register(selector, SelectionKey.OP_READ, connection);
+                } catch (CancelledKeyException e) {
+                    selector.selectNow();
+                    key = channel.register(selector, SelectionKey.OP_READ, connection);
+                }
+                connection.adopted(key);
+            } catch (IOException e) {
+                Log.debug("Connection closed while moving loops", e);
+            }
+        });
+    }
+
+    /**
+     * Queues a task to be run on the loop thread, waking the selector up if needed.
+     * @param task The task to run.
+     */
+    @Override
+    public void execute(Runnable task) {
+        tasks.offer(task);
+        if (!inEventLoop() && wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Getter for the BufferPool outgoing frames of this loop's connections are encoded into.
+     * @return The BufferPool of this loop.
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Checks if the calling thread is the thread of this loop.
+     * @return true if called from the loop thread, false otherwise.
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * The main run method of the loop. Waits for ready channels, dispatches read and write
+     * readiness to their NioConnections, and runs the queued tasks.
+     */
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        while (true) {
+            try {
+                selector.select();
+                wakeupPending.set(false);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if (key.isValid() && key.isReadable()) {
+                        connection.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.onWritable();
+                    }
+                }
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+            } catch (Exception e) {
+                Log.error("Event loop error", e);
+            }
+        }
+    }
+}
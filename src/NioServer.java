@@ -0,0 +1,76 @@
+/**
+ * NioServer.java
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * NioServer is the non-blocking transport of the GameServer. One acceptor thread hands the accepted connections,
+ * round-robin, to a small pool of NioEventLoops which do all the reading and writing.
+ * With the SHARDED Scheduler the event loops are also the GameShards of the registry.
+ */
+public class NioServer {
+
+    private final ServerConfig config;
+    private final RoomRegistry registry;
+    private final NioEventLoop[] loops;
+    private int connections = 0;
+
+    /**
+     * Constructor for NioServer. Creates the event loops, which only run once the server is started.
+     * @param config The ServerConfig holding the port and the number of event-loop threads.
+     * @param registry The RoomRegistry new connections are paired through.
+     */
+    public NioServer(ServerConfig config, RoomRegistry registry) {
+        this.config = config;
+        this.registry = registry;
+        this.loops = new NioEventLoop[config.getIoThreads()];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new NioEventLoop(registry);
+        }
+        if (config.getScheduler() == ServerConfig.Scheduler.SHARDED) {
+            registry.setShards(new GameShards(loops));
+        }
+    }
+
+    /**
+     * Starts the event loops and runs the accept loop on the calling thread.
+     * @throws IOException if the server socket cannot be opened.
+     */
+    public void start() throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            Thread t = new Thread(loops[i], "NioEventLoop-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        try (ServerSocketChannel server = ServerSocketChannel.open();
+             Selector selector = Selector.open()) {
+            server.bind(new InetSocketAddress(config.getPort()), 1024);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            Log.info("Server started at {} (nio, {} event loops, {} scheduler)", config.getPort(), loops.length,
+                    config.getScheduler().name().toLowerCase());
+            while (true) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                    SocketChannel channel;
+                    while ((channel = server.accept()) != null) {
+                        channel.configureBlocking(false);
+                        channel.socket().setTcpNoDelay(true);
+                        connections++;
+                        loops[connections % loops.length].register(channel, connections);
+                    }
+                }
+            }
+        }
+    }
+}
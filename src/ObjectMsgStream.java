@@ -0,0 +1,103 @@
+/**
+ * ObjectMsgStream.java
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * ObjectMsgStream exchanges GameMsg objects through Java serialization,
+ * as spoken by clients from before the protocol handshake.
+ */
+public class ObjectMsgStream implements MsgStream {
+    private final ObjectOutputStream out;
+    private final ObjectInputStream in;
+
+    /**
+     * Constructor for ObjectMsgStream. Writes the stream header first, then waits for the peer's header.
+     * @param input The input stream of the socket.
+     * @param output The output stream of the socket.
+     * @throws IOException if the streams cannot be created.
+     */
+    public ObjectMsgStream(InputStream input, OutputStream output) throws IOException {
+        out = new ObjectOutputStream(output);
+        out.flush();
+        in = new ObjectInputStream(input);
+    }
+
+    /**
+     * Reads the next serialized GameMsg from the socket.
+     * @return The GameMsg received.
+     * @throws IOException if the connection is lost or the message is malformed.
+     */
+    @Override
+    public GameMsg read() throws IOException {
+        try {
+            return (GameMsg) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Invalid message", e);
+        }
+    }
+
+    /**
+     * Writes a GameMsg through Java serialization and flushes it.
+     * @param msg The GameMsg to send.
+     * @throws IOException if the connection is lost.
+     */
+    @Override
+    public void write(GameMsg msg) throws IOException {
+        writeBuffered(msg);
+        out.flush();
+    }
+
+    /**
+     * Writes a GameMsg through Java serialization, without flushing it.
+     * @param msg The GameMsg to send.
+     * @throws IOException if the connection is lost.
+     */
+    @Override
+    public void writeBuffered(GameMsg msg) throws IOException {
+        out.writeObject(msg);
+    }
+
+    /**
+     * Refuses frames: legacy clients only speak Java serialization.
+     * @param frame The frame.
+     * @throws IOException always.
+     */
+    @Override
+    public void writeFrame(ByteBuffer frame) throws IOException {
+        throw new IOException("Legacy clients do not speak in frames");
+    }
+
+    /**
+     * Flushes the messages written so far to the socket.
+     * @throws IOException if the connection is lost.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Checks if the peer is a spectator. Legacy clients cannot watch games.
+     * @return false.
+     */
+    @Override
+    public boolean isSpectator() {
+        return false;
+    }
+
+    /**
+     * Checks if the peer asked to resume its seat. Legacy clients cannot resume.
+     * @return false.
+     */
+    @Override
+    public boolean isResuming() {
+        return false;
+    }
+}
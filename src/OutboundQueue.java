@@ -0,0 +1,113 @@
+/**
+ * OutboundQueue.java
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * OutboundQueue is the bounded queue of messages waiting to be written to one connection, a lock-free ring buffer
+ * in the manner of Dmitry Vyukov's: any thread may offer, but only the writer of the connection may poll.
+ * Offering never blocks, and a full queue is reported instead of waited on.
+ * @param <E> The type of the queued elements.
+ */
+public class OutboundQueue<E> {
+
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0;
+
+    /**
+     * Constructor for OutboundQueue.
+     * @param capacity The largest number of queued elements, rounded up to a power of two.
+     */
+    public OutboundQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element at the tail of the queue, unless the queue is full. May be called from any thread.
+     * @param e The element to add, not null.
+     * @return true if the element has been added, false if the queue is full.
+     */
+    public boolean offer(E e) {
+        while (true) {
+            long t = tail.get();
+            int i = (int) t & mask;
+            long diff = sequences.get(i) - t;
+            if (diff == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    items.lazySet(i, e);
+                    sequences.set(i, t + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes the element at the head of the queue. Must only be called from the single consumer thread.
+     * @return The element, or null if the queue is empty.
+     */
+    public E poll() {
+        long h = head;
+        int i = (int) h & mask;
+        if (sequences.get(i) != h + 1) {
+            return null;
+        }
+        E e = items.get(i);
+        items.lazySet(i, null);
+        sequences.set(i, h + mask + 1);
+        head = h + 1;
+        return e;
+    }
+
+    /**
+     * Gets the element at the head of the queue without removing it. Must only be called from the single consumer thread.
+     * @return The element, or null if the queue is empty.
+     */
+    public E peek() {
+        long h = head;
+        int i = (int) h & mask;
+        if (sequences.get(i) != h + 1) {
+            return null;
+        }
+        return items.get(i);
+    }
+
+    /**
+     * Gets the number of queued elements. Exact when no producer is in the middle of an offer.
+     * @return The number of elements.
+     */
+    public int size() {
+        long n = tail.get() - head;
+        return (int) Math.max(0, Math.min(n, mask + 1));
+    }
+
+    /**
+     * Checks if the queue holds no element.
+     * @return true if the queue is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Gets the largest number of elements the queue holds.
+     * @return The capacity of the queue.
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,468 @@
+/**
+ * ParallelSearch.java
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ParallelSearch is a game-tree search engine for m,n,k boards of any size: a negamax alpha-beta search
+ * on a ForkJoinPool using young brothers wait, sharing one lock-free TranspositionTable between its threads.
+ * It deepens iteratively and keeps the move of the last depth completed within the time budget.
+ */
+public class ParallelSearch {
+
+    /**
+     * Score of a win on the spot; wins further away score one less per ply.
+     */
+    public static final int WIN = 1_000_000;
+
+    private static final int INFINITY = WIN + 1;
+    private static final int MAX_PLY = 1024;
+    private static final int SPLIT_DEPTH = 3;
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+
+    /**
+     * Constructor for ParallelSearch, running on a new ForkJoinPool.
+     * @param parallelism The number of worker threads.
+     * @param tableBits The log2 of the number of TranspositionTable entries.
+     */
+    public ParallelSearch(int parallelism, int tableBits) {
+        this(new ForkJoinPool(parallelism), tableBits);
+    }
+
+    /**
+     * Constructor for ParallelSearch.
+     * @param pool The ForkJoinPool the search runs on.
+     * @param tableBits The log2 of the number of TranspositionTable entries.
+     */
+    public ParallelSearch(ForkJoinPool pool, int tableBits) {
+        this.pool = pool;
+        this.table = new TranspositionTable(tableBits);
+    }
+
+    /**
+     * Searches the best move of a player with iterative deepening, until the time budget runs out
+     * or the outcome of the game is known. The first depth is always completed.
+     * @param bm The BoardModel to search from. It is not modified.
+     * @param toMove The Mark of the player to move.
+     * @param budgetMillis The time budget in milliseconds.
+     * @return The Result of the deepest completed search, or null if the board is full.
+     */
+    public Result search(BoardModel bm, Mark toMove, long budgetMillis) {
+        return iterate(bm, toMove, Integer.MAX_VALUE, System.nanoTime() + budgetMillis * 1_000_000);
+    }
+
+    /**
+     * Searches the best move of a player with iterative deepening up to a fixed depth, without time limit.
+     * @param bm The BoardModel to search from. It is not modified.
+     * @param toMove The Mark of the player to move.
+     * @param depth The depth to search to, in plies.
+     * @return The Result of the search, or null if the board is full.
+     */
+    public Result searchDepth(BoardModel bm, Mark toMove, int depth) {
+        return iterate(bm, toMove, depth, Long.MAX_VALUE);
+    }
+
+    /**
+     * Getter for the ForkJoinPool the search runs on.
+     * @return The ForkJoinPool.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    private Result iterate(BoardModel bm, Mark toMove, int maxDepth, long deadline) {
+        Position root = new Position(bm);
+        int player = toMove == Mark.X ? 1 : 2;
+        int empty = root.cells.length - root.filled;
+        if (empty == 0) {
+            return null;
+        }
+        Search search = new Search(deadline);
+        long start = System.nanoTime();
+        Result result = null;
+        for (int depth = 1; depth <= Math.min(maxDepth, empty); depth++) {
+            int[] best = new int[2];
+            int d = depth;
+            search.armed = depth > 1;
+            try {
+                pool.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        best[1] = search.negamax(root.copy(), player, d, -INFINITY, INFINITY, 0, best);
+                    }
+                });
+                int score = best[1];
+                result = new Result(best[0], root.cols, score, depth, search.nodes.sum(), System.nanoTime() - start);
+                if (Math.abs(score) >= WIN - MAX_PLY) break;
+            } catch (RuntimeException e) {
+                if (!search.stopped) throw e;
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Result holds the outcome of a search.
+     */
+    public static class Result {
+        private final int move;
+        private final int cols;
+        private final int score;
+        private final int depth;
+        private final long nodes;
+        private final long elapsedNanos;
+
+        Result(int move, int cols, int score, int depth, long nodes, long elapsedNanos) {
+            this.move = move;
+            this.cols = cols;
+            this.score = score;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Getter for the row of the best move.
+         * @return The row index.
+         */
+        public int getRow() {
+            return move / cols;
+        }
+
+        /**
+         * Getter for the column of the best move.
+         * @return The column index.
+         */
+        public int getCol() {
+            return move % cols;
+        }
+
+        /**
+         * Getter for the score of the best move, from the point of view of the player to move.
+         * @return The score; WIN minus the number of plies for a forced win.
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * Getter for the depth of the deepest completed search.
+         * @return The depth in plies.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Getter for the number of nodes searched, over all depths.
+         * @return The number of nodes.
+         */
+        public long getNodes() {
+            return nodes;
+        }
+
+        /**
+         * Getter for the time spent searching.
+         * @return The elapsed time in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Gets the search speed.
+         * @return The number of nodes searched per second.
+         */
+        public double getNodesPerSecond() {
+            return nodes * 1e9 / Math.max(1, elapsedNanos);
+        }
+    }
+
+    /**
+     * The state of one search, shared by all the tasks searching for it.
+     */
+    private final class Search {
+        private final long deadline;
+        private final LongAdder nodes = new LongAdder();
+        private volatile boolean armed;
+        private volatile boolean stopped;
+
+        Search(long deadline) {
+            this.deadline = deadline;
+        }
+
+        int negamax(Position p, int player, int depth, int alpha, int beta, int ply, int[] bestOut) {
+            nodes.increment();
+            if (armed && (stopped || System.nanoTime() - deadline >= 0)) {
+                stopped = true;
+                throw Timeout.INSTANCE;
+            }
+            if (p.filled == p.cells.length) {
+                return 0;
+            }
+            if (depth == 0) {
+                return evaluate(p, player);
+            }
+            int ttMove = -1;
+            long entry = table.probe(p.hash);
+            if (entry != 0) {
+                ttMove = TranspositionTable.move(entry);
+                if (bestOut == null && TranspositionTable.depth(entry) >= depth) {
+                    int score = fromTable(TranspositionTable.score(entry), ply);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT) return score;
+                    if (bound == TranspositionTable.LOWER) alpha = Math.max(alpha, score);
+                    if (bound == TranspositionTable.UPPER) beta = Math.min(beta, score);
+                    if (alpha >= beta) return score;
+                }
+            }
+            int alphaOrig = alpha;
+            int[] moves = candidates(p, ttMove);
+            int best = child(p, moves[0], player, depth, alpha, beta, ply);
+            int bestMove = moves[0];
+            if (best < beta && moves.length > 1) {
+                if (depth >= SPLIT_DEPTH) {
+                    long split = split(p, moves, player, depth, alpha, best, beta, ply);
+                    best = (int) (split >> 32);
+                    bestMove = moves[(int) split];
+                } else {
+                    for (int i = 1; i < moves.length && best < beta; i++) {
+                        int score = child(p, moves[i], player, depth, Math.max(alpha, best), beta, ply);
+                        if (score > best) {
+                            best = score;
+                            bestMove = moves[i];
+                        }
+                    }
+                }
+            }
+            int bound = best <= alphaOrig ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(p.hash, toTable(best, ply), depth, bound, bestMove);
+            if (bestOut != null) {
+                bestOut[0] = bestMove;
+            }
+            return best;
+        }
+
+        private int child(Position p, int move, int player, int depth, int alpha, int beta, int ply) {
+            p.play(move, player);
+            try {
+                if (p.isWin(move, player)) {
+                    return WIN - ply - 1;
+                }
+                return -negamax(p, 3 - player, depth - 1, -beta, -alpha, ply + 1, null);
+            } finally {
+                p.undo(move, player);
+            }
+        }
+
+        /**
+         * Searches the younger brothers of a node in parallel, once the eldest has returned its score.
+         * @return The best score in the high 32 bits and the index of its move in the low 32 bits.
+         */
+        private long split(Position p, int[] moves, int player, int depth, int alpha, int eldest, int beta, int ply) {
+            AtomicLong best = new AtomicLong((long) eldest << 32);
+            AtomicBoolean cutoff = new AtomicBoolean();
+            List<RecursiveAction> brothers = new ArrayList<>(moves.length - 1);
+            for (int i = 1; i < moves.length; i++) {
+                int index = i;
+                brothers.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        if (cutoff.get()) return;
+                        int a = Math.max(alpha, (int) (best.get() >> 32));
+                        int score = child(p.copy(), moves[index], player, depth, a, beta, ply);
+                        long current = best.get();
+                        while (score > (int) (current >> 32)
+                                && !best.compareAndSet(current, ((long) score << 32) | index)) {
+                            current = best.get();
+                        }
+                        if (score >= beta) cutoff.set(true);
+                    }
+                });
+            }
+            RecursiveAction.invokeAll(brothers);
+            return best.get();
+        }
+    }
+
+    private static int toTable(int score, int ply) {
+        if (score >= WIN - MAX_PLY) return score + ply;
+        if (score <= -WIN + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN - MAX_PLY) return score - ply;
+        if (score <= -WIN + MAX_PLY) return score + ply;
+        return score;
+    }
+
+    private static int[] candidates(Position p, int ttMove) {
+        int[] moves = new int[p.cells.length];
+        int[] weight = new int[p.cells.length];
+        int n = 0;
+        if (p.filled == 0) {
+            return new int[] {(p.rows / 2) * p.cols + p.cols / 2};
+        }
+        for (int r = 0; r < p.rows; r++) {
+            for (int c = 0; c < p.cols; c++) {
+                int cell = r * p.cols + c;
+                if (p.cells[cell] != 0) continue;
+                int neighbours = p.neighbours(r, c);
+                if (neighbours == 0) continue;
+                int w = cell == ttMove ? Integer.MAX_VALUE : neighbours;
+                int k = n++;
+                while (k > 0 && weight[k - 1] < w) {
+                    moves[k] = moves[k - 1];
+                    weight[k] = weight[k - 1];
+                    k--;
+                }
+                moves[k] = cell;
+                weight[k] = w;
+            }
+        }
+        return java.util.Arrays.copyOf(moves, n);
+    }
+
+    private static int evaluate(Position p, int player) {
+        int score = 0;
+        int k = p.winLength;
+        for (int[] d : DIRECTIONS) {
+            for (int r = 0; r < p.rows; r++) {
+                int rEnd = r + d[0] * (k - 1);
+                if (rEnd < 0 || rEnd >= p.rows) continue;
+                for (int c = 0; c < p.cols; c++) {
+                    int cEnd = c + d[1] * (k - 1);
+                    if (cEnd < 0 || cEnd >= p.cols) continue;
+                    int x = 0;
+                    int o = 0;
+                    for (int i = 0; i < k; i++) {
+                        byte v = p.cells[(r + d[0] * i) * p.cols + c + d[1] * i];
+                        if (v == 1) x++;
+                        else if (v == 2) o++;
+                    }
+                    if (o == 0 && x > 0) score += 1 << Math.min(2 * (x - 1), 20);
+                    else if (x == 0 && o > 0) score -= 1 << Math.min(2 * (o - 1), 20);
+                }
+            }
+        }
+        score = Math.max(-WIN / 2, Math.min(WIN / 2, score));
+        return player == 1 ? score : -score;
+    }
+
+    /**
+     * Timeout unwinds the tasks of a search once its time budget has run out.
+     */
+    private static final class Timeout extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        static final Timeout INSTANCE = new Timeout();
+
+        private Timeout() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Position is the compact board a search works on: one byte per cell, 0 for EMPTY, 1 for X and 2 for O,
+     * with its Zobrist hash kept up to date as marks are played and undone.
+     */
+    private static final class Position {
+        private final byte[] cells;
+        private final int rows;
+        private final int cols;
+        private final int winLength;
+        private long hash;
+        private int filled;
+
+        Position(BoardModel bm) {
+            this.rows = bm.getRows();
+            this.cols = bm.getCols();
+            this.winLength = bm.getWinLength();
+            this.cells = new byte[rows * cols];
+            this.hash = mix(((long) rows << 40) | ((long) cols << 20) | winLength);
+            Mark[][] board = bm.getBoard();
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    if (board[r][c] != Mark.EMPTY) {
+                        play(r * cols + c, board[r][c] == Mark.X ? 1 : 2);
+                    }
+                }
+            }
+        }
+
+        private Position(Position other) {
+            this.cells = other.cells.clone();
+            this.rows = other.rows;
+            this.cols = other.cols;
+            this.winLength = other.winLength;
+            this.hash = other.hash;
+            this.filled = other.filled;
+        }
+
+        Position copy() {
+            return new Position(this);
+        }
+
+        void play(int cell, int player) {
+            cells[cell] = (byte) player;
+            hash ^= mix(cell * 2L + player);
+            filled++;
+        }
+
+        void undo(int cell, int player) {
+            cells[cell] = 0;
+            hash ^= mix(cell * 2L + player);
+            filled--;
+        }
+
+        boolean isWin(int cell, int player) {
+            int r = cell / cols;
+            int c = cell % cols;
+            for (int[] d : DIRECTIONS) {
+                int count = 1 + count(r, c, d[0], d[1], player) + count(r, c, -d[0], -d[1], player);
+                if (count >= winLength) return true;
+            }
+            return false;
+        }
+
+        int neighbours(int r, int c) {
+            int n = 0;
+            for (int i = Math.max(0, r - 2); i <= Math.min(rows - 1, r + 2); i++) {
+                for (int j = Math.max(0, c - 2); j <= Math.min(cols - 1, c + 2); j++) {
+                    if (cells[i * cols + j] != 0) n += 3 - Math.max(Math.abs(i - r), Math.abs(j - c));
+                }
+            }
+            return n;
+        }
+
+        private int count(int r, int c, int dr, int dc, int player) {
+            int n = 0;
+            int i = r + dr;
+            int j = c + dc;
+            while (n < winLength && i >= 0 && i < rows && j >= 0 && j < cols && cells[i * cols + j] == player) {
+                n++;
+                i += dr;
+                j += dc;
+            }
+            return n;
+        }
+
+        private static long mix(long z) {
+            z = (z + 0x9E3779B97F4A7C15L) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
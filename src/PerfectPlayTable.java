@@ -0,0 +1,195 @@
+/**
+ * PerfectPlayTable.java
+ */
+
+/**
+ * PerfectPlayTable holds the perfect-play move of every reachable position of the 3x3 board,
+ * indexed by the base-3 encoding of the position, so choosing a move at runtime is a single array lookup.
+ * The table is solved once by negamax, memoised under the 8 symmetries of the square.
+ */
+public class PerfectPlayTable {
+
+    /**
+     * Number of possible encodings of a 3x3 board.
+     */
+    public static final int SIZE = 19683;
+
+    /**
+     * Powers of 3 by cell index, used to update an encoding incrementally.
+     */
+    public static final int[] POW3 = {1, 3, 9, 27, 81, 243, 729, 2187, 6561};
+
+    private static final byte UNKNOWN = Byte.MIN_VALUE;
+    private static final int[][] LINES = {
+            {0, 1, 2}, {3, 4, 5}, {6, 7, 8}, {0, 3, 6}, {1, 4, 7}, {2, 5, 8}, {0, 4, 8}, {2, 4, 6}
+    };
+    private static final int[][] SYMMETRIES = {
+            {0, 1, 2, 3, 4, 5, 6, 7, 8}, {6, 3, 0, 7, 4, 1, 8, 5, 2},
+            {8, 7, 6, 5, 4, 3, 2, 1, 0}, {2, 5, 8, 1, 4, 7, 0, 3, 6},
+            {2, 1, 0, 5, 4, 3, 8, 7, 6}, {6, 7, 8, 3, 4, 5, 0, 1, 2},
+            {0, 3, 6, 1, 4, 7, 2, 5, 8}, {8, 5, 2, 7, 4, 1, 6, 3, 0}
+    };
+
+    private static volatile PerfectPlayTable instance;
+
+    private final byte[] bestMove = new byte[SIZE];
+    private final byte[] value = new byte[SIZE];
+    private int reachable = 0;
+    private int canonicalSolved = 0;
+    private long solveNanos;
+
+    private PerfectPlayTable() {
+        long start = System.nanoTime();
+        byte[] memo = new byte[SIZE];
+        java.util.Arrays.fill(memo, UNKNOWN);
+        java.util.Arrays.fill(bestMove, (byte) -1);
+        java.util.Arrays.fill(value, UNKNOWN);
+        solve(new int[9], 0, memo);
+        fill(new int[9], 0, memo);
+        solveNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Gets the shared table, solving it on first use.
+     * @return The solved PerfectPlayTable.
+     */
+    public static PerfectPlayTable get() {
+        PerfectPlayTable table = instance;
+        if (table == null) {
+            synchronized (PerfectPlayTable.class) {
+                table = instance;
+                if (table == null) {
+                    table = new PerfectPlayTable();
+                    instance = table;
+                    Log.info("PerfectPlayTable solved: {} reachable positions, {} after symmetry reduction, in {} ms",
+                            table.reachable, table.canonicalSolved, table.solveNanos / 1_000_000);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Gets the perfect-play move for the side to move in a position.
+     * @param position The base-3 encoding of the position.
+     * @return The cell index (r*3+c) to play, or -1 if the position is terminal or unreachable.
+     */
+    public int bestMove(int position) {
+        return bestMove[position];
+    }
+
+    /**
+     * Gets the game-theoretic value of a position for the side to move:
+     * positive if it wins, 0 for a draw, negative if it loses. Quicker wins score higher.
+     * @param position The base-3 encoding of the position.
+     * @return The value of the position, or Byte.MIN_VALUE if unreachable.
+     */
+    public int value(int position) {
+        return value[position];
+    }
+
+    /**
+     * Computes the base-3 encoding of a 3x3 board.
+     * @param board The 3x3 board.
+     * @return The encoding of the board.
+     */
+    public static int encode(Mark[][] board) {
+        int position = 0;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                position += code(board[i][j]) * POW3[i * 3 + j];
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Gets the base-3 digit of a mark.
+     * @param m The mark.
+     * @return 0 for EMPTY, 1 for X, 2 for O.
+     */
+    public static int code(Mark m) {
+        return m == Mark.X ? 1 : m == Mark.O ? 2 : 0;
+    }
+
+    private int solve(int[] cells, int stones, byte[] memo) {
+        int canon = canonical(cells);
+        if (memo[canon] != UNKNOWN) {
+            return memo[canon];
+        }
+        int result;
+        if (hasLine(cells, stones % 2 == 0 ? 2 : 1)) {
+            result = -(10 - stones);
+        } else if (stones == 9) {
+            result = 0;
+        } else {
+            int toMove = stones % 2 == 0 ? 1 : 2;
+            result = Integer.MIN_VALUE;
+            for (int k = 0; k < 9; k++) {
+                if (cells[k] != 0) continue;
+                cells[k] = toMove;
+                result = Math.max(result, -solve(cells, stones + 1, memo));
+                cells[k] = 0;
+            }
+        }
+        memo[canon] = (byte) result;
+        canonicalSolved++;
+        return result;
+    }
+
+    private void fill(int[] cells, int stones, byte[] memo) {
+        int position = encode(cells);
+        if (value[position] != UNKNOWN) {
+            return;
+        }
+        reachable++;
+        value[position] = memo[canonical(cells)];
+        if (hasLine(cells, 1) || hasLine(cells, 2) || stones == 9) {
+            return;
+        }
+        int toMove = stones % 2 == 0 ? 1 : 2;
+        int best = -1;
+        int bestScore = Integer.MIN_VALUE;
+        for (int k = 0; k < 9; k++) {
+            if (cells[k] != 0) continue;
+            cells[k] = toMove;
+            int score = -memo[canonical(cells)];
+            if (score > bestScore) {
+                bestScore = score;
+                best = k;
+            }
+            fill(cells, stones + 1, memo);
+            cells[k] = 0;
+        }
+        bestMove[position] = (byte) best;
+    }
+
+    private static int encode(int[] cells) {
+        int position = 0;
+        for (int k = 0; k < 9; k++) {
+            position += cells[k] * POW3[k];
+        }
+        return position;
+    }
+
+    private static int canonical(int[] cells) {
+        int min = Integer.MAX_VALUE;
+        for (int[] sym : SYMMETRIES) {
+            int position = 0;
+            for (int k = 0; k < 9; k++) {
+                position += cells[sym[k]] * POW3[k];
+            }
+            min = Math.min(min, position);
+        }
+        return min;
+    }
+
+    private static boolean hasLine(int[] cells, int player) {
+        for (int[] line : LINES) {
+            if (cells[line[0]] == player && cells[line[1]] == player && cells[line[2]] == player) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
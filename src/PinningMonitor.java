@@ -0,0 +1,99 @@
+/**
+ * PinningMonitor.java
+ */
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PinningMonitor reports where virtual threads got pinned to their carrier thread,
+ * typically by blocking inside a synchronized block or method.
+ * It listens to the jdk.VirtualThreadPinned JFR event in-process, groups the events by the
+ * innermost application frame, and logs a report periodically and when the JVM exits.
+ */
+public class PinningMonitor {
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+    private RecordingStream stream;
+
+    /**
+     * Starts listening for pinning events, and registers a shutdown hook logging the final report.
+     * @param reportInterval How often the report is logged while running, or null to log it only on exit.
+     */
+    public void start(Duration reportInterval) {
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(Duration.ZERO).withStackTrace();
+        stream.onEvent(EVENT, this::record);
+        if (reportInterval != null) {
+            stream.onFlush(new Runnable() {
+                private long last = System.nanoTime();
+
+                @Override
+                public void run() {
+                    long now = System.nanoTime();
+                    if (now - last >= reportInterval.toNanos()) {
+                        last = now;
+                        Log.info("{}", report().stripTrailing());
+                    }
+                }
+            });
+        }
+        stream.startAsync();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            Log.info("{}", report().stripTrailing());
+            // The hook of Log may have run already.
+            Log.flush();
+        }, "PinningMonitor-Report"));
+    }
+
+    /**
+     * Builds the report of pinned sites, the most frequent first.
+     * @return The report as printable text.
+     */
+    public String report() {
+        List<Map.Entry<String, Site>> entries = new ArrayList<>(sites.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().count.sum(), a.getValue().count.sum()));
+        StringBuilder sb = new StringBuilder("Virtual thread pinning report: ")
+                .append(entries.size()).append(" site(s)\n");
+        for (Map.Entry<String, Site> e : entries) {
+            sb.append(String.format("  %8d pinned, %10.3f ms total  at %s%n",
+                    e.getValue().count.sum(), e.getValue().nanos.sum() / 1e6, e.getKey()));
+        }
+        return sb.toString();
+    }
+
+    private void record(RecordedEvent event) {
+        Site site = sites.computeIfAbsent(siteOf(event), k -> new Site());
+        site.count.increment();
+        site.nanos.add(event.getDuration().toNanos());
+    }
+
+    private static String siteOf(RecordedEvent event) {
+        if (event.getStackTrace() == null || event.getStackTrace().getFrames().isEmpty()) {
+            return "<no stack trace>";
+        }
+        for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        RecordedFrame top = event.getStackTrace().getFrames().get(0);
+        return top.getMethod().getType().getName() + "." + top.getMethod().getName();
+    }
+
+    private static class Site {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+}
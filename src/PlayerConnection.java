@@ -0,0 +1,36 @@
+/**
+ * PlayerConnection.java
+ */
+
+/**
+ * PlayerConnection represents one player seated in a GameRoom, independent of how the
+ * player is connected to the server. GameRoom only talks to its players through this interface.
+ */
+public interface PlayerConnection {
+
+    /**
+     * Records the player symbol assigned to this player by its GameRoom.
+     * The room notifies the player with a PLAYER_ASSIGNED message.
+     * @param symbol The player symbol (Mark.X or Mark.O).
+     */
+    void setMark(Mark symbol);
+
+    /**
+     * Gets the player symbol assigned to this player.
+     * @return The Mark of the player, or null if not assigned yet.
+     */
+    Mark getMark();
+
+    /**
+     * Records the room this player has been moved to by the Matchmaker, to be handed its messages from now on.
+     * The room the player waited in forwards whatever it is still handed to the new room.
+     * @param room The GameRoom the player is now seated in.
+     */
+    void setRoom(GameRoom room);
+
+    /**
+     * Sends a GameMsg to this player.
+     * @param msg The GameMsg to send.
+     */
+    void sendMsg(GameMsg msg);
+}
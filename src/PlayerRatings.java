@@ -0,0 +1,61 @@
+/**
+ * PlayerRatings.java
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PlayerRatings keeps an Elo rating for every player name registered with SETNAME, for the life of the server.
+ * Players without a name are not rated. Ratings are read and updated from any thread, without a lock.
+ */
+public class PlayerRatings {
+
+    /**
+     * The rating of a name that has not played yet.
+     */
+    public static final double INITIAL = 1500;
+
+    /**
+     * The largest change of a rating after one game.
+     */
+    public static final double K = 32;
+
+    private final ConcurrentHashMap<String, Double> ratings = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the rating of a player.
+     * @param name The name of the player, or null for a player without a name.
+     * @return The rating, INITIAL for a name that has not played yet.
+     */
+    public double get(String name) {
+        if (name == null) {
+            return INITIAL;
+        }
+        return ratings.getOrDefault(name, INITIAL);
+    }
+
+    /**
+     * Updates the ratings of both players of a game that is over. Games against oneself are not rated.
+     * @param x The name of the player of X, or null if it has none.
+     * @param o The name of the player of O, or null if it has none.
+     * @param winner The Mark of the winner, or Mark.EMPTY for a draw.
+     */
+    public void record(String x, String o, Mark winner) {
+        if (x == null || o == null || x.equals(o)) {
+            return;
+        }
+        double scoreX = winner == Mark.X ? 1 : winner == Mark.O ? 0 : 0.5;
+        double expectedX = 1 / (1 + Math.pow(10, (get(o) - get(x)) / 400));
+        double delta = K * (scoreX - expectedX);
+        ratings.merge(x, INITIAL + delta, (old, ignored) -> old + delta);
+        ratings.merge(o, INITIAL - delta, (old, ignored) -> old - delta);
+    }
+
+    /**
+     * Gets the number of names that have been rated.
+     * @return The number of rated players.
+     */
+    public int size() {
+        return ratings.size();
+    }
+}
@@ -0,0 +1,501 @@
+/**
+ * RoomRegistry.java
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RoomRegistry keeps track of all GameRooms hosted by the GameServer, and holds what they share:
+ * the ServerMetrics, the MoveJournal, the PlayerRatings and Leaderboard, and the GameShards their actors run on.
+ * Incoming connections are paired in arrival order: the first connection opens a new room
+ * and waits in it, the next connection fills the room and the game starts.
+ */
+public class RoomRegistry {
+
+    private final ServerConfig config;
+    private final ServerMetrics metrics;
+    private final ConcurrentHashMap<Integer, GameRoom> rooms = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<GameRoom> recovered = new ArrayDeque<>();
+    private GameRoom waitingRoom;
+    private ParallelSearch search;
+    private MoveJournal journal = MoveJournal.disabled();
+    private GameShards shards;
+    private ScheduledExecutorService timer;
+    private final PlayerRatings ratings = new PlayerRatings();
+    private final Leaderboard leaderboard = new Leaderboard(ratings);
+    private final Matchmaker matchmaker;
+    private boolean sweeping = false;
+
+    /**
+     * Constructor for RoomRegistry, with fresh ServerMetrics.
+     * @param config The ServerConfig new rooms are created with.
+     */
+    public RoomRegistry(ServerConfig config) {
+        this(config, new ServerMetrics());
+    }
+
+    /**
+     * Constructor for RoomRegistry.
+     * @param config The ServerConfig new rooms are created with.
+     * @param metrics The ServerMetrics the rooms and transports record into.
+     */
+    public RoomRegistry(ServerConfig config, ServerMetrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+        metrics.watchLeaderboard(leaderboard);
+        this.matchmaker = config.getMatchmaking() == ServerConfig.Matchmaking.RATED
+                ? new Matchmaker(ratings, metrics, config.getMatchWindow())
+                : null;
+    }
+
+    /**
+     * Seats a connected client in the room that is waiting for a second player,
+     * or opens a new room if there is none, taking the rooms recovered from the MoveJournal first.
+     * Starts the game once the room is full.
+     * With RATED matchmaking, recovered rooms are still filled first; otherwise the client waits alone in a new room,
+     * with a ticket of the Matchmaker, queued once the client registers its name or after Matchmaker.NAME_WAIT_MILLIS.
+     * @param player The PlayerConnection of the connected client.
+     * @return The GameRoom the client has been seated in, which it may later be moved out of by the Matchmaker.
+     */
+    public GameRoom join(PlayerConnection player) {
+        if (config.isAiOpponent()) {
+            return joinAi(player);
+        }
+        GameRoom room;
+        boolean full;
+        lock.lock();
+        try {
+            if (waitingRoom == null) {
+                waitingRoom = recovered.poll();
+            }
+            if (waitingRoom == null && matchmaker != null) {
+                room = open(newId(), config.createController());
+                room.seat(player);
+                matchmaker.arrive(room, System.nanoTime());
+                GameRoom waiting = room;
+                schedule(() -> named(waiting, null), Matchmaker.NAME_WAIT_MILLIS);
+                return room;
+            }
+            if (waitingRoom == null) {
+                waitingRoom = open(newId(), config.createController());
+            }
+            room = waitingRoom;
+            room.seat(player);
+            full = room.isFull();
+            if (full) {
+                waitingRoom = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full) {
+            metrics.gameStarted();
+            room.startGame();
+        }
+        return room;
+    }
+
+    /**
+     * Opens a new room for a connected client, or takes a recovered one, seats the client as X and an AiPlayer as O,
+     * registers the name of the AiPlayer before the client can move, and starts the game.
+     * @param player The PlayerConnection of the connected client.
+     * @return The GameRoom the client has been seated in.
+     */
+    public GameRoom joinAi(PlayerConnection player) {
+        GameRoom room;
+        lock.lock();
+        try {
+            room = recovered.poll();
+        } finally {
+            lock.unlock();
+        }
+        if (room == null) {
+            room = open(newId(), config.createController());
+        }
+        room.seat(player);
+        AiPlayer ai = new AiPlayer(room, PerfectPlayTable.get(), getSearch(), config.getAiTimeMillis());
+        room.seat(ai);
+        room.handle(ai, new GameMsg(GameMsg.MsgType.SETNAME, 0, 0, ai.getMark(), AiPlayer.NAME));
+        metrics.gameStarted();
+        room.startGame();
+        return room;
+    }
+
+    /**
+     * Opens a room for one game of a Tournament, seats both entrants of the game as the Seating of the tournament
+     * says, registers their names, and starts the game. The room reports the result and closes once the game is over.
+     * @param game The Tournament.Game to play.
+     * @param seating The Seating creating the PlayerConnections of the entrants.
+     * @return The GameRoom of the game.
+     */
+    public GameRoom host(Tournament.Game game, Tournament.Seating seating) {
+        GameRoom room = open(newId(), config.createController());
+        room.playFor(game);
+        PlayerConnection x = seating.seat(room, game.getX());
+        PlayerConnection o = seating.seat(room, game.getO());
+        room.seat(x);
+        room.seat(o);
+        room.handle(x, new GameMsg(GameMsg.MsgType.SETNAME, 0, 0, Mark.X, game.getX()));
+        room.handle(o, new GameMsg(GameMsg.MsgType.SETNAME, 0, 0, Mark.O, game.getO()));
+        metrics.gameStarted();
+        room.startGame();
+        return room;
+    }
+
+    /**
+     * Adds a spectator to the room with the given id, or to the oldest room whose game is in play.
+     * @param spectator The Spectator of the connected client.
+     * @param roomId The id of the room to watch, or 0 for the oldest game in play.
+     * @return The GameRoom the client watches, or null if there is no such room.
+     */
+    public GameRoom watch(Spectator spectator, int roomId) {
+        GameRoom room = roomId > 0 ? rooms.get(roomId) : featured();
+        if (room != null) {
+            room.watch(spectator);
+        }
+        return room;
+    }
+
+    /**
+     * Gives a player reconnecting with a resume token its seat back, in the room the token names.
+     * @param player The new PlayerConnection of the player.
+     * @param token The resume token the player was given in PLAYER_ASSIGNED.
+     * @return The GameRoom of the seat, which sends EXIT if the token is not valid there, or null if there is no such room.
+     */
+    public GameRoom resume(PlayerConnection player, String token) {
+        GameRoom room = rooms.get(GameRoom.roomOf(token));
+        if (room != null) {
+            room.resume(player, token);
+        }
+        return room;
+    }
+
+    /**
+     * Hands the name a player waiting alone in a room has registered to the Matchmaker, which queues the player
+     * under its rating and pairs it if a player of a close rating is waiting. Does nothing without RATED matchmaking.
+     * Called on the actor of the room, or by the timer once the player has had time to register its name.
+     * @param room The GameRoom the player waits in.
+     * @param name The name of the player, or null to queue it without one.
+     */
+    public void named(GameRoom room, String name) {
+        if (matchmaker == null) {
+            return;
+        }
+        List<Matchmaker.Match> paired = new ArrayList<>(1);
+        lock.lock();
+        try {
+            Matchmaker.Match match = matchmaker.enter(room, name, System.nanoTime());
+            if (match != null) {
+                pair(match, paired);
+            }
+            sweepLater();
+        } finally {
+            lock.unlock();
+        }
+        startMatches(paired);
+    }
+
+    /**
+     * Pairs the queued players whose windows have grown to meet, and runs again later while players are queued.
+     */
+    private void sweep() {
+        List<Matchmaker.Match> paired = new ArrayList<>();
+        lock.lock();
+        try {
+            sweeping = false;
+            for (Matchmaker.Match match : matchmaker.sweep(System.nanoTime())) {
+                pair(match, paired);
+            }
+            sweepLater();
+        } finally {
+            lock.unlock();
+        }
+        startMatches(paired);
+    }
+
+    private void sweepLater() {
+        if (!sweeping && matchmaker.getQueued() > 1) {
+            sweeping = true;
+            schedule(this::sweep, Matchmaker.SWEEP_MILLIS);
+        }
+    }
+
+    /**
+     * Moves the guest of a match into the room of the host, and closes the room the guest waited in.
+     * Called under the lock. A guest that has left meanwhile gives the host its ticket back.
+     * @param match The Match to carry out.
+     * @param paired The list the match is added to once the guest is seated, to be started out of the lock.
+     */
+    private void pair(Matchmaker.Match match, List<Matchmaker.Match> paired) {
+        GameRoom guest = match.getGuest();
+        PlayerConnection player = guest.vacate(match.getHost());
+        if (player == null) {
+            matchmaker.putBack(match);
+            return;
+        }
+        rooms.remove(guest.getId());
+        getShards().release(guest.getShard());
+        match.getHost().seat(player);
+        player.setRoom(match.getHost());
+        match.setPlayer(player);
+        matchmaker.moved(match);
+        paired.add(match);
+    }
+
+    /**
+     * Registers the name of every moved guest in the room of its host, and starts the games.
+     * @param paired The Matches carried out.
+     */
+    private void startMatches(List<Matchmaker.Match> paired) {
+        for (Matchmaker.Match match : paired) {
+            GameRoom host = match.getHost();
+            if (match.getGuestName() != null) {
+                host.handle(match.getPlayer(), new GameMsg(GameMsg.MsgType.SETNAME, 0, 0, Mark.O, match.getGuestName()));
+            }
+            if (Log.isDebugEnabled())
+                Log.debug("Room {}: matched with the player of room {}", host.getId(), match.getGuest().getId());
+            metrics.gameStarted();
+            host.startGame();
+        }
+    }
+
+    /**
+     * Updates the ratings of the players of a game that is over, and queues the result for the Leaderboard.
+     * Called on the actor of the room.
+     * @param x The name of the player of X, or null if it has none.
+     * @param o The name of the player of O, or null if it has none.
+     * @param winner The Mark of the winner, or Mark.EMPTY for a draw.
+     */
+    public void gameOver(String x, String o, Mark winner) {
+        ratings.record(x, o, winner);
+        leaderboard.offer(x, o, winner);
+    }
+
+    /**
+     * Runs a task once after a delay, on a timer thread shared by all rooms, such as the expiry of a parked seat.
+     * The task is expected to hand its work over to the actor of its room rather than run it.
+     * @param task The task to run.
+     * @param delayMillis The delay in milliseconds.
+     */
+    public void schedule(Runnable task, long delayMillis) {
+        ScheduledExecutorService t;
+        lock.lock();
+        try {
+            if (timer == null) {
+                timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "RoomTimer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            t = timer;
+        } finally {
+            lock.unlock();
+        }
+        t.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes the next free room id. On a node of a cluster, only the ids the HashRing gives the node are taken,
+     * so the ClusterRouter can find the rooms.
+     * @return The id.
+     */
+    private int newId() {
+        int id;
+        do {
+            id = nextId.getAndIncrement();
+        } while (!config.ownsRoom(id));
+        return id;
+    }
+
+    private GameRoom open(int id, Controller controller) {
+        GameRoom room = new GameRoom(id, this, controller, getShards().place(id));
+        rooms.put(id, room);
+        return room;
+    }
+
+    private GameRoom featured() {
+        GameRoom oldest = null;
+        for (GameRoom room : rooms.values()) {
+            if (room.isFull() && (oldest == null || room.getId() < oldest.getId())) {
+                oldest = room;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Gets the ParallelSearch shared by the AiPlayers of all rooms, creating it on first use.
+     * @return The shared ParallelSearch.
+     */
+    public ParallelSearch getSearch() {
+        lock.lock();
+        try {
+            if (search == null) {
+                search = new ParallelSearch(Runtime.getRuntime().availableProcessors(), 20);
+            }
+            return search;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a seat of the given room, and removes the room once it is empty.
+     * @param room The GameRoom a player is leaving.
+     * @return true if the room has been removed, false otherwise.
+     */
+    public boolean leave(GameRoom room) {
+        lock.lock();
+        try {
+            if (!room.release()) {
+                return false;
+            }
+            rooms.remove(room.getId());
+            getShards().release(room.getShard());
+            journal.roomClosed(room.getId());
+            if (matchmaker != null) {
+                matchmaker.cancel(room);
+            }
+            if (room.isFull()) {
+                metrics.gameEnded();
+            }
+            if (waitingRoom == room) {
+                waitingRoom = null;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens the rooms that were in play when the given MoveJournal was last written, restored to where their games were,
+     * and records every room from now on into it. New rooms get ids above the recovered ones.
+     * Recovered rooms played on a board of another size than the ServerConfig are closed.
+     * Called once, before the server accepts connections.
+     * @param journal The open MoveJournal.
+     */
+    public void recover(MoveJournal journal) {
+        lock.lock();
+        try {
+            this.journal = journal;
+            for (MoveJournal.RecoveredRoom saved : journal.getRecovered()) {
+                nextId.accumulateAndGet(saved.getId() + 1, Math::max);
+                if (!saved.fits(config.getRows(), config.getCols(), config.getWinLength())) {
+                    journal.roomClosed(saved.getId());
+                    continue;
+                }
+                Controller controller = config.createController();
+                saved.restore(controller.getBm());
+                GameRoom room = open(saved.getId(), controller);
+                room.resume();
+                recovered.add(room);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the ServerConfig rooms and connections are created with.
+     * @return The ServerConfig of the server.
+     */
+    public ServerConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Getter for the ServerMetrics of the server.
+     * @return The ServerMetrics shared by every room and transport.
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the GameShards the GameActors of the rooms run on, creating them on first use as the Scheduler
+     * of the ServerConfig says, unless a transport has set its own.
+     * @return The GameShards of the server.
+     */
+    public GameShards getShards() {
+        lock.lock();
+        try {
+            if (shards == null) {
+                shards = config.getScheduler() == ServerConfig.Scheduler.SHARDED
+                        ? GameShards.threads(config.getGameWorkers())
+                        : GameShards.pool(config.getGameWorkers());
+                metrics.watchShards(shards);
+            }
+            return shards;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the GameShards the GameActors of the rooms run on, such as the event loops of a transport.
+     * Called once, before any room is opened.
+     * @param shards The GameShards to use.
+     */
+    public void setShards(GameShards shards) {
+        lock.lock();
+        try {
+            this.shards = shards;
+            metrics.watchShards(shards);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the ratings of the players, by name.
+     * @return The PlayerRatings of the server.
+     */
+    public PlayerRatings getRatings() {
+        return ratings;
+    }
+
+    /**
+     * Getter for the ranking of the players by rating.
+     * @return The Leaderboard of the server.
+     */
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * Getter for the MoveJournal the rooms record their games into.
+     * @return The MoveJournal, disabled unless journaling is on.
+     */
+    public MoveJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Gets the room with the given id.
+     * @param id The id of the room.
+     * @return The GameRoom, or null if no such room exists.
+     */
+    public GameRoom getRoom(int id) {
+        return rooms.get(id);
+    }
+
+    /**
+     * Gets the number of rooms currently hosted.
+     * @return The number of rooms.
+     */
+    public int getRoomCount() {
+        return rooms.size();
+    }
+}
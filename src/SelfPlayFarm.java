@@ -0,0 +1,400 @@
+/**
+ * SelfPlayFarm.java
+ */
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * SelfPlayFarm plays AI-versus-AI games in bulk, in-process, on real Controllers spread over a ForkJoinPool,
+ * for tuning the AI and for regression runs. Game i draws its moves from the seed of the run and i alone,
+ * so a run gives the same Stats whatever its parallelism.
+ */
+public class SelfPlayFarm {
+
+    /**
+     * The number of games a task of the ForkJoinPool plays.
+     */
+    public static final int CHUNK = 1024;
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private final ServerConfig config;
+    private final double skillX;
+    private final double skillO;
+    private final boolean classic;
+    private final PerfectPlayTable table;
+    private final int cells;
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+    /**
+     * Constructor for SelfPlayFarm. Each player plays its best move with the probability of its skill,
+     * and a random free cell otherwise: the move of the PerfectPlayTable on the classic 3x3 board, and elsewhere
+     * a move winning at once, else a move blocking such a move of the opponent, else a random free cell.
+     * @param config The ServerConfig giving the size of the board and the BoardKind of the Controllers.
+     * @param skillX The probability of X playing its best move rather than a random free cell, from 0 to 1.
+     * @param skillO The probability of O playing its best move rather than a random free cell, from 0 to 1.
+     */
+    public SelfPlayFarm(ServerConfig config, double skillX, double skillO) {
+        this.config = config;
+        this.skillX = skillX;
+        this.skillO = skillO;
+        this.classic = config.getRows() == 3 && config.getCols() == 3 && config.getWinLength() == 3;
+        this.table = classic ? PerfectPlayTable.get() : null;
+        this.cells = config.getRows() * config.getCols();
+    }
+
+    /**
+     * Plays a run of games, on the calling thread or on a new ForkJoinPool.
+     * @param games The number of games.
+     * @param seed The seed of the run.
+     * @param threads The number of threads, 1 to play every game on the calling thread.
+     * @return The Stats of the run.
+     */
+    public Stats play(long games, long seed, int threads) {
+        long start = System.nanoTime();
+        Stats stats;
+        if (threads <= 1) {
+            stats = new Worker().play(0, games, seed);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                stats = pool.invoke(new Batch(0, (games + CHUNK - 1) / CHUNK, games, seed));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        stats.finish(seed, Math.max(1, threads), System.nanoTime() - start);
+        return stats;
+    }
+
+    /**
+     * Plays the games of a run again on the calling thread, to check the run gave the results a single thread gives.
+     * @param run The Stats of the run.
+     * @return The Stats of the single-threaded run; see Stats.sameResults.
+     */
+    public Stats verify(Stats run) {
+        return play(run.getGames(), run.getSeed(), 1);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Batch forks the chunks of a range in two until one chunk is left, which it plays on the Worker of its thread.
+     */
+    private final class Batch extends RecursiveTask<Stats> {
+        private static final long serialVersionUID = 1L;
+        private final long from;
+        private final long to;
+        private final long games;
+        private final long seed;
+
+        private Batch(long from, long to, long games, long seed) {
+            this.from = from;
+            this.to = to;
+            this.games = games;
+            this.seed = seed;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (to - from <= 1) {
+                return workers.get().play(from * CHUNK, Math.min(games, to * CHUNK), seed);
+            }
+            long mid = (from + to) >>> 1;
+            Batch left = new Batch(from, mid, games, seed);
+            left.fork();
+            Stats right = new Batch(mid, to, games, seed).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Worker plays games on one Controller, which it resets between games. Only used by one thread.
+     */
+    private final class Worker {
+        private final Controller controller = config.createController();
+        private final BoardModel bm = controller.getBm();
+        private final int rows = config.getRows();
+        private final int cols = config.getCols();
+        private final int winLength = config.getWinLength();
+        private long random;
+        private int position;
+
+        private Worker() {
+            controller.inputName(Mark.X);
+            controller.inputName(Mark.O);
+        }
+
+        /**
+         * Plays the games of a range.
+         * @param from The index of the first game.
+         * @param to The index after the last game.
+         * @param seed The seed of the run.
+         * @return The Stats of the games.
+         */
+        private Stats play(long from, long to, long seed) {
+            Stats stats = new Stats(cells);
+            for (long i = from; i < to; i++) {
+                playGame(i, seed, stats);
+            }
+            return stats;
+        }
+
+        private void playGame(long index, long seed, Stats stats) {
+            random = mix(seed + index * GOLDEN);
+            position = 0;
+            controller.restartGame(Mark.X);
+            controller.restartGame(Mark.O);
+            long trace = index;
+            int length = 0;
+            Mark turn = Mark.X;
+            Mark result;
+            do {
+                int cell = choose(turn);
+                if (!controller.onCellClick(cell / cols, cell % cols, turn)) {
+                    throw new IllegalStateException("Move " + cell + " of " + turn + " rejected in game " + index);
+                }
+                if (classic) {
+                    position += PerfectPlayTable.code(turn) * PerfectPlayTable.POW3[cell];
+                }
+                trace = trace * 31 + cell + 1;
+                length++;
+                turn = turn == Mark.X ? Mark.O : Mark.X;
+                result = controller.checkWinner();
+            } while (result == null);
+            stats.record(result, length, mix(trace * 3 + result.ordinal()));
+        }
+
+        private int choose(Mark turn) {
+            double skill = turn == Mark.X ? skillX : skillO;
+            if (skill < 1 && nextDouble() >= skill) {
+                return randomFreeCell();
+            }
+            if (classic) {
+                return table.bestMove(position);
+            }
+            Mark[][] board = bm.getBoard();
+            int block = -1;
+            for (int cell = 0; cell < cells; cell++) {
+                int r = cell / cols;
+                int c = cell % cols;
+                if (board[r][c] != Mark.EMPTY) continue;
+                if (completes(board, r, c, turn)) return cell;
+                if (block < 0 && completes(board, r, c, turn == Mark.X ? Mark.O : Mark.X)) block = cell;
+            }
+            return block >= 0 ? block : randomFreeCell();
+        }
+
+        private boolean completes(Mark[][] board, int r, int c, Mark t) {
+            for (int[] d : DIRECTIONS) {
+                int count = 1;
+                for (int i = r + d[0], j = c + d[1]; i >= 0 && i < rows && j >= 0 && j < cols && board[i][j] == t; i += d[0], j += d[1]) {
+                    count++;
+                }
+                for (int i = r - d[0], j = c - d[1]; i >= 0 && i < rows && j >= 0 && j < cols && board[i][j] == t; i -= d[0], j -= d[1]) {
+                    count++;
+                }
+                if (count >= winLength) return true;
+            }
+            return false;
+        }
+
+        private int randomFreeCell() {
+            int free = 0;
+            for (int cell = 0; cell < cells; cell++) {
+                if (bm.isCellEmpty(cell / cols, cell % cols)) free++;
+            }
+            int pick = (int) ((nextLong() >>> 1) % free);
+            for (int cell = 0; ; cell++) {
+                if (bm.isCellEmpty(cell / cols, cell % cols) && pick-- == 0) return cell;
+            }
+        }
+
+        private long nextLong() {
+            return mix(random += GOLDEN);
+        }
+
+        private double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+    }
+
+    /**
+     * Stats aggregates the games of a run: the results, the distribution of the game lengths, and a checksum
+     * of every move of every game, which does not depend on the order the games were played in.
+     */
+    public static final class Stats {
+        private final long[] lengths;
+        private long games = 0;
+        private long xWins = 0;
+        private long oWins = 0;
+        private long draws = 0;
+        private long checksum = 0;
+        private long seed;
+        private int threads;
+        private long nanos;
+
+        private Stats(int cells) {
+            this.lengths = new long[cells + 1];
+        }
+
+        private void record(Mark result, int length, long hash) {
+            games++;
+            if (result == Mark.X) xWins++;
+            else if (result == Mark.O) oWins++;
+            else draws++;
+            lengths[length]++;
+            checksum += hash;
+        }
+
+        private Stats merge(Stats other) {
+            games += other.games;
+            xWins += other.xWins;
+            oWins += other.oWins;
+            draws += other.draws;
+            checksum += other.checksum;
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] += other.lengths[i];
+            }
+            return this;
+        }
+
+        private void finish(long seed, int threads, long nanos) {
+            this.seed = seed;
+            this.threads = threads;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Checks if two runs gave the same results, game for game.
+         * @param other The Stats of the other run.
+         * @return true if both runs played the same moves in every game, false otherwise.
+         */
+        public boolean sameResults(Stats other) {
+            return games == other.games && xWins == other.xWins && oWins == other.oWins && draws == other.draws
+                    && checksum == other.checksum && Arrays.equals(lengths, other.lengths);
+        }
+
+        /**
+         * Getter for the number of games played.
+         * @return The number of games.
+         */
+        public long getGames() {
+            return games;
+        }
+
+        /**
+         * Getter for the number of games X won.
+         * @return The number of wins of X.
+         */
+        public long getXWins() {
+            return xWins;
+        }
+
+        /**
+         * Getter for the number of games O won.
+         * @return The number of wins of O.
+         */
+        public long getOWins() {
+            return oWins;
+        }
+
+        /**
+         * Getter for the number of games drawn.
+         * @return The number of draws.
+         */
+        public long getDraws() {
+            return draws;
+        }
+
+        /**
+         * Gets the number of games of every length.
+         * @return The counts, indexed by the number of moves of the game.
+         */
+        public long[] getLengths() {
+            return lengths.clone();
+        }
+
+        /**
+         * Gets the mean number of moves of a game.
+         * @return The mean length.
+         */
+        public double getMeanLength() {
+            long moves = 0;
+            for (int i = 0; i < lengths.length; i++) {
+                moves += i * lengths[i];
+            }
+            return games == 0 ? 0 : (double) moves / games;
+        }
+
+        /**
+         * Getter for the checksum of every move of every game of the run.
+         * @return The checksum.
+         */
+        public long getChecksum() {
+            return checksum;
+        }
+
+        /**
+         * Getter for the seed of the run.
+         * @return The seed.
+         */
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * Getter for the number of threads the run was played on.
+         * @return The number of threads.
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Getter for the time the run took.
+         * @return The time in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Gets the games played per second of the run.
+         * @return The games per second.
+         */
+        public double getGamesPerSecond() {
+            return nanos == 0 ? 0 : games * 1e9 / nanos;
+        }
+
+        /**
+         * Gets the games played per second and per core the run could use: its threads,
+         * or the available processors if there are fewer.
+         * @return The games per second per core.
+         */
+        public double getGamesPerSecondPerCore() {
+            return getGamesPerSecond() / Math.min(threads, Runtime.getRuntime().availableProcessors());
+        }
+
+        /**
+         * Formats the results and rates of the run on one line.
+         * @return The formatted Stats.
+         */
+        @Override
+        public String toString() {
+            double n = Math.max(1, games);
+            return String.format(Locale.ROOT,
+                    "%d games on %d threads: X %.2f%%, O %.2f%%, draws %.2f%%, %.2f moves, %.0f games/s, %.0f games/s/core",
+                    games, threads, 100 * xWins / n, 100 * oWins / n, 100 * draws / n, getMeanLength(),
+                    getGamesPerSecond(), getGamesPerSecondPerCore());
+        }
+    }
+}
@@ -0,0 +1,752 @@
+/**
+ * ServerConfig.java
+ */
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * ServerConfig holds the options the GameServer is started with.
+ * Options are given on the command line in the form --name=value, for example --transport=nio.
+ */
+public class ServerConfig {
+
+    /**
+     * Enumeration of the network transports supported by the server.
+     * BLOCKING: One thread per connection. Serves both handshake clients and legacy serialization clients.
+     * NIO: A small pool of selector-based event loops. Serves handshake clients only.
+     */
+    public enum Transport {
+        BLOCKING, NIO
+    }
+
+    /**
+     * Enumeration of the kinds of thread blocking loops run on.
+     * PLATFORM: One platform thread per loop.
+     * VIRTUAL: One virtual thread per loop.
+     */
+    public enum ThreadMode {
+        PLATFORM, VIRTUAL
+    }
+
+    /**
+     * Enumeration of how the GameActors of the rooms are scheduled.
+     * POOL: Every room on one pool of game workers, whichever thread is free.
+     * SHARDED: Every room pinned to one single-threaded shard, picked by hashing its id. With the NIO transport
+     * the shards are the event loops, and the connections of a room move to its loop, so a move never crosses threads.
+     * A shard is one thread that must never wait on the disk, so the MoveJournal is always ASYNC when sharded.
+     */
+    public enum Scheduler {
+        POOL, SHARDED
+    }
+
+    /**
+     * Enumeration of the BoardModel implementations a GameRoom can use.
+     * ARRAY: BoardModel, a 2D array of Marks.
+     * BITBOARD: BitBoardModel, two 9-bit masks with table-driven winner detection. Only for 3,3,3 boards.
+     * PACKED: LockFreeController, the whole game packed into one long and moves committed by compareAndSet.
+     * Only for 3,3,3 boards.
+     */
+    public enum BoardKind {
+        ARRAY, BITBOARD, PACKED
+    }
+
+    /**
+     * Enumeration of what the server does with a client too slow to keep up with its outbound queue.
+     * DROP: The connection is closed.
+     * SNAPSHOT: The queued messages are replaced by one SNAPSHOT of the game.
+     */
+    public enum OverflowPolicy {
+        DROP, SNAPSHOT
+    }
+
+    /**
+     * Enumeration of what a process of the application runs.
+     * STANDALONE: A GameServer and two Swing clients playing on it.
+     * NODE: A GameServer only, one node of the cluster given by --cluster, owning the games the HashRing gives it.
+     * ROUTER: A ClusterRouter relaying clients to the nodes of the cluster given by --cluster.
+     */
+    public enum Role {
+        STANDALONE, NODE, ROUTER
+    }
+
+    /**
+     * Enumeration of how players looking for a game are paired.
+     * ARRIVAL: In arrival order, the first player waiting in a room and the next one filling it.
+     * RATED: By rating, through the Matchmaker: every player waits in a room of its own until the Matchmaker
+     * finds it an opponent of a close rating, the window widening the longer either of them waits.
+     */
+    public enum Matchmaking {
+        ARRIVAL, RATED
+    }
+
+    private int port = 8888;
+    private Role role = Role.STANDALONE;
+    private HashRing cluster = null;
+    private int nodeIndex = -1;
+    private Transport transport = Transport.BLOCKING;
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    private int gameWorkers = Runtime.getRuntime().availableProcessors();
+    private Scheduler scheduler = Scheduler.POOL;
+    private ThreadMode threadMode = ThreadMode.PLATFORM;
+    private boolean pinningReport = false;
+    private BoardKind boardKind = BoardKind.ARRAY;
+    private int rows = 3;
+    private int cols = 3;
+    private int winLength = 3;
+    private boolean aiOpponent = false;
+    private long aiTimeMillis = 500;
+    private int metricsPort = 0;
+    private int outboundCapacity = 256;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+    private long resumeGraceMillis = 30_000;
+    private Matchmaking matchmaking = Matchmaking.ARRIVAL;
+    private int matchWindow = 100;
+    private Tournament.Format tournament = null;
+    private int entrants = 64;
+    private int rounds = 0;
+    private Log.Level logLevel = Log.Level.INFO;
+    private String logFile = null;
+    private String journalDir = null;
+    private MoveJournal.SyncMode journalSync = null;
+
+    /**
+     * Parses the command line arguments into a ServerConfig. Unknown options are ignored.
+     * @param args Command line arguments in the form --name=value.
+     * @return The parsed ServerConfig.
+     */
+    public static ServerConfig parse(String[] args) {
+        ServerConfig config = new ServerConfig();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg.substring(2) : arg.substring(2, eq);
+            String value = eq < 0 ? "" : arg.substring(eq + 1);
+            switch (name) {
+                case "port":
+                    config.setPort(Integer.parseInt(value));
+                    break;
+                case "role":
+                    config.setRole(Role.valueOf(value.toUpperCase()));
+                    break;
+                case "cluster":
+                    config.setCluster(value.isEmpty() ? null : HashRing.parse(value));
+                    break;
+                case "node":
+                    config.setNodeIndex(Integer.parseInt(value));
+                    break;
+                case "transport":
+                    config.setTransport(Transport.valueOf(value.toUpperCase()));
+                    break;
+                case "io-threads":
+                    config.setIoThreads(Integer.parseInt(value));
+                    break;
+                case "game-workers":
+                    config.setGameWorkers(Integer.parseInt(value));
+                    break;
+                case "scheduler":
+                    config.setScheduler(Scheduler.valueOf(value.toUpperCase()));
+                    break;
+                case "threads":
+                    config.setThreadMode(ThreadMode.valueOf(value.toUpperCase()));
+                    break;
+                case "pinning-report":
+                    config.setPinningReport(value.isEmpty() || Boolean.parseBoolean(value));
+                    break;
+                case "board":
+                    config.setBoardKind(BoardKind.valueOf(value.toUpperCase()));
+                    break;
+                case "rows":
+                    config.setRows(Integer.parseInt(value));
+                    break;
+                case "cols":
+                    config.setCols(Integer.parseInt(value));
+                    break;
+                case "win":
+                    config.setWinLength(Integer.parseInt(value));
+                    break;
+                case "ai":
+                    config.setAiOpponent(value.isEmpty() || Boolean.parseBoolean(value));
+                    break;
+                case "ai-time":
+                    config.setAiTimeMillis(Long.parseLong(value));
+                    break;
+                case "metrics-port":
+                    config.setMetricsPort(Integer.parseInt(value));
+                    break;
+                case "outbound-queue":
+                    config.setOutboundCapacity(Integer.parseInt(value));
+                    break;
+                case "overflow":
+                    config.setOverflowPolicy(OverflowPolicy.valueOf(value.toUpperCase()));
+                    break;
+                case "resume-grace":
+                    config.setResumeGraceMillis(Long.parseLong(value));
+                    break;
+                case "matchmaking":
+                    config.setMatchmaking(Matchmaking.valueOf(value.toUpperCase()));
+                    break;
+                case "match-window":
+                    config.setMatchWindow(Integer.parseInt(value));
+                    break;
+                case "tournament":
+                    config.setTournament(value.isEmpty() ? null : Tournament.Format.valueOf(value.toUpperCase().replace('-', '_')));
+                    break;
+                case "entrants":
+                    config.setEntrants(Integer.parseInt(value));
+                    break;
+                case "rounds":
+                    config.setRounds(Integer.parseInt(value));
+                    break;
+                case "log-level":
+                    config.setLogLevel(Log.Level.valueOf(value.toUpperCase()));
+                    break;
+                case "log-file":
+                    config.setLogFile(value.isEmpty() ? null : value);
+                    break;
+                case "journal":
+                    config.setJournalDir(value.isEmpty() ? null : value);
+                    break;
+                case "journal-sync":
+                    config.setJournalSync(MoveJournal.SyncMode.valueOf(value.toUpperCase()));
+                    break;
+            }
+        }
+        if (config.getRole() == Role.NODE && config.getCluster() != null && config.getNodeIndex() >= 0) {
+            config.setPort(config.getCluster().address(config.getNodeIndex()).getPort());
+        }
+        if (config.getScheduler() == Scheduler.SHARDED && config.journalSync == MoveJournal.SyncMode.COMMIT) {
+            throw new IllegalArgumentException("--journal-sync=commit would stall every room of a shard on each fsync,"
+                    + " use --journal-sync=async with --scheduler=sharded");
+        }
+        return config;
+    }
+
+    /**
+     * Getter for the port the server listens on.
+     * @return The port number.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Setter for the port the server listens on.
+     * @param port The port number.
+     */
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Getter for what this process runs.
+     * @return The Role of the process.
+     */
+    public Role getRole() {
+        return role;
+    }
+
+    /**
+     * Setter for what this process runs.
+     * @param role The Role of the process.
+     */
+    public void setRole(Role role) {
+        this.role = role;
+    }
+
+    /**
+     * Getter for the nodes of the cluster.
+     * @return The HashRing of the nodes, or null if the server is not part of a cluster.
+     */
+    public HashRing getCluster() {
+        return cluster;
+    }
+
+    /**
+     * Setter for the nodes of the cluster.
+     * @param cluster The HashRing of the nodes, or null if the server is not part of a cluster.
+     */
+    public void setCluster(HashRing cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * Getter for the index of this node in the cluster. A node listens on the port of its address in the cluster,
+     * and only opens rooms whose ids the HashRing gives it.
+     * @return The index of the node, or -1 if the server is not a node of a cluster.
+     */
+    public int getNodeIndex() {
+        return nodeIndex;
+    }
+
+    /**
+     * Setter for the index of this node in the cluster.
+     * @param nodeIndex The index of the node, or -1 if the server is not a node of a cluster.
+     */
+    public void setNodeIndex(int nodeIndex) {
+        this.nodeIndex = nodeIndex;
+    }
+
+    /**
+     * Checks if a room id is owned by this server: always, unless the server is a node of a cluster
+     * and the HashRing gives the id to another node.
+     * @param roomId The id of the room.
+     * @return true if this server may open a room with this id, false otherwise.
+     */
+    public boolean ownsRoom(int roomId) {
+        return cluster == null || nodeIndex < 0 || cluster.owner(roomId) == nodeIndex;
+    }
+
+    /**
+     * Getter for the transport of the server.
+     * @return The Transport in use.
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Setter for the transport of the server.
+     * @param transport The Transport to use.
+     */
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Getter for the number of event-loop threads used by the NIO transport.
+     * @return The number of event-loop threads.
+     */
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * Setter for the number of event-loop threads used by the NIO transport.
+     * @param ioThreads The number of event-loop threads, at least 1.
+     */
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = Math.max(1, ioThreads);
+    }
+
+    /**
+     * Getter for the number of worker threads the GameActors of all rooms share,
+     * or of shards when the blocking transport is sharded.
+     * @return The number of game workers.
+     */
+    public int getGameWorkers() {
+        return gameWorkers;
+    }
+
+    /**
+     * Setter for the number of worker threads the GameActors of all rooms share,
+     * or of shards when the blocking transport is sharded.
+     * @param gameWorkers The number of game workers, at least 1.
+     */
+    public void setGameWorkers(int gameWorkers) {
+        this.gameWorkers = Math.max(1, gameWorkers);
+    }
+
+    /**
+     * Getter for how the GameActors of the rooms are scheduled.
+     * @return The Scheduler in use.
+     */
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Setter for how the GameActors of the rooms are scheduled.
+     * @param scheduler The Scheduler to use.
+     */
+    public void setScheduler(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Getter for the kind of thread the blocking loops run on.
+     * @return The ThreadMode in use.
+     */
+    public ThreadMode getThreadMode() {
+        return threadMode;
+    }
+
+    /**
+     * Setter for the kind of thread the blocking loops run on.
+     * @param threadMode The ThreadMode to use.
+     */
+    public void setThreadMode(ThreadMode threadMode) {
+        this.threadMode = threadMode;
+    }
+
+    /**
+     * Checks if blocking loops run on virtual threads.
+     * @return true if the ThreadMode is VIRTUAL, false otherwise.
+     */
+    public boolean isVirtualThreads() {
+        return threadMode == ThreadMode.VIRTUAL;
+    }
+
+    /**
+     * Checks if the report of virtual threads pinned to their carrier is enabled.
+     * @return true if the pinning report is enabled, false otherwise.
+     */
+    public boolean isPinningReport() {
+        return pinningReport;
+    }
+
+    /**
+     * Enables or disables the report of virtual threads pinned to their carrier.
+     * @param pinningReport true to enable the report.
+     */
+    public void setPinningReport(boolean pinningReport) {
+        this.pinningReport = pinningReport;
+    }
+
+    /**
+     * Getter for the BoardModel implementation used by new GameRooms.
+     * @return The BoardKind in use.
+     */
+    public BoardKind getBoardKind() {
+        return boardKind;
+    }
+
+    /**
+     * Setter for the BoardModel implementation used by new GameRooms.
+     * @param boardKind The BoardKind to use.
+     */
+    public void setBoardKind(BoardKind boardKind) {
+        this.boardKind = boardKind;
+    }
+
+    /**
+     * Getter for the number of rows of the board.
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Setter for the number of rows of the board.
+     * @param rows The number of rows.
+     */
+    public void setRows(int rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Getter for the number of columns of the board.
+     * @return The number of columns.
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Setter for the number of columns of the board.
+     * @param cols The number of columns.
+     */
+    public void setCols(int cols) {
+        this.cols = cols;
+    }
+
+    /**
+     * Getter for the number of marks in a row needed to win.
+     * @return The win length.
+     */
+    public int getWinLength() {
+        return winLength;
+    }
+
+    /**
+     * Setter for the number of marks in a row needed to win.
+     * @param winLength The win length.
+     */
+    public void setWinLength(int winLength) {
+        this.winLength = winLength;
+    }
+
+    /**
+     * Getter for whether every client plays against an AiPlayer instead of another client.
+     * @return true if clients are seated against the AI, false otherwise.
+     */
+    public boolean isAiOpponent() {
+        return aiOpponent;
+    }
+
+    /**
+     * Setter for whether every client plays against an AiPlayer instead of another client.
+     * @param aiOpponent true to seat clients against the AI.
+     */
+    public void setAiOpponent(boolean aiOpponent) {
+        this.aiOpponent = aiOpponent;
+    }
+
+    /**
+     * Getter for the time an AiPlayer may search for a move on boards other than 3,3,3.
+     * @return The search time budget in milliseconds.
+     */
+    public long getAiTimeMillis() {
+        return aiTimeMillis;
+    }
+
+    /**
+     * Setter for the time an AiPlayer may search for a move on boards other than 3,3,3.
+     * @param aiTimeMillis The search time budget in milliseconds.
+     */
+    public void setAiTimeMillis(long aiTimeMillis) {
+        this.aiTimeMillis = aiTimeMillis;
+    }
+
+    /**
+     * Getter for the port of the local HTTP endpoint serving the ServerMetrics.
+     * @return The port number, or 0 if the endpoint is disabled.
+     */
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    /**
+     * Setter for the port of the local HTTP endpoint serving the ServerMetrics.
+     * @param metricsPort The port number, or 0 to disable the endpoint.
+     */
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    /**
+     * Getter for the number of messages that may wait in the outbound queue of one connection.
+     * @return The capacity of an outbound queue.
+     */
+    public int getOutboundCapacity() {
+        return outboundCapacity;
+    }
+
+    /**
+     * Setter for the number of messages that may wait in the outbound queue of one connection.
+     * @param outboundCapacity The capacity of an outbound queue, rounded up to a power of two.
+     */
+    public void setOutboundCapacity(int outboundCapacity) {
+        this.outboundCapacity = outboundCapacity;
+    }
+
+    /**
+     * Getter for what the server does when the outbound queue of a connection is full.
+     * @return The OverflowPolicy in use.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Setter for what the server does when the outbound queue of a connection is full.
+     * @param overflowPolicy The OverflowPolicy to use.
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Getter for how long the seat of a player whose connection was lost is kept for the player to resume it.
+     * @return The grace period in milliseconds, 0 if a lost connection leaves the game at once.
+     */
+    public long getResumeGraceMillis() {
+        return resumeGraceMillis;
+    }
+
+    /**
+     * Setter for how long the seat of a player whose connection was lost is kept for the player to resume it.
+     * @param resumeGraceMillis The grace period in milliseconds, 0 for a lost connection to leave the game at once.
+     */
+    public void setResumeGraceMillis(long resumeGraceMillis) {
+        this.resumeGraceMillis = Math.max(0, resumeGraceMillis);
+    }
+
+    /**
+     * Getter for how players looking for a game are paired.
+     * @return The Matchmaking in use.
+     */
+    public Matchmaking getMatchmaking() {
+        return matchmaking;
+    }
+
+    /**
+     * Setter for how players looking for a game are paired.
+     * @param matchmaking The Matchmaking to use.
+     */
+    public void setMatchmaking(Matchmaking matchmaking) {
+        this.matchmaking = matchmaking;
+    }
+
+    /**
+     * Getter for the largest rating difference the Matchmaker accepts between two players who have not waited yet.
+     * @return The initial window, in rating points on either side.
+     */
+    public int getMatchWindow() {
+        return matchWindow;
+    }
+
+    /**
+     * Setter for the largest rating difference the Matchmaker accepts between two players who have not waited yet.
+     * @param matchWindow The initial window, in rating points on either side.
+     */
+    public void setMatchWindow(int matchWindow) {
+        this.matchWindow = Math.max(0, matchWindow);
+    }
+
+    /**
+     * Getter for the simulated Tournament the server runs between AiPlayers once started, for benchmarking.
+     * @return The Tournament.Format, or null for no tournament.
+     */
+    public Tournament.Format getTournament() {
+        return tournament;
+    }
+
+    /**
+     * Setter for the simulated Tournament the server runs between AiPlayers once started.
+     * @param tournament The Tournament.Format, or null for no tournament.
+     */
+    public void setTournament(Tournament.Format tournament) {
+        this.tournament = tournament;
+    }
+
+    /**
+     * Getter for the number of entrants of the simulated Tournament.
+     * @return The number of entrants.
+     */
+    public int getEntrants() {
+        return entrants;
+    }
+
+    /**
+     * Setter for the number of entrants of the simulated Tournament.
+     * @param entrants The number of entrants, at least 2.
+     */
+    public void setEntrants(int entrants) {
+        this.entrants = Math.max(2, entrants);
+    }
+
+    /**
+     * Getter for the number of rounds of the simulated Tournament, when Swiss.
+     * @return The number of rounds, or 0 for the base-2 logarithm of the number of entrants, rounded up.
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Setter for the number of rounds of the simulated Tournament, when Swiss.
+     * @param rounds The number of rounds, or 0 for the base-2 logarithm of the number of entrants, rounded up.
+     */
+    public void setRounds(int rounds) {
+        this.rounds = Math.max(0, rounds);
+    }
+
+    /**
+     * Getter for the least severe level that is logged.
+     * @return The Log.Level threshold.
+     */
+    public Log.Level getLogLevel() {
+        return logLevel;
+    }
+
+    /**
+     * Setter for the least severe level that is logged.
+     * @param logLevel The Log.Level threshold.
+     */
+    public void setLogLevel(Log.Level logLevel) {
+        this.logLevel = logLevel;
+    }
+
+    /**
+     * Getter for the file the log is written to.
+     * @return The path of the rotating log file, or null to log to the standard output.
+     */
+    public String getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * Setter for the file the log is written to.
+     * @param logFile The path of the rotating log file, or null to log to the standard output.
+     */
+    public void setLogFile(String logFile) {
+        this.logFile = logFile;
+    }
+
+    /**
+     * Getter for the directory of the MoveJournal.
+     * @return The directory of the journal segments, or null if journaling is off.
+     */
+    public String getJournalDir() {
+        return journalDir;
+    }
+
+    /**
+     * Setter for the directory of the MoveJournal.
+     * @param journalDir The directory of the journal segments, or null to turn journaling off.
+     */
+    public void setJournalDir(String journalDir) {
+        this.journalDir = journalDir;
+    }
+
+    /**
+     * Getter for how long rooms wait on the MoveJournal before broadcasting.
+     * COMMIT unless set otherwise, but always ASYNC with the SHARDED Scheduler, whose shards must not wait on the disk.
+     * @return The SyncMode of the journal.
+     */
+    public MoveJournal.SyncMode getJournalSync() {
+        if (scheduler == Scheduler.SHARDED) {
+            return MoveJournal.SyncMode.ASYNC;
+        }
+        return journalSync == null ? MoveJournal.SyncMode.COMMIT : journalSync;
+    }
+
+    /**
+     * Setter for how long rooms wait on the MoveJournal before broadcasting.
+     * @param journalSync The SyncMode of the journal.
+     */
+    public void setJournalSync(MoveJournal.SyncMode journalSync) {
+        this.journalSync = journalSync;
+    }
+
+    /**
+     * Applies the logging options to Log.
+     */
+    public void applyLogging() {
+        Log.setLevel(logLevel);
+        if (logFile == null) {
+            return;
+        }
+        try {
+            Log.toFile(Paths.get(logFile));
+        } catch (IOException e) {
+            Log.error("Cannot open log file {}", logFile, e);
+        }
+    }
+
+    /**
+     * Creates an empty BoardModel of the configured size and implementation.
+     * BitBoardModel is only used for the classic 3,3,3 board.
+     * @return A new BoardModel.
+     */
+    public BoardModel createBoardModel() {
+        if (boardKind == BoardKind.BITBOARD && rows == 3 && cols == 3 && winLength == 3) {
+            return new BitBoardModel();
+        }
+        return new BoardModel(rows, cols, winLength);
+    }
+
+    /**
+     * Creates the Controller of a new game, around an empty BoardModel of the configured size and implementation.
+     * LockFreeController is only used for the classic 3,3,3 board.
+     * @return A new Controller.
+     */
+    public Controller createController() {
+        if (boardKind == BoardKind.PACKED && rows == 3 && cols == 3 && winLength == 3) {
+            return new LockFreeController();
+        }
+        return new Controller(createBoardModel());
+    }
+}
@@ -0,0 +1,899 @@
+/**
+ * ServerMetrics.java
+ */
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * ServerMetrics counts what goes through a GameServer, from messages, bytes, connections and games
+ * to its queues, spectators, matchmaking, Tournaments and shards. Recording never locks and never allocates,
+ * so the metrics can always stay on. They are read through JMX (see ServerMetricsMXBean) and, when a metrics port
+ * is configured, through a local HTTP endpoint serving /metrics in the Prometheus text format.
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+
+    /**
+     * The JMX name the metrics are registered under.
+     */
+    public static final String OBJECT_NAME = "TicTacToe:type=ServerMetrics";
+
+    /**
+     * A blocking flush taking at least this long, in nanoseconds, is recorded as a write stall.
+     */
+    public static final long WRITE_STALL_NANOS = 1_000_000;
+
+    private static final GameMsg.MsgType[] TYPES = GameMsg.MsgType.values();
+
+    private final LongAdder[] received = adders(TYPES.length);
+    private final LongAdder[] sent = adders(TYPES.length);
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder activeGames = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder movesRejected = new LongAdder();
+    private final LatencyHistogram decodeToBroadcast = new LatencyHistogram();
+    private final LongAdder outboundQueued = new LongAdder();
+    private final AtomicLong outboundPeak = new AtomicLong();
+    private final LongAdder overflowDrops = new LongAdder();
+    private final LongAdder overflowSnapshots = new LongAdder();
+    private final LatencyHistogram writeStalls = new LatencyHistogram();
+    private final LongAdder spectators = new LongAdder();
+    private final LongAdder spectatorFrames = new LongAdder();
+    private final LongAdder spectatorEncodes = new LongAdder();
+    private final LongAdder spectatorResyncs = new LongAdder();
+    private final LongAdder seatsParked = new LongAdder();
+    private final LongAdder seatsResumed = new LongAdder();
+    private final LongAdder seatsExpired = new LongAdder();
+    private final LongAdder matchWaiting = new LongAdder();
+    private final LatencyHistogram matchWait = new LatencyHistogram();
+    private final LatencyHistogram matchGap = new LatencyHistogram();
+    private final LatencyHistogram tournamentPairing = new LatencyHistogram();
+    private volatile GameShards shards;
+    private volatile Leaderboard leaderboard;
+    private HttpServer httpServer;
+
+    /**
+     * Records a message received from a client.
+     * @param type The type of the message.
+     */
+    public void messageReceived(GameMsg.MsgType type) {
+        received[type.ordinal()].increment();
+    }
+
+    /**
+     * Records a message sent to a client.
+     * @param type The type of the message.
+     */
+    public void messageSent(GameMsg.MsgType type) {
+        sent[type.ordinal()].increment();
+    }
+
+    /**
+     * Records the time from the decoding of a message to the end of the broadcast it caused.
+     * @param decodedAt The System.nanoTime at which the message was decoded.
+     */
+    public void broadcastDone(long decodedAt) {
+        decodeToBroadcast.record(System.nanoTime() - decodedAt);
+    }
+
+    /**
+     * Records a client connecting.
+     */
+    public void connectionOpened() {
+        connections.increment();
+    }
+
+    /**
+     * Records a client disconnecting.
+     */
+    public void connectionClosed() {
+        connections.decrement();
+    }
+
+    /**
+     * Records a game starting in a room whose both seats are taken.
+     */
+    public void gameStarted() {
+        activeGames.increment();
+    }
+
+    /**
+     * Records a room with both seats taken being closed.
+     */
+    public void gameEnded() {
+        activeGames.decrement();
+    }
+
+    /**
+     * Records bytes received from a client.
+     * @param n The number of bytes.
+     */
+    public void bytesIn(long n) {
+        bytesIn.add(n);
+    }
+
+    /**
+     * Records bytes sent to a client.
+     * @param n The number of bytes.
+     */
+    public void bytesOut(long n) {
+        bytesOut.add(n);
+    }
+
+    /**
+     * Records a move rejected by a Controller.
+     */
+    public void moveRejected() {
+        movesRejected.increment();
+    }
+
+    /**
+     * Records a message added to an outbound queue.
+     * @param depth The number of messages in that queue once added.
+     */
+    public void queued(int depth) {
+        outboundQueued.increment();
+        if (depth > outboundPeak.get()) {
+            outboundPeak.accumulateAndGet(depth, Math::max);
+        }
+    }
+
+    /**
+     * Records messages taken out of an outbound queue, written or discarded.
+     * @param n The number of messages.
+     */
+    public void dequeued(int n) {
+        outboundQueued.add(-n);
+    }
+
+    /**
+     * Records an outbound queue found full.
+     * @param policy The OverflowPolicy applied.
+     */
+    public void overflow(ServerConfig.OverflowPolicy policy) {
+        if (policy == ServerConfig.OverflowPolicy.DROP) {
+            overflowDrops.increment();
+        } else {
+            overflowSnapshots.increment();
+        }
+    }
+
+    /**
+     * Records a write stall.
+     * @param nanos How long the socket did not take what was written to it, in nanoseconds.
+     */
+    public void writeStall(long nanos) {
+        writeStalls.record(nanos);
+    }
+
+    /**
+     * Records a spectator starting to watch a room.
+     */
+    public void spectatorJoined() {
+        spectators.increment();
+    }
+
+    /**
+     * Records a spectator no longer watching a room.
+     */
+    public void spectatorLeft() {
+        spectators.decrement();
+    }
+
+    /**
+     * Records a state change fanned out to the spectators of a room.
+     * @param encodes The number of frames encoded for it, one per protocol version watching.
+     * @param frames The number of spectators the shared frames were queued for.
+     */
+    public void spectatorFanOut(int encodes, int frames) {
+        spectatorEncodes.add(encodes);
+        spectatorFrames.add(frames);
+    }
+
+    /**
+     * Records a spectator that fell behind and skipped to a SNAPSHOT.
+     */
+    public void spectatorResync() {
+        spectatorResyncs.increment();
+    }
+
+    /**
+     * Records a seat kept for its player after the connection of the player was lost.
+     */
+    public void seatParked() {
+        seatsParked.increment();
+    }
+
+    /**
+     * Records a player resuming its seat on a new connection.
+     */
+    public void seatResumed() {
+        seatsResumed.increment();
+    }
+
+    /**
+     * Records a parked seat given up because its player did not come back in time.
+     */
+    public void seatExpired() {
+        seatsExpired.increment();
+    }
+
+    /**
+     * Records players starting or stopping to wait for the Matchmaker.
+     * @param delta The change in the number of waiting players.
+     */
+    public void matchWaiting(int delta) {
+        matchWaiting.add(delta);
+    }
+
+    /**
+     * Records two players paired by the Matchmaker.
+     * @param hostNanos How long the player keeping its room waited, in nanoseconds.
+     * @param guestNanos How long the player moved into that room waited, in nanoseconds.
+     * @param gap The difference between their ratings, in rating points.
+     */
+    public void matched(long hostNanos, long guestNanos, long gap) {
+        matchWait.record(hostNanos);
+        matchWait.record(guestNanos);
+        matchGap.record(gap);
+    }
+
+    /**
+     * Records a round of a Tournament paired.
+     * @param pairingNanos The time taken to rank the standings and pair the round, in nanoseconds.
+     */
+    public void tournamentRound(long pairingNanos) {
+        tournamentPairing.record(pairingNanos);
+    }
+
+    /**
+     * Wraps the input stream of a socket so every byte read from it is counted as bytes in.
+     * @param in The raw input stream of the socket.
+     * @return The counting stream.
+     */
+    public InputStream countBytesIn(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) bytesIn.increment();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) bytesIn.add(n);
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Wraps the output stream of a socket so every byte written to it is counted as bytes out.
+     * @param out The raw output stream of the socket.
+     * @return The counting stream.
+     */
+    public OutputStream countBytesOut(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytesOut.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytesOut.add(len);
+            }
+        };
+    }
+
+    /**
+     * Registers the metrics with the platform MBeanServer, replacing the metrics of an earlier server of the JVM.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            Log.error("Failed to register {}", OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Starts the HTTP endpoint serving /metrics on the loopback interface.
+     * @param port The port to listen on.
+     * @throws IOException if the port cannot be bound.
+     */
+    public void startHttp(int port) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/metrics", exchange -> {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        httpServer.start();
+        Log.info("Metrics served at http://localhost:{}/metrics", httpServer.getAddress().getPort());
+    }
+
+    /**
+     * Serves another path on the HTTP endpoint, such as the queries of the Leaderboard.
+     * @param path The path to serve.
+     * @param handler The HttpHandler answering the requests of the path.
+     * @throws IllegalStateException if the endpoint is not started.
+     */
+    public void serve(String path, HttpHandler handler) {
+        if (httpServer == null) {
+            throw new IllegalStateException("The metrics endpoint is not started");
+        }
+        httpServer.createContext(path, handler);
+    }
+
+    /**
+     * Stops the HTTP endpoint, if started.
+     */
+    public void stopHttp() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+    }
+
+    /**
+     * Reports the load of the given GameShards from now on.
+     * @param shards The GameShards the rooms run on.
+     */
+    public void watchShards(GameShards shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Reports the given Leaderboard from now on.
+     * @param leaderboard The Leaderboard of the server.
+     */
+    public void watchLeaderboard(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+     * Formats every metric in the Prometheus text exposition format.
+     * @return The text served at /metrics.
+     */
+    public String scrape() {
+        StringBuilder sb = new StringBuilder(2048);
+        sb.append("# TYPE tictactoe_messages_received_total counter\n");
+        for (GameMsg.MsgType type : TYPES) {
+            sb.append("tictactoe_messages_received_total{type=\"").append(type).append("\"} ")
+                    .append(received[type.ordinal()].sum()).append('\n');
+        }
+        sb.append("# TYPE tictactoe_messages_sent_total counter\n");
+        for (GameMsg.MsgType type : TYPES) {
+            sb.append("tictactoe_messages_sent_total{type=\"").append(type).append("\"} ")
+                    .append(sent[type.ordinal()].sum()).append('\n');
+        }
+        metric(sb, "tictactoe_connections", "gauge", getConnections());
+        metric(sb, "tictactoe_active_games", "gauge", getActiveGames());
+        metric(sb, "tictactoe_bytes_in_total", "counter", getBytesIn());
+        metric(sb, "tictactoe_bytes_out_total", "counter", getBytesOut());
+        metric(sb, "tictactoe_moves_rejected_total", "counter", getMovesRejected());
+        metric(sb, "tictactoe_outbound_queued", "gauge", getOutboundQueued());
+        metric(sb, "tictactoe_outbound_queue_peak", "gauge", getOutboundQueuePeak());
+        metric(sb, "tictactoe_outbound_overflow_drops_total", "counter", getOverflowDrops());
+        metric(sb, "tictactoe_outbound_overflow_snapshots_total", "counter", getOverflowSnapshots());
+        metric(sb, "tictactoe_spectators", "gauge", getSpectators());
+        metric(sb, "tictactoe_spectator_frames_total", "counter", getSpectatorFrames());
+        metric(sb, "tictactoe_spectator_encodes_total", "counter", getSpectatorEncodes());
+        metric(sb, "tictactoe_spectator_resyncs_total", "counter", getSpectatorResyncs());
+        metric(sb, "tictactoe_seats_parked_total", "counter", getSeatsParked());
+        metric(sb, "tictactoe_seats_resumed_total", "counter", getSeatsResumed());
+        metric(sb, "tictactoe_seats_expired_total", "counter", getSeatsExpired());
+        metric(sb, "tictactoe_match_waiting", "gauge", getMatchWaiting());
+        Leaderboard board = leaderboard;
+        if (board != null) {
+            metric(sb, "tictactoe_leaderboard_players", "gauge", board.size());
+            metric(sb, "tictactoe_leaderboard_pending", "gauge", board.getPending());
+            metric(sb, "tictactoe_leaderboard_results_total", "counter", board.getApplied());
+            metric(sb, "tictactoe_leaderboard_batches_total", "counter", board.getBatches());
+        }
+        GameShards watched = shards;
+        if (watched != null) {
+            sb.append("# TYPE tictactoe_shard_games gauge\n");
+            for (int i = 0; i < watched.size(); i++) {
+                sb.append("tictactoe_shard_games{shard=\"").append(i).append("\"} ").append(watched.getGames(i)).append('\n');
+            }
+            sb.append("# TYPE tictactoe_shard_tasks_total counter\n");
+            for (int i = 0; i < watched.size(); i++) {
+                sb.append("tictactoe_shard_tasks_total{shard=\"").append(i).append("\"} ").append(watched.getTasks(i)).append('\n');
+            }
+            metric(sb, "tictactoe_shard_rebalanced_total", "counter", watched.getRebalanced());
+        }
+        summary(sb, "tictactoe_decode_to_broadcast_seconds", decodeToBroadcast);
+        summary(sb, "tictactoe_write_stall_seconds", writeStalls);
+        summary(sb, "tictactoe_match_wait_seconds", matchWait);
+        summary(sb, "tictactoe_match_rating_gap", matchGap, 1);
+        summary(sb, "tictactoe_tournament_pairing_seconds", tournamentPairing);
+        return sb.toString();
+    }
+
+    /**
+     * Gets the number of messages received from clients, by message type.
+     * @return The counts, keyed by the name of the GameMsg.MsgType.
+     */
+    @Override
+    public Map<String, Long> getMessagesReceived() {
+        return counts(received);
+    }
+
+    /**
+     * Gets the number of messages sent to clients, by message type.
+     * @return The counts, keyed by the name of the GameMsg.MsgType.
+     */
+    @Override
+    public Map<String, Long> getMessagesSent() {
+        return counts(sent);
+    }
+
+    /**
+     * Gets the number of messages received from clients of one type.
+     * @param type The type of the messages.
+     * @return The number of messages.
+     */
+    public long getReceived(GameMsg.MsgType type) {
+        return received[type.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of messages sent to clients of one type.
+     * @param type The type of the messages.
+     * @return The number of messages.
+     */
+    public long getSent(GameMsg.MsgType type) {
+        return sent[type.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of clients currently connected.
+     * @return The number of connections.
+     */
+    @Override
+    public long getConnections() {
+        return connections.sum();
+    }
+
+    /**
+     * Gets the number of games currently played, that is rooms with both seats taken.
+     * @return The number of active games.
+     */
+    @Override
+    public long getActiveGames() {
+        return activeGames.sum();
+    }
+
+    /**
+     * Gets the number of bytes received from clients.
+     * @return The number of bytes.
+     */
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    /**
+     * Gets the number of bytes sent to clients.
+     * @return The number of bytes.
+     */
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    /**
+     * Gets the number of moves the Controllers have rejected.
+     * @return The number of invalid moves.
+     */
+    @Override
+    public long getMovesRejected() {
+        return movesRejected.sum();
+    }
+
+    /**
+     * Gets the number of messages waiting in the outbound queues of all connections.
+     * @return The number of queued messages.
+     */
+    @Override
+    public long getOutboundQueued() {
+        return outboundQueued.sum();
+    }
+
+    /**
+     * Gets the largest number of messages ever seen waiting in the outbound queue of one connection.
+     * @return The peak depth of an outbound queue.
+     */
+    @Override
+    public long getOutboundQueuePeak() {
+        return outboundPeak.get();
+    }
+
+    /**
+     * Gets the number of connections closed because their outbound queue was full.
+     * @return The number of dropped connections.
+     */
+    @Override
+    public long getOverflowDrops() {
+        return overflowDrops.sum();
+    }
+
+    /**
+     * Gets the number of times a full outbound queue was collapsed into a SNAPSHOT.
+     * @return The number of snapshots.
+     */
+    @Override
+    public long getOverflowSnapshots() {
+        return overflowSnapshots.sum();
+    }
+
+    /**
+     * Gets the number of spectators watching a room.
+     * @return The number of spectators.
+     */
+    @Override
+    public long getSpectators() {
+        return spectators.sum();
+    }
+
+    /**
+     * Gets the number of shared frames queued for spectators.
+     * @return The number of frames.
+     */
+    @Override
+    public long getSpectatorFrames() {
+        return spectatorFrames.sum();
+    }
+
+    /**
+     * Gets the number of frames encoded for spectators; each is shared by every spectator of a room speaking its version.
+     * @return The number of encoded frames.
+     */
+    @Override
+    public long getSpectatorEncodes() {
+        return spectatorEncodes.sum();
+    }
+
+    /**
+     * Gets the number of times a spectator fell behind and skipped to a SNAPSHOT.
+     * @return The number of resyncs.
+     */
+    @Override
+    public long getSpectatorResyncs() {
+        return spectatorResyncs.sum();
+    }
+
+    /**
+     * Gets the number of seats kept for their player after a lost connection.
+     * @return The number of parked seats.
+     */
+    @Override
+    public long getSeatsParked() {
+        return seatsParked.sum();
+    }
+
+    /**
+     * Gets the number of seats resumed by their player on a new connection.
+     * @return The number of resumed seats.
+     */
+    @Override
+    public long getSeatsResumed() {
+        return seatsResumed.sum();
+    }
+
+    /**
+     * Gets the number of parked seats given up because their player did not come back in time.
+     * @return The number of expired seats.
+     */
+    @Override
+    public long getSeatsExpired() {
+        return seatsExpired.sum();
+    }
+
+    /**
+     * Gets the number of players waiting for the Matchmaker to find them an opponent.
+     * @return The number of waiting players.
+     */
+    @Override
+    public long getMatchWaiting() {
+        return matchWaiting.sum();
+    }
+
+    /**
+     * Gets the number of games the Matchmaker has paired.
+     * @return The number of matches.
+     */
+    @Override
+    public long getMatches() {
+        return matchGap.getTotalCount();
+    }
+
+    /**
+     * Gets the median time a matched player waited for the Matchmaker.
+     * @return The median, in nanoseconds.
+     */
+    @Override
+    public long getMatchWaitP50Nanos() {
+        return matchWait.getValueAtPercentile(50);
+    }
+
+    /**
+     * Gets the 99th percentile of the time a matched player waited for the Matchmaker.
+     * @return The 99th percentile, in nanoseconds.
+     */
+    @Override
+    public long getMatchWaitP99Nanos() {
+        return matchWait.getValueAtPercentile(99);
+    }
+
+    /**
+     * Gets the median difference between the ratings of two matched players.
+     * @return The median, in rating points.
+     */
+    @Override
+    public long getMatchRatingGapP50() {
+        return matchGap.getValueAtPercentile(50);
+    }
+
+    /**
+     * Gets the 99th percentile of the difference between the ratings of two matched players.
+     * @return The 99th percentile, in rating points.
+     */
+    @Override
+    public long getMatchRatingGapP99() {
+        return matchGap.getValueAtPercentile(99);
+    }
+
+    /**
+     * Gets the histogram of the time matched players waited for the Matchmaker.
+     * @return The LatencyHistogram, in nanoseconds.
+     */
+    public LatencyHistogram getMatchWait() {
+        return matchWait;
+    }
+
+    /**
+     * Gets the histogram of the differences between the ratings of matched players.
+     * @return The LatencyHistogram, in rating points.
+     */
+    public LatencyHistogram getMatchRatingGap() {
+        return matchGap;
+    }
+
+    /**
+     * Gets the number of Tournament rounds paired.
+     * @return The number of rounds.
+     */
+    @Override
+    public long getTournamentRounds() {
+        return tournamentPairing.getTotalCount();
+    }
+
+    /**
+     * Gets the 99th percentile of the time taken to rank the standings of a Tournament and pair its next round.
+     * @return The time in nanoseconds.
+     */
+    @Override
+    public long getTournamentPairingP99Nanos() {
+        return tournamentPairing.getValueAtPercentile(99);
+    }
+
+    /**
+     * Gets the histogram of the time taken to rank the standings of a Tournament and pair its next round.
+     * @return The LatencyHistogram of the pairing times.
+     */
+    public LatencyHistogram getTournamentPairing() {
+        return tournamentPairing;
+    }
+
+    /**
+     * Gets the number of players ranked on the Leaderboard.
+     * @return The number of players.
+     */
+    @Override
+    public long getLeaderboardPlayers() {
+        Leaderboard board = leaderboard;
+        return board == null ? 0 : board.size();
+    }
+
+    /**
+     * Gets the number of game results waiting to be applied to the Leaderboard.
+     * @return The number of pending results.
+     */
+    @Override
+    public long getLeaderboardPending() {
+        Leaderboard board = leaderboard;
+        return board == null ? 0 : board.getPending();
+    }
+
+    /**
+     * Gets the number of games each shard hosts.
+     * @return The counts, keyed by the index of the shard, empty before the first room is opened.
+     */
+    @Override
+    public Map<String, Long> getShardGames() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        GameShards watched = shards;
+        for (int i = 0; watched != null && i < watched.size(); i++) {
+            counts.put(Integer.toString(i), (long) watched.getGames(i));
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the number of actor runs each shard has executed.
+     * @return The counts, keyed by the index of the shard, empty before the first room is opened.
+     */
+    @Override
+    public Map<String, Long> getShardTasks() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        GameShards watched = shards;
+        for (int i = 0; watched != null && i < watched.size(); i++) {
+            counts.put(Integer.toString(i), watched.getTasks(i));
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the number of new games placed away from the shard they hash to, because it was busier than the others.
+     * @return The number of rebalanced games.
+     */
+    @Override
+    public long getShardRebalanced() {
+        GameShards watched = shards;
+        return watched == null ? 0 : watched.getRebalanced();
+    }
+
+    /**
+     * Gets the number of write stalls.
+     * @return The number of stalls.
+     */
+    @Override
+    public long getWriteStallCount() {
+        return writeStalls.getTotalCount();
+    }
+
+    /**
+     * Gets the longest write stall.
+     * @return The longest stall, in nanoseconds.
+     */
+    @Override
+    public long getWriteStallMaxNanos() {
+        return writeStalls.getMax();
+    }
+
+    /**
+     * Gets the histogram of the write stalls.
+     * @return The LatencyHistogram, in nanoseconds.
+     */
+    public LatencyHistogram getWriteStalls() {
+        return writeStalls;
+    }
+
+    /**
+     * Gets the histogram of the time from the decoding of a message to the end of its broadcast.
+     * @return The LatencyHistogram, in nanoseconds.
+     */
+    public LatencyHistogram getDecodeToBroadcast() {
+        return decodeToBroadcast;
+    }
+
+    /**
+     * Gets the number of messages timed from their decoding to the end of their broadcast.
+     * @return The number of timed messages.
+     */
+    @Override
+    public long getDecodeToBroadcastCount() {
+        return decodeToBroadcast.getTotalCount();
+    }
+
+    /**
+     * Gets the median time from the decoding of a message to the end of its broadcast.
+     * @return The median, in nanoseconds.
+     */
+    @Override
+    public long getDecodeToBroadcastP50Nanos() {
+        return decodeToBroadcast.getValueAtPercentile(50);
+    }
+
+    /**
+     * Gets the 99th percentile of the time from the decoding of a message to the end of its broadcast.
+     * @return The 99th percentile, in nanoseconds.
+     */
+    @Override
+    public long getDecodeToBroadcastP99Nanos() {
+        return decodeToBroadcast.getValueAtPercentile(99);
+    }
+
+    /**
+     * Gets the 99.9th percentile of the time from the decoding of a message to the end of its broadcast.
+     * @return The 99.9th percentile, in nanoseconds.
+     */
+    @Override
+    public long getDecodeToBroadcastP999Nanos() {
+        return decodeToBroadcast.getValueAtPercentile(99.9);
+    }
+
+    /**
+     * Gets the longest time from the decoding of a message to the end of its broadcast.
+     * @return The maximum, in nanoseconds.
+     */
+    @Override
+    public long getDecodeToBroadcastMaxNanos() {
+        return decodeToBroadcast.getMax();
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static Map<String, Long> counts(LongAdder[] adders) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (GameMsg.MsgType type : TYPES) {
+            counts.put(type.name(), adders[type.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    private static void metric(StringBuilder sb, String name, String type, long value) {
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder sb, String name, LatencyHistogram histogram) {
+        summary(sb, name, histogram, 1e9);
+    }
+
+    private static void summary(StringBuilder sb, String name, LatencyHistogram histogram, double unit) {
+        sb.append("# TYPE ").append(name).append(" summary\n");
+        double[] quantiles = {0.5, 0.9, 0.99, 0.999};
+        for (double q : quantiles) {
+            sb.append(name).append("{quantile=\"").append(q).append("\"} ")
+                    .append(format(histogram.getValueAtPercentile(q * 100), unit)).append('\n');
+        }
+        long count = histogram.getTotalCount();
+        sb.append(name).append("_sum ").append(format((long) (histogram.getMean() * count), unit)).append('\n');
+        sb.append(name).append("_count ").append(count).append('\n');
+    }
+
+    private static String format(long value, double unit) {
+        return String.format(Locale.ROOT, "%.9f", value / unit);
+    }
+}
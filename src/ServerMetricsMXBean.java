@@ -0,0 +1,241 @@
+/**
+ * ServerMetricsMXBean.java
+ */
+
+import java.util.Map;
+
+/**
+ * ServerMetricsMXBean is the JMX view of the ServerMetrics of a GameServer,
+ * registered as TicTacToe:type=ServerMetrics. Every attribute is read when asked for,
+ * so reading them never slows the recording down.
+ */
+public interface ServerMetricsMXBean {
+
+    /**
+     * Gets the number of messages received from clients, by message type.
+     * @return The counts, keyed by the name of the GameMsg.MsgType.
+     */
+    Map<String, Long> getMessagesReceived();
+
+    /**
+     * Gets the number of messages sent to clients, by message type.
+     * @return The counts, keyed by the name of the GameMsg.MsgType.
+     */
+    Map<String, Long> getMessagesSent();
+
+    /**
+     * Gets the number of clients currently connected.
+     * @return The number of connections.
+     */
+    long getConnections();
+
+    /**
+     * Gets the number of games currently played, that is rooms with both seats taken.
+     * @return The number of active games.
+     */
+    long getActiveGames();
+
+    /**
+     * Gets the number of bytes received from clients.
+     * @return The number of bytes.
+     */
+    long getBytesIn();
+
+    /**
+     * Gets the number of bytes sent to clients.
+     * @return The number of bytes.
+     */
+    long getBytesOut();
+
+    /**
+     * Gets the number of moves the Controllers have rejected.
+     * @return The number of invalid moves.
+     */
+    long getMovesRejected();
+
+    /**
+     * Gets the number of messages timed from their decoding to the end of their broadcast.
+     * @return The number of timed messages.
+     */
+    long getDecodeToBroadcastCount();
+
+    /**
+     * Gets the median time from the decoding of a message to the end of its broadcast.
+     * @return The median, in nanoseconds.
+     */
+    long getDecodeToBroadcastP50Nanos();
+
+    /**
+     * Gets the 99th percentile of the time from the decoding of a message to the end of its broadcast.
+     * @return The 99th percentile, in nanoseconds.
+     */
+    long getDecodeToBroadcastP99Nanos();
+
+    /**
+     * Gets the 99.9th percentile of the time from the decoding of a message to the end of its broadcast.
+     * @return The 99.9th percentile, in nanoseconds.
+     */
+    long getDecodeToBroadcastP999Nanos();
+
+    /**
+     * Gets the longest time from the decoding of a message to the end of its broadcast.
+     * @return The maximum, in nanoseconds.
+     */
+    long getDecodeToBroadcastMaxNanos();
+
+    /**
+     * Gets the number of messages waiting in the outbound queues of all connections.
+     * @return The number of queued messages.
+     */
+    long getOutboundQueued();
+
+    /**
+     * Gets the largest number of messages ever seen waiting in the outbound queue of one connection.
+     * @return The peak depth of an outbound queue.
+     */
+    long getOutboundQueuePeak();
+
+    /**
+     * Gets the number of connections closed because their outbound queue was full.
+     * @return The number of dropped connections.
+     */
+    long getOverflowDrops();
+
+    /**
+     * Gets the number of times a full outbound queue was collapsed into a SNAPSHOT.
+     * @return The number of snapshots.
+     */
+    long getOverflowSnapshots();
+
+    /**
+     * Gets the number of spectators watching a room.
+     * @return The number of spectators.
+     */
+    long getSpectators();
+
+    /**
+     * Gets the number of shared frames queued for spectators.
+     * @return The number of frames.
+     */
+    long getSpectatorFrames();
+
+    /**
+     * Gets the number of frames encoded for spectators; each is shared by every spectator of a room speaking its version.
+     * @return The number of encoded frames.
+     */
+    long getSpectatorEncodes();
+
+    /**
+     * Gets the number of times a spectator fell behind and skipped to a SNAPSHOT.
+     * @return The number of resyncs.
+     */
+    long getSpectatorResyncs();
+
+    /**
+     * Gets the number of seats kept for their player after a lost connection.
+     * @return The number of parked seats.
+     */
+    long getSeatsParked();
+
+    /**
+     * Gets the number of seats resumed by their player on a new connection.
+     * @return The number of resumed seats.
+     */
+    long getSeatsResumed();
+
+    /**
+     * Gets the number of parked seats given up because their player did not come back in time.
+     * @return The number of expired seats.
+     */
+    long getSeatsExpired();
+
+    /**
+     * Gets the number of players waiting for the Matchmaker to find them an opponent.
+     * @return The number of waiting players.
+     */
+    long getMatchWaiting();
+
+    /**
+     * Gets the number of games the Matchmaker has paired.
+     * @return The number of matches.
+     */
+    long getMatches();
+
+    /**
+     * Gets the median time a matched player waited for the Matchmaker.
+     * @return The median, in nanoseconds.
+     */
+    long getMatchWaitP50Nanos();
+
+    /**
+     * Gets the 99th percentile of the time a matched player waited for the Matchmaker.
+     * @return The 99th percentile, in nanoseconds.
+     */
+    long getMatchWaitP99Nanos();
+
+    /**
+     * Gets the median difference between the ratings of two matched players.
+     * @return The median, in rating points.
+     */
+    long getMatchRatingGapP50();
+
+    /**
+     * Gets the 99th percentile of the difference between the ratings of two matched players.
+     * @return The 99th percentile, in rating points.
+     */
+    long getMatchRatingGapP99();
+
+    /**
+     * Gets the number of Tournament rounds paired.
+     * @return The number of rounds.
+     */
+    long getTournamentRounds();
+
+    /**
+     * Gets the 99th percentile of the time taken to rank the standings of a Tournament and pair its next round.
+     * @return The time in nanoseconds.
+     */
+    long getTournamentPairingP99Nanos();
+
+    /**
+     * Gets the number of players ranked on the Leaderboard.
+     * @return The number of players.
+     */
+    long getLeaderboardPlayers();
+
+    /**
+     * Gets the number of game results waiting to be applied to the Leaderboard.
+     * @return The number of pending results.
+     */
+    long getLeaderboardPending();
+
+    /**
+     * Gets the number of games each shard hosts.
+     * @return The counts, keyed by the index of the shard.
+     */
+    Map<String, Long> getShardGames();
+
+    /**
+     * Gets the number of actor runs each shard has executed.
+     * @return The counts, keyed by the index of the shard.
+     */
+    Map<String, Long> getShardTasks();
+
+    /**
+     * Gets the number of new games placed away from the shard they hash to, because it was busier than the others.
+     * @return The number of rebalanced games.
+     */
+    long getShardRebalanced();
+
+    /**
+     * Gets the number of write stalls.
+     * @return The number of stalls.
+     */
+    long getWriteStallCount();
+
+    /**
+     * Gets the longest write stall.
+     * @return The longest stall, in nanoseconds.
+     */
+    long getWriteStallMaxNanos();
+}
@@ -0,0 +1,29 @@
+/**
+ * Spectator.java
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * Spectator represents one client watching a GameRoom read-only, independent of how it is connected.
+ * A spectator is not sent GameMsg objects but frames already encoded for its protocol version,
+ * shared by every spectator of the room speaking that version (see SpectatorGroup).
+ */
+public interface Spectator {
+
+    /**
+     * Gets the protocol version the spectator speaks.
+     * @return The negotiated protocol version.
+     */
+    int getVersion();
+
+    /**
+     * Queues a frame for the spectator. Never blocks.
+     * The frame is a read-only view of a buffer shared with other spectators.
+     * A spectator that cannot take the frame skips it; it is expected to drop what it still has queued
+     * and to ask its GameRoom for a snapshot frame (see GameRoom.snapshotFrame) once it can write again.
+     * @param frame The frame to send.
+     * @return true if the frame is queued, false if the spectator is behind and skips it.
+     */
+    boolean offerFrame(ByteBuffer frame);
+}
@@ -0,0 +1,125 @@
+/**
+ * SpectatorGroup.java
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * SpectatorGroup holds the Spectators of one GameRoom and fans the state changes of the room out to them,
+ * encoding every change once per protocol version in use. A spectator that falls behind skips ahead to a shared
+ * SNAPSHOT frame, so slow spectators never hold up the players. The group is driven by the GameActor of its room.
+ */
+public class SpectatorGroup {
+
+    private final CopyOnWriteArrayList<Spectator> spectators = new CopyOnWriteArrayList<>();
+    private final ServerMetrics metrics;
+    private final ByteBuffer[] frames = new ByteBuffer[Handshake.MAX_VERSION + 1];
+    private final ByteBuffer[] snapshots = new ByteBuffer[Handshake.MAX_VERSION + 1];
+
+    /**
+     * Constructor for SpectatorGroup.
+     * @param metrics The ServerMetrics the fan-out is recorded into.
+     */
+    public SpectatorGroup(ServerMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Adds a spectator to the group.
+     * @param spectator The Spectator to add.
+     */
+    public void add(Spectator spectator) {
+        spectators.add(spectator);
+        metrics.spectatorJoined();
+    }
+
+    /**
+     * Removes a spectator from the group.
+     * @param spectator The Spectator to remove.
+     * @return true if the spectator was in the group, false otherwise.
+     */
+    public boolean remove(Spectator spectator) {
+        if (!spectators.remove(spectator)) {
+            return false;
+        }
+        metrics.spectatorLeft();
+        return true;
+    }
+
+    /**
+     * Gets the number of spectators in the group.
+     * @return The number of spectators.
+     */
+    public int size() {
+        return spectators.size();
+    }
+
+    /**
+     * Encodes a state change once per protocol version in use, and queues the shared frame for every spectator.
+     * The cached SNAPSHOT frames are stale from now on.
+     * @param msg The GameMsg broadcast by the room.
+     */
+    public void publish(GameMsg msg) {
+        Arrays.fill(snapshots, null);
+        if (spectators.isEmpty()) {
+            return;
+        }
+        Arrays.fill(frames, null);
+        int encodes = 0;
+        int queued = 0;
+        for (Spectator spectator : spectators) {
+            int version = spectator.getVersion();
+            ByteBuffer frame = frames[version];
+            if (frame == null) {
+                frame = encode(msg, version);
+                if (frame == null) continue;
+                frames[version] = frame;
+                encodes++;
+            }
+            if (spectator.offerFrame(frame.duplicate())) {
+                queued++;
+            }
+        }
+        Arrays.fill(frames, null);
+        metrics.spectatorFanOut(encodes, queued);
+    }
+
+    /**
+     * Gets the SNAPSHOT frame of the current game for the given protocol version,
+     * encoding it only if no spectator of that version asked for it since the last change.
+     * @param version The protocol version of the spectator.
+     * @param snapshot Builds the SNAPSHOT of the current game.
+     * @return A read-only view of the shared frame, or null if it cannot be encoded.
+     */
+    public ByteBuffer snapshotFrame(int version, Supplier<GameMsg> snapshot) {
+        ByteBuffer frame = snapshots[version];
+        if (frame == null) {
+            frame = encode(snapshot.get(), version);
+            if (frame == null) return null;
+            snapshots[version] = frame;
+            metrics.spectatorFanOut(1, 0);
+        }
+        return frame.duplicate();
+    }
+
+    private static ByteBuffer encode(GameMsg msg, int version) {
+        try {
+            ByteBuffer frame;
+            if (version == Handshake.BINARY_VERSION) {
+                frame = ByteBuffer.allocate(BinaryCodec.frameSize(msg));
+                BinaryCodec.encode(msg, frame);
+                frame.flip();
+            } else {
+                frame = MsgCodec.encode(msg);
+            }
+            return frame.asReadOnlyBuffer();
+        } catch (IOException e) {
+            Log.error("Cannot encode {} for spectators", msg.getType(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Threads.java
+ */
+
+/**
+ * Threads starts the long-running loops of the server and the client either on platform threads
+ * or on virtual threads.
+ */
+public class Threads {
+
+    private Threads() {
+    }
+
+    /**
+     * Starts a task on a new thread.
+     * @param name The name of the thread.
+     * @param task The task to run.
+     * @param virtual true to run the task on a virtual thread, false for a platform thread.
+     * @return The started thread.
+     */
+    public static Thread start(String name, Runnable task, boolean virtual) {
+        Thread.Builder builder = virtual ? Thread.ofVirtual() : Thread.ofPlatform();
+        return builder.name(name).start(task);
+    }
+}
@@ -8,10 +8,10 @@ import java.awt.*;
 /**
  * This class represents the main frame for the Tic Tac Toe game GUI.
  * It sets up and manages the layout, menu bar, message label, board panel, score panel, and bottom panel.
- * It also provides methods to update the GUI based on game events.
+ * It is the Swing GameView of a Client: it updates the GUI based on game events.
  *
  */
-public class TicTacToeFrame extends JFrame{
+public class TicTacToeFrame extends JFrame implements GameView {
 
 
     private String playerName = "";
@@ -36,6 +36,7 @@ public class TicTacToeFrame extends JFrame{
      * Set the player's mark (X or O) for this game instance.
      * @param mark The mark to be set for the player.
      */
+    @Override
     public void setMark(Mark mark) {
         this.mark = mark;
     }
@@ -44,6 +45,7 @@ public class TicTacToeFrame extends JFrame{
      * Set the client for this game instance and update all relevant panels with the new client.
      * @param c The client to be set.
      */
+    @Override
     public void setClient(Client c) {
         client = c;
         boardPanel.setClient(c);
@@ -92,10 +94,30 @@ public class TicTacToeFrame extends JFrame{
         this.setVisible(true);
     }
 
+    /**
+     * Rebuild the board panel for a board of the given size, if it differs from the current one.
+     * @param rows The number of rows of the board.
+     * @param cols The number of columns of the board.
+     */
+    @Override
+    public void setBoardSize(int rows, int cols) {
+        if (rows == boardPanel.getRows() && cols == boardPanel.getCols()) {
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            remove(boardPanel);
+            boardPanel = new BoardPanel(client, rows, cols);
+            add(boardPanel, BorderLayout.CENTER);
+            revalidate();
+            repaint();
+        });
+    }
+
     /**
      * Parse and set the player's name, updating the frame title and message label accordingly.
      * @param name The player's name to be set.
      */
+    @Override
     public void parseName(String name) {
         playerName = name;
         if (!playerName.isEmpty()) {
@@ -112,9 +134,10 @@ public class TicTacToeFrame extends JFrame{
      * @param j The y-coordinate of the cell.
      * @param m The mark to be drawn (X or O).
      */
+    @Override
     public void drawCell(int i, int j, Mark m) {
         CellPanel target = boardPanel.getCellPanel(i,j);
-        target.add(parseImg(m));
+        target.add(parseImg(m, Math.min(target.getWidth(), target.getHeight())));
         if (m == mark) {
             msgLabel.setText("Valid move, wait for your opponent.");
         } else {
@@ -130,6 +153,7 @@ public class TicTacToeFrame extends JFrame{
      * Send the appropriate message to the client based on the player's choice.
      * @param winner The mark of the winner (X, O, or null for draw).
      */
+    @Override
     public void drawWinner(Mark winner) {
 
         String msg;
@@ -162,6 +186,7 @@ public class TicTacToeFrame extends JFrame{
      * Display a dialog box indicating that the game has ended because one of the players left.
      * Exit the application after the dialog is closed.
      */
+    @Override
     public void drawExit() {
         Object[] options = {"OK"};
         showReplacingDialog(
@@ -178,6 +203,7 @@ public class TicTacToeFrame extends JFrame{
     /**
      * Make the game frame invisible. (Used when exiting the game.)
      */
+    @Override
     public void invisible() {
         this.setVisible(false);
     }
@@ -187,6 +213,7 @@ public class TicTacToeFrame extends JFrame{
      * @param winner The mark of the winner (X, O, or null for draw).
      * @param score The score to be updated for the winner.
      */
+    @Override
     public void drawScore(Mark winner,int score) {
         scorePanel.updateLabel(winner,score);
     }
@@ -195,10 +222,11 @@ public class TicTacToeFrame extends JFrame{
      * Reset the game frame (GUI) for a new game, including clearing the board and updating the message label.
      *
      */
+    @Override
     public void resetFrame() {
         setMsgLabel("WELCOME "+playerName.toUpperCase());
-        for (int i = 0; i<3; i++) {
-            for (int j = 0 ; j<3; j++) {
+        for (int i = 0; i<boardPanel.getRows(); i++) {
+            for (int j = 0 ; j<boardPanel.getCols(); j++) {
                 CellPanel target = boardPanel.getCellPanel(i,j);
                 target.removeAll();
                 target.revalidate();
@@ -227,7 +255,7 @@ public class TicTacToeFrame extends JFrame{
         msgLabel = new JLabel("Enter your player name...",SwingConstants.CENTER);
     }
 
-    private JLabel parseImg(Mark m) {
+    private JLabel parseImg(Mark m, int cellSize) {
         String path = "/dft.png";
         if (m == Mark.X) {
             path = "/cross.png";
@@ -235,6 +263,10 @@ public class TicTacToeFrame extends JFrame{
             path = "/circ.png";
         }
         ImageIcon icon = new ImageIcon(getClass().getResource(path));
+        int size = cellSize * 4 / 5;
+        if (size > 0 && size < icon.getIconWidth()) {
+            icon = new ImageIcon(icon.getImage().getScaledInstance(size, size, Image.SCALE_SMOOTH));
+        }
         JLabel res = new JLabel();
         res.setIcon(icon);
         return res;
@@ -290,7 +322,7 @@ public class TicTacToeFrame extends JFrame{
                 SwingUtilities.invokeAndWait(task);
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.error("Failed to show the dialog {}", title, e);
             return JOptionPane.CLOSED_OPTION;
         }
         return result[0];
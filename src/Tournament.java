@@ -0,0 +1,544 @@
+/**
+ * Tournament.java
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tournament runs a ROUND_ROBIN or SWISS event between named entrants on the rooms of a RoomRegistry,
+ * round after round, every game in a room of its own, with the entrants seated by the Seating of the tournament.
+ * A win scores 1 and a draw 1/2, and ties are broken by Buchholz, then Sonneborn-Berger, then seed.
+ * Everything the tournament does runs in order on a GameActor of its own.
+ */
+public class Tournament {
+
+    /**
+     * Enumeration of how the rounds of a Tournament are paired.
+     * ROUND_ROBIN: Everyone plays everyone once.
+     * SWISS: A given number of rounds, in each of which entrants of close scores who have not met yet play.
+     */
+    public enum Format {
+        ROUND_ROBIN, SWISS
+    }
+
+    /**
+     * Seating creates the PlayerConnection an entrant plays one game of the Tournament through.
+     */
+    public interface Seating {
+
+        /**
+         * Creates the PlayerConnection of an entrant for a game, before it is seated in the room of the game.
+         * Called on the actor of the tournament.
+         * @param room The GameRoom the game is played in.
+         * @param entrant The name of the entrant.
+         * @return The PlayerConnection to seat.
+         */
+        PlayerConnection seat(GameRoom room, String entrant);
+    }
+
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    private static final Comparator<Entrant> STANDINGS = (a, b) -> {
+        int c = tiebreaks(a, b);
+        return c != 0 ? c : Integer.compare(a.seed, b.seed);
+    };
+
+    private final int id = ids.incrementAndGet();
+    private final RoomRegistry registry;
+    private final Format format;
+    private final Seating seating;
+    private final Entrant[] entrants;
+    private final Entrant[] order;
+    private final int rounds;
+    private final ExecutorService thread;
+    private final GameActor actor;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final LongAdder games = new LongAdder();
+    private int round = 0;
+    private int playing = 0;
+    private volatile int completed = 0;
+    private volatile List<Standing> standings = List.of();
+
+    /**
+     * Constructor for Tournament.
+     * @param registry The RoomRegistry the games are played on.
+     * @param format The Format of the tournament.
+     * @param names The names of the entrants, all different, in seed order.
+     * @param rounds The number of rounds of a Swiss tournament, or 0 for the base-2 logarithm of the number
+     *               of entrants, rounded up. A round robin always plays every pairing once.
+     * @param seating The Seating creating the PlayerConnections of the entrants.
+     */
+    public Tournament(RoomRegistry registry, Format format, List<String> names, int rounds, Seating seating) {
+        if (names.size() < 2) {
+            throw new IllegalArgumentException("A tournament needs at least two entrants");
+        }
+        this.registry = registry;
+        this.format = format;
+        this.seating = seating;
+        int n = names.size();
+        if (format == Format.ROUND_ROBIN) {
+            this.rounds = n % 2 == 0 ? n - 1 : n;
+        } else {
+            this.rounds = rounds > 0 ? rounds : 32 - Integer.numberOfLeadingZeros(n - 1);
+        }
+        this.entrants = new Entrant[n];
+        for (int i = 0; i < n; i++) {
+            entrants[i] = new Entrant(i, names.get(i), this.rounds);
+        }
+        this.order = entrants.clone();
+        this.thread = Executors.newSingleThreadExecutor(task -> {
+            Thread t = new Thread(task, "Tournament-" + id);
+            t.setDaemon(true);
+            return t;
+        });
+        this.actor = new GameActor("Tournament " + id, thread);
+    }
+
+    /**
+     * Creates a Tournament between AiPlayers, for benchmarking: every entrant plays the best move it knows
+     * with a probability, its skill, drawn between 0.5 and 1 for each entrant, and a random free cell otherwise,
+     * so the stronger entrants win more often. The same seed gives the same entrants.
+     * @param registry The RoomRegistry the games are played on.
+     * @param format The Format of the tournament.
+     * @param n The number of entrants, named entrant-1 to entrant-n.
+     * @param rounds The number of rounds of a Swiss tournament, or 0 for the default.
+     * @param seed The seed of the skills of the entrants and of their random moves.
+     * @return The Tournament, not started yet.
+     */
+    public static Tournament simulated(RoomRegistry registry, Format format, int n, int rounds, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<String> names = new ArrayList<>(n);
+        Map<String, Double> skills = new HashMap<>();
+        for (int i = 1; i <= n; i++) {
+            String name = "entrant-" + i;
+            names.add(name);
+            skills.put(name, 0.5 + 0.5 * random.nextDouble());
+        }
+        ServerConfig config = registry.getConfig();
+        return new Tournament(registry, format, names, rounds, (room, entrant) -> new AiPlayer(room,
+                PerfectPlayTable.get(), registry.getSearch(), config.getAiTimeMillis(), skills.get(entrant),
+                random.nextLong()));
+    }
+
+    /**
+     * Starts the first round. Returns at once; the tournament goes on by itself until its last round is over.
+     */
+    public void start() {
+        Log.info("Tournament {}: {} entrants, {}", id, entrants.length, format);
+        actor.tell(this::nextRound);
+    }
+
+    /**
+     * Waits for the last round to be over.
+     * @param timeoutMillis The longest time to wait, in milliseconds.
+     * @return true if the tournament is over, false if the time ran out first.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public boolean await(long timeoutMillis) throws InterruptedException {
+        return finished.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ranks the standings and pairs the next round, or ends the tournament after the last one.
+     * Called on the actor of the tournament, once every game of the previous round has reported.
+     */
+    private void nextRound() {
+        long start = System.nanoTime();
+        Arrays.sort(order, STANDINGS);
+        if (round > 0) {
+            completed = round;
+            standings = publish();
+        }
+        if (round == rounds) {
+            Log.info("Tournament {} is over after {} games, won by {}", id, games.sum(), order[0].name);
+            thread.shutdown();
+            finished.countDown();
+            return;
+        }
+        round++;
+        List<Entrant> pairs = format == Format.ROUND_ROBIN ? pairCircle() : pairSwiss();
+        registry.getMetrics().tournamentRound(System.nanoTime() - start);
+        if (Log.isDebugEnabled())
+            Log.debug("Tournament {}: round {} paired, {} games", id, round, pairs.size() / 2);
+        playing = pairs.size() / 2;
+        for (int i = 0; i < pairs.size(); i += 2) {
+            Entrant a = pairs.get(i);
+            Entrant b = pairs.get(i + 1);
+            // X to whoever has had it less, and to the better placed one on equal terms.
+            boolean aFirst = a.xGames <= b.xGames;
+            Entrant x = aFirst ? a : b;
+            Entrant o = aFirst ? b : a;
+            x.xGames++;
+            registry.host(new Game(this, x, o), seating);
+        }
+        if (playing == 0) {
+            actor.tell(this::nextRound);
+        }
+    }
+
+    /**
+     * Pairs the round by the circle method: the first seed stays in place and the others turn by one place
+     * every round, so every two entrants meet exactly once. With an odd number of entrants, the entrant facing
+     * the empty place sits the round out.
+     * @return The pairs of the round, one after the other.
+     */
+    private List<Entrant> pairCircle() {
+        int places = entrants.length % 2 == 0 ? entrants.length : entrants.length + 1;
+        int turn = round - 1;
+        List<Entrant> pairs = new ArrayList<>(places);
+        for (int i = 0; i < places / 2; i++) {
+            int a = circle(i, turn, places);
+            int b = circle(places - 1 - i, turn, places);
+            if (a < entrants.length && b < entrants.length) {
+                pairs.add(entrants[a]);
+                pairs.add(entrants[b]);
+            }
+        }
+        return pairs;
+    }
+
+    private static int circle(int place, int turn, int places) {
+        return place == 0 ? 0 : (place - 1 + turn) % (places - 1) + 1;
+    }
+
+    /**
+     * Pairs a Swiss round from the standings: with an odd number of entrants, the lowest one without a bye
+     * gets it, then every entrant not paired yet, from the top, plays the next one down it has not met yet,
+     * or the next one down at all if it has met every entrant left.
+     * @return The pairs of the round, one after the other.
+     */
+    private List<Entrant> pairSwiss() {
+        Entrant bye = null;
+        if (order.length % 2 != 0) {
+            for (int i = order.length - 1; i >= 0 && bye == null; i--) {
+                if (!order[i].bye) {
+                    bye = order[i];
+                }
+            }
+            if (bye == null) {
+                bye = order[order.length - 1];
+            }
+            bye.bye = true;
+            bye.pairedIn = round;
+            gain(bye, 2);
+        }
+        List<Entrant> pairs = new ArrayList<>(order.length);
+        int first = 0;
+        for (int i = 0; i < order.length; i++) {
+            Entrant e = order[i];
+            if (e.pairedIn == round) {
+                continue;
+            }
+            Entrant opponent = null;
+            Entrant fallback = null;
+            while (first < order.length && order[first].pairedIn == round) {
+                first++;
+            }
+            for (int j = Math.max(i + 1, first); j < order.length && opponent == null; j++) {
+                Entrant candidate = order[j];
+                if (candidate.pairedIn == round) {
+                    continue;
+                }
+                if (fallback == null) {
+                    fallback = candidate;
+                }
+                if (!e.hasMet(candidate)) {
+                    opponent = candidate;
+                }
+            }
+            if (opponent == null) {
+                opponent = fallback;
+            }
+            if (opponent == null) {
+                break;
+            }
+            e.pairedIn = round;
+            opponent.pairedIn = round;
+            pairs.add(e);
+            pairs.add(opponent);
+        }
+        return pairs;
+    }
+
+    /**
+     * Records the result of a game in the standings, and pairs the next round if it was the last game of this one.
+     * Called on the actor of the tournament.
+     * @param game The Game that is over.
+     * @param winner The Mark of the winner, or Mark.EMPTY for a draw.
+     */
+    private void record(Game game, Mark winner) {
+        Entrant x = game.x;
+        Entrant o = game.o;
+        int scoreX = winner == Mark.X ? 2 : winner == Mark.O ? 0 : 1;
+        int scoreO = 2 - scoreX;
+        x.met(o, scoreX);
+        o.met(x, scoreO);
+        x.buchholz += o.points;
+        o.buchholz += x.points;
+        x.sonneborn += scoreX * o.points;
+        o.sonneborn += scoreO * x.points;
+        gain(x, scoreX);
+        gain(o, scoreO);
+        games.increment();
+        if (--playing == 0) {
+            nextRound();
+        }
+    }
+
+    /**
+     * Adds to the score of an entrant, and to the tiebreaks of everyone it has met: their Buchholz, the sum of the
+     * scores of their opponents, and their Sonneborn-Berger, the scores of the opponents they beat and half those
+     * of the opponents they drew.
+     * @param e The Entrant.
+     * @param half The points gained, in half points.
+     */
+    private void gain(Entrant e, int half) {
+        e.points += half;
+        for (int i = 0; i < e.games; i++) {
+            Entrant opponent = entrants[e.opponents[i]];
+            opponent.buchholz += half;
+            opponent.sonneborn += (2 - e.results[i]) * half;
+        }
+    }
+
+    /**
+     * Compares two entrants by score, then Buchholz, then Sonneborn-Berger, the better one first.
+     * Written out rather than chained from Comparator, so sorting the standings stays a few direct calls.
+     */
+    private static int tiebreaks(Entrant a, Entrant b) {
+        if (a.points != b.points) {
+            return Integer.compare(b.points, a.points);
+        }
+        if (a.buchholz != b.buchholz) {
+            return Integer.compare(b.buchholz, a.buchholz);
+        }
+        return Integer.compare(b.sonneborn, a.sonneborn);
+    }
+
+    private List<Standing> publish() {
+        List<Standing> table = new ArrayList<>(order.length);
+        for (int i = 0; i < order.length; i++) {
+            Entrant e = order[i];
+            boolean tied = i > 0 && tiebreaks(order[i - 1], e) == 0;
+            int rank = tied ? table.get(i - 1).getRank() : i + 1;
+            table.add(new Standing(rank, e));
+        }
+        return List.copyOf(table);
+    }
+
+    /**
+     * Getter for the standings after the last round over.
+     * @return The Standings of every entrant, first place first, or an empty list before the first round is over.
+     */
+    public List<Standing> getStandings() {
+        return standings;
+    }
+
+    /**
+     * Getter for the number of rounds over.
+     * @return The number of rounds over.
+     */
+    public int getCompletedRounds() {
+        return completed;
+    }
+
+    /**
+     * Getter for the number of rounds the tournament plays.
+     * @return The number of rounds.
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Getter for the number of games over, byes not included.
+     * @return The number of games played.
+     */
+    public long getGamesPlayed() {
+        return games.sum();
+    }
+
+    /**
+     * Getter for the Format of the tournament.
+     * @return The Format.
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Entrant is the running record of one entrant: its score and tiebreaks, and whom it met with what result.
+     * Only touched on the actor of the tournament.
+     */
+    private static final class Entrant {
+        private final int seed;
+        private final String name;
+        private final int[] opponents;
+        private final byte[] results;
+        private int games = 0;
+        private int points = 0;
+        private int buchholz = 0;
+        private int sonneborn = 0;
+        private int xGames = 0;
+        private int pairedIn = 0;
+        private boolean bye = false;
+
+        private Entrant(int seed, String name, int rounds) {
+            this.seed = seed;
+            this.name = name;
+            this.opponents = new int[rounds];
+            this.results = new byte[rounds];
+        }
+
+        private void met(Entrant opponent, int half) {
+            opponents[games] = opponent.seed;
+            results[games] = (byte) half;
+            games++;
+        }
+
+        private boolean hasMet(Entrant other) {
+            for (int i = 0; i < games; i++) {
+                if (opponents[i] == other.seed) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Game is one game of a Tournament, hosted in a room of its own, which reports its result once.
+     */
+    public static final class Game {
+        private final Tournament tournament;
+        private final Entrant x;
+        private final Entrant o;
+        private boolean reported = false;
+
+        private Game(Tournament tournament, Entrant x, Entrant o) {
+            this.tournament = tournament;
+            this.x = x;
+            this.o = o;
+        }
+
+        /**
+         * Getter for the entrant playing X.
+         * @return The name of the entrant.
+         */
+        public String getX() {
+            return x.name;
+        }
+
+        /**
+         * Getter for the entrant playing O.
+         * @return The name of the entrant.
+         */
+        public String getO() {
+            return o.name;
+        }
+
+        /**
+         * Reports the result of the game to the tournament. Reporting more than once has no further effect.
+         * Called on the actor of the room of the game.
+         * @param winner The Mark of the winner, or Mark.EMPTY for a draw.
+         */
+        void over(Mark winner) {
+            if (reported) {
+                return;
+            }
+            reported = true;
+            tournament.actor.tell(() -> tournament.record(this, winner));
+        }
+    }
+
+    /**
+     * Standing is the place of one entrant in the standings at the end of a round.
+     */
+    public static final class Standing {
+        private final int rank;
+        private final String name;
+        private final int points;
+        private final int buchholz;
+        private final int sonneborn;
+        private final int games;
+
+        private Standing(int rank, Entrant e) {
+            this.rank = rank;
+            this.name = e.name;
+            this.points = e.points;
+            this.buchholz = e.buchholz;
+            this.sonneborn = e.sonneborn;
+            this.games = e.games;
+        }
+
+        /**
+         * Getter for the rank of the entrant.
+         * @return The rank, from 1; entrants tied on score and both tiebreaks share it.
+         */
+        public int getRank() {
+            return rank;
+        }
+
+        /**
+         * Getter for the name of the entrant.
+         * @return The name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Getter for the score of the entrant: 1 for a win or a bye, 1/2 for a draw.
+         * @return The score.
+         */
+        public double getScore() {
+            return points / 2.0;
+        }
+
+        /**
+         * Getter for the Buchholz of the entrant: the sum of the scores of its opponents.
+         * @return The Buchholz.
+         */
+        public double getBuchholz() {
+            return buchholz / 2.0;
+        }
+
+        /**
+         * Getter for the Sonneborn-Berger of the entrant: the scores of the opponents it beat,
+         * and half those of the opponents it drew.
+         * @return The Sonneborn-Berger.
+         */
+        public double getSonnebornBerger() {
+            return sonneborn / 4.0;
+        }
+
+        /**
+         * Getter for the number of games the entrant played, byes not included.
+         * @return The number of games.
+         */
+        public int getGames() {
+            return games;
+        }
+
+        /**
+         * Formats the standing on one line: rank, name, score, Buchholz, Sonneborn-Berger and games.
+         * @return The formatted standing.
+         */
+        @Override
+        public String toString() {
+            return rank + " " + name + " " + getScore() + " " + getBuchholz() + " " + getSonnebornBerger() + " " + games;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * TranspositionTable.java
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * TranspositionTable is a fixed-size, lock-free hash table of search results shared by every thread of a ParallelSearch.
+ * Each entry is two longs, the packed data and the position hash XOR the data, so an entry torn by two threads
+ * writing at once is simply seen as a miss.
+ */
+public class TranspositionTable {
+
+    /**
+     * Bound of an exact score.
+     */
+    public static final int EXACT = 1;
+
+    /**
+     * Bound of a score that is at least the stored value (the search failed high).
+     */
+    public static final int LOWER = 2;
+
+    /**
+     * Bound of a score that is at most the stored value (the search failed low).
+     */
+    public static final int UPPER = 3;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+
+    /**
+     * Constructor for TranspositionTable.
+     * @param bits The log2 of the number of entries.
+     */
+    public TranspositionTable(int bits) {
+        this.slots = new AtomicLongArray(2 << bits);
+        this.mask = (1 << bits) - 1;
+    }
+
+    /**
+     * Looks up the entry of a position.
+     * @param hash The Zobrist hash of the position.
+     * @return The packed data of the entry, or 0 if the position is not in the table.
+     */
+    public long probe(long hash) {
+        int i = index(hash);
+        long check = slots.get(i);
+        long data = slots.get(i + 1);
+        if (data != 0 && (check ^ data) == hash) {
+            return data;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores the result of a search, unless the slot already holds a deeper result for the same position.
+     * @param hash The Zobrist hash of the position.
+     * @param score The score of the position.
+     * @param depth The depth the position was searched to.
+     * @param bound EXACT, LOWER or UPPER.
+     * @param move The best move found, or -1 if none.
+     */
+    public void store(long hash, int score, int depth, int bound, int move) {
+        int i = index(hash);
+        long old = probe(hash);
+        if (old != 0 && depth(old) > depth) {
+            return;
+        }
+        long data = (score & 0xFFFFFFFFL) | ((long) depth << 32) | ((long) bound << 40) | ((long) (move + 1) << 42);
+        slots.lazySet(i, hash ^ data);
+        slots.lazySet(i + 1, data);
+    }
+
+    /**
+     * Clears every entry.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.lazySet(i, 0);
+        }
+    }
+
+    /**
+     * Gets the score of an entry.
+     * @param data The packed data of the entry.
+     * @return The score.
+     */
+    public static int score(long data) {
+        return (int) data;
+    }
+
+    /**
+     * Gets the depth of an entry.
+     * @param data The packed data of the entry.
+     * @return The depth.
+     */
+    public static int depth(long data) {
+        return (int) (data >>> 32) & 0xFF;
+    }
+
+    /**
+     * Gets the bound of an entry.
+     * @param data The packed data of the entry.
+     * @return EXACT, LOWER or UPPER.
+     */
+    public static int bound(long data) {
+        return (int) (data >>> 40) & 0x3;
+    }
+
+    /**
+     * Gets the best move of an entry.
+     * @param data The packed data of the entry.
+     * @return The cell index of the move, or -1 if none.
+     */
+    public static int move(long data) {
+        return (int) (data >>> 42) - 1;
+    }
+
+    private int index(long hash) {
+        return ((int) (hash ^ (hash >>> 32)) & mask) << 1;
+    }
+}